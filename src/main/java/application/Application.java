@@ -2,15 +2,9 @@ package application;
 
 import iot.mqtt.MQTTClientFactory;
 import iot.mqtt.MqttClientBasicApi;
-import iot.mqtt.TransmissionWrapper;
-import iot.networkentity.Mote;
-import iot.networkentity.MoteSensor;
+import iot.mqtt.Topic;
 import iot.networkentity.NetworkServer;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 
 /**
  * An abstract class for an application in the system.
@@ -21,42 +15,31 @@ public abstract class Application {
      */
     protected MqttClientBasicApi mqttClient;
 
+    /**
+     * The pipeline which delivers the decoded uplinks to the application.
+     */
+    private final ApplicationPipeline pipeline;
+
 
-    protected Application(List<String> topics) {
+    protected Application(ApplicationPipeline pipeline) {
         this.mqttClient = MQTTClientFactory.getSingletonInstance();
-        topics.forEach(t -> this.mqttClient.subscribe(this, t, TransmissionWrapper.class, this::consumePackets));
+        this.pipeline = pipeline;
+        pipeline.register(this);
     }
 
 
     /**
-     * Method which is called when the application recieves a message from the MQTT broker.
-     * @param topicFilter The topic on which the message was published.
-     * @param message The message that was published.
-     */
-    public abstract void consumePackets(String topicFilter, TransmissionWrapper message);
-
-
-    /**
-     * Conversion function which converts a message of bytes to the corresponding mote sensor measurements
-     * @param mote The mote from which the message originated.
-     * @param messageBody The raw message data containing the sensor measurements.
-     * @return A map from the sensor types to the data/measurements they produced.
+     * Method which is called when the application recieves an uplink from the {@link ApplicationPipeline}.
+     * @param topic The topic on which the message was published.
+     * @param uplink The decoded uplink, which is shared with the other applications.
      */
-    protected Map<MoteSensor, Byte[]> retrieveSensorData(Mote mote, List<Byte> messageBody) {
-        Map<MoteSensor, Byte[]> sensorData = new HashMap<>();
-
-        for (var sensor : mote.getSensors()) {
-            int amtBytes = sensor.getAmountOfData();
-            sensorData.put(sensor, messageBody.subList(0, amtBytes).toArray(Byte[]::new));
-            messageBody = messageBody.subList(amtBytes, messageBody.size());
-        }
-
-        return sensorData;
-    }
+    public abstract void consumePackets(Topic topic, DecodedUplink uplink);
 
 
     /**
      * Destructor which can be used to properly destruct applications.
      */
-    public void destruct() {}
+    public void destruct() {
+        pipeline.unregister(this);
+    }
 }
@@ -0,0 +1,126 @@
+package application;
+
+import iot.Environment;
+import iot.mqtt.MQTTClientFactory;
+import iot.mqtt.MqttClientBasicApi;
+import iot.mqtt.Topic;
+import iot.mqtt.Topics;
+import iot.mqtt.TransmissionWrapper;
+import iot.networkentity.Mote;
+import iot.networkentity.NetworkServer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The shared stage between the {@link NetworkServer} and the applications.
+ * Every uplink is received and decoded once (see {@link DecodedUplink}) and then handed to all the registered applications.
+ */
+public class ApplicationPipeline {
+
+    private final MqttClientBasicApi mqttClient;
+    private final String topicFilter;
+    // The environment in which the motes which send the uplinks are located
+    private final Environment environment;
+
+    private final List<Application> applications;
+    // The motes by EUI, replaced as a whole when the motes of the environment change
+    private volatile MoteIndex motes;
+
+
+    public ApplicationPipeline(Environment environment) {
+        this.mqttClient = MQTTClientFactory.getSingletonInstance();
+        this.topicFilter = Topics.getNetServerToApp("+", "+");
+        this.environment = environment;
+        this.applications = new CopyOnWriteArrayList<>();
+        this.motes = new MoteIndex(List.of(), -1);
+
+        this.mqttClient.subscribe(this, topicFilter, TransmissionWrapper.class, this::consumePackets);
+    }
+
+
+    /**
+     * Register an application which receives all the decoded uplinks.
+     * @param application The application.
+     */
+    void register(Application application) {
+        applications.add(application);
+    }
+
+    /**
+     * Stop handing the uplinks to an application.
+     * @param application The application.
+     */
+    void unregister(Application application) {
+        applications.remove(application);
+    }
+
+    private void consumePackets(Topic topic, TransmissionWrapper message) {
+        var packet = message.getTransmission().getContent();
+        var mote = resolveMote(packet.getSenderEUI());
+        if (mote.isEmpty()) {
+            // The uplink was sent by a mote of another environment (e.g. another simulation on the same broker)
+            return;
+        }
+        var uplink = new DecodedUplink(packet, mote.get());
+        applications.forEach(a -> a.consumePackets(topic, uplink));
+    }
+
+    /**
+     * @param moteEUI The EUI of the mote.
+     * @return The mote with the given EUI, or an empty optional if the environment does not contain it.
+     */
+    private Optional<Mote> resolveMote(long moteEUI) {
+        var index = motes;
+        var mote = index.get(moteEUI);
+        if (mote == null || !index.isUpToDate(environment)) {
+            // Motes can be added to or removed from the environment after the pipeline is created
+            index = new MoteIndex(environment.getMotes(), environment.getMoteVersion());
+            motes = index;
+            mote = index.get(moteEUI);
+        }
+        return Optional.ofNullable(mote);
+    }
+
+
+    /**
+     * Destructor which stops the reception of uplinks.
+     */
+    public void destruct() {
+        this.mqttClient.unsubscribe(this, topicFilter);
+        applications.clear();
+    }
+
+
+    /**
+     * The motes of the environment by EUI at the time the index was built.
+     */
+    private static class MoteIndex {
+        private final Map<Long, Mote> motes;
+        // The version and size of the list of motes of the environment when the index was built
+        private final int version;
+        private final int size;
+
+        MoteIndex(List<Mote> motes, int version) {
+            this.motes = new HashMap<>();
+            motes.forEach(m -> this.motes.put(m.getEUI(), m));
+            this.version = version;
+            this.size = motes.size();
+        }
+
+        Mote get(long moteEUI) {
+            return motes.get(moteEUI);
+        }
+
+        /**
+         * @param environment The environment of the motes.
+         * @return True if the motes of the environment did not change since the index was built.
+         */
+        boolean isUpToDate(Environment environment) {
+            return environment.getMoteVersion() == version && environment.getMotes().size() == size;
+        }
+    }
+}
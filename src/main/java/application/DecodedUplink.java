@@ -0,0 +1,103 @@
+package application;
+
+import iot.lora.LoraWanPacket;
+import iot.networkentity.Mote;
+import iot.networkentity.MoteSensor;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An uplink which is decoded once by the {@link ApplicationPipeline} and shared by all the applications.
+ * The body and the sensor readings are read-only views on the payload of the packet, no data is copied.
+ */
+public final class DecodedUplink {
+
+    private final LoraWanPacket packet;
+    private final Mote mote;
+    private final byte messageType;
+    // The payload without the message type
+    private final ByteBuffer body;
+    // The data of every sensor of the mote, in the order of the sensors of the mote
+    private final Map<MoteSensor, ByteBuffer> sensorData;
+
+
+    /**
+     * @param packet The received packet.
+     * @param mote The mote which sent the packet.
+     */
+    DecodedUplink(LoraWanPacket packet, Mote mote) {
+        this.packet = packet;
+        this.mote = mote;
+
+        var payload = packet.getPayload();
+        this.messageType = payload.length > 0 ? payload[0] : -1;
+        this.body = ByteBuffer.wrap(payload, Math.min(1, payload.length), Math.max(0, payload.length - 1))
+            .slice().asReadOnlyBuffer();
+
+        this.sensorData = new EnumMap<>(MoteSensor.class);
+        int offset = 0;
+        for (var sensor : mote.getSensors()) {
+            int amtBytes = sensor.getAmountOfData();
+            if (offset + amtBytes > body.limit()) {
+                // The body does not contain (all) the sensor readings
+                break;
+            }
+            sensorData.put(sensor, body.duplicate().position(offset).limit(offset + amtBytes).slice());
+            offset += amtBytes;
+        }
+    }
+
+
+    public LoraWanPacket getPacket() {
+        return packet;
+    }
+
+    /**
+     * @return The mote which sent the uplink.
+     */
+    public Mote getMote() {
+        return mote;
+    }
+
+    public long getSenderEUI() {
+        return packet.getSenderEUI();
+    }
+
+    public long getReceiverEUI() {
+        return packet.getReceiverEUI();
+    }
+
+    /**
+     * @return The code of the {@link iot.lora.MessageType} of the uplink (the first byte of the payload).
+     */
+    public byte getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return A read-only view on the payload, without the message type.
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    /**
+     * @param sensor The sensor.
+     * @return A read-only view on the data of the given sensor, if the uplink contains it.
+     */
+    public Optional<ByteBuffer> getSensorData(MoteSensor sensor) {
+        var data = sensorData.get(sensor);
+        return data == null ? Optional.empty() : Optional.of(data.duplicate());
+    }
+
+    /**
+     * @param sensor The sensor.
+     * @return True if the uplink contains data of the given sensor.
+     */
+    public boolean hasSensorData(MoteSensor sensor) {
+        return sensorData.containsKey(sensor);
+    }
+}
@@ -0,0 +1,51 @@
+package application.pollution;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import util.GeoIndex;
+import util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A spatial index over the pollution measurements (see {@link GeoIndex}), to find the measurements closest to a position.
+ * The index is immutable once built, so it can be shared by multiple threads.
+ */
+class MeasurementIndex {
+
+    private final List<Pair<GeoPosition, PollutionLevel>> measurements;
+    private final GeoIndex index;
+
+
+    /**
+     * @param measurements The measurements, in the order in which they are considered on equal distances.
+     */
+    MeasurementIndex(List<Pair<GeoPosition, PollutionLevel>> measurements) {
+        this.measurements = List.copyOf(measurements);
+        this.index = new GeoIndex(this.measurements.stream().map(Pair::getLeft).collect(Collectors.toList()));
+    }
+
+
+    /**
+     * Find the measurements which are closest to a position (see {@link GeoIndex#getClosest(GeoPosition, int)}).
+     * @param position The position.
+     * @param amount The amount of closest measurements.
+     * @return The closest measurements, in the order in which they were given to the index.
+     */
+    List<Pair<GeoPosition, PollutionLevel>> getClosest(GeoPosition position, int amount) {
+        var found = index.getClosest(position, amount);
+        var result = new ArrayList<Pair<GeoPosition, PollutionLevel>>(found.length);
+        for (int i : found) {
+            result.add(measurements.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return All the measurements, in the order in which they were given to the index.
+     */
+    List<Pair<GeoPosition, PollutionLevel>> getMeasurements() {
+        return measurements;
+    }
+}
@@ -1,24 +1,60 @@
 package application.pollution;
 
+import iot.Environment;
 import org.jxmapviewer.viewer.GeoPosition;
 import util.MapHelper;
 import util.Pair;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+/**
+ * The pollution measurements of the devices, from which the pollution in any position is interpolated.
+ *
+ * The grid is read far more often (routing, painting) than it is written, by several threads.
+ * The readers use an immutable snapshot of the measurements, which is replaced as a whole, so they never block.
+ * New measurements are queued and published in batches: a new snapshot is published when it is read after new
+ * measurements, or when enough measurements are queued. The thread which publishes includes all the queued measurements,
+ * also the ones added by other threads while it was publishing.
+ */
 public class PollutionGrid {
-    // FIXME synchronized is necessary here, otherwise concurrent modification exceptions are thrown
-    //  (even though the GUI updating should happen synchronously with invokeAndWait)
+
+    // The amount of closest measurements used to interpolate the pollution in a position
+    static final int INTERPOLATION_POINTS = 1;
+
+    // The amount of publications of which the changed positions are kept, to update samples incrementally
+    private static final int CHANGE_HISTORY = 64;
+
+    // The amount of queued measurements at which a writer publishes them, without waiting for a reader
+    private static final int MAX_PENDING_MEASUREMENTS = 64;
 
     // The pollution measurements: for each device, the most recent measurement (location + pollution level) is stored
+    // NOTE: only accessed while holding the publish lock
     private Map<Long, Pair<GeoPosition, PollutionLevel>> pollutionMeasurements;
+    // The measurements which are not published yet, in order of arrival
+    private final Queue<Pair<Long, Pair<GeoPosition, PollutionLevel>>> pendingMeasurements;
+    private final AtomicInteger pendingCount;
+    private final ReentrantLock publishLock;
+
+    // The most recently published state of the grid
+    private volatile Snapshot snapshot;
 
 
     public PollutionGrid() {
         pollutionMeasurements = new HashMap<>();
+        pendingMeasurements = new ConcurrentLinkedQueue<>();
+        pendingCount = new AtomicInteger();
+        publishLock = new ReentrantLock();
+        snapshot = new Snapshot(new MeasurementIndex(List.of()), null, 0, List.of());
     }
 
 
@@ -29,40 +65,266 @@ public class PollutionGrid {
      * @param level The pollution level measured by the device in the given position.
      */
     public void addMeasurement(long deviceEUI, GeoPosition position, PollutionLevel level) {
-        synchronized (this) {
-            this.pollutionMeasurements.put(deviceEUI, new Pair<>(position, level));
+        pendingMeasurements.add(new Pair<>(deviceEUI, new Pair<>(position, level)));
+        if (pendingCount.incrementAndGet() >= MAX_PENDING_MEASUREMENTS) {
+            drain();
         }
     }
 
+    /**
+     * Publish the queued measurements, unless another thread is publishing (which then also publishes these).
+     */
+    private void drain() {
+        while (!pendingMeasurements.isEmpty() && publishLock.tryLock()) {
+            try {
+                publish();
+            } finally {
+                publishLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Release the publish lock, and publish the measurements which were queued while it was held:
+     * the writers which queued them did not publish them.
+     */
+    private void unlockAndDrain() {
+        publishLock.unlock();
+        drain();
+    }
+
+    /**
+     * @return The most recent snapshot, after publishing the queued measurements if possible.
+     */
+    private Snapshot getSnapshot() {
+        if (!pendingMeasurements.isEmpty()) {
+            drain();
+        }
+        return snapshot;
+    }
+
     /**
      * Calculates the pollution level in a given position (approximate level based on available measurements)
      * @param position The position at which the pollution should be calculated.
      * @return The level of pollution at {@code position}.
      */
     public PollutionLevel getPollutionLevel(GeoPosition position) {
-        synchronized (this) {
-            var pollutionAtPosition = pollutionMeasurements.values().stream()
-                .filter(o -> o.getLeft().equals(position))
-                .map(Pair::getRight)
-                .findFirst();
-            if (pollutionAtPosition.isPresent()) {
-                return pollutionAtPosition.get();
+        var index = getSnapshot().index;
+        return interpolate(index, position, index.getClosest(position, INTERPOLATION_POINTS));
+    }
+
+    /**
+     * Calculates the pollution level in a given position, based on the closest measurements.
+     * @param index The index over the measurements.
+     * @param position The position at which the pollution should be calculated.
+     * @param candidates The closest measurements (see {@link MeasurementIndex#getClosest(GeoPosition, int)}).
+     * @return The level of pollution at {@code position}.
+     */
+    static PollutionLevel interpolate(MeasurementIndex index, GeoPosition position,
+                                      List<Pair<GeoPosition, PollutionLevel>> candidates) {
+        var pollutionAtPosition = candidates.stream()
+            .filter(o -> o.getLeft().equals(position))
+            .map(Pair::getRight)
+            .findFirst();
+        if (pollutionAtPosition.isPresent()) {
+            return pollutionAtPosition.get();
+        }
+
+        // Calculate some mean pollution based on the distance of other measurements
+        // NOTE: this does not take the time of the measurement into account, only the distance
+        List<Pair<Double, PollutionLevel>> distances = getDistances(candidates, position);
+        if (distances.stream().anyMatch(d -> Double.isNaN(d.getLeft()))) {
+            // The great-circle distance is undefined for positions which are very close to each other,
+            // these measurements are ranked last: consider all the measurements in that case
+            distances = getDistances(index.getMeasurements(), position);
+        }
+
+        return PollutionLevel.getMediumPollution(distances, INTERPOLATION_POINTS);
+    }
+
+    private static List<Pair<Double, PollutionLevel>> getDistances(Collection<Pair<GeoPosition, PollutionLevel>> measurements,
+                                                                   GeoPosition position) {
+        return measurements.stream()
+            .map(e -> new Pair<>(MapHelper.distance(e.getLeft(), position), e.getRight()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the raster with the pollution levels in the squares of the given environment, which is kept up to date
+     * while the measurements arrive. Only a single raster is maintained: the raster is replaced when it is requested
+     * for another environment or amount of squares (which waits for a publication in progress).
+     * @param environment The environment which is covered by the raster.
+     * @param squares The amount of squares on both axes of the raster.
+     * @return The raster of the current snapshot.
+     */
+    public PollutionRaster getRaster(Environment environment, int squares) {
+        var current = getSnapshot();
+        if (current.raster != null && current.raster.covers(environment, squares)) {
+            return current.raster;
+        }
+
+        publishLock.lock();
+        try {
+            publish();
+            current = snapshot;
+            if (current.raster == null || !current.raster.covers(environment, squares)) {
+                current = new Snapshot(current.index, new PollutionRaster(this, environment, squares, current.index, current.version),
+                    current.version, current.changes);
+                snapshot = current;
             }
+            return current.raster;
+        } finally {
+            unlockAndDrain();
+        }
+    }
 
-            // Calculate some mean pollution based on the distance of other measurements
-            // NOTE: this does not take the time of the measurement into account, only the distance
-            List<Pair<Double, PollutionLevel>> distances = pollutionMeasurements.values().stream()
-                .map(e -> new Pair<>(MapHelper.distance(e.getLeft(), position), e.getRight()))
-                .collect(Collectors.toList());
+    /**
+     * Interpolate the pollution levels in a list of positions, which can be kept up to date with {@link #updateSamples(PollutionSamples)}.
+     * @param positions The positions.
+     * @return The samples of the current snapshot.
+     */
+    public PollutionSamples createSamples(List<GeoPosition> positions) {
+        var current = getSnapshot();
+        return new PollutionSamples(this, positions, current.index, current.version);
+    }
 
-            return PollutionLevel.getMediumPollution(distances);
+    /**
+     * Bring samples up to date with the measurements, by interpolating the positions which are affected
+     * by the measurements which changed since the samples were taken.
+     * @param samples The samples of this grid.
+     * @return The samples of the current snapshot (the given samples if they are up to date).
+     * @throws IllegalArgumentException If the samples were taken from another grid.
+     */
+    public PollutionSamples updateSamples(PollutionSamples samples) {
+        if (!samples.isSampling(this)) {
+            throw new IllegalArgumentException("The samples were taken from another pollution grid.");
+        }
+
+        var current = getSnapshot();
+        if (samples.getVersion() == current.version) {
+            return samples;
         }
+        var changedPositions = current.getChangedPositions(samples.getVersion());
+        return changedPositions.isPresent()
+            ? samples.update(current.index, changedPositions.get(), current.version)
+            : samples.updateAll(current.index, current.version);
+    }
+
+    /**
+     * @return The amount of changes to the measurements, which can be used to tell if derived values are outdated.
+     */
+    public long getVersion() {
+        return getSnapshot().version;
     }
 
     /**
      * Removes all stored pollution measurements.
      */
     public void clean() {
-        pollutionMeasurements = new HashMap<>();
+        publishLock.lock();
+        try {
+            while (pendingMeasurements.poll() != null) {
+                pendingCount.decrementAndGet();
+            }
+            pollutionMeasurements = new HashMap<>();
+
+            var previous = snapshot;
+            var index = new MeasurementIndex(List.of());
+            long version = previous.version + 1;
+            // The changes before cleaning are forgotten: the samples which are older are interpolated again
+            snapshot = new Snapshot(index, previous.raster == null ? null : previous.raster.updateAll(index, version), version, List.of());
+        } finally {
+            unlockAndDrain();
+        }
     }
+
+
+    // region snapshots
+
+    /**
+     * Publish a snapshot with all the pending measurements (while holding the publish lock).
+     */
+    private void publish() {
+        List<GeoPosition> changedPositions = new ArrayList<>();
+        int changes = 0;
+
+        Pair<Long, Pair<GeoPosition, PollutionLevel>> measurement;
+        while ((measurement = pendingMeasurements.poll()) != null) {
+            pendingCount.decrementAndGet();
+            var previous = pollutionMeasurements.put(measurement.getLeft(), measurement.getRight());
+            if (previous != null) {
+                changedPositions.add(previous.getLeft());
+            }
+            changedPositions.add(measurement.getRight().getLeft());
+            changes++;
+        }
+        if (changes == 0) {
+            return;
+        }
+
+        var previous = snapshot;
+        var index = new MeasurementIndex(new ArrayList<>(pollutionMeasurements.values()));
+        long version = previous.version + changes;
+
+        var history = new ArrayList<Change>(CHANGE_HISTORY);
+        history.addAll(previous.changes.subList(Math.max(0, previous.changes.size() - CHANGE_HISTORY + 1), previous.changes.size()));
+        history.add(new Change(previous.version, changedPositions));
+
+        snapshot = new Snapshot(index,
+            previous.raster == null ? null : previous.raster.update(index, changedPositions, version), version,
+            List.copyOf(history));
+    }
+
+    /**
+     * An immutable state of the grid.
+     */
+    private static class Snapshot {
+        private final MeasurementIndex index;
+        // The raster which is kept up to date with the measurements, if any
+        private final PollutionRaster raster;
+        // The amount of changes to the measurements
+        private final long version;
+        // The changes of the most recent publications, the last one resulted in this snapshot
+        private final List<Change> changes;
+
+        Snapshot(MeasurementIndex index, PollutionRaster raster, long version, List<Change> changes) {
+            this.index = index;
+            this.raster = raster;
+            this.version = version;
+            this.changes = changes;
+        }
+
+        /**
+         * @param since A previous version of the grid.
+         * @return The previous and new positions of the measurements which changed since that version,
+         * or an empty Optional if the changes are no longer known.
+         */
+        Optional<List<GeoPosition>> getChangedPositions(long since) {
+            List<GeoPosition> positions = new ArrayList<>();
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                var change = changes.get(i);
+                positions.addAll(change.positions);
+                if (change.previousVersion == since) {
+                    return Optional.of(positions);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The positions changed by a publication.
+     */
+    private static class Change {
+        // The version of the grid before the publication
+        private final long previousVersion;
+        private final List<GeoPosition> positions;
+
+        Change(long previousVersion, List<GeoPosition> positions) {
+            this.previousVersion = previousVersion;
+            this.positions = positions;
+        }
+    }
+
+    // endregion
 }
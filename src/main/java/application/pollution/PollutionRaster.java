@@ -0,0 +1,124 @@
+package application.pollution;
+
+import iot.Environment;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.MapHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pollution levels of a {@link PollutionGrid} in the middle of the squares of a raster over an environment
+ * (the squares which are drawn on the map, see gui.PollutionGridSquares).
+ * A raster is immutable: the grid publishes a new raster with the measurements, in which only the squares for which
+ * a changed measurement is (or was) one of the closest measurements are interpolated again (see {@link PollutionSamples}).
+ */
+public class PollutionRaster {
+
+    private final Environment environment;
+    private final int squares;
+
+    // The pollution levels in the middle of every square, stored per column (index i * squares + j)
+    private final PollutionSamples samples;
+
+
+    /**
+     * @param grid The pollution grid.
+     * @param environment The environment which is covered by the raster.
+     * @param squares The amount of squares on both axes.
+     * @param index The index over the measurements.
+     * @param version The version of the pollution grid.
+     */
+    PollutionRaster(PollutionGrid grid, Environment environment, int squares, MeasurementIndex index, long version) {
+        this.environment = environment;
+        this.squares = squares;
+
+        int maxX = environment.getMaxXpos() + 1;
+        int maxY = environment.getMaxYpos() + 1;
+        MapHelper mapHelper = environment.getMapHelper();
+
+        List<GeoPosition> middles = new ArrayList<>(squares * squares);
+        for (int i = 0; i < squares; i++) {
+            for (int j = 0; j < squares; j++) {
+                middles.add(mapHelper.toGeoPosition(
+                    (int) ((i + .5) * maxX / squares),
+                    (int) ((j + .5) * maxY / squares)));
+            }
+        }
+        this.samples = new PollutionSamples(grid, middles, index, version);
+    }
+
+    /**
+     * A raster (with the same squares) for other samples.
+     */
+    private PollutionRaster(PollutionRaster raster, PollutionSamples samples) {
+        this.environment = raster.environment;
+        this.squares = raster.squares;
+        this.samples = samples;
+    }
+
+
+    /**
+     * @param environment The environment.
+     * @param squares The amount of squares on both axes.
+     * @return True if this raster covers the given environment with the given amount of squares.
+     */
+    boolean covers(Environment environment, int squares) {
+        return this.environment == environment && this.squares == squares;
+    }
+
+    public int getSquares() {
+        return squares;
+    }
+
+    /**
+     * @param i The column of the square.
+     * @param j The row of the square.
+     * @return The position in the middle of the square.
+     */
+    public GeoPosition getMiddle(int i, int j) {
+        return samples.getPosition(i * squares + j);
+    }
+
+    /**
+     * @param i The column of the square.
+     * @param j The row of the square.
+     * @return The pollution level in the middle of the square.
+     */
+    public double getPollutionLevel(int i, int j) {
+        return samples.getPollutionLevel(i * squares + j);
+    }
+
+    /**
+     * @return The version of the pollution grid which is reflected by the raster (see {@link PollutionGrid#getVersion()}).
+     */
+    public long getVersion() {
+        return samples.getVersion();
+    }
+
+
+    // region updates
+
+    /**
+     * Create the raster for changed measurements, in which the affected squares are interpolated again.
+     * @param index The index over the changed measurements.
+     * @param changedPositions The previous and new positions of the changed measurements.
+     * @param version The version of the pollution grid.
+     * @return The new raster.
+     */
+    PollutionRaster update(MeasurementIndex index, List<GeoPosition> changedPositions, long version) {
+        return new PollutionRaster(this, samples.update(index, changedPositions, version));
+    }
+
+    /**
+     * Create the raster in which all the squares are interpolated again.
+     * @param index The index over the measurements.
+     * @param version The version of the pollution grid.
+     * @return The new raster.
+     */
+    PollutionRaster updateAll(MeasurementIndex index, long version) {
+        return new PollutionRaster(this, samples.updateAll(index, version));
+    }
+
+    // endregion
+}
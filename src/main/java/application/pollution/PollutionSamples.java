@@ -0,0 +1,197 @@
+package application.pollution;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import util.GeoIndex;
+import util.MapHelper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The pollution levels of a {@link PollutionGrid} in a fixed list of positions (samples).
+ * Samples are immutable: they are brought up to date with the grid by {@link PollutionGrid#updateSamples(PollutionSamples)},
+ * in which only the positions for which a changed measurement is (or was) one of the closest measurements are
+ * interpolated again.
+ */
+public class PollutionSamples {
+
+    // The grid from which the levels are interpolated
+    private final PollutionGrid grid;
+    private final GeoPosition[] positions;
+    // The coordinates of the positions on the unit sphere (x, y, z per position)
+    private final double[] coordinates;
+    // The pollution level in every position
+    private final double[] levels;
+    // The squared chord distance of every position to its closest measurement,
+    // infinite if the position has to be interpolated again on every change
+    private final double[] closest;
+    // The version of the pollution grid which is reflected by the samples
+    private final long version;
+    // The samples of which the level changed since the samples from which these were updated,
+    // null if all the samples could have changed
+    private int[] changedSamples;
+
+
+    /**
+     * @param grid The pollution grid.
+     * @param positions The positions of the samples.
+     * @param index The index over the measurements.
+     * @param version The version of the pollution grid.
+     */
+    PollutionSamples(PollutionGrid grid, List<GeoPosition> positions, MeasurementIndex index, long version) {
+        this.grid = grid;
+        this.positions = positions.toArray(new GeoPosition[0]);
+        this.coordinates = new double[3 * this.positions.length];
+        this.levels = new double[this.positions.length];
+        this.closest = new double[this.positions.length];
+        this.version = version;
+        this.changedSamples = null;
+
+        for (int sample = 0; sample < this.positions.length; sample++) {
+            GeoIndex.toUnitSphere(this.positions[sample], coordinates, 3 * sample);
+            interpolate(sample, index);
+        }
+    }
+
+    /**
+     * A copy of samples (with the same positions) for a new version of the pollution grid.
+     */
+    private PollutionSamples(PollutionSamples samples, long version) {
+        this.grid = samples.grid;
+        this.positions = samples.positions;
+        this.coordinates = samples.coordinates;
+        this.levels = samples.levels.clone();
+        this.closest = samples.closest.clone();
+        this.version = version;
+        this.changedSamples = null;
+    }
+
+
+    /**
+     * @return The amount of samples.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    public GeoPosition getPosition(int sample) {
+        return positions[sample];
+    }
+
+    /**
+     * @param sample The index of the position in the list of positions of the samples.
+     * @return The pollution level in the position.
+     */
+    public double getPollutionLevel(int sample) {
+        return levels[sample];
+    }
+
+    /**
+     * @return The version of the pollution grid which is reflected by the samples (see {@link PollutionGrid#getVersion()}).
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The samples of which the pollution level changed since the samples from which these samples were updated
+     * (see {@link PollutionGrid#updateSamples(PollutionSamples)}), or an empty optional if all the samples could have changed.
+     */
+    public Optional<int[]> getChangedSamples() {
+        return Optional.ofNullable(changedSamples);
+    }
+
+    /**
+     * @param grid The pollution grid.
+     * @return True if the samples are interpolated from the given grid.
+     */
+    boolean isSampling(PollutionGrid grid) {
+        return this.grid == grid;
+    }
+
+
+    // region updates
+
+    /**
+     * Create the samples for changed measurements, in which the affected positions are interpolated again.
+     * @param index The index over the changed measurements.
+     * @param changedPositions The previous and new positions of the changed measurements.
+     * @param version The version of the pollution grid.
+     * @return The new samples.
+     */
+    PollutionSamples update(MeasurementIndex index, List<GeoPosition> changedPositions, long version) {
+        var samples = new PollutionSamples(this, version);
+
+        double[] changed = new double[3 * changedPositions.size()];
+        for (int k = 0; k < changedPositions.size(); k++) {
+            GeoIndex.toUnitSphere(changedPositions.get(k), changed, 3 * k);
+        }
+
+        int[] changedSamples = new int[16];
+        int changedCount = 0;
+        for (int sample = 0; sample < levels.length; sample++) {
+            // The position only changes if a changed measurement is (or was) one of its candidates
+            double radius = Math.sqrt(closest[sample]) + GeoIndex.TOLERANCE;
+            double squaredRadius = radius * radius;
+            for (int k = 0; k < changedPositions.size(); k++) {
+                if (squaredDistance(sample, changed, 3 * k) <= squaredRadius) {
+                    samples.interpolate(sample, index);
+                    if (samples.levels[sample] != levels[sample]) {
+                        if (changedCount == changedSamples.length) {
+                            changedSamples = Arrays.copyOf(changedSamples, 2 * changedCount);
+                        }
+                        changedSamples[changedCount++] = sample;
+                    }
+                    break;
+                }
+            }
+        }
+        samples.changedSamples = Arrays.copyOf(changedSamples, changedCount);
+        return samples;
+    }
+
+    /**
+     * Create the samples in which all the positions are interpolated again.
+     * @param index The index over the measurements.
+     * @param version The version of the pollution grid.
+     * @return The new samples.
+     */
+    PollutionSamples updateAll(MeasurementIndex index, long version) {
+        var samples = new PollutionSamples(this, version);
+        for (int sample = 0; sample < levels.length; sample++) {
+            samples.interpolate(sample, index);
+        }
+        return samples;
+    }
+
+    /**
+     * Interpolate a position (only while the samples are not published yet).
+     */
+    private void interpolate(int sample, MeasurementIndex index) {
+        var position = positions[sample];
+        var candidates = index.getClosest(position, PollutionGrid.INTERPOLATION_POINTS);
+        levels[sample] = PollutionGrid.interpolate(index, position, candidates).getPollutionFactor();
+
+        closest[sample] = Double.POSITIVE_INFINITY;
+        double[] candidatePosition = new double[3];
+        for (var candidate : candidates) {
+            if (Double.isNaN(MapHelper.distance(candidate.getLeft(), position))) {
+                // The interpolation considered all the measurements
+                closest[sample] = Double.POSITIVE_INFINITY;
+                return;
+            }
+            GeoIndex.toUnitSphere(candidate.getLeft(), candidatePosition, 0);
+            closest[sample] = Math.min(closest[sample], squaredDistance(sample, candidatePosition, 0));
+        }
+    }
+
+    private double squaredDistance(int sample, double[] positions, int offset) {
+        double dx = coordinates[3 * sample] - positions[offset];
+        double dy = coordinates[3 * sample + 1] - positions[offset + 1];
+        double dz = coordinates[3 * sample + 2] - positions[offset + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // endregion
+}
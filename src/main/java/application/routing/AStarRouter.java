@@ -2,16 +2,23 @@ package application.routing;
 
 import application.routing.heuristic.RoutingHeuristic;
 import application.routing.heuristic.RoutingHeuristic.HeuristicEntry;
-import org.jetbrains.annotations.NotNull;
 import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
 import util.GraphStructure;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
  * An class which implements the A* routing algorithm, assuming the used heuristic is consistent.
+ * The search runs over the waypoints of the {@link CompactGraph} of the graph: the cost of a connection is given by
+ * {@link RoutingHeuristic#calculateHeuristic(HeuristicEntry)} (or read from the costs shared by the heuristic,
+ * see {@link RoutingHeuristic#getSharedCosts(GraphStructure, CompactGraph)}), the remaining cost to the destination is estimated
+ * by {@link RoutingHeuristic#estimateRemainingCost(GraphStructure, GeoPosition, GeoPosition)}, which subclasses can
+ * refine (see {@link LandmarkRouter}).
  */
 public class AStarRouter implements PathFinder {
 
@@ -22,9 +29,13 @@ public class AStarRouter implements PathFinder {
     // The heuristic used in the A* algorithm
     private RoutingHeuristic heuristic;
 
+    // The state of the searches, per thread
+    private final ThreadLocal<SearchSpace> searchSpaces;
+
 
     public AStarRouter(RoutingHeuristic heuristic) {
         this.heuristic = heuristic;
+        this.searchSpaces = ThreadLocal.withInitial(SearchSpace::new);
     }
 
 
@@ -35,92 +46,283 @@ public class AStarRouter implements PathFinder {
         long endWaypointId = graph.getClosestWayPointWithinRange(end, DISTANCE_THRESHOLD_POSITIONS)
             .orElseThrow(() -> new IllegalStateException("The destination position retrieved from the message is not located at a waypoint."));
 
-        Set<Long> visitedConnections = new HashSet<>();
+        CompactGraph compactGraph = graph.getCompactGraph();
+        int beginNode = compactGraph.getNode(beginWaypointId);
+        int endNode = compactGraph.getNode(endWaypointId);
+
+        SearchSpace space = searchSpaces.get();
+        space.reset(compactGraph.getNodeCount());
+        HeuristicEntry entry = new HeuristicEntry(graph, null, end);
+        // The costs of the connections, if the heuristic keeps them for all the routes
+        double[] costs = this.heuristic.getSharedCosts(graph, compactGraph).orElse(null);
 
-        PriorityQueue<FringeEntry> fringe = new PriorityQueue<>();
-        // Initialize the fringe by adding the first outgoing connections
-        graph.getConnections().entrySet().stream()
-            .filter(entry -> entry.getValue().getFrom() == beginWaypointId)
-            .forEach(entry -> {
-                fringe.add(new FringeEntry(
-                    List.of(entry.getKey()),
-                    this.heuristic.calculateHeuristic(new HeuristicEntry(graph, entry.getValue(), end))
-                ));
-                visitedConnections.add(entry.getKey());
-            });
+        // Initialize the fringe with the first outgoing connections
+        // NOTE: the beginning is not settled if it is the destination as well, in which case a round trip is searched
+        if (beginNode != endNode) {
+            space.settle(beginNode);
+        }
+        expand(graph, compactGraph, beginNode, 0, endNode, costs, entry, space);
 
 
         // Actual A* algorithm
-        while (!fringe.isEmpty()) {
-            FringeEntry current = fringe.poll();
-            long lastWaypointId = graph.getConnection(current.getLastConnectionId()).getTo();
+        while (!space.fringe.isEmpty()) {
+            int node = space.fringe.poll();
+            if (space.isSettled(node)) {
+                // Outdated entry of a node which was reached in a better way before
+                continue;
+            }
 
             // Are we at the destination?
-            if (lastWaypointId == endWaypointId) {
-                return this.getPath(current.connections, graph);
+            if (node == endNode) {
+                return this.getPath(compactGraph, space, endNode);
             }
 
+            space.settle(node);
+            expand(graph, compactGraph, node, space.getCost(node), endNode, costs, entry, space);
+        }
+
+        throw new RuntimeException(String.format("Could not find a path from {%s} to {%s}", begin.toString(), end.toString()));
+    }
 
-            // Explore the different outgoing connections from the last connection in the list
-            // -> Add the new possible paths (together with their new heuristic values) to the fringe
-            graph.getOutgoingConnectionsById(lastWaypointId).stream()
-                .filter(connId -> !visitedConnections.contains(connId)) // Filter out connections which we have already considered (since these were visited in a better path first)
-                .forEach(connId -> {
-                    List<Long> extendedPath = new ArrayList<>(current.connections);
-                    extendedPath.add(connId);
 
-                    double newHeuristicValue = current.heuristicValue
-                        + this.heuristic.calculateHeuristic(new HeuristicEntry(graph, graph.getConnection(connId), end));
+    @Override
+    public double getPathCost(GraphStructure graph, List<GeoPosition> path) {
+        return getPathCost(graph, graph.getConnectionIds(path), path.get(path.size() - 1));
+    }
 
-                    fringe.add(new FringeEntry(extendedPath, newHeuristicValue));
-                    visitedConnections.add(connId);
-                });
+    @Override
+    public double getPathCost(GraphStructure graph, long[] connectionIds, GeoPosition destination) {
+        HeuristicEntry entry = new HeuristicEntry(graph, null, destination);
+        double cost = 0;
+        for (long connectionId : connectionIds) {
+            entry.connection = graph.getConnection(connectionId);
+            cost += this.heuristic.calculateHeuristic(entry);
         }
+        return cost;
+    }
 
-        throw new RuntimeException(String.format("Could not find a path from {%s} to {%s}", begin.toString(), end.toString()));
+    @Override
+    public long getCostVersion() {
+        return this.heuristic.getCostVersion();
+    }
+
+
+    /**
+     * Estimate the remaining cost from a node to the destination, which should never exceed the actual cost.
+     * @param graph The graph containing all the connections.
+     * @param compactGraph The compact form of the graph.
+     * @param node The node.
+     * @param endNode The destination node.
+     * @return A lower bound for the cost of a route from {@code node} to {@code endNode}.
+     */
+    protected double estimateRemainingCost(GraphStructure graph, CompactGraph compactGraph, int node, int endNode) {
+        double estimate = this.heuristic.estimateRemainingCost(graph, compactGraph.getPosition(node), compactGraph.getPosition(endNode));
+        // The great-circle distance is undefined for positions which are very close to each other
+        return estimate >= 0 ? estimate : 0;
     }
 
+    /**
+     * Add the neighbours of a node to the fringe, if they are reached in a better way through the node.
+     */
+    private void expand(GraphStructure graph, CompactGraph compactGraph, int node, double cost, int endNode,
+                        double[] costs, HeuristicEntry entry, SearchSpace space) {
+        for (int edge = compactGraph.getOutgoingStart(node); edge < compactGraph.getOutgoingEnd(node); edge++) {
+            int target = compactGraph.getTarget(edge);
+            if (space.isSettled(target)) {
+                continue;
+            }
+
+            double newCost;
+            if (costs != null) {
+                newCost = cost + costs[edge];
+            } else {
+                entry.connection = graph.getConnection(compactGraph.getConnectionId(edge));
+                newCost = cost + this.heuristic.calculateHeuristic(entry);
+            }
+            if (!space.isReached(target)) {
+                space.reach(target, newCost, edge, this.estimateRemainingCost(graph, compactGraph, target, endNode));
+            } else if (newCost < space.getCost(target)) {
+                space.improve(target, newCost, edge);
+            } else {
+                continue;
+            }
+            space.fringe.add(target, newCost + space.getEstimate(target));
+        }
+    }
 
     /**
-     * Convert a list of connection Ids to a list of the respective GeoPositions of those connections.
-     * @param connectionIds The list of connections Ids which are used for the conversion.
-     * @param graph The graph which contains all the connections and waypoints.
-     * @return A list of GeoPositions which correspond to the connections in {@code connectionIds}.
+     * Convert the route to a node to a list of the respective GeoPositions of the waypoints on that route.
+     * @param compactGraph The graph which contains all the connections and waypoints.
+     * @param space The search space, with the last connection (edge) of the route to every reached node.
+     * @param endNode The final node of the route.
+     * @return A list of GeoPositions of the waypoints from the beginning to {@code endNode}.
      */
-    private List<GeoPosition> getPath(List<Long> connectionIds, GraphStructure graph) {
-        List<GeoPosition> points = connectionIds.stream()
-            .map(o -> graph.getConnections().get(o).getFrom())
-            .map(graph::getWayPoint)
-            .collect(Collectors.toList());
+    private List<GeoPosition> getPath(CompactGraph compactGraph, SearchSpace space, int endNode) {
+        List<GeoPosition> points = new ArrayList<>();
+        points.add(compactGraph.getPosition(endNode));
 
-        // Don't forget the final waypoint
-        long lastWaypointId = graph.getConnections().get(connectionIds.get(connectionIds.size() - 1)).getTo();
-        points.add(graph.getWayPoint(lastWaypointId));
+        // NOTE: the route of a round trip ends where it begins, so the beginning is reached after at least one connection
+        int node = endNode;
+        do {
+            node = compactGraph.getSource(space.getParentEdge(node));
+            points.add(compactGraph.getPosition(node));
+        } while (space.isReached(node) && node != endNode);
 
+        Collections.reverse(points);
         return points;
     }
 
 
     /**
-     * Class used in the priority queue, providing an order for the A* algorithm based on the
-     * accumulated heuristic values for the evaluated path.
+     * The state of a search, which is reused by the searches of a thread: the state of a node is only valid if it was
+     * reached (or settled) in the current search, so the arrays do not have to be cleared between the searches.
      */
-    private static class FringeEntry implements Comparable<FringeEntry> {
-        List<Long> connections;
-        double heuristicValue;
+    private static class SearchSpace {
+        // The search in which every node was reached and settled
+        private int[] reached = new int[0];
+        private int[] settled = new int[0];
+        private int search = 0;
+
+        // The cost of the best known route to every reached node, and the last connection (edge) of that route
+        private double[] costs = new double[0];
+        private int[] parentEdges = new int[0];
+        // The estimated remaining cost of every reached node
+        private double[] estimates = new double[0];
+
+        private final NodeHeap fringe = new NodeHeap();
+
+        /**
+         * Start a new search over the given amount of nodes.
+         */
+        void reset(int nodeCount) {
+            if (reached.length < nodeCount || search == Integer.MAX_VALUE) {
+                reached = new int[nodeCount];
+                settled = new int[nodeCount];
+                costs = new double[nodeCount];
+                parentEdges = new int[nodeCount];
+                estimates = new double[nodeCount];
+                search = 0;
+            }
+            search++;
+            fringe.clear();
+        }
 
-        FringeEntry(List<Long> connections, double heuristicValue) {
-            this.connections = connections;
-            this.heuristicValue = heuristicValue;
+        boolean isReached(int node) {
+            return reached[node] == search;
+        }
+
+        boolean isSettled(int node) {
+            return settled[node] == search;
+        }
+
+        void settle(int node) {
+            settled[node] = search;
+        }
+
+        void reach(int node, double cost, int parentEdge, double estimate) {
+            reached[node] = search;
+            costs[node] = cost;
+            parentEdges[node] = parentEdge;
+            estimates[node] = estimate;
+        }
+
+        void improve(int node, double cost, int parentEdge) {
+            costs[node] = cost;
+            parentEdges[node] = parentEdge;
+        }
+
+        double getCost(int node) {
+            return isReached(node) ? costs[node] : 0;
+        }
+
+        int getParentEdge(int node) {
+            return parentEdges[node];
+        }
+
+        double getEstimate(int node) {
+            return estimates[node];
+        }
+    }
+
+    /**
+     * Binary min-heap of nodes, ordered on the estimated cost of the route through the node.
+     * Nodes are not updated in place: a node which is reached in a better way is added again (lazy deletion),
+     * and the outdated entries are skipped once the node has been settled. Equal costs are ordered by insertion.
+     */
+    static class NodeHeap {
+        private int[] nodes = new int[16];
+        private double[] priorities = new double[16];
+        private long[] sequences = new long[16];
+        private int size = 0;
+        private long sequence = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+            sequence = 0;
+        }
+
+        void add(int node, double priority) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+
+            int i = size++;
+            long order = sequence++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(priority, order, priorities[parent], sequences[parent])) {
+                    break;
+                }
+                move(parent, i);
+                i = parent;
+            }
+            nodes[i] = node;
+            priorities[i] = priority;
+            sequences[i] = order;
+        }
+
+        int poll() {
+            int result = nodes[0];
+            size--;
+
+            int node = nodes[size];
+            double priority = priorities[size];
+            long order = sequences[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(priorities[child + 1], sequences[child + 1], priorities[child], sequences[child])) {
+                    child++;
+                }
+                if (!before(priorities[child], sequences[child], priority, order)) {
+                    break;
+                }
+                move(child, i);
+                i = child;
+            }
+            nodes[i] = node;
+            priorities[i] = priority;
+            sequences[i] = order;
+            return result;
         }
 
-        long getLastConnectionId() {
-            return connections.get(connections.size() - 1);
+        private static boolean before(double priority, long order, double otherPriority, long otherOrder) {
+            return priority < otherPriority || (priority == otherPriority && order < otherOrder);
         }
 
-        @Override
-        public int compareTo(@NotNull FringeEntry fringeEntry) {
-            return Double.compare(this.heuristicValue, fringeEntry.heuristicValue);
+        private void move(int from, int to) {
+            nodes[to] = nodes[from];
+            priorities[to] = priorities[from];
+            sequences[to] = sequences[from];
         }
     }
 }
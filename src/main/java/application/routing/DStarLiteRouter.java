@@ -0,0 +1,465 @@
+package application.routing;
+
+import application.routing.heuristic.RoutingHeuristic;
+import application.routing.heuristic.CostTable;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
+import util.GraphStructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * An incremental routing algorithm (D* Lite), which repairs the routes found before when the costs of the connections
+ * change, instead of searching them again from scratch.
+ *
+ * The search runs backwards from the destination, so the beginning of the route can move (as the user motes do)
+ * without invalidating the search. A search state is kept per destination, which is shared by all the devices
+ * travelling to that destination. When the version of the costs changes ({@link RoutingHeuristic#getCostVersion()}),
+ * the costs of the connections are updated once for all destinations (see {@link CostTable}, which is shared with
+ * the heuristic if possible). Only the connections of which the cost changed are visited, and only the waypoints
+ * affected by these connections are searched again.
+ * NOTE: the costs of the connections are assumed to not depend on the destination.
+ */
+public class DStarLiteRouter implements PathFinder {
+
+    // The maximum amount of distance the closest waypoint should be to a given GeoPosition (in km)
+    @SuppressWarnings("FieldCanBeLocal")
+    private final double DISTANCE_THRESHOLD_POSITIONS = 0.05;
+
+    // The maximum amount of destinations for which a search state is kept
+    private static final int MAX_SEARCH_STATES = 16;
+
+    // The heuristic used for the costs of the connections and the estimates of the remaining costs
+    private final RoutingHeuristic heuristic;
+
+    // Used for round trips (the beginning is the destination as well), which the backward search does not support
+    private final AStarRouter roundTripRouter;
+
+    // The search states per destination waypoint, the least recently used one is dropped first
+    private final Map<Long, SearchState> searchStates;
+
+    // The table with the costs of the connections of the most recently used graph (shared by the heuristic if possible)
+    private CostTable costTable;
+
+
+    public DStarLiteRouter(RoutingHeuristic heuristic) {
+        this.heuristic = heuristic;
+        this.roundTripRouter = new AStarRouter(heuristic);
+        this.searchStates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SearchState> eldest) {
+                return size() > MAX_SEARCH_STATES;
+            }
+        };
+    }
+
+
+    @Override
+    public synchronized List<GeoPosition> retrievePath(GraphStructure graph, GeoPosition begin, GeoPosition end) {
+        long beginWaypointId = graph.getClosestWayPointWithinRange(begin, DISTANCE_THRESHOLD_POSITIONS)
+            .orElseThrow(() -> new IllegalStateException("The mote position retrieved from the message is not located at a waypoint."));
+        long endWaypointId = graph.getClosestWayPointWithinRange(end, DISTANCE_THRESHOLD_POSITIONS)
+            .orElseThrow(() -> new IllegalStateException("The destination position retrieved from the message is not located at a waypoint."));
+
+        if (beginWaypointId == endWaypointId) {
+            return roundTripRouter.retrievePath(graph, begin, end);
+        }
+
+        CompactGraph compactGraph = graph.getCompactGraph();
+        var sharedTable = heuristic.getSharedCostTable(graph, compactGraph);
+        if (sharedTable.isPresent()) {
+            costTable = sharedTable.get();
+        } else if (costTable == null || costTable.getCompactGraph() != compactGraph) {
+            costTable = heuristic.createCostTable(graph);
+        }
+        compactGraph = costTable.getCompactGraph();
+
+        SearchState state = searchStates.get(endWaypointId);
+        if (state == null || state.compactGraph != compactGraph) {
+            // The graph was edited (or the destination is new): start over
+            state = new SearchState(graph, compactGraph, compactGraph.getNode(endWaypointId), costTable.getCosts());
+            searchStates.put(endWaypointId, state);
+        }
+
+        state.update(compactGraph.getNode(beginWaypointId), costTable.getUpdate(state.costs));
+        var path = state.getPath();
+        if (path.isEmpty()) {
+            throw new RuntimeException(String.format("Could not find a path from {%s} to {%s}", begin.toString(), end.toString()));
+        }
+        return path;
+    }
+
+    @Override
+    public double getPathCost(GraphStructure graph, List<GeoPosition> path) {
+        return roundTripRouter.getPathCost(graph, path);
+    }
+
+    @Override
+    public double getPathCost(GraphStructure graph, long[] connectionIds, GeoPosition destination) {
+        return roundTripRouter.getPathCost(graph, connectionIds, destination);
+    }
+
+    @Override
+    public long getCostVersion() {
+        return heuristic.getCostVersion();
+    }
+
+
+    /**
+     * @return The estimated cost between two nodes, which should never exceed the actual cost.
+     */
+    private double estimate(GraphStructure graph, CompactGraph compactGraph, int from, int to) {
+        double estimate = heuristic.estimateRemainingCost(graph, compactGraph.getPosition(from), compactGraph.getPosition(to));
+        // The great-circle distance is undefined for positions which are very close to each other
+        return estimate >= 0 ? estimate : 0;
+    }
+
+
+    /**
+     * The state of the search towards a single destination (goal).
+     * The cost to the goal is known for the nodes which are consistent (cost equals the one-step lookahead),
+     * the inconsistent nodes are kept in the queue in order of their key.
+     */
+    private class SearchState {
+        private final GraphStructure graph;
+        private final CompactGraph compactGraph;
+        private final int goal;
+
+        // The node at which the previous route began, and the sum of the estimates between the beginnings
+        private int start;
+        private double keyModifier;
+
+        // The (cost, one-step lookahead cost) to the goal of every node
+        private final double[] g;
+        private final double[] rhs;
+        // The costs of the connections (edges) used by the search, as published by the cost table (shared by the searches)
+        private double[] costs;
+        private final NodeQueue queue;
+
+        // The estimates between the current beginning and every node, calculated on first use for every beginning
+        private final double[] estimates;
+        private final int[] estimateStamps;
+        private int stamp;
+
+
+        SearchState(GraphStructure graph, CompactGraph compactGraph, int goal, double[] costs) {
+            this.graph = graph;
+            this.compactGraph = compactGraph;
+            this.goal = goal;
+            this.start = -1;
+            this.keyModifier = 0;
+
+            int nodeCount = compactGraph.getNodeCount();
+            this.g = new double[nodeCount];
+            this.rhs = new double[nodeCount];
+            Arrays.fill(g, Double.POSITIVE_INFINITY);
+            Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+            this.costs = costs;
+            this.queue = new NodeQueue(nodeCount);
+            this.estimates = new double[nodeCount];
+            this.estimateStamps = new int[nodeCount];
+            this.stamp = 0;
+
+            rhs[goal] = 0;
+        }
+
+
+        /**
+         * Repair the search after the beginning moved and/or the costs of the connections changed.
+         * @param newStart The node at which the route begins.
+         * @param costUpdate The current costs of the connections, and the edges which changed since the costs of the search.
+         */
+        void update(int newStart, CostTable.Update costUpdate) {
+            if (start == -1) {
+                start = newStart;
+                stamp++;
+                queue.insert(goal, estimate(start, goal), 0);
+            } else if (start != newStart) {
+                // The keys in the queue remain lower bounds by adding the estimate between the beginnings
+                keyModifier += estimate(start, newStart);
+                start = newStart;
+                stamp++;
+            }
+
+            double[] previousCosts = costs;
+            double[] newCosts = costUpdate.getCosts();
+            if (newCosts != previousCosts) {
+                costs = newCosts;
+                var changedEdges = costUpdate.getChangedEdges();
+                if (changedEdges.isPresent()) {
+                    for (int edge : changedEdges.get()) {
+                        updateEdge(edge);
+                    }
+                } else {
+                    // The changes are no longer known: compare all the costs
+                    for (int edge = 0; edge < costs.length; edge++) {
+                        if (Double.compare(previousCosts[edge], newCosts[edge]) != 0) {
+                            updateEdge(edge);
+                        }
+                    }
+                }
+            }
+
+            computeShortestPath();
+        }
+
+        /**
+         * Update the node at which a connection (edge) with a changed cost begins.
+         */
+        private void updateEdge(int edge) {
+            int node = compactGraph.getSource(edge);
+            if (node != goal) {
+                rhs[node] = lookahead(node);
+                updateNode(node);
+            }
+        }
+
+        /**
+         * @return The positions of the waypoints of the cheapest route from the beginning to the goal, or an empty list if no route exists.
+         */
+        List<GeoPosition> getPath() {
+            List<GeoPosition> path = new ArrayList<>();
+            if (g[start] == Double.POSITIVE_INFINITY) {
+                return path;
+            }
+
+            int node = start;
+            path.add(compactGraph.getPosition(node));
+            while (node != goal) {
+                int next = -1;
+                double best = Double.POSITIVE_INFINITY;
+                for (int edge = compactGraph.getOutgoingStart(node); edge < compactGraph.getOutgoingEnd(node); edge++) {
+                    double cost = costs[edge] + g[compactGraph.getTarget(edge)];
+                    if (cost < best) {
+                        best = cost;
+                        next = compactGraph.getTarget(edge);
+                    }
+                }
+                if (next == -1 || path.size() > compactGraph.getNodeCount()) {
+                    return new ArrayList<>();
+                }
+                node = next;
+                path.add(compactGraph.getPosition(node));
+            }
+            return path;
+        }
+
+
+        /**
+         * Process the queue until the beginning is consistent, as well as all the nodes with a key up to that of the
+         * beginning (which includes all the nodes on the cheapest route to the goal).
+         */
+        private void computeShortestPath() {
+            while (!queue.isEmpty()
+                && (compareKeys(queue.peekPrimary(), queue.peekSecondary(), primaryKey(start), secondaryKey(start)) <= 0
+                    || rhs[start] != g[start])) {
+                int node = queue.peek();
+                double oldPrimary = queue.peekPrimary();
+                double oldSecondary = queue.peekSecondary();
+                double newPrimary = primaryKey(node);
+                double newSecondary = secondaryKey(node);
+
+                if (compareKeys(oldPrimary, oldSecondary, newPrimary, newSecondary) < 0) {
+                    // The key was calculated for a previous beginning
+                    queue.update(node, newPrimary, newSecondary);
+                } else if (g[node] > rhs[node]) {
+                    // The cost of the node decreased: propagate to the nodes with a connection to it
+                    g[node] = rhs[node];
+                    queue.remove(node);
+                    for (int i = compactGraph.getIncomingStart(node); i < compactGraph.getIncomingEnd(node); i++) {
+                        int edge = compactGraph.getIncomingEdge(i);
+                        int source = compactGraph.getSource(edge);
+                        if (source != goal) {
+                            rhs[source] = Math.min(rhs[source], costs[edge] + g[node]);
+                            updateNode(source);
+                        }
+                    }
+                } else {
+                    // The cost of the node increased: the nodes which relied on it look for another connection
+                    double oldCost = g[node];
+                    g[node] = Double.POSITIVE_INFINITY;
+                    for (int i = compactGraph.getIncomingStart(node); i < compactGraph.getIncomingEnd(node); i++) {
+                        int edge = compactGraph.getIncomingEdge(i);
+                        int source = compactGraph.getSource(edge);
+                        if (source != goal && !(rhs[source] < costs[edge] + oldCost)) {
+                            rhs[source] = lookahead(source);
+                            updateNode(source);
+                        }
+                    }
+                    if (node != goal) {
+                        rhs[node] = lookahead(node);
+                    }
+                    updateNode(node);
+                }
+            }
+        }
+
+        /**
+         * Put an inconsistent node in the queue (with its current key), and remove a consistent node from the queue.
+         */
+        private void updateNode(int node) {
+            if (g[node] != rhs[node]) {
+                if (queue.contains(node)) {
+                    queue.update(node, primaryKey(node), secondaryKey(node));
+                } else {
+                    queue.insert(node, primaryKey(node), secondaryKey(node));
+                }
+            } else if (queue.contains(node)) {
+                queue.remove(node);
+            }
+        }
+
+        /**
+         * @return The cheapest cost to the goal over the outgoing connections of a node.
+         */
+        private double lookahead(int node) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int edge = compactGraph.getOutgoingStart(node); edge < compactGraph.getOutgoingEnd(node); edge++) {
+                best = Math.min(best, costs[edge] + g[compactGraph.getTarget(edge)]);
+            }
+            return best;
+        }
+
+        private double primaryKey(int node) {
+            return Math.min(g[node], rhs[node]) + estimate(start, node) + keyModifier;
+        }
+
+        private double secondaryKey(int node) {
+            return Math.min(g[node], rhs[node]);
+        }
+
+        private double estimate(int from, int node) {
+            if (from != start) {
+                return DStarLiteRouter.this.estimate(graph, compactGraph, from, node);
+            }
+            if (estimateStamps[node] != stamp) {
+                estimates[node] = DStarLiteRouter.this.estimate(graph, compactGraph, from, node);
+                estimateStamps[node] = stamp;
+            }
+            return estimates[node];
+        }
+    }
+
+    private static int compareKeys(double primary, double secondary, double otherPrimary, double otherSecondary) {
+        int result = Double.compare(primary, otherPrimary);
+        return result != 0 ? result : Double.compare(secondary, otherSecondary);
+    }
+
+
+    /**
+     * Binary min-heap of nodes on their (primary, secondary) key, in which the key of a node can be changed.
+     */
+    private static class NodeQueue {
+        private final int[] nodes;
+        private final double[] primaryKeys;
+        private final double[] secondaryKeys;
+        // The index of every node in the heap, or -1 if the node is not in the queue
+        private final int[] indices;
+        private int size = 0;
+
+        NodeQueue(int nodeCount) {
+            nodes = new int[nodeCount];
+            primaryKeys = new double[nodeCount];
+            secondaryKeys = new double[nodeCount];
+            indices = new int[nodeCount];
+            Arrays.fill(indices, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int node) {
+            return indices[node] != -1;
+        }
+
+        int peek() {
+            return nodes[0];
+        }
+
+        double peekPrimary() {
+            return primaryKeys[0];
+        }
+
+        double peekSecondary() {
+            return secondaryKeys[0];
+        }
+
+        void insert(int node, double primary, double secondary) {
+            int i = size++;
+            set(i, node, primary, secondary);
+            siftUp(i);
+        }
+
+        void update(int node, double primary, double secondary) {
+            int i = indices[node];
+            set(i, node, primary, secondary);
+            siftUp(i);
+            siftDown(indices[node]);
+        }
+
+        void remove(int node) {
+            int i = indices[node];
+            indices[node] = -1;
+            size--;
+            if (i != size) {
+                int moved = nodes[size];
+                set(i, moved, primaryKeys[size], secondaryKeys[size]);
+                siftUp(i);
+                siftDown(indices[moved]);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (compare(i, parent) >= 0) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && compare(child + 1, child) < 0) {
+                    child++;
+                }
+                if (compare(child, i) >= 0) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private int compare(int i, int j) {
+            return compareKeys(primaryKeys[i], secondaryKeys[i], primaryKeys[j], secondaryKeys[j]);
+        }
+
+        private void set(int i, int node, double primary, double secondary) {
+            nodes[i] = node;
+            primaryKeys[i] = primary;
+            secondaryKeys[i] = secondary;
+            indices[node] = i;
+        }
+
+        private void swap(int i, int j) {
+            int node = nodes[i];
+            double primary = primaryKeys[i];
+            double secondary = secondaryKeys[i];
+            set(i, nodes[j], primaryKeys[j], secondaryKeys[j]);
+            set(j, node, primary, secondary);
+        }
+    }
+}
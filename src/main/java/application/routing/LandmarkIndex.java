@@ -0,0 +1,316 @@
+package application.routing;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
+import util.MapHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The distances between a few waypoints (landmarks) and all the other waypoints of a graph, measured over the
+ * connections. By the triangle inequality these give a lower bound for the length of a route between any two
+ * waypoints, which is usually much tighter than the straight line (ALT: A*, landmarks and triangle inequality).
+ * An index belongs to one {@link CompactGraph}: after an edit of the graph, a new index has to be calculated.
+ */
+public class LandmarkIndex {
+
+    // The identification and version of the file format
+    private static final int FILE_MAGIC = 0x4c4d4b49;
+    private static final int FILE_VERSION = 1;
+    // The amount of waypoints from which the search of the first landmark is attempted
+    private static final int FIRST_LANDMARK_ATTEMPTS = 8;
+
+    private final CompactGraph compactGraph;
+    private final int[] landmarks;
+    // The length of the shortest route from every landmark to every node (fromLandmarks[node * landmarkCount + landmark])
+    // and from every node to every landmark, infinite if there is no route
+    private final double[] fromLandmarks;
+    private final double[] toLandmarks;
+
+
+    private LandmarkIndex(CompactGraph compactGraph, int[] landmarks, double[] fromLandmarks, double[] toLandmarks) {
+        this.compactGraph = compactGraph;
+        this.landmarks = landmarks;
+        this.fromLandmarks = fromLandmarks;
+        this.toLandmarks = toLandmarks;
+    }
+
+
+    /**
+     * Calculate the index of a graph, in which the landmarks are spread over the graph: every next landmark is the
+     * waypoint which is the farthest from the previous landmarks.
+     * @param compactGraph The compact form of the graph.
+     * @param landmarkCount The (maximum) amount of landmarks.
+     * @return The index of the graph.
+     */
+    public static LandmarkIndex calculate(CompactGraph compactGraph, int landmarkCount) {
+        int nodeCount = compactGraph.getNodeCount();
+        int count = Math.min(landmarkCount, nodeCount);
+        int[] landmarks = new int[count];
+        double[] fromLandmarks = new double[nodeCount * count];
+        double[] toLandmarks = new double[nodeCount * count];
+        double[] distances = new double[nodeCount];
+
+        // The distance of every node to the closest landmark so far
+        double[] closest = new double[nodeCount];
+        int landmark = count > 0 ? firstLandmark(compactGraph, distances) : 0;
+
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = landmark;
+            shortestDistances(compactGraph, landmark, true, distances);
+            for (int node = 0; node < nodeCount; node++) {
+                fromLandmarks[node * count + i] = distances[node];
+                closest[node] = i == 0 ? distances[node] : Math.min(closest[node], distances[node]);
+            }
+            shortestDistances(compactGraph, landmark, false, distances);
+            for (int node = 0; node < nodeCount; node++) {
+                toLandmarks[node * count + i] = distances[node];
+            }
+
+            landmark = farthest(closest);
+        }
+        return new LandmarkIndex(compactGraph, landmarks, fromLandmarks, toLandmarks);
+    }
+
+    /**
+     * @return The compact graph for which the index was calculated.
+     */
+    public CompactGraph getCompactGraph() {
+        return compactGraph;
+    }
+
+    /**
+     * @return The amount of landmarks.
+     */
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * @param landmark The index of the landmark.
+     * @return The node of the landmark in the compact graph.
+     */
+    public int getLandmark(int landmark) {
+        return landmarks[landmark];
+    }
+
+    /**
+     * Get a lower bound for the length of the shortest route between two nodes of the compact graph.
+     * @param node The node at which the route begins.
+     * @param target The node at which the route ends.
+     * @return A lower bound for the length of the route (in km), infinite if there is no route.
+     */
+    public double lowerBound(int node, int target) {
+        int count = landmarks.length;
+        int nodeOffset = node * count;
+        int targetOffset = target * count;
+        double bound = 0;
+        for (int i = 0; i < count; i++) {
+            // d(L, t) <= d(L, v) + d(v, t) and d(v, L) <= d(v, t) + d(t, L)
+            // NOTE: the difference of two infinite distances is NaN, which is never larger than the bound
+            double forward = fromLandmarks[targetOffset + i] - fromLandmarks[nodeOffset + i];
+            double backward = toLandmarks[nodeOffset + i] - toLandmarks[targetOffset + i];
+            if (forward > bound) {
+                bound = forward;
+            }
+            if (backward > bound) {
+                bound = backward;
+            }
+        }
+        return bound;
+    }
+
+
+    // region files
+
+    /**
+     * Get the file in which the index of the graph of a configuration is kept, next to the configuration file.
+     * @param configurationFile The file of the configuration.
+     * @return The file of the index.
+     */
+    public static File getIndexFile(File configurationFile) {
+        String name = configurationFile.getName();
+        int extension = name.lastIndexOf('.');
+        String baseName = extension > 0 ? name.substring(0, extension) : name;
+        return new File(configurationFile.getAbsoluteFile().getParentFile(), baseName + ".landmarks");
+    }
+
+    /**
+     * Save the index to a file.
+     * @param file The file.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(File file) throws IOException {
+        try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(FILE_VERSION);
+            output.writeLong(fingerprint(compactGraph));
+            output.writeInt(compactGraph.getNodeCount());
+            output.writeInt(landmarks.length);
+            for (int landmark : landmarks) {
+                output.writeInt(landmark);
+            }
+            for (double distance : fromLandmarks) {
+                output.writeDouble(distance);
+            }
+            for (double distance : toLandmarks) {
+                output.writeDouble(distance);
+            }
+        }
+    }
+
+    /**
+     * Load an index from a file, if the file contains an index of the given graph with the given amount of landmarks.
+     * @param file The file.
+     * @param compactGraph The compact form of the graph.
+     * @param landmarkCount The (maximum) amount of landmarks.
+     * @return The index, or an empty optional if the file does not exist or contains an index of another graph.
+     * @throws IOException If the file could not be read.
+     */
+    public static Optional<LandmarkIndex> load(File file, CompactGraph compactGraph, int landmarkCount) throws IOException {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION
+                || input.readLong() != fingerprint(compactGraph) || input.readInt() != compactGraph.getNodeCount()) {
+                return Optional.empty();
+            }
+            int nodeCount = compactGraph.getNodeCount();
+            int count = input.readInt();
+            if (count != Math.min(landmarkCount, nodeCount)) {
+                return Optional.empty();
+            }
+
+            int[] landmarks = new int[count];
+            for (int i = 0; i < count; i++) {
+                landmarks[i] = input.readInt();
+            }
+            double[] fromLandmarks = new double[nodeCount * count];
+            for (int i = 0; i < fromLandmarks.length; i++) {
+                fromLandmarks[i] = input.readDouble();
+            }
+            double[] toLandmarks = new double[nodeCount * count];
+            for (int i = 0; i < toLandmarks.length; i++) {
+                toLandmarks[i] = input.readDouble();
+            }
+            return Optional.of(new LandmarkIndex(compactGraph, landmarks, fromLandmarks, toLandmarks));
+        }
+    }
+
+    /**
+     * Calculate a hash of the waypoints and connections of a graph, to recognize the graph of a saved index.
+     */
+    private static long fingerprint(CompactGraph compactGraph) {
+        long hash = 17;
+        for (int node = 0; node < compactGraph.getNodeCount(); node++) {
+            GeoPosition position = compactGraph.getPosition(node);
+            hash = 31 * hash + compactGraph.getWayPointId(node);
+            hash = 31 * hash + Double.doubleToLongBits(position.getLatitude());
+            hash = 31 * hash + Double.doubleToLongBits(position.getLongitude());
+            for (int edge = compactGraph.getOutgoingStart(node); edge < compactGraph.getOutgoingEnd(node); edge++) {
+                hash = 31 * hash + compactGraph.getTarget(edge);
+            }
+            hash = 31 * hash - 1;
+        }
+        return hash;
+    }
+
+    // endregion
+
+
+    // region shortest distances
+
+    /**
+     * Calculate the length of the shortest routes from (or to) a node to (or from) all the other nodes (Dijkstra).
+     * @param compactGraph The compact form of the graph.
+     * @param source The node.
+     * @param forward True for the routes from the node, false for the routes to the node.
+     * @param distances The array in which the distances are stored, infinite for nodes without a route.
+     */
+    private static void shortestDistances(CompactGraph compactGraph, int source, boolean forward, double[] distances) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[compactGraph.getNodeCount()];
+        var fringe = new AStarRouter.NodeHeap();
+
+        distances[source] = 0;
+        fringe.add(source, 0);
+        while (!fringe.isEmpty()) {
+            int node = fringe.poll();
+            if (settled[node]) {
+                continue;
+            }
+            settled[node] = true;
+
+            int start = forward ? compactGraph.getOutgoingStart(node) : compactGraph.getIncomingStart(node);
+            int end = forward ? compactGraph.getOutgoingEnd(node) : compactGraph.getIncomingEnd(node);
+            for (int i = start; i < end; i++) {
+                int edge = forward ? i : compactGraph.getIncomingEdge(i);
+                int neighbour = forward ? compactGraph.getTarget(edge) : compactGraph.getSource(edge);
+                double length = MapHelper.distance(compactGraph.getPosition(compactGraph.getSource(edge)),
+                    compactGraph.getPosition(compactGraph.getTarget(edge)));
+                // The great-circle distance is undefined for positions which are very close to each other
+                double distance = distances[node] + (length >= 0 ? length : 0);
+                if (distance < distances[neighbour]) {
+                    distances[neighbour] = distance;
+                    fringe.add(neighbour, distance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Choose the first landmark: the waypoint which is the farthest from a waypoint from which most of the graph
+     * can be reached (isolated parts of the graph would give no bounds for the other routes).
+     */
+    private static int firstLandmark(CompactGraph compactGraph, double[] distances) {
+        int nodeCount = compactGraph.getNodeCount();
+        int best = 0;
+        int bestReached = -1;
+        for (int attempt = 0; attempt < FIRST_LANDMARK_ATTEMPTS; attempt++) {
+            int source = (int) ((long) attempt * nodeCount / FIRST_LANDMARK_ATTEMPTS);
+            shortestDistances(compactGraph, source, true, distances);
+            int reached = 0;
+            for (double distance : distances) {
+                if (distance < Double.POSITIVE_INFINITY) {
+                    reached++;
+                }
+            }
+            if (reached > bestReached) {
+                best = farthest(distances);
+                bestReached = reached;
+            }
+            if (2 * reached > nodeCount) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The node with the largest distance, of the nodes which have a route (a finite distance).
+     */
+    private static int farthest(double[] distances) {
+        int result = 0;
+        double max = -1;
+        for (int node = 0; node < distances.length; node++) {
+            if (distances[node] > max && distances[node] < Double.POSITIVE_INFINITY) {
+                result = node;
+                max = distances[node];
+            }
+        }
+        return result;
+    }
+
+    // endregion
+}
@@ -0,0 +1,96 @@
+package application.routing;
+
+import application.routing.heuristic.RoutingHeuristic;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
+import util.GraphStructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An A* router which estimates the remaining cost with landmarks ({@link LandmarkIndex}) as well as with the heuristic.
+ * The landmarks give a lower bound for the length of the remaining route, so the costs of the connections given
+ * by the heuristic should be at least their length (as for the {@link application.routing.heuristic.DistanceHeuristic}
+ * and the {@link application.routing.heuristic.SimplePollutionHeuristic}).
+ * The index is calculated for the graph on the first route, or loaded from the file next to the configuration
+ * (see {@link #preprocess(GraphStructure, File)}), and calculated again after an edit of the graph.
+ */
+public class LandmarkRouter extends AStarRouter {
+
+    private final int landmarkCount;
+    // The index of the current graph
+    private volatile LandmarkIndex index;
+
+
+    /**
+     * @param heuristic The heuristic for the costs of the connections.
+     * @param landmarkCount The amount of landmarks.
+     */
+    public LandmarkRouter(RoutingHeuristic heuristic, int landmarkCount) {
+        super(heuristic);
+        this.landmarkCount = landmarkCount;
+        this.index = null;
+    }
+
+
+    @Override
+    public void preprocess(GraphStructure graph, File configurationFile) {
+        CompactGraph compactGraph = graph.getCompactGraph();
+        File indexFile = LandmarkIndex.getIndexFile(configurationFile);
+
+        try {
+            var saved = LandmarkIndex.load(indexFile, compactGraph, landmarkCount);
+            if (saved.isPresent()) {
+                this.index = saved.get();
+                return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        LandmarkIndex calculated = this.getIndex(compactGraph);
+        try {
+            calculated.save(indexFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<GeoPosition> retrievePath(GraphStructure graph, GeoPosition begin, GeoPosition end) {
+        this.getIndex(graph.getCompactGraph());
+        return super.retrievePath(graph, begin, end);
+    }
+
+    @Override
+    protected double estimateRemainingCost(GraphStructure graph, CompactGraph compactGraph, int node, int endNode) {
+        double estimate = super.estimateRemainingCost(graph, compactGraph, node, endNode);
+        LandmarkIndex current = this.index;
+        // NOTE: the index could belong to a newer graph than the one of the search
+        if (current != null && current.getCompactGraph() == compactGraph) {
+            estimate = Math.max(estimate, current.lowerBound(node, endNode));
+        }
+        return estimate;
+    }
+
+    /**
+     * Get the index of a graph, which is calculated if the current index belongs to another graph.
+     * @param compactGraph The compact form of the graph.
+     * @return The index of the graph.
+     */
+    private LandmarkIndex getIndex(CompactGraph compactGraph) {
+        LandmarkIndex current = this.index;
+        if (current != null && current.getCompactGraph() == compactGraph) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (this.index == null || this.index.getCompactGraph() != compactGraph) {
+                this.index = LandmarkIndex.calculate(compactGraph, landmarkCount);
+            }
+            return this.index;
+        }
+    }
+}
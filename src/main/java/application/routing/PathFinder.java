@@ -1,8 +1,10 @@
 package application.routing;
 
+import application.routing.heuristic.RoutingHeuristic;
 import org.jxmapviewer.viewer.GeoPosition;
 import util.GraphStructure;
 
+import java.io.File;
 import java.util.List;
 
 public interface PathFinder {
@@ -15,4 +17,37 @@ public interface PathFinder {
      * @throws RuntimeException When no path existed between the starting and ending position.
      */
     List<GeoPosition> retrievePath(GraphStructure graph, GeoPosition begin, GeoPosition end);
+
+    /**
+     * Calculate the cost of a path, as it is minimized by {@link #retrievePath(GraphStructure, GeoPosition, GeoPosition)}.
+     * @param graph The graph containing all the connections.
+     * @param path The positions of the waypoints on the path.
+     * @return The cost of the path, given the current state of the graph (and the weights of the connections).
+     * @throws IllegalArgumentException When the path contains positions which are not connected in the graph.
+     */
+    double getPathCost(GraphStructure graph, List<GeoPosition> path);
+
+    /**
+     * Calculate the cost of a path given by its connections, without looking up the waypoints of its positions.
+     * @param graph The graph containing all the connections.
+     * @param connectionIds The Ids of the connections on the path, in order (see {@link GraphStructure#getConnectionIds(List)}).
+     * @param destination The position of the destination of the path.
+     * @return The cost of the path, given the current state of the graph (and the weights of the connections).
+     */
+    double getPathCost(GraphStructure graph, long[] connectionIds, GeoPosition destination);
+
+    /**
+     * Gives the version of the costs by which the paths are evaluated (see {@link RoutingHeuristic#getCostVersion()}).
+     * @return A number which changes whenever the cost of a path could change without the graph being edited.
+     */
+    long getCostVersion();
+
+    /**
+     * Prepare the path finder for the graph of a newly loaded configuration, e.g. by loading (or calculating and
+     * saving) data which speeds up the routing, in files next to the configuration file.
+     * @param graph The graph containing all the connections.
+     * @param configurationFile The file of the configuration.
+     */
+    default void preprocess(GraphStructure graph, File configurationFile) {
+    }
 }
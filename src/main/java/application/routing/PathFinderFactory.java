@@ -0,0 +1,43 @@
+package application.routing;
+
+import application.routing.heuristic.RoutingHeuristic;
+import util.SettingsReader;
+
+/**
+ * Factory to create the {@link PathFinder} used for routing, of the type defined in the settings.
+ */
+public class PathFinderFactory {
+
+    public enum PathFinderType {
+        ASTAR,
+        // Incremental search which repairs the previous routes when the costs change (see DStarLiteRouter)
+        DSTAR_LITE,
+        // A* with lower bounds from the distances to a few landmarks (see LandmarkRouter)
+        ALT
+    }
+
+    /**
+     * @param heuristic The heuristic for the costs of the connections.
+     * @return a new instance of a {@link PathFinder} of the type defined in the settings
+     */
+    public static PathFinder createPathFinder(RoutingHeuristic heuristic) {
+        return createPathFinder(SettingsReader.getInstance().getPathFinderType(), heuristic);
+    }
+
+    /**
+     * @param type The type of the path finder.
+     * @param heuristic The heuristic for the costs of the connections.
+     * @return a new instance of a {@link PathFinder} of the given type
+     */
+    public static PathFinder createPathFinder(PathFinderType type, RoutingHeuristic heuristic) {
+        switch (type) {
+            case DSTAR_LITE:
+                return new DStarLiteRouter(heuristic);
+            case ALT:
+                return new LandmarkRouter(heuristic, SettingsReader.getInstance().getLandmarkCount());
+            case ASTAR:
+            default:
+                return new AStarRouter(heuristic);
+        }
+    }
+}
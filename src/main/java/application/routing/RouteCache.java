@@ -0,0 +1,154 @@
+package application.routing;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import util.GraphStructure;
+import util.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A cache of the routes found by a {@link PathFinder}, per beginning and destination waypoint.
+ *
+ * A cached route is reused as long as the graph is not edited and the cost of the route does not change by more than
+ * the tolerance. The cost follows the weights of the connections on the route, e.g. the pollution along the route
+ * for {@link application.routing.heuristic.SimplePollutionHeuristic}. The route is only evaluated again when the
+ * version of the costs ({@link PathFinder#getCostVersion()}) changed since the last evaluation, by the Ids of its connections.
+ * NOTE: a route is not invalidated when other connections become cheaper, in which case a better route could exist.
+ */
+public class RouteCache {
+
+    // Whether routes are stored, otherwise every route is retrieved from the path finder
+    private final boolean enabled;
+    // The relative change of the cost of a route which is tolerated
+    private final double tolerance;
+
+    // The routes stored per beginning and destination waypoint
+    private Map<Pair<Long, Long>, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+
+    /**
+     * @param enabled Whether the routes should be stored.
+     * @param tolerance The relative change of the cost of a route which is tolerated (0 to invalidate on any change).
+     */
+    public RouteCache(boolean enabled, double tolerance) {
+        this.enabled = enabled;
+        this.tolerance = tolerance;
+        this.entries = new HashMap<>();
+    }
+
+
+    /**
+     * Retrieve a path from the cache, or from the path finder if the path is not cached or no longer valid.
+     * @param pathFinder The path finder which is used to find and evaluate the paths.
+     * @param graph The graph containing all the connections.
+     * @param begin The starting position.
+     * @param end The destination position.
+     * @return A (modifiable) list of positions containing the path to the destination.
+     * @throws RuntimeException When no path existed between the starting and ending position.
+     */
+    public List<GeoPosition> retrievePath(PathFinder pathFinder, GraphStructure graph, GeoPosition begin, GeoPosition end) {
+        if (!enabled) {
+            misses++;
+            return pathFinder.retrievePath(graph, begin, end);
+        }
+
+        var key = new Pair<>(graph.getClosestWayPoint(begin), graph.getClosestWayPoint(end));
+        var entry = entries.get(key);
+        if (entry != null) {
+            if (isValid(entry, pathFinder, graph)) {
+                hits++;
+                return new ArrayList<>(entry.path);
+            }
+            entries.remove(key);
+            invalidations++;
+        }
+
+        misses++;
+        // The version is read before the route is found: if the costs change meanwhile, the route is evaluated again
+        long costVersion = pathFinder.getCostVersion();
+        var path = pathFinder.retrievePath(graph, begin, end);
+        var connectionIds = graph.getConnectionIds(path);
+        double cost = pathFinder.getPathCost(graph, connectionIds, path.get(path.size() - 1));
+        entries.put(key, new Entry(List.copyOf(path), connectionIds, cost, graph.getVersion(), costVersion));
+        return path;
+    }
+
+    private boolean isValid(Entry entry, PathFinder pathFinder, GraphStructure graph) {
+        if (entry.graphVersion != graph.getVersion()) {
+            return false;
+        }
+        long costVersion = pathFinder.getCostVersion();
+        if (costVersion == entry.costVersion) {
+            return true;
+        }
+
+        // The tolerance applies to the cost at the time the route was found, so small changes do not add up
+        double cost = pathFinder.getPathCost(graph, entry.connectionIds, entry.path.get(entry.path.size() - 1));
+        if (Math.abs(cost - entry.cost) <= tolerance * entry.cost) {
+            entry.costVersion = costVersion;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * @return The amount of routes which were retrieved from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The amount of routes which were retrieved from the path finder (including the invalidated routes).
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The amount of cached routes which were no longer valid.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Remove all the cached routes and reset the counters.
+     */
+    public void clean() {
+        this.entries = new HashMap<>();
+        this.hits = 0;
+        this.misses = 0;
+        this.invalidations = 0;
+    }
+
+
+    /**
+     * A cached route, with its connections, its cost and the version of the graph at the time it was found,
+     * and the version of the costs at which the route was last evaluated.
+     */
+    private static class Entry {
+        private final List<GeoPosition> path;
+        private final long[] connectionIds;
+        private final double cost;
+        private final long graphVersion;
+        private long costVersion;
+
+        Entry(List<GeoPosition> path, long[] connectionIds, double cost, long graphVersion, long costVersion) {
+            this.path = path;
+            this.connectionIds = connectionIds;
+            this.cost = cost;
+            this.graphVersion = graphVersion;
+            this.costVersion = costVersion;
+        }
+    }
+}
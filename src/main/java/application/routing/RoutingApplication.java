@@ -1,23 +1,22 @@
 package application.routing;
 
 import application.Application;
+import application.ApplicationPipeline;
+import application.DecodedUplink;
 import iot.Environment;
-import iot.lora.LoraWanPacket;
 import iot.lora.MessageType;
 import iot.mqtt.BasicMqttMessage;
+import iot.mqtt.Topic;
 import iot.mqtt.Topics;
-import iot.mqtt.TransmissionWrapper;
 import iot.networkentity.Mote;
 import iot.networkentity.MoteSensor;
 import org.jxmapviewer.viewer.GeoPosition;
-import util.Converter;
 import util.GraphStructure;
 import util.MapHelper;
+import util.SettingsReader;
 
 import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class RoutingApplication extends Application {
     // Decides how many positions of the route are sent in a single MQTT message
@@ -35,17 +34,22 @@ public class RoutingApplication extends Application {
     // The route finding algorithm that is used to handle routing requests
     private PathFinder pathFinder;
 
+    // The routes which were found before, reused while they remain valid
+    private RouteCache routeCache;
+
     // The environment of the simulation
     private Environment environment;
 
 
 
-    public RoutingApplication(PathFinder pathFinder, GraphStructure graph, Environment environment) {
-        super(List.of(Topics.getNetServerToApp("+", "+")));
+    public RoutingApplication(ApplicationPipeline pipeline, PathFinder pathFinder, GraphStructure graph, Environment environment) {
+        super(pipeline);
         this.routes = new HashMap<>();
         this.lastPositions = new HashMap<>();
         this.graph = graph;
         this.pathFinder = pathFinder;
+        this.routeCache = new RouteCache(SettingsReader.getInstance().useRouteCache(),
+            SettingsReader.getInstance().getRouteCacheTolerance());
         this.environment = environment;
     }
 
@@ -74,10 +78,7 @@ public class RoutingApplication extends Application {
      * Handle a route request message by replying with (part of) the route to the requesting device.
      * @param message The message which contains the route request.
      */
-    private void handleRouteRequest(LoraWanPacket message) {
-        var body = Arrays.stream(Converter.toObjectType(message.getPayload()))
-            .skip(1) // Skip the first byte since this indicates the message type
-            .collect(Collectors.toList());
+    private void handleRouteRequest(DecodedUplink message) {
         long deviceEUI = message.getSenderEUI();
 
         GeoPosition motePosition;
@@ -85,16 +86,13 @@ public class RoutingApplication extends Application {
 
         // This is the first request the mote has made for a route
         //  -> both the current position as well as the destination of the mote are transmitted
-        byte[] rawPositions = new byte[16];
-        IntStream.range(0, 16).forEach(i -> rawPositions[i] = body.get(i));
-
-        ByteBuffer byteBuffer = ByteBuffer.wrap(rawPositions);
+        ByteBuffer byteBuffer = message.getBody();
         motePosition = new GeoPosition(byteBuffer.getFloat(0), byteBuffer.getFloat(4));
         destinationPosition = new GeoPosition(byteBuffer.getFloat(8), byteBuffer.getFloat(12));
 
 
         // Use the routing algorithm to calculate the path for the mote
-        List<GeoPosition> routeMote = this.pathFinder.retrievePath(graph, motePosition, destinationPosition);
+        List<GeoPosition> routeMote = this.routeCache.retrievePath(this.pathFinder, graph, motePosition, destinationPosition);
         this.routes.put(deviceEUI, routeMote);
 
 
@@ -110,26 +108,16 @@ public class RoutingApplication extends Application {
     }
 
 
-    private void handleRouteUpdate(LoraWanPacket message) {
+    private void handleRouteUpdate(DecodedUplink message) {
         this.handleRouteUpdate(message, true);
     }
 
-    private void handleRouteUpdate(LoraWanPacket message, boolean replyWhenUnchanged) {
-        var body = Arrays.stream(Converter.toObjectType(message.getPayload()))
-            .skip(1) // Skip the first byte since this indicates the message type
-            .collect(Collectors.toList());
+    private void handleRouteUpdate(DecodedUplink message, boolean replyWhenUnchanged) {
         long deviceEUI = message.getSenderEUI();
 
         // Extract the position of the mote from the GPS sensor reading
-        this.retrieveSensorData((Mote) environment.getNetworkEntityById(deviceEUI), body).entrySet().stream()
-            .filter(e -> e.getKey().equals(MoteSensor.GPS))
-            .map(Map.Entry::getValue)
-            .findFirst()
-            .ifPresent(data -> {
-                byte[] rawPositions = new byte[8];
-                IntStream.range(0, 8).forEach(i -> rawPositions[i] = body.get(i));
-
-                ByteBuffer byteBuffer = ByteBuffer.wrap(rawPositions);
+        message.getSensorData(MoteSensor.GPS)
+            .ifPresent(byteBuffer -> {
                 GeoPosition motePosition = new GeoPosition(byteBuffer.getFloat(0), byteBuffer.getFloat(4));
 
                 var currentRoute = routes.get(deviceEUI);
@@ -150,7 +138,7 @@ public class RoutingApplication extends Application {
 
                 // Calculate the path, starting from the NEXT position in the path
                 //  (since the user could already be moving over a connection at this point)
-                var newRoute = this.pathFinder.retrievePath(graph, currentRoute.get(1), currentRoute.get(currentRoute.size() - 1));
+                var newRoute = this.routeCache.retrievePath(this.pathFinder, graph, currentRoute.get(1), currentRoute.get(currentRoute.size() - 1));
 
                 if (currentRoute.subList(1, Math.min(currentRoute.size(), 1 + AMOUNT_OF_POSITIONS_SENT))
                     .equals(newRoute.subList(0, Math.min(newRoute.size(), AMOUNT_OF_POSITIONS_SENT)))) {
@@ -185,11 +173,17 @@ public class RoutingApplication extends Application {
         return new ArrayList<>();
     }
 
+    /**
+     * @return The cache of the routes, with the amount of hits, misses and invalidations.
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
     @Override
-    public void consumePackets(String topicFilter, TransmissionWrapper transmission) {
-        var message = transmission.getTransmission().getContent();
+    public void consumePackets(Topic topic, DecodedUplink message) {
         // Only handle packets with a route request
-        var messageType = message.getPayload()[0];
+        var messageType = message.getMessageType();
         if (messageType == MessageType.REQUEST_PATH.getCode()) {
             handleRouteRequest(message);
         } else if ((messageType == MessageType.SENSOR_VALUE.getCode() || messageType == MessageType.KEEPALIVE.getCode())
@@ -205,5 +199,6 @@ public class RoutingApplication extends Application {
     public void clean() {
         this.routes = new HashMap<>();
         this.lastPositions = new HashMap<>();
+        this.routeCache.clean();
     }
 }
@@ -0,0 +1,207 @@
+package application.routing.heuristic;
+
+import application.routing.heuristic.RoutingHeuristic.HeuristicEntry;
+import util.CompactGraph;
+import util.GraphStructure;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * The costs of all the connections of a graph according to a heuristic, which are calculated again when the version
+ * of the costs changes ({@link RoutingHeuristic#getCostVersion()}).
+ * A heuristic can provide a table which only calculates the costs again which could have changed
+ * (see {@link RoutingHeuristic#createCostTable(GraphStructure)}), in which case the table also keeps track of the
+ * edges which changed, so path finders which keep previous costs only have to update those edges.
+ * NOTE: the costs are calculated without a destination, so they should not depend on it.
+ * The costs are published as arrays which are never modified afterwards, so they can be read without locking.
+ */
+public class CostTable {
+
+    // The amount of updates of which the changed edges are remembered
+    private static final int CHANGE_HISTORY = 64;
+
+    protected final RoutingHeuristic heuristic;
+    protected final GraphStructure graph;
+    protected final CompactGraph compactGraph;
+
+    // The latest costs of the edges of the compact graph, with the version of the costs
+    private volatile Costs current;
+    // The edges which changed in the last updates, oldest first (guarded by the table)
+    private final Deque<Change> changes;
+
+
+    /**
+     * @param heuristic The heuristic for the costs of the connections.
+     * @param graph The graph, of which the current compact graph is used.
+     */
+    public CostTable(RoutingHeuristic heuristic, GraphStructure graph) {
+        this.heuristic = heuristic;
+        this.graph = graph;
+        this.compactGraph = graph.getCompactGraph();
+        this.current = null;
+        this.changes = new ArrayDeque<>();
+    }
+
+
+    /**
+     * @return The compact graph of which the edges are indexed by the table.
+     */
+    public CompactGraph getCompactGraph() {
+        return compactGraph;
+    }
+
+    /**
+     * @return The version of the costs ({@link RoutingHeuristic#getCostVersion()}) at the last calculation.
+     */
+    public long getVersion() {
+        var costs = current;
+        return costs == null ? 0 : costs.version;
+    }
+
+    /**
+     * Get the current costs of the connections, which are calculated again if the version of the costs changed.
+     * @return The cost of every edge of the compact graph. The array is not modified afterwards, new costs are
+     * returned in a new array.
+     */
+    public double[] getCosts() {
+        // NOTE: the version is read first, so changes during the calculation are included in the next one
+        long currentVersion = heuristic.getCostVersion();
+        var costs = current;
+        if (costs != null && costs.version == currentVersion) {
+            return costs.costs;
+        }
+        synchronized (this) {
+            return refresh(currentVersion).costs;
+        }
+    }
+
+    /**
+     * Get the current costs of the connections, together with the edges of which the cost changed since
+     * costs which were returned before.
+     * @param previous Costs which were returned by the table before.
+     * @return The current costs, and the changed edges if these are still known.
+     */
+    public synchronized Update getUpdate(double[] previous) {
+        var costs = refresh(heuristic.getCostVersion());
+        if (previous == costs.costs) {
+            return new Update(costs.costs, new int[0]);
+        }
+
+        // The changes from the previous costs onwards lead to the current costs
+        IntStream edges = null;
+        for (Iterator<Change> it = changes.iterator(); it.hasNext(); ) {
+            var change = it.next();
+            if (edges != null) {
+                edges = IntStream.concat(edges, IntStream.of(change.edges));
+            } else if (change.previous.get() == previous) {
+                edges = IntStream.of(change.edges);
+            }
+        }
+        return new Update(costs.costs, edges == null ? null : edges.distinct().toArray());
+    }
+
+    private Costs refresh(long currentVersion) {
+        var costs = current;
+        if (costs == null) {
+            costs = new Costs(calculateCosts(), currentVersion);
+        } else if (costs.version != currentVersion) {
+            double[] updated = costs.costs.clone();
+            int[] changedEdges = updateCosts(updated);
+            if (changedEdges == null) {
+                changes.clear();
+            } else {
+                changes.addLast(new Change(costs.costs, changedEdges));
+                if (changes.size() > CHANGE_HISTORY) {
+                    changes.removeFirst();
+                }
+            }
+            costs = new Costs(updated, currentVersion);
+        } else {
+            return costs;
+        }
+        current = costs;
+        return costs;
+    }
+
+    /**
+     * Calculate the costs of all the connections.
+     * @return The cost of every edge of the compact graph.
+     */
+    protected double[] calculateCosts() {
+        HeuristicEntry entry = new HeuristicEntry(graph, null, null);
+        double[] result = new double[compactGraph.getEdgeCount()];
+        for (int edge = 0; edge < result.length; edge++) {
+            entry.connection = graph.getConnection(compactGraph.getConnectionId(edge));
+            result[edge] = heuristic.calculateHeuristic(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the costs after a change of the version of the costs.
+     * @param costs The previous costs, which are updated (the array is not published yet).
+     * @return The edges of which the cost changed, or null if all the edges could have changed.
+     */
+    protected int[] updateCosts(double[] costs) {
+        System.arraycopy(calculateCosts(), 0, costs, 0, costs.length);
+        return null;
+    }
+
+
+    /**
+     * The costs of the connections, with the changed edges since previous costs (see {@link #getUpdate(double[])}).
+     */
+    public static class Update {
+        private final double[] costs;
+        private final int[] changedEdges;
+
+        Update(double[] costs, int[] changedEdges) {
+            this.costs = costs;
+            this.changedEdges = changedEdges;
+        }
+
+        /**
+         * @return The current cost of every edge of the compact graph.
+         */
+        public double[] getCosts() {
+            return costs;
+        }
+
+        /**
+         * @return The edges of which the cost changed, or an empty optional if these are no longer known
+         * (in which case all the edges could have changed).
+         */
+        public Optional<int[]> getChangedEdges() {
+            return Optional.ofNullable(changedEdges);
+        }
+    }
+
+    private static class Costs {
+        private final double[] costs;
+        private final long version;
+
+        Costs(double[] costs, long version) {
+            this.costs = costs;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The edges which changed in an update of the costs.
+     * The previous costs are only referenced weakly, the history should not keep outdated costs alive.
+     */
+    private static class Change {
+        private final WeakReference<double[]> previous;
+        private final int[] edges;
+
+        Change(double[] previous, int[] edges) {
+            this.previous = new WeakReference<>(previous);
+            this.edges = edges;
+        }
+    }
+}
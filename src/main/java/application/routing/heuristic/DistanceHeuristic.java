@@ -1,6 +1,7 @@
 package application.routing.heuristic;
 
 import org.jxmapviewer.viewer.GeoPosition;
+import util.GraphStructure;
 import util.MapHelper;
 
 
@@ -15,4 +16,10 @@ public class DistanceHeuristic implements RoutingHeuristic {
 
         return MapHelper.distance(begin, end);
     }
+
+    @Override
+    public double estimateRemainingCost(GraphStructure graph, GeoPosition position, GeoPosition destination) {
+        // The straight line is never longer than a route
+        return MapHelper.distance(position, destination);
+    }
 }
@@ -1,9 +1,12 @@
 package application.routing.heuristic;
 
 import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
 import util.Connection;
 import util.GraphStructure;
 
+import java.util.Optional;
+
 
 /**
  * An interface used to specify routing heuristics.
@@ -17,6 +20,61 @@ public interface RoutingHeuristic {
      */
     double calculateHeuristic(HeuristicEntry entry);
 
+    /**
+     * Estimates the cost of the cheapest route from a waypoint to the destination, which guides the search for a route.
+     * The estimate should never exceed the actual cost (admissible), by default no estimate is made.
+     * @param graph The graph containing all the connections.
+     * @param position The position of the waypoint.
+     * @param destination The position of the destination waypoint.
+     * @return A lower bound for the cost of a route from {@code position} to {@code destination}.
+     */
+    default double estimateRemainingCost(GraphStructure graph, GeoPosition position, GeoPosition destination) {
+        return 0;
+    }
+
+    /**
+     * Gives the version of the costs of the connections, which can be used to tell if previously calculated costs are outdated.
+     * By default the costs are assumed to never change.
+     * @return A number which changes whenever {@link #calculateHeuristic(HeuristicEntry)} could give other values.
+     */
+    default long getCostVersion() {
+        return 0;
+    }
+
+    /**
+     * Create a table with the costs of all the connections of a graph, for path finders which evaluate all
+     * the connections at once. By default, all the costs are calculated again when the version of the costs changes.
+     * @param graph The graph containing all the connections.
+     * @return A table with the costs of the connections of the current compact graph of {@code graph}.
+     */
+    default CostTable createCostTable(GraphStructure graph) {
+        return new CostTable(this, graph);
+    }
+
+    /**
+     * Get the table with the costs of all the connections of a graph, if the heuristic keeps one which is shared by
+     * all the routes (and threads), so path finders can read the costs instead of calculating them.
+     * @param graph The graph containing all the connections.
+     * @param compactGraph The compact form of the graph, by which edges the costs are indexed.
+     * @return The shared table of the compact graph, or an empty optional if the heuristic does not keep one
+     * (for this compact graph).
+     */
+    default Optional<CostTable> getSharedCostTable(GraphStructure graph, CompactGraph compactGraph) {
+        return Optional.empty();
+    }
+
+    /**
+     * Get the current costs of all the connections of a graph from the shared table
+     * (see {@link #getSharedCostTable(GraphStructure, CompactGraph)}).
+     * @param graph The graph containing all the connections.
+     * @param compactGraph The compact form of the graph, by which edges the costs are indexed.
+     * @return The cost of every edge of the compact graph (which is never modified afterwards),
+     * or an empty optional if the heuristic does not keep the costs of the compact graph.
+     */
+    default Optional<double[]> getSharedCosts(GraphStructure graph, CompactGraph compactGraph) {
+        return getSharedCostTable(graph, compactGraph).map(CostTable::getCosts);
+    }
+
     /**
      * Data class used to store data to calculate a heuristic value associated with that data.
      */
@@ -1,12 +1,21 @@
 package application.routing.heuristic;
 
 import application.pollution.PollutionGrid;
+import application.pollution.PollutionSamples;
 import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
+import util.GraphStructure;
 import util.MapHelper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 
 /**
  * A simple routing heuristic which also takes the pollution over a given connection into account.
+ * The costs of the connections of the most recently used graph are kept in a table which is shared by all the routes,
+ * in which only the connections with a changed pollution level are calculated again after new measurements.
  */
 public class SimplePollutionHeuristic implements RoutingHeuristic {
     // Factor which gives an indication of how much further the user would like to travel to avoid pollution
@@ -15,18 +24,145 @@ public class SimplePollutionHeuristic implements RoutingHeuristic {
 
     private final PollutionGrid pollutionGrid;
 
+    // The table with the costs of the connections of the most recently used graph
+    private volatile PollutionCostTable sharedTable;
+
     public SimplePollutionHeuristic(PollutionGrid pollutionGrid) {
         this.pollutionGrid = pollutionGrid;
+        this.sharedTable = null;
     }
 
     @Override
     public double calculateHeuristic(HeuristicEntry entry) {
+        CompactGraph compactGraph = entry.graph.getCompactGraph();
+        var table = this.getSharedCostTable(entry.graph, compactGraph);
+        if (table.isPresent()) {
+            int edge = findEdge(compactGraph, entry.connection.getFrom(), entry.connection.getTo());
+            if (edge >= 0) {
+                return table.get().getCosts()[edge];
+            }
+        }
+
         GeoPosition begin = entry.graph.getWayPoint(entry.connection.getFrom());
         GeoPosition end = entry.graph.getWayPoint(entry.connection.getTo());
 
         double pollutionValue = this.pollutionGrid.getPollutionLevel(MapHelper.meanPosition(begin, end)).getPollutionFactor();
 
+        return this.calculateCost(pollutionValue, MapHelper.distance(begin, end));
+    }
+
+    private double calculateCost(double pollutionValue, double distance) {
         // The lower the pollution level, the better the heuristic
-        return ((pollutionValue * USER_PREFERENCE_FACTOR) + 1) * MapHelper.distance(begin, end);
+        return ((pollutionValue * USER_PREFERENCE_FACTOR) + 1) * distance;
+    }
+
+    @Override
+    public long getCostVersion() {
+        // The costs follow the pollution measurements
+        return this.pollutionGrid.getVersion();
+    }
+
+    @Override
+    public CostTable createCostTable(GraphStructure graph) {
+        return new PollutionCostTable(graph);
+    }
+
+    @Override
+    public Optional<CostTable> getSharedCostTable(GraphStructure graph, CompactGraph compactGraph) {
+        var table = this.sharedTable;
+        if (table != null && table.getCompactGraph() == compactGraph) {
+            return Optional.of(table);
+        }
+
+        synchronized (this) {
+            if (this.sharedTable == null || this.sharedTable.getCompactGraph() != compactGraph) {
+                if (graph.getCompactGraph() != compactGraph) {
+                    // The graph was edited since the compact graph was retrieved
+                    return Optional.empty();
+                }
+                this.sharedTable = new PollutionCostTable(graph);
+            }
+            return Optional.of(this.sharedTable);
+        }
+    }
+
+    /**
+     * @return The edge of the compact graph from one waypoint to another, or -1 if the waypoints are not connected.
+     */
+    private static int findEdge(CompactGraph compactGraph, long from, long to) {
+        int node = compactGraph.getNode(from);
+        if (node < 0) {
+            return -1;
+        }
+        for (int edge = compactGraph.getOutgoingStart(node); edge < compactGraph.getOutgoingEnd(node); edge++) {
+            if (compactGraph.getWayPointId(compactGraph.getTarget(edge)) == to) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public double estimateRemainingCost(GraphStructure graph, GeoPosition position, GeoPosition destination) {
+        // The cost of a connection is at least its length (without any pollution)
+        return MapHelper.distance(position, destination);
+    }
+
+
+    /**
+     * The costs of the connections, of which only the connections with a changed pollution level (in the middle of
+     * the connection) are calculated again.
+     */
+    private class PollutionCostTable extends CostTable {
+        // The length of every edge
+        private double[] distances;
+        // The pollution level in the middle of every edge
+        private PollutionSamples samples;
+
+        PollutionCostTable(GraphStructure graph) {
+            super(SimplePollutionHeuristic.this, graph);
+        }
+
+        @Override
+        protected double[] calculateCosts() {
+            int edgeCount = compactGraph.getEdgeCount();
+            distances = new double[edgeCount];
+            List<GeoPosition> middles = new ArrayList<>(edgeCount);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                GeoPosition begin = compactGraph.getPosition(compactGraph.getSource(edge));
+                GeoPosition end = compactGraph.getPosition(compactGraph.getTarget(edge));
+                distances[edge] = MapHelper.distance(begin, end);
+                middles.add(MapHelper.meanPosition(begin, end));
+            }
+            samples = pollutionGrid.createSamples(middles);
+
+            double[] costs = new double[edgeCount];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                costs[edge] = calculateCost(samples.getPollutionLevel(edge), distances[edge]);
+            }
+            return costs;
+        }
+
+        @Override
+        protected int[] updateCosts(double[] costs) {
+            var previousSamples = samples;
+            samples = pollutionGrid.updateSamples(samples);
+            if (samples == previousSamples) {
+                return new int[0];
+            }
+
+            // The samples are the middles of the edges, in the order of the edges
+            var changedEdges = samples.getChangedSamples();
+            if (changedEdges.isEmpty()) {
+                for (int edge = 0; edge < costs.length; edge++) {
+                    costs[edge] = calculateCost(samples.getPollutionLevel(edge), distances[edge]);
+                }
+                return null;
+            }
+            for (int edge : changedEdges.get()) {
+                costs[edge] = calculateCost(samples.getPollutionLevel(edge), distances[edge]);
+            }
+            return changedEdges.get();
+        }
     }
 }
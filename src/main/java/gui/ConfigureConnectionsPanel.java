@@ -14,7 +14,6 @@ import org.jxmapviewer.viewer.DefaultWaypoint;
 import org.jxmapviewer.viewer.GeoPosition;
 import util.Connection;
 import util.GraphStructure;
-import util.MapHelper;
 
 import javax.swing.*;
 import java.awt.*;
@@ -116,13 +115,8 @@ public class ConfigureConnectionsPanel extends AbstractConfigurePanel {
                 GeoPosition geo = mapViewer.convertPointToGeoPosition(p);
                 GraphStructure graph = mainGUI.getEnvironment().getGraph();
 
-                // Calculate the distances to the closest wayPoints
-                Map<Long, Double> distances = new HashMap<>();
-                graph.getWayPoints().forEach((k, v) -> distances.put(k, MapHelper.distance(v, geo)));
-                var closestWayPoint = distances.entrySet().stream()
-                    .min(Comparator.comparing(Map.Entry::getValue))
-                    .map(Map.Entry::getKey)
-                    .orElse(-1L);
+                // Find the closest wayPoint
+                var closestWayPoint = graph.getWayPoints().isEmpty() ? -1L : graph.getClosestWayPoint(geo);
 
                 if (closestWayPoint == -1) {
                     return;
@@ -124,21 +124,13 @@ public class ConfigurePathPanel extends AbstractConfigurePanel {
                         currentWayPoints.add(wayPointID);
                     }
                 } else {
-                    Map<Long, Double> distances = new HashMap<>();
-                    for (var me : graph.getWayPoints().entrySet()) {
-                        double distance = MapHelper.distance(geo, me.getValue());
-                        distances.put(me.getKey(), distance);
-                    }
-                    Map.Entry<Long, Double> nearest = distances.entrySet().stream()
-                        .min(Comparator.comparing(Map.Entry::getValue))
-                        .orElse(null);
-
-                    if (nearest != null) {
+                    if (!graph.getWayPoints().isEmpty()) {
+                        long nearest = graph.getClosestWayPoint(geo);
 
                         // Make sure there is a connection between the last point and the currently selected point
-                        if (graph.connectionExists(currentWayPoints.get(currentWayPoints.size() - 1), nearest.getKey())) {
+                        if (graph.connectionExists(currentWayPoints.get(currentWayPoints.size() - 1), nearest)) {
                             loadMap(true);
-                            currentWayPoints.add(nearest.getKey());
+                            currentWayPoints.add(nearest);
                         }
                     }
                 }
@@ -8,15 +8,11 @@ import gui.util.AbstractConfigurePanel;
 import gui.util.CompoundPainterBuilder;
 import org.jxmapviewer.viewer.GeoPosition;
 import util.GraphStructure;
-import util.MapHelper;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 
 public class ConfigureWayPointsPanel extends AbstractConfigurePanel {
     private JPanel mainPanel;
@@ -92,15 +88,10 @@ public class ConfigureWayPointsPanel extends AbstractConfigurePanel {
                 if (ConfigureWayPointsPanel.this.mode == Mode.ADD) {
                     graph.addWayPoint(geo);
                 } else if (ConfigureWayPointsPanel.this.mode == Mode.DELETE) {
-                    // Calculate the distances to the closest wayPoints
-                    Map<Long, Double> distances = new HashMap<>();
-
-                    graph.getWayPoints().forEach((k, v) -> distances.put(k, MapHelper.distance(v, geo)));
-
                     // TODO ask for confirmation from the user? (Visualize deleted routes as well)
-                    distances.entrySet().stream()
-                        .min(Comparator.comparing(Map.Entry::getValue))
-                        .ifPresent(o -> graph.deleteWayPoint(o.getKey(), environment));
+                    if (!graph.getWayPoints().isEmpty()) {
+                        graph.deleteWayPoint(graph.getClosestWayPoint(geo), environment);
+                    }
 
                     mainGUI.refresh();
                 }
@@ -21,17 +21,22 @@ import selfadaptation.adaptationgoals.IntervalAdaptationGoal;
 import selfadaptation.adaptationgoals.ThresholdAdaptationGoal;
 import selfadaptation.feedbackloop.GenericFeedbackLoop;
 import util.*;
+import util.export.ResultExportFormat;
+import util.export.ResultRecorder;
 
 import javax.swing.*;
 import javax.swing.event.MouseInputListener;
+import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -869,7 +874,17 @@ public class MainGUI extends JFrame implements SimulationUpdateListener, Refresh
         public void actionPerformed(ActionEvent actionEvent) {
             JFileChooser fc = new JFileChooser();
             fc.setDialogTitle("Save output");
-            fc.setFileFilter(new FileNameExtensionFilter("xml output", "xml"));
+            fc.setAcceptAllFileFilterUsed(false);
+
+            // The compact formats are converted from the results recorded during the simulation
+            Map<FileFilter, ResultExportFormat> formats = new HashMap<>();
+            for (ResultExportFormat format : ResultExportFormat.values()) {
+                if (format == ResultExportFormat.XML || ResultRecorder.isEnabled()) {
+                    FileFilter filter = GUIUtil.getExtensionFilter(format.getDescription(), format.getExtension());
+                    formats.put(filter, format);
+                    fc.addChoosableFileFilter(filter);
+                }
+            }
 
             File file = new File(MainGUI.class.getProtectionDomain().getCodeSource().getLocation().getPath());
             file = new File(file.getParent());
@@ -877,8 +892,9 @@ public class MainGUI extends JFrame implements SimulationUpdateListener, Refresh
 
             int returnVal = fc.showSaveDialog(mainPanel);
             if (returnVal == JFileChooser.APPROVE_OPTION) {
-                file = GUIUtil.getOutputFile(fc.getSelectedFile(), "xml");
-                simulationRunner.saveSimulationToFile(file);
+                ResultExportFormat format = formats.getOrDefault(fc.getFileFilter(), ResultExportFormat.XML);
+                file = GUIUtil.getOutputFile(fc.getSelectedFile(), format.getExtension());
+                simulationRunner.saveSimulationToFile(file, format);
             }
         }
     }
@@ -972,18 +988,13 @@ public class MainGUI extends JFrame implements SimulationUpdateListener, Refresh
         Statistics statistics = Statistics.getInstance();
         Environment environment = simulationRunner.getEnvironment();
 
-        environment.getGateways().forEach(gw ->
-            statistics.getAllReceivedTransmissions(gw.getEUI(), run).stream()
-                .filter(t -> t.getSender() == mote.getEUI())
-                .forEach(t -> {
-                    this.packetsSent++;
-                    if (t.isCollided()) {
-                        this.packetsLost++;
-                    }
-                })
-        );
+        environment.getGateways().forEach(gw -> {
+            KpiSummary kpi = statistics.getKpi(mote.getEUI(), run, gw.getEUI());
+            this.packetsSent += kpi.getReceived();
+            this.packetsLost += kpi.getCollided();
+        });
 
-        statistics.getUsedEnergy(mote.getEUI(), run).forEach(energy -> this.usedEnergy += energy);
+        this.usedEnergy = mote.getEnergyLedger().getTransmitEnergy(run);
     }
 
 
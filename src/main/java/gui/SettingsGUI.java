@@ -1,8 +1,11 @@
 package gui;
 
+import application.routing.PathFinderFactory;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import iot.mqtt.MQTTClientFactory;
+import iot.mqtt.MqttDispatcher;
+import iot.mqtt.PahoMqttClient;
 import util.Constants;
 import util.SettingsReader;
 
@@ -121,6 +124,10 @@ public class SettingsGUI {
         settingsPanel.add(this.addBooleanSetting("Use antialiasing", instance::useGUIAntialiasing, "gui.UseAntialiasing"), constraints);
         settingsPanel.add(this.addBooleanSetting("Use map caching", instance::useMapCaching, "gui.UseMapCaching"), constraints);
         settingsPanel.add(this.addBooleanSetting("Start fullscreen", instance::shouldStartFullScreen, "gui.StartFullScreen"), constraints);
+        settingsPanel.add(this.addBooleanSetting("Record results incrementally", instance::useIncrementalResultRecording, "export.IncrementalRecording"), constraints);
+        settingsPanel.add(this.addBooleanSetting("Asynchronous MQTT delivery", instance::useAsynchronousMqttDelivery, "mqtt.AsyncDelivery"), constraints);
+        settingsPanel.add(this.addBooleanSetting("MQTT publish batching", instance::useMqttPublishBatching, "mqtt.PublishBatching"), constraints);
+        settingsPanel.add(this.addBooleanSetting("Cache routes", instance::useRouteCache, "routing.RouteCache"), constraints);
 
         settingsPanel.add(this.addIntegerSetting("Thread pool size", instance::getThreadPoolSize, "gui.ThreadPoolSize"), constraints);
         settingsPanel.add(this.addIntegerSetting("Visualization speed", instance::getBaseVisualizationSpeed, "gui.BaseVisualizationSpeed"), constraints);
@@ -128,10 +135,19 @@ public class SettingsGUI {
         settingsPanel.add(this.addIntegerSetting("Connection line size", instance::getConnectionLineSize, "gui.ConnectionLineSize"), constraints);
         settingsPanel.add(this.addIntegerSetting("Routing path line size", instance::getRoutingPathLineSize, "gui.RoutingPathLineSize"), constraints);
         settingsPanel.add(this.addIntegerSetting("Mote path line size", instance::getMotePathLineSize, "gui.MotePathLineSize"), constraints);
+        settingsPanel.add(this.addIntegerSetting("MQTT queue capacity", instance::getMqttQueueCapacity, "mqtt.QueueCapacity"), constraints);
+        settingsPanel.add(this.addIntegerSetting("MQTT publish batch window (ms)", instance::getMqttPublishBatchWindow, "mqtt.PublishBatchWindow"), constraints);
+        settingsPanel.add(this.addIntegerSetting("MQTT loopback broker port", instance::getMqttLoopbackPort, "mqtt.LoopbackPort"), constraints);
+        settingsPanel.add(this.addIntegerSetting("Network server shards", instance::getNetworkServerShards, "networkserver.Shards"), constraints);
+        settingsPanel.add(this.addIntegerSetting("Routing landmarks", instance::getLandmarkCount, "routing.Landmarks"), constraints);
 
         settingsPanel.add(this.addFloatSetting("Transparency pollution grid", instance::getPollutionGridTransparency, "gui.TransparencyPollutionGrid"), constraints);
+        settingsPanel.add(this.addFloatSetting("Route cache tolerance", instance::getRouteCacheTolerance, "routing.RouteCacheTolerance"), constraints);
 
         settingsPanel.add(this.addEnumSetting("MQTT client type", MQTTClientFactory.MqttClientType.class, instance::getMQTTClientType, "mqtt.client"), constraints);
+        settingsPanel.add(this.addEnumSetting("Path finder type", PathFinderFactory.PathFinderType.class, instance::getPathFinderType, "routing.PathFinder"), constraints);
+        settingsPanel.add(this.addEnumSetting("MQTT payload format", PahoMqttClient.PayloadFormat.class, instance::getMqttPayloadFormat, "mqtt.PayloadFormat"), constraints);
+        settingsPanel.add(this.addEnumSetting("MQTT backpressure policy", MqttDispatcher.BackpressurePolicy.class, instance::getMqttBackpressurePolicy, "mqtt.BackpressurePolicy"), constraints);
 
         settingsPanel.add(this.addColorSetting("Default waypoint color", instance::getDefaultWaypointColor, "gui.DefaultWaypointColor"), constraints);
         settingsPanel.add(this.addColorSetting("Connection line color", instance::getConnectionLineColor, "gui.ConnectionLineColor"), constraints);
@@ -204,7 +220,6 @@ public class SettingsGUI {
         return panel;
     }
 
-    @SuppressWarnings("SameParameterValue")
     private <T extends Enum<T>> JPanel addEnumSetting(String name, Class<T> enumClass, Supplier<T> currentValue, String propertyName) {
         JPanel panel = new JPanel();
         JLabel label = new JLabel(name + ":");
@@ -1,10 +1,10 @@
 package gui.mapviewer;
 
 import application.pollution.PollutionGrid;
+import application.pollution.PollutionRaster;
 import iot.Environment;
 import org.jxmapviewer.JXMapViewer;
 import org.jxmapviewer.painter.AbstractPainter;
-import org.jxmapviewer.viewer.GeoPosition;
 import org.jxmapviewer.viewer.TileFactory;
 import util.MapHelper;
 import util.SettingsReader;
@@ -46,6 +46,7 @@ public class PollutionGridPainter extends AbstractPainter<JXMapViewer> {
         final int DIVISION = SettingsReader.getInstance().getPollutionGridSquares();
         TileFactory factory = map.getTileFactory();
         MapHelper mapHelper = environment.getMapHelper();
+        PollutionRaster raster = pollutionGrid.getRaster(environment, DIVISION);
 
         for (int i = 0; i < DIVISION; i++) {
             for (int j = 0; j < DIVISION; j++) {
@@ -58,11 +59,8 @@ public class PollutionGridPainter extends AbstractPainter<JXMapViewer> {
                     Math.round((i + 1) * ((float) maxX / DIVISION)),
                     Math.round(j * ((float) maxY / DIVISION))
                 ), map.getZoom());
-                GeoPosition middle = mapHelper.toGeoPosition(
-                    (int) ((i + .5) * maxX / DIVISION),
-                    (int) ((j + .5) * maxY / DIVISION));
 
-                float airQuality = (float) pollutionGrid.getPollutionLevel(middle).getPollutionFactor();
+                float airQuality = (float) raster.getPollutionLevel(i, j);
                 g.setColor(this.getColor(airQuality));
                 g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, SettingsReader.getInstance().getPollutionGridTransparency()));
                 g.fill(new Rectangle2D.Double(topLeft.getX(), topLeft.getY(),
@@ -61,23 +61,21 @@ public class ChartGenerator {
         Statistics statistics = Statistics.getInstance();
 
         for (Gateway gateway : environment.getGateways()) {
+            if (statistics.getKpi(mote.getEUI(), run, gateway.getEUI()).getReceived() == 0) {
+                continue;
+            }
             transmissionsMote.add(new LinkedList<>());
-            for (LoraTransmission transmission : statistics.getAllReceivedTransmissions(gateway.getEUI(), run)) {
-                if (transmission.getSender() == mote.getEUI()) {
-                    if (!transmission.isCollided())
-                        transmissionsMote.getLast().add(
-                            new Pair<>(environment.getNetworkEntityById(transmission.getReceiver()),
-                                new Pair<>(transmission.getDepartureTime().toSecondOfDay(), transmission.getTransmissionPower())));
-                    else {
-                        transmissionsMote.getLast().add(
-                            new Pair<>(environment.getNetworkEntityById(transmission.getReceiver()),
-                                new Pair<>(transmission.getDepartureTime().toSecondOfDay(), (double) 20)));
-                    }
+            for (LoraTransmission transmission : statistics.getReceivedTransmissionsFrom(gateway.getEUI(), mote.getEUI(), run)) {
+                if (!transmission.isCollided())
+                    transmissionsMote.getLast().add(
+                        new Pair<>(environment.getNetworkEntityById(transmission.getReceiver()),
+                            new Pair<>(transmission.getDepartureTime().toSecondOfDay(), transmission.getTransmissionPower())));
+                else {
+                    transmissionsMote.getLast().add(
+                        new Pair<>(environment.getNetworkEntityById(transmission.getReceiver()),
+                            new Pair<>(transmission.getDepartureTime().toSecondOfDay(), (double) 20)));
                 }
             }
-            if (transmissionsMote.getLast().isEmpty()) {
-                transmissionsMote.remove(transmissionsMote.size() - 1);
-            }
         }
         XYSeriesCollection dataReceivedPowerMote = new XYSeriesCollection();
 
@@ -217,14 +215,8 @@ public class ChartGenerator {
         Statistics statistics = Statistics.getInstance();
 
         for (Gateway gateway : environment.getGateways()) {
-            transmissionsMote.add(new LinkedList<>());
-            for (LoraTransmission transmission : statistics.getAllReceivedTransmissions(gateway.getEUI(), run)) {
-                if (transmission.getSender() == mote.getEUI()) {
-                    transmissionsMote.getLast().add(transmission);
-                }
-            }
-            if (transmissionsMote.getLast().isEmpty()) {
-                transmissionsMote.remove(transmissionsMote.size() - 1);
+            if (statistics.getKpi(mote.getEUI(), run, gateway.getEUI()).getReceived() > 0) {
+                transmissionsMote.add(new LinkedList<>(statistics.getReceivedTransmissionsFrom(gateway.getEUI(), mote.getEUI(), run)));
             }
         }
         XYSeriesCollection dataDistanceToGateway = new XYSeriesCollection();
@@ -9,6 +9,7 @@ import org.jxmapviewer.viewer.Waypoint;
 import util.MapHelper;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileFilter;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -80,6 +81,28 @@ public class GUIUtil {
         return map;
     }
 
+    /**
+     * Create a file filter for the files with the given extension.
+     * Unlike {@link javax.swing.filechooser.FileNameExtensionFilter}, the extension can contain several dots (e.g. csv.gz).
+     * @param description The description of the filter.
+     * @param extension The extension of the accepted files, without the leading dot.
+     * @return A file filter which accepts directories and the files with the given extension.
+     */
+    public static FileFilter getExtensionFilter(String description, String extension) {
+        String suffix = "." + extension.toLowerCase();
+        return new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() || file.getName().toLowerCase().endsWith(suffix);
+            }
+
+            @Override
+            public String getDescription() {
+                return description;
+            }
+        };
+    }
+
     /**
      * Retrieve an output file based on a given input file, which might not have the given extension yet.
      * @param givenFile The file to be (possible) converted.
@@ -43,6 +43,11 @@ public class Environment implements Serializable {
      */
     private List<Mote> motes = new LinkedList<>();
 
+    /**
+     * The version of the list of motes, which changes every time a mote is added or removed.
+     */
+    private int moteVersion = 0;
+
     /**
      * A list containing all gateways currently active on the map.
      */
@@ -230,6 +235,28 @@ public class Environment implements Serializable {
     public void addMote(Mote mote) {
         // TODO check if coordinates are within valid bounds (although... is this really necessary?)
         motes.add(mote);
+        moteVersion++;
+    }
+
+    /**
+     * Removes a mote from the list of motes.
+     * @param mote  the mote to remove
+     * @return True if the mote was in this environment.
+     */
+    public boolean removeMote(Mote mote) {
+        boolean removed = motes.remove(mote);
+        if (removed) {
+            moteVersion++;
+        }
+        return removed;
+    }
+
+    /**
+     * @return The version of the list of motes, which changes every time a mote is added or removed
+     * (through {@link #addMote(Mote)} or {@link #removeMote(Mote)}).
+     */
+    public int getMoteVersion() {
+        return moteVersion;
     }
 
 
@@ -343,6 +370,8 @@ public class Environment implements Serializable {
     public void resetHistory() {
         getClock().reset();
         Statistics.getInstance().reset();
+        getMotes().forEach(m -> m.getEnergyLedger().reset());
+        getGateways().forEach(g -> g.getEnergyLedger().reset());
         numberOfRuns = 1;
     }
 
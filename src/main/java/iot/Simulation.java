@@ -2,6 +2,8 @@ package iot;
 
 import be.kuleuven.cs.som.annotate.Basic;
 import datagenerator.SensorDataGenerator;
+import iot.mqtt.MQTTClientFactory;
+import iot.mqtt.MqttDispatcher;
 import iot.networkentity.Gateway;
 import iot.networkentity.Mote;
 import iot.networkentity.MoteSensor;
@@ -154,6 +156,9 @@ public class Simulation {
      * Simulate a single step in the simulator.
      */
     public void simulateStep() {
+        // Handle the mqtt messages for the environment which were delivered asynchronously
+        MqttDispatcher.getInstance().runSimulationTasks();
+
         //noinspection SimplifyStreamApiCallChains
         this.getEnvironment().getMotes().stream()
             .filter(Mote::isEnabled)
@@ -170,6 +175,9 @@ public class Simulation {
                 mote.getPath().getNextPoint(mote.getPathPositionIndex()).ifPresent(dst ->
                     this.getEnvironment().moveMote(mote, dst));
             });
+        // Send the messages which were batched during this simulated millisecond
+        MQTTClientFactory.getSingletonInstance().flush(false);
+        MqttDispatcher.getInstance().awaitCapacity();
         this.getEnvironment().getClock().tick(1);
     }
 
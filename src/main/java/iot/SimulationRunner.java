@@ -1,12 +1,16 @@
 package iot;
 
+import application.ApplicationPipeline;
 import application.pollution.PollutionGrid;
 import application.pollution.PollutionMonitor;
-import application.routing.AStarRouter;
+import application.routing.PathFinder;
+import application.routing.PathFinderFactory;
 import application.routing.RoutingApplication;
 import application.routing.heuristic.SimplePollutionHeuristic;
 import gui.MainGUI;
 import iot.mqtt.MQTTClientFactory;
+import iot.mqtt.MqttDispatcher;
+import iot.mqtt.Topics;
 import iot.networkentity.Gateway;
 import iot.networkentity.Mote;
 import iot.networkentity.NetworkServer;
@@ -21,6 +25,8 @@ import selfadaptation.instrumentation.MoteProbe;
 import util.MutableInteger;
 import util.Pair;
 import util.Statistics;
+import util.export.ResultExportFormat;
+import util.export.ResultRecorder;
 import util.xml.*;
 
 import java.io.File;
@@ -43,6 +49,7 @@ public class SimulationRunner {
     private List<MoteProbe> moteProbe;
     private PollutionGrid pollutionGrid;
 
+    private ApplicationPipeline applicationPipeline;
     private RoutingApplication routingApplication;
     private PollutionMonitor pollutionMonitor;
     private NetworkServer networkServer;
@@ -101,6 +108,9 @@ public class SimulationRunner {
         networkServer = new NetworkServer(MQTTClientFactory.getSingletonInstance());
         pollutionGrid = new PollutionGrid();
         environment = null;
+
+        // Make sure the results are recorded while simulating
+        ResultRecorder.getInstance();
     }
 
 
@@ -184,12 +194,18 @@ public class SimulationRunner {
      * Setup of applications/servers/clients before each run.
      */
     private void setupSimulationRunner() {
+        // Let the applications handle the messages of the previous run first
+        this.awaitMessages();
+
         // Remove previous pollution measurements
         pollutionGrid.clean();
         routingApplication.clean();
 
         // Reset received transmissions in the networkServer
         this.networkServer.reset();
+
+        // Forget the rendered topics of the previous run
+        Topics.clean();
     }
 
     // endregion
@@ -197,6 +213,16 @@ public class SimulationRunner {
 
     // region simulations
 
+    /**
+     * Wait until all the mqtt messages are sent and handled, by the applications as well as by the network server.
+     */
+    private void awaitMessages() {
+        do {
+            MQTTClientFactory.getSingletonInstance().flush(true);
+            MqttDispatcher.getInstance().awaitIdle();
+        } while (this.networkServer.awaitIdle());
+    }
+
     /**
      * Check if the simulation has finished, based on the ending condition.
      * @return True if the simulation has finished.
@@ -221,6 +247,7 @@ public class SimulationRunner {
                     listener.update();
                 }
             }
+            this.awaitMessages();
 
             // Restore the initial positions after the run
             listener.update();
@@ -252,6 +279,7 @@ public class SimulationRunner {
                 while (!simulation.isFinished()) {
                     this.simulation.simulateStep();
                 }
+                this.awaitMessages();
 
                 fn.accept(new Pair<>(i + 1, nrOfRuns));
 
@@ -298,7 +326,7 @@ public class SimulationRunner {
             }
         }
 
-        setupApplications();
+        setupApplications(file);
     }
 
 
@@ -312,7 +340,20 @@ public class SimulationRunner {
 
 
     public void saveSimulationToFile(File file) {
-        SimulationWriter.saveSimulationToFile(file, simulation);
+        this.saveSimulationToFile(file, ResultExportFormat.XML);
+    }
+
+    /**
+     * Save the results of the simulation to a file.
+     * @param file The file to save to.
+     * @param format The format in which the results are saved.
+     */
+    public void saveSimulationToFile(File file, ResultExportFormat format) {
+        if (format == ResultExportFormat.XML) {
+            SimulationWriter.saveSimulationToFile(file, simulation);
+        } else {
+            ResultRecorder.getInstance().exportTo(file, format);
+        }
     }
 
 
@@ -327,6 +368,9 @@ public class SimulationRunner {
         if (this.routingApplication != null) {
             this.routingApplication.destruct();
         }
+        if (this.applicationPipeline != null) {
+            this.applicationPipeline.destruct();
+        }
 
         this.networkServer.reconnect();
         this.environment = null;
@@ -334,12 +378,15 @@ public class SimulationRunner {
 
     /**
      * Initialize all applications used in the simulation.
+     * @param configurationFile The file of the loaded configuration.
      */
-    private void setupApplications() {
-        this.pollutionMonitor = new PollutionMonitor(this.getEnvironment(), this.pollutionGrid);
-        this.routingApplication = new RoutingApplication(
-            new AStarRouter(new SimplePollutionHeuristic(pollutionGrid)), getEnvironment().getGraph(), environment
-        );
+    private void setupApplications(File configurationFile) {
+        this.applicationPipeline = new ApplicationPipeline(this.getEnvironment());
+        this.pollutionMonitor = new PollutionMonitor(this.applicationPipeline, this.getEnvironment(), this.pollutionGrid);
+
+        PathFinder pathFinder = PathFinderFactory.createPathFinder(new SimplePollutionHeuristic(pollutionGrid));
+        pathFinder.preprocess(getEnvironment().getGraph(), configurationFile);
+        this.routingApplication = new RoutingApplication(this.applicationPipeline, pathFinder, getEnvironment().getGraph(), environment);
     }
 
     // endregion
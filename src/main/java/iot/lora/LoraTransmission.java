@@ -192,6 +192,15 @@ public class LoraTransmission implements Serializable {
         return regionalParameter.getSpreadingFactor();
     }
 
+    /**
+     * Returns the regional parameters used to send the transmission.
+     * @return The regional parameters of the transmission.
+     */
+    @Basic
+    public RegionalParameter getRegionalParameter() {
+        return regionalParameter;
+    }
+
     /**
      *
      * @return true if the transmission is arrived to destination, false otherwise
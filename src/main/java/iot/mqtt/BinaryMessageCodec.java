@@ -0,0 +1,245 @@
+package iot.mqtt;
+
+import iot.lora.*;
+import util.Pair;
+
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the mqtt message types, as alternative to json for a real mqtt server.
+ *
+ * A binary payload starts with a marker byte (never the first byte of a json document) followed by the version of the
+ * encoding and the type of the message, so a receiver can recognize the encoding of every message by itself.
+ * The messages are encoded in a buffer which is reused per thread, only the resulting payload is allocated.
+ */
+public final class BinaryMessageCodec {
+
+    // The first byte of a binary payload, a json payload starts with '{'
+    private static final byte MARKER = 0;
+    private static final byte VERSION = 1;
+
+    private static final byte TRANSMISSION = 1;
+    private static final byte PACKET = 2;
+    private static final byte BASIC_MESSAGE = 3;
+
+    private static final MacCommand[] MAC_COMMANDS = MacCommand.values();
+    private static final EU868ParameterByDataRate[] REGIONAL_PARAMETERS = EU868ParameterByDataRate.values();
+
+    private static final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+
+    private BinaryMessageCodec() {
+    }
+
+
+    /**
+     * @param payload The payload of a mqtt message.
+     * @return True if the payload is encoded by this codec.
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload.length >= 3 && payload[0] == MARKER && payload[1] == VERSION;
+    }
+
+    /**
+     * Encode a message.
+     * @param message The message to encode.
+     * @return The binary payload.
+     * @throws IllegalArgumentException If the type of the message is not supported.
+     */
+    public static byte[] encode(MqttMessageType message) {
+        var encoder = encoders.get().reset();
+        encoder.putByte(MARKER);
+        encoder.putByte(VERSION);
+
+        if (message instanceof TransmissionWrapper) {
+            encoder.putByte(TRANSMISSION);
+            encoder.putTransmission(((TransmissionWrapper) message).getTransmission());
+        } else if (message instanceof LoraWanPacketWrapper) {
+            encoder.putByte(PACKET);
+            encoder.putPacket(((LoraWanPacketWrapper) message).getPacket());
+        } else if (message instanceof BasicMqttMessage) {
+            var basicMessage = (BasicMqttMessage) message;
+            encoder.putByte(BASIC_MESSAGE);
+            encoder.putBytes(basicMessage.getDataAsArray());
+            encoder.putMacCommands(basicMessage.getMacCommands());
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + message.getClass().getName());
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Decode a binary payload.
+     * @param payload The payload, encoded by {@link #encode(MqttMessageType)}.
+     * @return The decoded message.
+     * @throws IllegalArgumentException If the payload is not a binary payload of a supported version and type.
+     */
+    public static MqttMessageType decode(byte[] payload) {
+        if (!isBinary(payload)) {
+            throw new IllegalArgumentException("The payload is not encoded with version " + VERSION + " of the binary codec");
+        }
+        var buffer = ByteBuffer.wrap(payload, 2, payload.length - 2);
+
+        byte type = buffer.get();
+        switch (type) {
+            case TRANSMISSION:
+                return new TransmissionWrapper(getTransmission(buffer));
+            case PACKET:
+                return new LoraWanPacketWrapper(getPacket(buffer));
+            case BASIC_MESSAGE:
+                var data = getBytes(buffer);
+                var bytes = new ArrayList<Byte>(data.length);
+                for (byte b : data) {
+                    bytes.add(b);
+                }
+                return new BasicMqttMessage(bytes, getMacCommands(buffer));
+            default:
+                throw new IllegalArgumentException("Unknown binary message type: " + type);
+        }
+    }
+
+
+    // region decoding
+
+    private static LoraTransmission getTransmission(ByteBuffer buffer) {
+        long sender = buffer.getLong();
+        long receiver = buffer.getLong();
+        double transmissionPower = buffer.getDouble();
+        int xPos = buffer.getInt();
+        int yPos = buffer.getInt();
+        RegionalParameter regionalParameter = REGIONAL_PARAMETERS[buffer.get()];
+        LocalTime departureTime = LocalTime.ofNanoOfDay(buffer.getLong());
+        double timeOnAir = buffer.getDouble();
+        byte flags = buffer.get();
+
+        var transmission = new LoraTransmission(sender, receiver, new Pair<>(xPos, yPos), transmissionPower,
+            regionalParameter, timeOnAir, departureTime, getPacket(buffer));
+        if ((flags & 2) != 0) {
+            transmission.setCollided();
+        }
+        if ((flags & 1) != 0) {
+            transmission.setArrived();
+        }
+        return transmission;
+    }
+
+    private static LoraWanPacket getPacket(ByteBuffer buffer) {
+        long senderEUI = buffer.getLong();
+        long receiverEUI = buffer.getLong();
+        boolean lowDataRateOptimization = buffer.get() != 0;
+        int amountOfPreambleSymbols = buffer.getInt();
+        double codingRate = buffer.getDouble();
+        byte[] payload = getBytes(buffer);
+        var header = new BasicFrameHeader()
+            .setSourceAddress(getBytes(buffer))
+            .setFCtrl(buffer.get())
+            .setFCnt(buffer.getShort())
+            .setFOpts(getBytes(buffer));
+        return new LoraWanPacket(senderEUI, receiverEUI, payload, header, lowDataRateOptimization,
+            amountOfPreambleSymbols, codingRate, getMacCommands(buffer));
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static List<MacCommand> getMacCommands(ByteBuffer buffer) {
+        int size = buffer.getShort();
+        List<MacCommand> macCommands = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            macCommands.add(MAC_COMMANDS[buffer.get()]);
+        }
+        return macCommands;
+    }
+
+    // endregion
+
+
+    /**
+     * Encoder with a growing buffer, reused for all the messages encoded by a thread.
+     */
+    private static class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        Encoder reset() {
+            buffer.clear();
+            return this;
+        }
+
+        byte[] toByteArray() {
+            var result = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(result);
+            return result;
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (buffer.remaining() < bytes) {
+                var larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        void putByte(byte value) {
+            ensureCapacity(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        void putBytes(byte[] value) {
+            ensureCapacity(Integer.BYTES + value.length);
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+
+        void putTransmission(LoraTransmission transmission) {
+            if (!(transmission.getRegionalParameter() instanceof EU868ParameterByDataRate)) {
+                throw new IllegalArgumentException("Unsupported regional parameter: " + transmission.getRegionalParameter());
+            }
+            ensureCapacity(2 * Long.BYTES + 2 * Double.BYTES + 2 * Integer.BYTES + Long.BYTES + 2);
+            buffer.putLong(transmission.getSender());
+            buffer.putLong(transmission.getReceiver());
+            buffer.putDouble(transmission.getTransmissionPower());
+            buffer.putInt(transmission.getXPos());
+            buffer.putInt(transmission.getYPos());
+            buffer.put((byte) ((EU868ParameterByDataRate) transmission.getRegionalParameter()).ordinal());
+            buffer.putLong(transmission.getDepartureTime().toNanoOfDay());
+            buffer.putDouble(transmission.getTimeOnAir());
+            buffer.put((byte) ((transmission.isArrived() ? 1 : 0) | (transmission.isCollided() ? 2 : 0)));
+            putPacket(transmission.getContent());
+        }
+
+        void putPacket(LoraWanPacket packet) {
+            ensureCapacity(2 * Long.BYTES + 1 + Integer.BYTES + Double.BYTES);
+            buffer.putLong(packet.getSenderEUI());
+            buffer.putLong(packet.getReceiverEUI());
+            buffer.put((byte) (packet.hasLowDataRateOptimization() ? 1 : 0));
+            buffer.putInt(packet.getAmountOfPreambleSymbols());
+            buffer.putDouble(packet.getCodingRate());
+            putBytes(packet.getPayload());
+
+            var header = packet.getFrameHeader();
+            putBytes(header.getSourceAddress());
+            ensureCapacity(1 + Short.BYTES);
+            buffer.put(header.getFCtrl());
+            buffer.putShort(header.getFCntAsShort());
+            putBytes(header.getFOpts());
+
+            putMacCommands(packet.getMacCommands());
+        }
+
+        void putMacCommands(List<MacCommand> macCommands) {
+            ensureCapacity(Short.BYTES + macCommands.size());
+            buffer.putShort((short) macCommands.size());
+            for (var macCommand : macCommands) {
+                buffer.put((byte) macCommand.ordinal());
+            }
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package iot.mqtt;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A lightweight mqtt 3.1.1 broker which runs in-process on a loopback port, so the networked client
+ * ({@link PahoMqttClient}) can be used and measured without an external mqtt server.
+ *
+ * The broker supports connect, (un)subscribe with the wildcards '+' and '#', publish and ping.
+ * Every client receives a message once (with QoS 0), even if it matches several of its subscriptions.
+ * Sessions, retained messages and wills are not supported.
+ */
+public class LoopbackMqttBroker {
+
+    // region packet types
+    private static final int CONNECT = 1;
+    private static final int CONNACK = 2;
+    private static final int PUBLISH = 3;
+    private static final int PUBACK = 4;
+    private static final int PUBREC = 5;
+    private static final int PUBREL = 6;
+    private static final int PUBCOMP = 7;
+    private static final int SUBSCRIBE = 8;
+    private static final int SUBACK = 9;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int UNSUBACK = 11;
+    private static final int PINGREQ = 12;
+    private static final int PINGRESP = 13;
+    private static final int DISCONNECT = 14;
+    // endregion
+
+    private static final String WILDCARD_SINGLE_LEVEL = "+";
+    private static final String WILDCARD_MULTI_LEVEL = "#";
+
+    private static LoopbackMqttBroker instance = null;
+
+    private final ServerSocket serverSocket;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+    // region counters
+    private volatile long countersResetAt;
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicLong deliveredMessages = new AtomicLong();
+    private final AtomicLong deliveredBytes = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    // endregion
+
+
+    /**
+     * Start the broker the first time it is requested.
+     * @param port the loopback port on which the broker listens (0 for any free port)
+     * @return the singleton instance
+     */
+    public static synchronized LoopbackMqttBroker getInstance(int port) {
+        if (instance == null) {
+            try {
+                instance = new LoopbackMqttBroker(port);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start the loopback mqtt broker on port " + port, e);
+            }
+        }
+        return instance;
+    }
+
+    private LoopbackMqttBroker(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        resetCounters();
+
+        var acceptor = new Thread(this::accept, "loopback-mqtt-broker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+
+    /**
+     *
+     * @return the address to connect a mqtt client to this broker
+     */
+    public String getAddress() {
+        return "tcp://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stop the broker and close all the connections.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            try {
+                instance.serverSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            instance.connections.forEach(Connection::close);
+            instance = null;
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                var connection = new Connection(socket);
+                connections.add(connection);
+                var reader = new Thread(connection, "loopback-mqtt-connection-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (SocketException e) {
+                // The server socket was closed
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void publish(String topic, byte[] payload, long receivedAt) {
+        String[] levels = topic.split(Topics.LEVEL_SEPARATOR, -1);
+
+        // A client receives the message only once, also when several of its subscriptions match
+        Set<Connection> receivers = new LinkedHashSet<>();
+        for (var subscription : subscriptions) {
+            if (subscription.matches(levels)) {
+                receivers.add(subscription.connection);
+            }
+        }
+
+        for (var receiver : receivers) {
+            int size = receiver.sendPublish(topic, payload);
+            if (size > 0) {
+                long latency = System.nanoTime() - receivedAt;
+                deliveredMessages.incrementAndGet();
+                deliveredBytes.addAndGet(size);
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+            }
+        }
+    }
+
+
+    // region counters
+
+    /**
+     * Reset all the throughput and latency counters.
+     */
+    public void resetCounters() {
+        receivedMessages.set(0);
+        receivedBytes.set(0);
+        deliveredMessages.set(0);
+        deliveredBytes.set(0);
+        totalLatency.set(0);
+        maxLatency.set(0);
+        countersResetAt = System.nanoTime();
+    }
+
+    /**
+     *
+     * @return the amount of messages published by the clients
+     */
+    public long getReceivedMessages() {
+        return receivedMessages.get();
+    }
+
+    /**
+     *
+     * @return the amount of bytes of the publish packets received from the clients
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     *
+     * @return the amount of messages delivered to the clients
+     */
+    public long getDeliveredMessages() {
+        return deliveredMessages.get();
+    }
+
+    /**
+     *
+     * @return the amount of bytes of the publish packets sent to the clients
+     */
+    public long getDeliveredBytes() {
+        return deliveredBytes.get();
+    }
+
+    /**
+     *
+     * @return the amount of messages received per second since the counters were reset
+     */
+    public double getReceivedMessagesPerSecond() {
+        return receivedMessages.get() / ((System.nanoTime() - countersResetAt) / 1e9);
+    }
+
+    /**
+     *
+     * @return the amount of messages delivered per second since the counters were reset
+     */
+    public double getDeliveredMessagesPerSecond() {
+        return deliveredMessages.get() / ((System.nanoTime() - countersResetAt) / 1e9);
+    }
+
+    /**
+     *
+     * @return the mean time between the reception of a message and the delivery to a client (in ms), NaN if none was delivered
+     */
+    public double getMeanDeliveryLatency() {
+        long delivered = deliveredMessages.get();
+        return delivered == 0 ? Double.NaN : totalLatency.get() / 1e6 / delivered;
+    }
+
+    /**
+     *
+     * @return the largest time between the reception of a message and the delivery to a client (in ms)
+     */
+    public double getMaxDeliveryLatency() {
+        return maxLatency.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: received %d (%.0f msg/s, %d bytes), delivered %d (%.0f msg/s, %d bytes), latency %.3f ms (max %.3f ms)",
+            getAddress(), getReceivedMessages(), getReceivedMessagesPerSecond(), getReceivedBytes(),
+            getDeliveredMessages(), getDeliveredMessagesPerSecond(), getDeliveredBytes(),
+            getMeanDeliveryLatency(), getMaxDeliveryLatency());
+    }
+
+    // endregion
+
+
+    /**
+     * A subscription of a client to a topic filter.
+     */
+    private static class Subscription {
+        private final Connection connection;
+        private final String filter;
+        private final String[] levels;
+
+        Subscription(Connection connection, String filter) {
+            this.connection = connection;
+            this.filter = filter;
+            this.levels = filter.split(Topics.LEVEL_SEPARATOR, -1);
+        }
+
+        boolean matches(String[] topic) {
+            for (int i = 0; i < levels.length; i++) {
+                if (levels[i].equals(WILDCARD_MULTI_LEVEL)) {
+                    return true;
+                }
+                if (i == topic.length || !(levels[i].equals(WILDCARD_SINGLE_LEVEL) || levels[i].equals(topic[i]))) {
+                    return false;
+                }
+            }
+            return levels.length == topic.length;
+        }
+    }
+
+    /**
+     * The connection with a single client, read by its own thread.
+     */
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private final DataInputStream input;
+        private final OutputStream output;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        @Override
+        public void run() {
+            try {
+                int header;
+                while ((header = input.read()) != -1) {
+                    int length = readRemainingLength();
+                    var body = new byte[length];
+                    input.readFully(body);
+                    if (!handle(header >> 4, header & 0x0F, new DataInputStream(new ByteArrayInputStream(body)), length)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // The client closed the connection
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Handle a single control packet.
+         * @return false if the connection should be closed
+         */
+        private boolean handle(int type, int flags, DataInputStream body, int length) throws IOException {
+            switch (type) {
+                case CONNECT:
+                    send(CONNACK, 0, new byte[] {0, 0});
+                    return true;
+                case PUBLISH:
+                    long receivedAt = System.nanoTime();
+                    int qos = (flags >> 1) & 0x03;
+                    var topic = readString(body);
+                    int id = qos > 0 ? body.readUnsignedShort() : 0;
+                    var payload = body.readAllBytes();
+                    receivedMessages.incrementAndGet();
+                    receivedBytes.addAndGet(length + 2);
+                    if (qos == 1) {
+                        send(PUBACK, 0, packetId(id));
+                    } else if (qos == 2) {
+                        send(PUBREC, 0, packetId(id));
+                    }
+                    publish(topic, payload, receivedAt);
+                    return true;
+                case PUBREL:
+                    send(PUBCOMP, 0, packetId(body.readUnsignedShort()));
+                    return true;
+                case SUBSCRIBE: {
+                    int packetId = body.readUnsignedShort();
+                    var granted = new ByteArrayOutputStream();
+                    granted.write(packetId(packetId));
+                    while (body.available() > 0) {
+                        var filter = readString(body);
+                        body.readUnsignedByte();
+                        subscriptions.removeIf(s -> s.connection == this && s.filter.equals(filter));
+                        subscriptions.add(new Subscription(this, filter));
+                        // Messages are always delivered with QoS 0
+                        granted.write(0);
+                    }
+                    send(SUBACK, 0, granted.toByteArray());
+                    return true;
+                }
+                case UNSUBSCRIBE: {
+                    int packetId = body.readUnsignedShort();
+                    while (body.available() > 0) {
+                        var filter = readString(body);
+                        subscriptions.removeIf(s -> s.connection == this && s.filter.equals(filter));
+                    }
+                    send(UNSUBACK, 0, packetId(packetId));
+                    return true;
+                }
+                case PINGREQ:
+                    send(PINGRESP, 0, new byte[0]);
+                    return true;
+                case DISCONNECT:
+                    return false;
+                default:
+                    // PUBACK, PUBREC and PUBCOMP are not expected since the broker only sends with QoS 0
+                    return true;
+            }
+        }
+
+        /**
+         * Send a message to the client with QoS 0.
+         * @return the size of the sent packet, 0 if the connection is closed
+         */
+        int sendPublish(String topic, byte[] payload) {
+            var topicBytes = topic.getBytes(UTF_8);
+            var body = new byte[2 + topicBytes.length + payload.length];
+            body[0] = (byte) (topicBytes.length >> 8);
+            body[1] = (byte) topicBytes.length;
+            System.arraycopy(topicBytes, 0, body, 2, topicBytes.length);
+            System.arraycopy(payload, 0, body, 2 + topicBytes.length, payload.length);
+            try {
+                send(PUBLISH, 0, body);
+                return body.length + 2;
+            } catch (IOException e) {
+                close();
+                return 0;
+            }
+        }
+
+        private synchronized void send(int type, int flags, byte[] body) throws IOException {
+            output.write((type << 4) | flags);
+            // The remaining length is encoded in 7 bits per byte, the highest bit indicates that more bytes follow
+            int length = body.length;
+            do {
+                int digit = length & 0x7F;
+                length >>>= 7;
+                output.write(length > 0 ? digit | 0x80 : digit);
+            } while (length > 0);
+            output.write(body);
+            output.flush();
+        }
+
+        private int readRemainingLength() throws IOException {
+            int length = 0;
+            int shift = 0;
+            int digit;
+            do {
+                digit = input.readUnsignedByte();
+                length |= (digit & 0x7F) << shift;
+                shift += 7;
+            } while ((digit & 0x80) != 0);
+            return length;
+        }
+
+        private String readString(DataInputStream body) throws IOException {
+            var bytes = new byte[body.readUnsignedShort()];
+            body.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+        private byte[] packetId(int id) {
+            return new byte[] {(byte) (id >> 8), (byte) id};
+        }
+
+        void close() {
+            subscriptions.removeIf(s -> s.connection == this);
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
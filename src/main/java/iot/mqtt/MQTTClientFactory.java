@@ -1,5 +1,6 @@
 package iot.mqtt;
 
+import org.eclipse.paho.client.mqttv3.MqttClient;
 import util.SettingsReader;
 
 /**
@@ -8,7 +9,9 @@ import util.SettingsReader;
 public class MQTTClientFactory {
 
     public enum MqttClientType {
-        PAHO, MOCK
+        PAHO, MOCK,
+        // Paho connected to the in-process loopback broker
+        LOOPBACK
     }
     private static MqttClientType DEFAULT_INSTANCE_TYPE = SettingsReader.getInstance().getMQTTClientType();
     private static MqttClientBasicApi clientBasicApi;
@@ -26,6 +29,9 @@ public class MQTTClientFactory {
                 case MOCK: {
                     clientBasicApi = createMockClient();
                 } break;
+                case LOOPBACK: {
+                    clientBasicApi = createLoopbackClient();
+                } break;
             }
         }
         return clientBasicApi;
@@ -46,4 +52,13 @@ public class MQTTClientFactory {
     public static PahoMqttClient createPahoClient() {
         return new PahoMqttClient();
     }
+
+    /**
+     * Start the loopback broker if needed, on the port defined in the settings.
+     * @return a new instance of a Paho {@link MqttClientBasicApi}, connected to the loopback broker
+     */
+    public static PahoMqttClient createLoopbackClient() {
+        var broker = LoopbackMqttBroker.getInstance(SettingsReader.getInstance().getMqttLoopbackPort());
+        return new PahoMqttClient(broker.getAddress(), MqttClient.generateClientId());
+    }
 }
@@ -1,24 +1,26 @@
 package iot.mqtt;
 
-import util.Pair;
-
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Mock that represent a mqtt broker
+ * The subscriptions are kept in a trie with a node per topic level (including the wildcards),
+ * so that publishing a message only visits the (cached) levels of its topic and the matching subscriptions.
  */
 public class MqttBrokerMock {
 
     private static final String WILDCARD_SINGLE_LEVEL = "+";
     private static final String WILDCARD_MULTI_LEVEL = "#";
-    private static final String LEVEL_SEPARATOR = "/";
+    private static final String LEVEL_SEPARATOR = Topics.LEVEL_SEPARATOR;
 
     private final Map<MqttMock, List<String>> clientSubscribed;
 
+    // The root of the subscription trie
+    private final TopicNode subscriptions;
+
     private static MqttBrokerMock ourInstance = new MqttBrokerMock();
 
     /**
@@ -31,6 +33,7 @@ public class MqttBrokerMock {
 
     private MqttBrokerMock() {
         clientSubscribed = new HashMap<>();
+        subscriptions = new TopicNode();
     }
 
     /**
@@ -52,7 +55,7 @@ public class MqttBrokerMock {
         if (!clientSubscribed.containsKey(instance)) {
             throw new IllegalStateException();
         }
-        clientSubscribed.remove(instance);
+        clientSubscribed.remove(instance).forEach(f -> removeSubscription(instance, f));
     }
 
     /**
@@ -60,13 +63,38 @@ public class MqttBrokerMock {
      * @param topic the topic of the message
      * @param message the message to publish
      */
-    public void publish(String topic, MqttMessageType message) {
-        clientSubscribed.entrySet().stream()
-            .map(e -> new Pair<>(e.getKey(), e.getValue()
-                .stream()
-                .filter(f -> checkTopicMatch(topic, f))
-                .collect(Collectors.toList())))
-            .forEach(e -> e.getRight().forEach(t -> e.getLeft().dispatch(t, topic, message)));
+    public void publish(Topic topic, MqttMessageType message) {
+        publish(subscriptions, topic, topic.getLevels(), 0, message);
+    }
+
+    /**
+     * Deliver the message to the subscriptions in the subtrie of the given node which match the rest of the topic.
+     * @param node the node which matched the topic up to the given level
+     * @param topic the topic of the message
+     * @param levels the (cached) levels of the topic
+     * @param level the index of the next level to match
+     * @param message the message to publish
+     */
+    private void publish(TopicNode node, Topic topic, String[] levels, int level, MqttMessageType message) {
+        // A multi level wildcard matches all the remaining levels (also none)
+        var multiLevel = node.children.get(WILDCARD_MULTI_LEVEL);
+        if (multiLevel != null) {
+            multiLevel.deliver(topic, message);
+        }
+
+        if (level == levels.length) {
+            node.deliver(topic, message);
+            return;
+        }
+
+        var child = node.children.get(levels[level]);
+        if (child != null) {
+            publish(child, topic, levels, level + 1, message);
+        }
+        var singleLevel = node.children.get(WILDCARD_SINGLE_LEVEL);
+        if (singleLevel != null) {
+            publish(singleLevel, topic, levels, level + 1, message);
+        }
     }
 
     /**
@@ -79,6 +107,13 @@ public class MqttBrokerMock {
             throw new IllegalStateException();
         }
         clientSubscribed.get(instance).add(topicFilter);
+
+        var node = subscriptions;
+        for (var level : topicFilter.split(LEVEL_SEPARATOR)) {
+            node = node.children.computeIfAbsent(level, l -> new TopicNode());
+        }
+        node.filter = topicFilter;
+        node.subscribers.add(instance);
     }
 
     /**
@@ -90,19 +125,63 @@ public class MqttBrokerMock {
         if (!clientSubscribed.containsKey(instance)) {
             throw new IllegalStateException();
         }
-        clientSubscribed.get(instance).remove(topicFilter);
+        if (clientSubscribed.get(instance).remove(topicFilter)) {
+            removeSubscription(instance, topicFilter);
+        }
     }
 
-    private boolean checkTopicMatch(final String topic, final String filter) {
-        var topicSplitted = topic.split(LEVEL_SEPARATOR);
-        var filterSplitted = filter.split(LEVEL_SEPARATOR);
-        int index = 0;
-        while (index < topicSplitted.length && index < filterSplitted.length &&
-            (topicSplitted[index].equals(filterSplitted[index]) || filterSplitted[index].equals(WILDCARD_SINGLE_LEVEL))) {
-            index++;
+    /**
+     *
+     * @return the amount of levels in the subscription trie, which are removed once no subscription uses them anymore
+     */
+    public int getSubscriptionLevelCount() {
+        return subscriptions.countDescendants();
+    }
+
+    private void removeSubscription(MqttMock instance, String topicFilter) {
+        var levels = topicFilter.split(LEVEL_SEPARATOR);
+        var path = new TopicNode[levels.length + 1];
+        path[0] = subscriptions;
+        for (int i = 0; i < levels.length; i++) {
+            path[i + 1] = path[i].children.get(levels[i]);
+            if (path[i + 1] == null) {
+                return;
+            }
         }
+        path[levels.length].subscribers.remove(instance);
 
-        return (index == filterSplitted.length && index == topicSplitted.length) ||
-            (index == filterSplitted.length - 1 && filterSplitted[index].equals(WILDCARD_MULTI_LEVEL));
+        // Prune the nodes which are no longer used by any subscription
+        for (int i = levels.length; i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].children.remove(levels[i - 1]);
+        }
+    }
+
+
+    /**
+     * A node in the subscription trie, representing a single level of a topic filter.
+     */
+    private static class TopicNode {
+        private final Map<String, TopicNode> children = new HashMap<>();
+
+        // The clients subscribed to the filter which ends in this node (a client can subscribe more than once)
+        private final List<MqttMock> subscribers = new LinkedList<>();
+        // The filter which ends in this node
+        private String filter;
+
+        void deliver(Topic topic, MqttMessageType message) {
+            subscribers.forEach(c -> c.dispatch(filter, topic, message));
+        }
+
+        boolean isEmpty() {
+            return subscribers.isEmpty() && children.isEmpty();
+        }
+
+        int countDescendants() {
+            int count = children.size();
+            for (var child : children.values()) {
+                count += child.countDescendants();
+            }
+            return count;
+        }
     }
 }
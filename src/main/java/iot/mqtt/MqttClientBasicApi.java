@@ -19,20 +19,37 @@ public interface MqttClientBasicApi {
 
     /**
      * Publish a message with a specified topic
-     * @param topic the message topic
+     * @param topic the message topic (see {@link Topics})
      * @param message the message
      */
-    void publish(String topic, MqttMessageType message);
+    void publish(Topic topic, MqttMessageType message);
+
+    /**
+     * Send the published messages which are held back to be sent in a batch (if the client batches its messages).
+     * Called by the simulation at the end of every simulated millisecond.
+     * @param force true to send all of them now, false to send them only if the batch window has passed
+     */
+    default void flush(boolean force) {
+    }
+
+    /**
+     * Check whether the messages are delivered to every subscriber on its own thread (see {@link MqttDispatcher}),
+     * in which case a subscriber is never called concurrently, even if messages are published from several threads.
+     * @return true if the messages are delivered asynchronously
+     */
+    default boolean isAsynchronousDelivery() {
+        return MqttDispatcher.getInstance().isAsynchronous();
+    }
 
     /**
      * Subscribe to all the topic that start with topicFilter
      * @param subscriber instance oh the subscriber
      * @param topicFilter the topic filter with support to the wildcard '+' and '#'
      * @param classMessage the class of the message that will be receive
-     * @param messageConsumer consumer for the message already converted to the required class
+     * @param messageConsumer consumer for the typed topic and the message already converted to the required class
      * @param <T> Type of the received message on this topic
      */
-    <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<String, T> messageConsumer);
+    <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<Topic, T> messageConsumer);
 
     /**
      * Unsubscribe a topic previous subscribed
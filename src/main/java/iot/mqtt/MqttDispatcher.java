@@ -0,0 +1,358 @@
+package iot.mqtt;
+
+import util.SettingsReader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers the mqtt messages to the subscribers, used by the mqtt clients.
+ *
+ * In the (default) synchronous mode a message is handled immediately by the thread which delivers it.
+ * In the asynchronous mode every subscriber gets a bounded queue which is drained by its own worker, so slow handlers
+ * (e.g. the path finding of an application) no longer add to the latency of a simulation step.
+ * A single worker per subscriber keeps the messages in order of publication, which also preserves the order per device.
+ * The messages for a {@link SimulationBoundSubscriber} are queued for the simulation thread instead.
+ *
+ * What happens when a queue is full is decided by the {@link BackpressurePolicy}.
+ * The queue and worker of a subscriber are released once the subscriber no longer receives messages
+ * (see {@link #release(Object)}), and created again on the next delivery.
+ */
+public class MqttDispatcher {
+
+    /**
+     * The behaviour when a message is delivered to a full queue.
+     */
+    public enum BackpressurePolicy {
+        // the publisher waits until the queue has space again (only the simulation thread, workers never wait)
+        BLOCK,
+        // the oldest message in the queue is dropped
+        DROP_OLDEST,
+        // the message is queued anyway, but the simulation clock does not advance until all the queues have space again
+        PAUSE_CLOCK
+    }
+
+    private static MqttDispatcher instance = null;
+
+    // Set for the worker threads of the dispatcher
+    private static final ThreadLocal<Boolean> isWorker = ThreadLocal.withInitial(() -> false);
+
+    private final boolean asynchronous;
+    private final int queueCapacity;
+    private final BackpressurePolicy policy;
+
+    private final Map<Object, SubscriberQueue> queues;
+    private final SubscriberQueue simulationQueue;
+
+    // The amount of messages which are queued or being handled
+    private final AtomicLong pending;
+
+
+    public static synchronized MqttDispatcher getInstance() {
+        if (instance == null) {
+            var settings = SettingsReader.getInstance();
+            instance = new MqttDispatcher(settings.useAsynchronousMqttDelivery(), settings.getMqttQueueCapacity(),
+                settings.getMqttBackpressurePolicy());
+        }
+        return instance;
+    }
+
+    /**
+     * Create a dispatcher which is independent of the one used by the mqtt clients ({@link #getInstance()}).
+     * @param asynchronous true if the messages are delivered asynchronously
+     * @param queueCapacity the capacity of the queue of every subscriber
+     * @param policy the policy used when a queue is full
+     */
+    public MqttDispatcher(boolean asynchronous, int queueCapacity, BackpressurePolicy policy) {
+        this.asynchronous = asynchronous;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+
+        this.queues = new ConcurrentHashMap<>();
+        this.simulationQueue = new SubscriberQueue("simulation", false);
+        this.pending = new AtomicLong();
+    }
+
+
+    /**
+     *
+     * @return true if the messages are delivered asynchronously
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     *
+     * @return the policy used when a queue is full
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        return policy;
+    }
+
+    /**
+     * Deliver a message to a subscriber.
+     * @param subscriber the subscriber which receives the message
+     * @param delivery the handling of the message by the subscriber
+     */
+    public void deliver(Object subscriber, Runnable delivery) {
+        if (!asynchronous) {
+            delivery.run();
+            return;
+        }
+
+        if (subscriber instanceof SimulationBoundSubscriber) {
+            simulationQueue.add(delivery);
+            return;
+        }
+
+        // A queue which was released concurrently no longer accepts messages, a new one is created instead
+        SubscriberQueue queue = queues.get(subscriber);
+        while (queue == null || !queue.add(delivery)) {
+            queue = queues.computeIfAbsent(subscriber, s -> new SubscriberQueue(s.getClass().getSimpleName(), true).start());
+        }
+    }
+
+    /**
+     * Release the queue and the worker of a subscriber which no longer receives messages (e.g. after unsubscribing).
+     * The messages which are already queued are still handled, after which the worker stops.
+     * @param subscriber the subscriber
+     */
+    public void release(Object subscriber) {
+        var queue = queues.remove(subscriber);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     *
+     * @return the amount of subscribers which currently have a queue (and a worker)
+     */
+    public int getQueueCount() {
+        return queues.size();
+    }
+
+    /**
+     * Handle the messages queued for the simulation thread (see {@link SimulationBoundSubscriber}).
+     * Should be called by the simulation thread at the start of every simulation step.
+     */
+    public void runSimulationTasks() {
+        if (asynchronous) {
+            simulationQueue.drain();
+        }
+    }
+
+    /**
+     * Wait until all the queues have space again if the policy is {@link BackpressurePolicy#PAUSE_CLOCK}.
+     * Should be called by the simulation thread before the clock advances.
+     */
+    public void awaitCapacity() {
+        if (asynchronous && policy == BackpressurePolicy.PAUSE_CLOCK) {
+            queues.values().forEach(SubscriberQueue::awaitCapacity);
+        }
+    }
+
+    /**
+     * Wait until all the messages are handled (including the messages published while waiting).
+     * Should be called by the simulation thread before the results of a run are used or reset.
+     */
+    public void awaitIdle() {
+        if (!asynchronous) {
+            return;
+        }
+        runSimulationTasks();
+        while (pending.get() > 0) {
+            LockSupport.parkNanos(100_000);
+            runSimulationTasks();
+        }
+    }
+
+    /**
+     *
+     * @return a snapshot of the metrics of all the queues
+     */
+    public List<MqttQueueMetrics> getMetrics() {
+        List<MqttQueueMetrics> metrics = new ArrayList<>();
+        if (asynchronous) {
+            queues.values().forEach(q -> metrics.add(q.getMetrics()));
+            metrics.add(simulationQueue.getMetrics());
+        }
+        return metrics;
+    }
+
+
+    /**
+     * The queue of a single subscriber, drained by a worker (or by the simulation thread).
+     */
+    private class SubscriberQueue implements Runnable {
+        private final String name;
+        private final boolean bounded;
+
+        private final Deque<Delivery> deliveries = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        // Set when the queue is released, after which the worker stops once the queue is empty (guarded by the lock)
+        private boolean closed = false;
+
+        // The metrics, guarded by the lock
+        private int maxDepth = 0;
+        private long delivered = 0;
+        private long dropped = 0;
+        private long totalLatency = 0;
+        private long maxLatency = 0;
+
+        SubscriberQueue(String name, boolean bounded) {
+            this.name = name;
+            this.bounded = bounded;
+        }
+
+        SubscriberQueue start() {
+            var worker = new Thread(this, "mqtt-dispatcher-" + name);
+            worker.setDaemon(true);
+            worker.start();
+            return this;
+        }
+
+        /**
+         * @return false if the queue was released, in which case the task is not queued
+         */
+        boolean add(Runnable task) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                if (bounded && deliveries.size() >= queueCapacity) {
+                    if (policy == BackpressurePolicy.DROP_OLDEST) {
+                        while (deliveries.size() >= queueCapacity) {
+                            deliveries.pollFirst();
+                            dropped++;
+                            pending.decrementAndGet();
+                        }
+                    } else if (policy == BackpressurePolicy.BLOCK && !isWorker.get()) {
+                        // Workers never wait: two handlers publishing to each other could otherwise deadlock
+                        while (deliveries.size() >= queueCapacity && !closed) {
+                            notFull.awaitUninterruptibly();
+                        }
+                        if (closed) {
+                            return false;
+                        }
+                    }
+                }
+                pending.incrementAndGet();
+                deliveries.addLast(new Delivery(task, System.nanoTime()));
+                maxDepth = Math.max(maxDepth, deliveries.size());
+                notEmpty.signal();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void awaitCapacity() {
+            lock.lock();
+            try {
+                while (deliveries.size() > queueCapacity && !closed) {
+                    notFull.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Handle the queued messages on the calling thread.
+         */
+        void drain() {
+            Delivery delivery;
+            while ((delivery = poll(false)) != null) {
+                handle(delivery);
+            }
+        }
+
+        @Override
+        public void run() {
+            isWorker.set(true);
+            Delivery delivery;
+            // The queue is only empty after waiting if it was released
+            while ((delivery = poll(true)) != null) {
+                handle(delivery);
+            }
+        }
+
+        private Delivery poll(boolean wait) {
+            lock.lock();
+            try {
+                while (wait && deliveries.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                var delivery = deliveries.pollFirst();
+                if (delivery != null && deliveries.size() <= queueCapacity) {
+                    notFull.signalAll();
+                }
+                return delivery;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void handle(Delivery delivery) {
+            try {
+                delivery.task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            long latency = System.nanoTime() - delivery.publishedAt;
+            lock.lock();
+            try {
+                delivered++;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+            } finally {
+                lock.unlock();
+            }
+            pending.decrementAndGet();
+        }
+
+        MqttQueueMetrics getMetrics() {
+            lock.lock();
+            try {
+                return new MqttQueueMetrics(name, deliveries.size(), maxDepth, delivered, dropped, totalLatency, maxLatency);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Delivery {
+        private final Runnable task;
+        private final long publishedAt;
+
+        Delivery(Runnable task, long publishedAt) {
+            this.task = task;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
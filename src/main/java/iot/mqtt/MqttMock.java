@@ -13,6 +13,7 @@ public class MqttMock implements MqttClientBasicApi {
 
     private Map<String, List<MqttMessageConsumer>> subscribed = new HashMap<>();
     private final MqttBrokerMock broker = MqttBrokerMock.getInstance();
+    private final MqttDispatcher dispatcher = MqttDispatcher.getInstance();
 
 
     public MqttMock() {
@@ -27,16 +28,17 @@ public class MqttMock implements MqttClientBasicApi {
     @Override
     public void disconnect() {
         broker.disconnect(this);
+        releaseSubscribers();
         subscribed.clear();
     }
 
     @Override
-    public void publish(String topic, MqttMessageType message) {
+    public void publish(Topic topic, MqttMessageType message) {
         broker.publish(topic, message);
     }
 
     @Override
-    public <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<String, T> messageConsumer) {
+    public <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<Topic, T> messageConsumer) {
         if (!subscribed.containsKey(topicFilter)) {
             broker.subscribe(this, topicFilter);
             subscribed.put(topicFilter, new LinkedList<>());
@@ -47,6 +49,9 @@ public class MqttMock implements MqttClientBasicApi {
     @Override
     public void unsubscribe(Object subscriber, String topicFilter) {
         subscribed.get(topicFilter).removeIf(c -> c.getSubscriber().equals(subscriber));
+        if (subscribed.values().stream().flatMap(List::stream).noneMatch(c -> c.getSubscriber().equals(subscriber))) {
+            dispatcher.release(subscriber);
+        }
         if (subscribed.get(topicFilter).isEmpty()) {
             subscribed.remove(topicFilter);
             broker.unsubscribe(this, topicFilter);
@@ -59,25 +64,36 @@ public class MqttMock implements MqttClientBasicApi {
      * @param topic the message topic
      * @param message the message
      */
-    public void dispatch(String filter, String topic, MqttMessageType message) {
+    public void dispatch(String filter, Topic topic, MqttMessageType message) {
         if (subscribed.containsKey(filter)) {
-            subscribed.get(filter).forEach(c -> c.accept(topic, message));
+            subscribed.get(filter).forEach(c -> dispatcher.deliver(c.getSubscriber(), () -> c.accept(topic, message)));
         }
     }
 
+    /**
+     * Release the delivery queues of all the subscribers of this client (see {@link MqttDispatcher#release(Object)}).
+     */
+    private void releaseSubscribers() {
+        subscribed.values().stream()
+            .flatMap(List::stream)
+            .map(MqttMessageConsumer::getSubscriber)
+            .distinct()
+            .forEach(dispatcher::release);
+    }
+
     private static class MqttMessageConsumer<T extends MqttMessageType> {
 
         private final Object subscriber;
-        private final BiConsumer<String, T> consumer;
+        private final BiConsumer<Topic, T> consumer;
         private final Class<T> clazz;
 
-        public MqttMessageConsumer(Object subscriber, BiConsumer<String, T> consumer, Class<T> clazz) {
+        public MqttMessageConsumer(Object subscriber, BiConsumer<Topic, T> consumer, Class<T> clazz) {
             this.consumer = consumer;
             this.clazz = clazz;
             this.subscriber = subscriber;
         }
 
-        public void accept(String t, MqttMessageType message) {
+        public void accept(Topic t, MqttMessageType message) {
             consumer.accept(t, clazz.cast(message));
         }
 
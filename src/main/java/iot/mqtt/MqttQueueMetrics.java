@@ -0,0 +1,89 @@
+package iot.mqtt;
+
+/**
+ * Snapshot of the metrics of a single delivery queue of the {@link MqttDispatcher}.
+ */
+public class MqttQueueMetrics {
+    private final String subscriber;
+    private final int depth;
+    private final int maxDepth;
+    private final long delivered;
+    private final long dropped;
+    private final long totalLatencyInNanos;
+    private final long maxLatencyInNanos;
+
+
+    MqttQueueMetrics(String subscriber, int depth, int maxDepth, long delivered, long dropped,
+                     long totalLatencyInNanos, long maxLatencyInNanos) {
+        this.subscriber = subscriber;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.totalLatencyInNanos = totalLatencyInNanos;
+        this.maxLatencyInNanos = maxLatencyInNanos;
+    }
+
+
+    /**
+     *
+     * @return a description of the subscriber of the queue
+     */
+    public String getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     *
+     * @return the amount of messages waiting in the queue
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     *
+     * @return the largest amount of messages which were waiting in the queue at the same time
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     *
+     * @return the amount of messages handled by the subscriber
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     *
+     * @return the amount of messages dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     *
+     * @return the mean time between the publication and the handling of a message (in ms), NaN if none was handled
+     */
+    public double getMeanLatency() {
+        return delivered == 0 ? Double.NaN : totalLatencyInNanos / 1e6 / delivered;
+    }
+
+    /**
+     *
+     * @return the largest time between the publication and the handling of a message (in ms)
+     */
+    public double getMaxLatency() {
+        return maxLatencyInNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: depth %d (max %d), delivered %d, dropped %d, latency %.3f ms (max %.3f ms)",
+            subscriber, depth, maxDepth, delivered, dropped, getMeanLatency(), getMaxLatency());
+    }
+}
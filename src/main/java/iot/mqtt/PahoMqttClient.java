@@ -5,12 +5,11 @@ import iot.lora.BasicFrameHeader;
 import iot.lora.EU868ParameterByDataRate;
 import iot.lora.FrameHeader;
 import iot.lora.RegionalParameter;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
-import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.jetbrains.annotations.NotNull;
+import util.Pair;
+import util.SettingsReader;
 
 import java.util.*;
 import java.util.function.BiConsumer;
@@ -19,19 +18,59 @@ import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
  * Mqtt client for a real mqtt server. This implementation use the library Paho
+ * The messages are published as json or in the compact format of {@link BinaryMessageCodec}, the received messages
+ * are decoded according to their own format.
+ *
+ * With batching enabled the published messages are held back for a window of simulated milliseconds and then sent
+ * pipelined: all the messages of the batch are sent before waiting for their acknowledgements.
+ * The client has no clock of its own: the window is counted in calls of {@link #flush(boolean) flush(false)},
+ * which the simulation makes once at the end of every simulated millisecond. A full batch is sent right away.
+ * Every message keeps its own topic, so the subscribers are not affected by the batching.
  */
 public class PahoMqttClient implements MqttClientBasicApi {
 
+    public enum PayloadFormat {
+        JSON, BINARY
+    }
+
+    private static final int MAX_INFLIGHT = 1000;
+
     private MqttClient mqttClient;
     private Gson gson;
+    private final PayloadFormat payloadFormat;
+
+    private final boolean batching;
+    // The amount of calls of flush(false) (i.e. simulated milliseconds) during which the messages are held back
+    private final int batchWindow;
+    // The messages held back to be published in a batch, guarded by itself
+    private final List<Pair<String, MqttMessage>> batch = new ArrayList<>();
+    // The amount of calls of flush(false) since the first message of the batch
+    private int batchAge = 0;
     private Map<String, List<MqttMessageConsumer>> subscribed = new HashMap<>();
+    private final MqttDispatcher dispatcher = MqttDispatcher.getInstance();
 
     public PahoMqttClient() {
         this("tcp://test.mosquitto.org:1883", "testFenomeno1995");
     }
 
     public PahoMqttClient(@NotNull String address, @NotNull String clientId) {
-        gson = addAdapters(new GsonBuilder()).create();
+        this(address, clientId, SettingsReader.getInstance().getMqttPayloadFormat(),
+            SettingsReader.getInstance().useMqttPublishBatching(), SettingsReader.getInstance().getMqttPublishBatchWindow());
+    }
+
+    /**
+     * @param address the address of the mqtt server
+     * @param clientId the id of the client
+     * @param payloadFormat the format of the published messages
+     * @param batching true to publish the messages in batches
+     * @param batchWindow the amount of calls of {@link #flush(boolean) flush(false)} during which the messages are held back
+     */
+    public PahoMqttClient(@NotNull String address, @NotNull String clientId, PayloadFormat payloadFormat,
+                          boolean batching, int batchWindow) {
+        this.payloadFormat = payloadFormat;
+        this.batching = batching;
+        this.batchWindow = batchWindow;
+        gson = createGson();
         try {
             mqttClient = new MqttClient(address, clientId, new MemoryPersistence());
             connect();
@@ -40,7 +79,15 @@ public class PahoMqttClient implements MqttClientBasicApi {
         }
     }
 
-    private GsonBuilder addAdapters(GsonBuilder builder) {
+    /**
+     *
+     * @return the gson instance used to encode and decode the messages in json
+     */
+    public static Gson createGson() {
+        return addAdapters(new GsonBuilder()).create();
+    }
+
+    private static GsonBuilder addAdapters(GsonBuilder builder) {
 
         builder.registerTypeAdapter(FrameHeader.class, (JsonSerializer<FrameHeader>) (header, type, context) -> {
             var obj = new JsonObject();
@@ -71,6 +118,9 @@ public class PahoMqttClient implements MqttClientBasicApi {
     public void connect() {
         var opt = new MqttConnectOptions();
         opt.setCleanSession(true);
+        // Paho releases the in-flight slot of an acknowledged message only after the publish returned,
+        // a low limit is therefore exceeded by fast consecutive publishes (e.g. to a loopback broker)
+        opt.setMaxInflight(MAX_INFLIGHT);
         if (!mqttClient.isConnected()) {
             try {
                 mqttClient.connect(opt);
@@ -86,31 +136,110 @@ public class PahoMqttClient implements MqttClientBasicApi {
             if (mqttClient.isConnected()) {
                 mqttClient.disconnect();
             }
+            releaseSubscribers();
             subscribed.clear();
+            // The publishes which are still queued are sent before the worker of this client stops
+            dispatcher.release(this);
         } catch (MqttException e) {
             e.printStackTrace();
         }
     }
 
     @Override
-    public void publish(String topic, MqttMessageType message) {
-        var msg = new MqttMessage(gson.toJson(message).getBytes(US_ASCII));
+    public void publish(Topic topic, MqttMessageType message) {
+        // In the asynchronous mode the network I/O is done by the worker of this client, in order of publication
+        dispatcher.deliver(this, () -> send(topic, message));
+    }
+
+    private void send(Topic topic, MqttMessageType message) {
+        var msg = new MqttMessage(encode(message));
+        if (batching) {
+            boolean full;
+            synchronized (batch) {
+                batch.add(new Pair<>(topic.toString(), msg));
+                full = batch.size() >= MAX_INFLIGHT;
+            }
+            if (full) {
+                sendBatch();
+            }
+            return;
+        }
+
         try {
             if (!mqttClient.isConnected()) {
                 connect();
             }
-            mqttClient.publish(topic, msg);
+            mqttClient.publish(topic.toString(), msg);
         } catch (MqttException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Send the batch if it is full, forced, or if this is the last call of its window:
+     * the batch is sent at the {@code batchWindow}-th call of {@code flush(false)} since its first message.
+     * Calls while the batch is empty do not count.
+     * @param force true to send the batch now
+     */
     @Override
-    public <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<String, T> messageConsumer) {
+    public void flush(boolean force) {
+        if (batching) {
+            dispatcher.deliver(this, () -> {
+                synchronized (batch) {
+                    if (batch.isEmpty() || (!force && ++batchAge < batchWindow)) {
+                        return;
+                    }
+                }
+                sendBatch();
+            });
+        }
+    }
+
+    /**
+     * Send all the messages of the batch, without waiting for an acknowledgement in between.
+     */
+    private synchronized void sendBatch() {
+        List<Pair<String, MqttMessage>> messages;
+        synchronized (batch) {
+            messages = new ArrayList<>(batch);
+            batch.clear();
+            batchAge = 0;
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (!mqttClient.isConnected()) {
+                connect();
+            }
+            List<MqttDeliveryToken> tokens = new ArrayList<>(messages.size());
+            for (var message : messages) {
+                tokens.add(mqttClient.getTopic(message.getLeft()).publish(message.getRight()));
+            }
+            for (var token : tokens) {
+                token.waitForCompletion();
+            }
+        } catch (MqttException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private byte[] encode(MqttMessageType message) {
+        return payloadFormat == PayloadFormat.BINARY ? BinaryMessageCodec.encode(message) : gson.toJson(message).getBytes(US_ASCII);
+    }
+
+    @Override
+    public <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<Topic, T> messageConsumer) {
         if (!subscribed.containsKey(topicFilter)) {
             subscribed.put(topicFilter, new LinkedList<>());
             try {
-                mqttClient.subscribe(topicFilter, (topic, msg) -> subscribed.get(topicFilter).forEach(c -> c.accept(topic, msg.toString())));
+                mqttClient.subscribe(topicFilter, (topic, msg) -> {
+                    var parsedTopic = Topics.parse(topic);
+                    // The message is decoded once, and shared by all the consumers of the filter
+                    var received = new ReceivedMessage(msg.getPayload());
+                    subscribed.get(topicFilter).forEach(c -> dispatcher.deliver(c.getSubscriber(), () -> c.accept(parsedTopic, received)));
+                });
             } catch (MqttException e) {
                 e.printStackTrace();
             }
@@ -121,6 +250,9 @@ public class PahoMqttClient implements MqttClientBasicApi {
     @Override
     public void unsubscribe(Object subscriber, String topicFilter) {
         subscribed.get(topicFilter).removeIf(c -> c.getSubscriber().equals(subscriber));
+        if (subscribed.values().stream().flatMap(List::stream).noneMatch(c -> c.getSubscriber().equals(subscriber))) {
+            dispatcher.release(subscriber);
+        }
         if (subscribed.get(topicFilter).isEmpty()) {
             try {
                 mqttClient.unsubscribe(topicFilter);
@@ -131,24 +263,60 @@ public class PahoMqttClient implements MqttClientBasicApi {
         }
     }
 
+    /**
+     * Release the delivery queues of all the subscribers of this client (see {@link MqttDispatcher#release(Object)}).
+     */
+    private void releaseSubscribers() {
+        subscribed.values().stream()
+            .flatMap(List::stream)
+            .map(MqttMessageConsumer::getSubscriber)
+            .distinct()
+            .forEach(dispatcher::release);
+    }
+
     private class MqttMessageConsumer<T extends MqttMessageType> {
 
         private final Object subscriber;
-        private final BiConsumer<String, T> consumer;
+        private final BiConsumer<Topic, T> consumer;
         private final Class<T> clazz;
 
-        public MqttMessageConsumer(Object subscriber, BiConsumer<String, T> consumer, Class<T> clazz) {
+        public MqttMessageConsumer(Object subscriber, BiConsumer<Topic, T> consumer, Class<T> clazz) {
             this.consumer = consumer;
             this.clazz = clazz;
             this.subscriber = subscriber;
         }
 
-        public void accept(String t, String message) {
-            consumer.accept(t, gson.fromJson(message, clazz));
+        public void accept(Topic t, ReceivedMessage message) {
+            consumer.accept(t, message.decode(clazz));
         }
 
         public Object getSubscriber() {
             return subscriber;
         }
     }
+
+    /**
+     * A received message, decoded when it is first needed.
+     * A binary message is decoded only once, a json message once per requested type.
+     */
+    private class ReceivedMessage {
+
+        private final byte[] payload;
+        private final Map<Class<?>, MqttMessageType> decoded = new HashMap<>(2);
+        private MqttMessageType decodedBinary;
+
+        ReceivedMessage(byte[] payload) {
+            this.payload = payload;
+        }
+
+        synchronized <T extends MqttMessageType> T decode(Class<T> clazz) {
+            if (BinaryMessageCodec.isBinary(payload)) {
+                if (decodedBinary == null) {
+                    decodedBinary = BinaryMessageCodec.decode(payload);
+                }
+                return clazz.cast(decodedBinary);
+            }
+            return clazz.cast(decoded.computeIfAbsent(clazz, c -> gson.fromJson(new String(payload, US_ASCII), clazz)));
+        }
+    }
 }
@@ -0,0 +1,9 @@
+package iot.mqtt;
+
+/**
+ * Marker for subscribers which act on the simulated environment (e.g. a gateway which transmits a downlink).
+ * When the messages are delivered asynchronously (see {@link MqttDispatcher}), the messages for these subscribers
+ * are not handled by a worker but by the simulation thread, at the start of the next simulation step.
+ */
+public interface SimulationBoundSubscriber {
+}
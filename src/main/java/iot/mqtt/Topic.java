@@ -0,0 +1,171 @@
+package iot.mqtt;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A typed mqtt topic: the ids of the application, gateway (optional) and node and the direction of the message.
+ * The ids can be read directly by the subscribers, without parsing the topic.
+ * The string form is only rendered when it is needed (e.g. for a real mqtt server) and is cached in the topic.
+ *
+ * Instances should be retrieved through {@link Topics}, which caches a topic per (application, gateway, node).
+ */
+public class Topic {
+
+    /**
+     * The direction of a message.
+     */
+    public enum Direction {
+        // from the devices to the applications
+        UPSTREAM("rx"),
+        // from the applications to the devices
+        DOWNSTREAM("tx");
+
+        private final String suffix;
+
+        Direction(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    private final long application;
+    private final boolean hasGateway;
+    private final long gateway;
+    private final long node;
+    private final Direction direction;
+
+    // The levels of the rendered topic, created when first needed
+    private volatile String[] levels;
+    private volatile String rendered;
+
+
+    Topic(long application, long node, Direction direction) {
+        this(application, false, 0L, node, direction);
+    }
+
+    Topic(long application, long gateway, long node, Direction direction) {
+        this(application, true, gateway, node, direction);
+    }
+
+    private Topic(long application, boolean hasGateway, long gateway, long node, Direction direction) {
+        this.application = application;
+        this.hasGateway = hasGateway;
+        this.gateway = gateway;
+        this.node = node;
+        this.direction = direction;
+    }
+
+
+    /**
+     *
+     * @return the application id of the topic
+     */
+    public long getApplication() {
+        return application;
+    }
+
+    /**
+     *
+     * @return true if the topic contains a gateway id
+     */
+    public boolean hasGateway() {
+        return hasGateway;
+    }
+
+    /**
+     *
+     * @return the gateway id of the topic
+     * @throws NoSuchElementException if the topic does not contain a gateway id
+     */
+    public long getGateway() {
+        if (!hasGateway) {
+            throw new NoSuchElementException("required id not found: gateway in the topic: " + this);
+        }
+        return gateway;
+    }
+
+    /**
+     *
+     * @return the node (mote) id of the topic
+     */
+    public long getNode() {
+        return node;
+    }
+
+    /**
+     *
+     * @return the direction of the topic
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     *
+     * @return the levels of the rendered topic
+     */
+    String[] getLevels() {
+        var result = levels;
+        if (result == null) {
+            result = hasGateway ?
+                new String[] {Topics.APPLICATION_ID, Long.toString(application), Topics.GATEWAY_ID, Long.toString(gateway),
+                    Topics.MOTE_ID, Long.toString(node), direction.getSuffix()} :
+                new String[] {Topics.APPLICATION_ID, Long.toString(application), Topics.MOTE_ID, Long.toString(node), direction.getSuffix()};
+            levels = result;
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return the rendered topic
+     */
+    @Override
+    public String toString() {
+        var result = rendered;
+        if (result == null) {
+            result = String.join(Topics.LEVEL_SEPARATOR, getLevels());
+            rendered = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Topic topic = (Topic) o;
+        return application == topic.application && hasGateway == topic.hasGateway && gateway == topic.gateway &&
+            node == topic.node && direction == topic.direction;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(application, hasGateway, gateway, node, direction);
+    }
+
+    /**
+     * @return true if the topic has the given ids and direction (the gateway id is ignored without a gateway)
+     */
+    boolean matches(long application, boolean hasGateway, long gateway, long node, Direction direction) {
+        return this.application == application && this.hasGateway == hasGateway && (!hasGateway || this.gateway == gateway) &&
+            this.node == node && this.direction == direction;
+    }
+
+    /**
+     * @return the hash code of a topic with the given ids and direction, without creating the topic
+     */
+    static int hash(long application, boolean hasGateway, long gateway, long node, Direction direction) {
+        int result = Long.hashCode(application);
+        result = 31 * result + (hasGateway ? Long.hashCode(gateway) : 0);
+        result = 31 * result + Long.hashCode(node);
+        return 31 * result + direction.ordinal();
+    }
+}
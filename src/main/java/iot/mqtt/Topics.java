@@ -1,45 +1,59 @@
 package iot.mqtt;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class of utils to manage all the mqtt topics
+ * The topics of messages are {@link Topic} instances which are cached per (application, gateway, node),
+ * the string versions are used for the topic filters of the subscriptions.
  */
 public class Topics {
 
-    private final static String UPSTREAM_SUFFIX = "/rx";
-    private final static String DOWNSTREAM_SUFFIX = "/tx";
-    private final static String MOTE_ID = "node";
-    private final static String GATEWAY_ID = "gateway";
-    private final static String APPLICATION_ID = "application";
+    final static String LEVEL_SEPARATOR = "/";
+    private final static String UPSTREAM_SUFFIX = LEVEL_SEPARATOR + Topic.Direction.UPSTREAM.getSuffix();
+    private final static String DOWNSTREAM_SUFFIX = LEVEL_SEPARATOR + Topic.Direction.DOWNSTREAM.getSuffix();
+    final static String MOTE_ID = "node";
+    final static String GATEWAY_ID = "gateway";
+    final static String APPLICATION_ID = "application";
 
-    public static String getGatewayToNetServer(long applicationId, long gatewayId, long nodeId) {
-        return getGatewayToNetServer("" + applicationId, "" + gatewayId, "" + nodeId);
+    // The maximum amount of rendered topics which are cached, e.g. against a server which sends arbitrary topics
+    private final static int MAX_PARSED_TOPICS = 1 << 16;
+
+    // The cached topics, so that every topic is only rendered once
+    private final static TopicTable topics = new TopicTable();
+    // The cached topics per rendered topic, so that every received topic is only parsed once
+    private final static Map<String, Topic> parsedTopics = new ConcurrentHashMap<>();
+
+    public static Topic getGatewayToNetServer(long applicationId, long gatewayId, long nodeId) {
+        return topics.get(applicationId, true, gatewayId, nodeId, Topic.Direction.UPSTREAM);
     }
 
     public static String getGatewayToNetServer(String applicationId, String gatewayId, String nodeId) {
         return createTopicWithGateway(applicationId, gatewayId, nodeId, UPSTREAM_SUFFIX);
     }
 
-    public static String getNetServerToGateway(long applicationId, long gatewayId, long nodeId) {
-        return getNetServerToGateway("" + applicationId, "" + gatewayId, "" + nodeId);
+    public static Topic getNetServerToGateway(long applicationId, long gatewayId, long nodeId) {
+        return topics.get(applicationId, true, gatewayId, nodeId, Topic.Direction.DOWNSTREAM);
     }
 
     public static String getNetServerToGateway(String applicationId, String gatewayId, String nodeId) {
         return createTopicWithGateway(applicationId, gatewayId, nodeId, DOWNSTREAM_SUFFIX);
     }
 
-    public static String getNetServerToApp(long applicationId, long nodeId) {
-        return getNetServerToApp("" + applicationId, "" + nodeId);
+    public static Topic getNetServerToApp(long applicationId, long nodeId) {
+        return topics.get(applicationId, false, 0L, nodeId, Topic.Direction.UPSTREAM);
     }
 
     public static String getNetServerToApp(String applicationId, String nodeId) {
         return createTopic(applicationId, nodeId, UPSTREAM_SUFFIX);
     }
 
-    public static String getAppToNetServer(long applicationId, long nodeId) {
-        return getAppToNetServer("" + applicationId, "" + nodeId);
+    public static Topic getAppToNetServer(long applicationId, long nodeId) {
+        return topics.get(applicationId, false, 0L, nodeId, Topic.Direction.DOWNSTREAM);
     }
 
     public static String getAppToNetServer(String applicationId, String nodeId) {
@@ -49,11 +63,11 @@ public class Topics {
     private static String createTopic(String applicationId, String nodeId, String suffix) {
         return new StringBuilder()
             .append(APPLICATION_ID)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(applicationId)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(MOTE_ID)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(nodeId)
             .append(suffix)
             .toString();
@@ -62,20 +76,54 @@ public class Topics {
     private static String createTopicWithGateway(String applicationId, String gatewayId, String nodeId, String suffix) {
         return new StringBuilder()
             .append(APPLICATION_ID)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(applicationId)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(GATEWAY_ID)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(gatewayId)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(MOTE_ID)
-            .append("/")
+            .append(LEVEL_SEPARATOR)
             .append(nodeId)
             .append(suffix)
             .toString();
     }
 
+    /**
+     * Parse a rendered topic (e.g. received from a real mqtt server)
+     * @param topic the rendered topic
+     * @return the cached typed topic
+     * @throws NoSuchElementException if the topic does not contain the required ids
+     */
+    public static Topic parse(String topic) {
+        var parsed = parsedTopics.get(topic);
+        if (parsed != null) {
+            return parsed;
+        }
+        parsed = createTopic(topic);
+        if (parsedTopics.size() < MAX_PARSED_TOPICS) {
+            parsedTopics.put(topic, parsed);
+        }
+        return parsed;
+    }
+
+    private static Topic createTopic(String topic) {
+        var direction = topic.endsWith(DOWNSTREAM_SUFFIX) ? Topic.Direction.DOWNSTREAM : Topic.Direction.UPSTREAM;
+        if (topic.contains(LEVEL_SEPARATOR + GATEWAY_ID + LEVEL_SEPARATOR)) {
+            return topics.get(getApp(topic), true, getGateway(topic), getMote(topic), direction);
+        }
+        return topics.get(getApp(topic), false, 0L, getMote(topic), direction);
+    }
+
+    /**
+     * Remove the cached rendered topics, e.g. of the devices of a previous run.
+     * The typed topics stay cached, so a topic which is parsed again is the same instance as before.
+     */
+    public static void clean() {
+        parsedTopics.clear();
+    }
+
     /**
      *
      * @param topic
@@ -104,11 +152,79 @@ public class Topics {
     }
 
     private static long getId(String idName, String topic) {
-        var list = Arrays.asList(topic.split("/"));
+        var list = Arrays.asList(topic.split(LEVEL_SEPARATOR));
         var index = list.indexOf(idName);
         if (index < 0 || index >= list.size() - 1) {
             throw new NoSuchElementException("required id not found: " + idName + " in the topic: " + topic);
         }
         return Long.parseLong(list.get(index + 1));
     }
+
+
+    /**
+     * An open addressing hash table of the topics, in which a topic is looked up by its ids without allocating.
+     * Lookups do not lock: slots are only ever filled (never emptied or moved), and a full table is replaced by
+     * a larger copy, which is only published once it is filled. Topics are only created under the lock.
+     */
+    private static class TopicTable {
+        private volatile AtomicReferenceArray<Topic> slots = new AtomicReferenceArray<>(256);
+        private int size = 0;
+
+        Topic get(long application, boolean hasGateway, long gateway, long node, Topic.Direction direction) {
+            int hash = spread(Topic.hash(application, hasGateway, gateway, node, direction));
+            var topic = find(slots, hash, application, hasGateway, gateway, node, direction);
+            return topic != null ? topic : create(hash, application, hasGateway, gateway, node, direction);
+        }
+
+        private synchronized Topic create(int hash, long application, boolean hasGateway, long gateway, long node,
+                                          Topic.Direction direction) {
+            var table = slots;
+            var topic = find(table, hash, application, hasGateway, gateway, node, direction);
+            if (topic != null) {
+                return topic;
+            }
+
+            // Keep the table at most half full, so the probe sequences stay short
+            if (2 * (size + 1) > table.length()) {
+                var larger = new AtomicReferenceArray<Topic>(2 * table.length());
+                for (int i = 0; i < table.length(); i++) {
+                    var existing = table.get(i);
+                    if (existing != null) {
+                        insert(larger, spread(existing.hashCode()), existing);
+                    }
+                }
+                table = larger;
+            }
+
+            topic = hasGateway ? new Topic(application, gateway, node, direction) : new Topic(application, node, direction);
+            insert(table, hash, topic);
+            size++;
+            slots = table;
+            return topic;
+        }
+
+        private static Topic find(AtomicReferenceArray<Topic> table, int hash, long application, boolean hasGateway,
+                                  long gateway, long node, Topic.Direction direction) {
+            int mask = table.length() - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                var topic = table.get(i);
+                if (topic == null || topic.matches(application, hasGateway, gateway, node, direction)) {
+                    return topic;
+                }
+            }
+        }
+
+        private static void insert(AtomicReferenceArray<Topic> table, int hash, Topic topic) {
+            int mask = table.length() - 1;
+            int i = hash & mask;
+            while (table.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            table.set(i, topic);
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
 }
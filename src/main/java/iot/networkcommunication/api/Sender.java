@@ -22,6 +22,13 @@ public interface Sender {
      */
     Optional<LoraTransmission> send(LoraWanPacket packet, Set<Receiver> receivers);
 
+    /**
+     *
+     * @param packet the packet to send
+     * @return the time on air of the packet with the current regional parameter (in milliseconds)
+     */
+    double getTimeOnAir(LoraWanPacket packet);
+
     /**
      *
      * @return if the device stay already transmitting a packet
@@ -47,7 +47,7 @@ public class SenderNoWaitPacket implements Sender {
                 throw new IllegalArgumentException("Payload size greater then the max size. Payload size: " + payloadSize + ", " +
                     "but max size allowed with this regional parameter is: " + regionalParameter.getMaximumPayloadSize());
             }
-            var timeOnAir = computeTimeOnAir(packet);
+            var timeOnAir = getTimeOnAir(packet);
             var stream = receivers.stream()
                 .map(r -> new Pair<>(r,
                     new LoraTransmission(sender.getEUI(), r.getID(), sender.getPosInt(), moveTo(r.getReceiverPositionAsInt(), transmissionPower),
@@ -76,7 +76,8 @@ public class SenderNoWaitPacket implements Sender {
      * https://docs.google.com/spreadsheets/d/1voGAtQAjC1qBmaVuP1ApNKs1ekgUjavHuVQIXyYSvNc/edit#gid=0
      * @return time on air in milliseconds
      */
-    private double computeTimeOnAir(LoraWanPacket packet) {
+    @Override
+    public double getTimeOnAir(LoraWanPacket packet) {
         /*((Math.pow(2,getSpreadingFactor())/getBandwidth())*(
                 (8+Math.max(Math.ceil(
                         (8*getContent().getPayload().length-4*getSpreadingFactor()+28+16 - 20*(getContent().hasHeader()? 1: 0))
@@ -0,0 +1,80 @@
+package iot.networkentity;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the recent uplinks of every device, to detect in O(1) the copies of an uplink received by several gateways.
+ * An uplink is identified by (DevEUI, frame counter, departure time). Per device only the last {@link #CAPACITY}
+ * uplinks are kept, and they are all evicted once an uplink departs more than the window after the most recent one,
+ * so the memory stays bounded regardless of the length of the run.
+ */
+class DeduplicationWindow {
+
+    // The amount of uplinks remembered per device
+    static final int CAPACITY = 8;
+
+    private final long windowInNanos;
+    private final Map<Long, Ring> devices;
+
+
+    /**
+     * @param window The time after the departure of an uplink in which copies of it are considered duplicates.
+     */
+    DeduplicationWindow(Duration window) {
+        this.windowInNanos = window.toNanos();
+        this.devices = new HashMap<>();
+    }
+
+
+    /**
+     * Check whether an uplink was already seen and remember it otherwise.
+     * @param devEUI The EUI of the device which sent the uplink.
+     * @param frameCounter The frame counter of the uplink.
+     * @param departureInNanos The departure time of the uplink (nanoseconds of the day).
+     * @return True if the uplink was already seen within the window.
+     */
+    boolean isDuplicate(long devEUI, short frameCounter, long departureInNanos) {
+        var ring = devices.computeIfAbsent(devEUI, k -> new Ring());
+        for (int i = 0; i < ring.size; i++) {
+            if (ring.frameCounters[i] == frameCounter && ring.departures[i] == departureInNanos) {
+                return true;
+            }
+        }
+        ring.add(frameCounter, departureInNanos, windowInNanos);
+        return false;
+    }
+
+    /**
+     * Forget all the uplinks.
+     */
+    void clear() {
+        devices.clear();
+    }
+
+
+    /**
+     * A ring buffer with the recent uplinks of a single device.
+     */
+    private static class Ring {
+        private final short[] frameCounters = new short[CAPACITY];
+        private final long[] departures = new long[CAPACITY];
+        private int next = 0;
+        private int size = 0;
+
+        void add(short frameCounter, long departureInNanos, long windowInNanos) {
+            // Evict everything when the most recent uplink is already outside of the window
+            int last = (next + CAPACITY - 1) % CAPACITY;
+            if (size > 0 && departureInNanos - departures[last] > windowInNanos) {
+                size = 0;
+                next = 0;
+            }
+
+            frameCounters[next] = frameCounter;
+            departures[next] = departureInNanos;
+            next = (next + 1) % CAPACITY;
+            size = Math.min(size + 1, CAPACITY);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package iot.networkentity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A ledger which accumulates the energy used by a network entity, per run.
+ * The ledger is updated when the energy is spent (at transmit time and when a receive window is used),
+ * so the current energy consumption can be read in O(1).
+ */
+public class EnergyLedger implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // The power drawn by the radio while receiving (in mW): 10.8 mA at 3.3 V for an SX1276 transceiver.
+    public static final double RECEIVE_POWER = 10.8 * 3.3;
+
+    // The energy used to transmit and to receive per run (in mJoule), indexed by run number.
+    private double[] transmitEnergy = new double[1];
+    private double[] receiveEnergy = new double[1];
+
+
+    /**
+     * Calculate the energy needed for a single transmission.
+     * @param powerSetting The power setting used for the transmission (in dBm).
+     * @param timeOnAir The time on air of the transmission (in ms).
+     * @return The energy needed for the transmission (in mJoule).
+     */
+    public static double getTransmitEnergy(int powerSetting, double timeOnAir) {
+        return Math.pow(10, ((double) powerSetting) / 10) * timeOnAir / 1000;
+    }
+
+    /**
+     * Register a transmission.
+     * @param run The run in which the transmission was sent.
+     * @param powerSetting The power setting used for the transmission (in dBm).
+     * @param timeOnAir The time on air of the transmission (in ms).
+     */
+    void addTransmission(int run, int powerSetting, double timeOnAir) {
+        ensureCapacity(run);
+        transmitEnergy[run] += getTransmitEnergy(powerSetting, timeOnAir);
+    }
+
+    /**
+     * Register the reception of a transmission during a receive window.
+     * @param run The run in which the transmission was received.
+     * @param timeOnAir The time on air of the received transmission (in ms).
+     */
+    void addReception(int run, double timeOnAir) {
+        ensureCapacity(run);
+        receiveEnergy[run] += RECEIVE_POWER * timeOnAir / 1000;
+    }
+
+    /**
+     * Clear the ledger of all the runs.
+     */
+    public void reset() {
+        Arrays.fill(transmitEnergy, 0.0);
+        Arrays.fill(receiveEnergy, 0.0);
+    }
+
+    private void ensureCapacity(int run) {
+        if (run >= transmitEnergy.length) {
+            int length = Math.max(run + 1, transmitEnergy.length * 2);
+            transmitEnergy = Arrays.copyOf(transmitEnergy, length);
+            receiveEnergy = Arrays.copyOf(receiveEnergy, length);
+        }
+    }
+
+
+    /**
+     * @param run The run.
+     * @return The energy used to transmit in the given run (in mJoule).
+     */
+    public double getTransmitEnergy(int run) {
+        return run < transmitEnergy.length ? transmitEnergy[run] : 0.0;
+    }
+
+    /**
+     * @param run The run.
+     * @return The energy used to receive in the given run (in mJoule).
+     */
+    public double getReceiveEnergy(int run) {
+        return run < receiveEnergy.length ? receiveEnergy[run] : 0.0;
+    }
+
+    /**
+     * @param run The run.
+     * @return The total energy used in the given run (in mJoule).
+     */
+    public double getUsedEnergy(int run) {
+        return getTransmitEnergy(run) + getReceiveEnergy(run);
+    }
+}
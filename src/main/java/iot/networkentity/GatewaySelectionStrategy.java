@@ -0,0 +1,19 @@
+package iot.networkentity;
+
+/**
+ * Strategy of the {@link NetworkServer} to choose the {@link Gateway} through which a downlink is sent to a {@link Mote}.
+ * Every gateway which heard the mote recently gets a score based on the last uplink it received,
+ * the gateway with the highest score is chosen.
+ */
+@FunctionalInterface
+public interface GatewaySelectionStrategy {
+
+    /**
+     *
+     * @param gatewayEUI the EUI of the gateway
+     * @param receivedPower the power with which the gateway received the last uplink of the mote (in dBm)
+     * @param departureInNanos the departure time of that uplink (nanoseconds of the day)
+     * @return the score of the gateway, a higher score is better
+     */
+    double score(long gatewayEUI, double receivedPower, long departureInNanos);
+}
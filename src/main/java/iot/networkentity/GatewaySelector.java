@@ -0,0 +1,159 @@
+package iot.networkentity;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * Maintains the best gateway to reach every device while the uplinks arrive, so a downlink can be routed in O(1).
+ * Per device only (gateway EUI, received power, departure time, score) of the last uplink heard by each gateway is kept.
+ * A gateway which did not hear the device within the staleness window before its most recent uplink is no longer used.
+ */
+class GatewaySelector {
+
+    private final long stalenessInNanos;
+    private final Map<Long, Links> devices;
+    private GatewaySelectionStrategy strategy;
+
+
+    /**
+     * @param staleness The time after which a gateway which did not hear a device anymore is forgotten.
+     * @param strategy The strategy used to score the gateways.
+     */
+    GatewaySelector(Duration staleness, GatewaySelectionStrategy strategy) {
+        this.stalenessInNanos = staleness.toNanos();
+        this.devices = new HashMap<>();
+        this.strategy = strategy;
+    }
+
+
+    /**
+     * Change the strategy and score all the known gateways again.
+     * @param strategy The strategy used to score the gateways.
+     */
+    void setStrategy(GatewaySelectionStrategy strategy) {
+        this.strategy = strategy;
+        devices.values().forEach(Links::rescore);
+    }
+
+    /**
+     * Register the reception of an uplink by a gateway.
+     * @param devEUI The EUI of the device which sent the uplink.
+     * @param gatewayEUI The EUI of the gateway which received the uplink.
+     * @param receivedPower The power with which the uplink was received.
+     * @param departureInNanos The departure time of the uplink (nanoseconds of the day).
+     */
+    void update(long devEUI, long gatewayEUI, double receivedPower, long departureInNanos) {
+        var links = devices.computeIfAbsent(devEUI, k -> new Links());
+        links.update(gatewayEUI, receivedPower, departureInNanos, strategy.score(gatewayEUI, receivedPower, departureInNanos));
+    }
+
+    /**
+     * @param devEUI The EUI of the device.
+     * @return The EUI of the best gateway to reach the device, empty if no gateway heard the device.
+     */
+    OptionalLong getBestGateway(long devEUI) {
+        var links = devices.get(devEUI);
+        return links == null || links.best < 0 ? OptionalLong.empty() : OptionalLong.of(links.gateways[links.best]);
+    }
+
+    /**
+     * Forget all the devices.
+     */
+    void clear() {
+        devices.clear();
+    }
+
+
+    /**
+     * The gateways which heard a single device, stored in parallel arrays.
+     */
+    private class Links {
+        private long[] gateways = new long[2];
+        private double[] receivedPowers = new double[2];
+        private long[] departures = new long[2];
+        private double[] scores = new double[2];
+        private int size = 0;
+
+        // The index of the best gateway, -1 if there is none
+        private int best = -1;
+        // The departure time of the most recent uplink of the device
+        private long latest = Long.MIN_VALUE;
+
+        void update(long gateway, double receivedPower, long departure, double score) {
+            int index = indexOf(gateway);
+            if (index < 0) {
+                index = add(gateway);
+            }
+            double previousScore = scores[index];
+            receivedPowers[index] = receivedPower;
+            departures[index] = departure;
+            scores[index] = score;
+            latest = Math.max(latest, departure);
+
+            if (best < 0 || isStale(best) || (index == best && score < previousScore)) {
+                // The best gateway got worse or expired: find the best of the remaining ones
+                rescan();
+            } else if (index != best && score > scores[best]) {
+                best = index;
+            }
+        }
+
+        private boolean isStale(int index) {
+            return latest - departures[index] > stalenessInNanos;
+        }
+
+        private int indexOf(long gateway) {
+            for (int i = 0; i < size; i++) {
+                if (gateways[i] == gateway) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int add(long gateway) {
+            if (size == gateways.length) {
+                int length = size * 2;
+                gateways = Arrays.copyOf(gateways, length);
+                receivedPowers = Arrays.copyOf(receivedPowers, length);
+                departures = Arrays.copyOf(departures, length);
+                scores = Arrays.copyOf(scores, length);
+            }
+            gateways[size] = gateway;
+            scores[size] = Double.NEGATIVE_INFINITY;
+            return size++;
+        }
+
+        void rescore() {
+            for (int i = 0; i < size; i++) {
+                scores[i] = strategy.score(gateways[i], receivedPowers[i], departures[i]);
+            }
+            rescan();
+        }
+
+        /**
+         * Remove the stale gateways and select the best one of the remaining gateways.
+         */
+        private void rescan() {
+            int kept = 0;
+            best = -1;
+            for (int i = 0; i < size; i++) {
+                if (isStale(i)) {
+                    continue;
+                }
+                gateways[kept] = gateways[i];
+                receivedPowers[kept] = receivedPowers[i];
+                departures[kept] = departures[i];
+                scores[kept] = scores[i];
+                if (best < 0 || scores[kept] > scores[best]) {
+                    best = kept;
+                }
+                kept++;
+            }
+            size = kept;
+        }
+    }
+}
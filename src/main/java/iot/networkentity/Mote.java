@@ -28,6 +28,8 @@ public class Mote extends NetworkEntity {
     //both in seconds
     private static final int DEFAULT_START_SENDING_OFFSET = 1;
     private static final int DEFAULT_PERIOD_SENDING_PACKET = 20;
+    // The amount of symbols during which a receive window listens for the preamble of a downlink
+    private static final int RECEIVE_WINDOW_SYMBOLS = 8;
     // default application identifier
     private static final long DEFAULT_APPLICATION_EUI = 1;
 
@@ -141,12 +143,15 @@ public class Mote extends NetworkEntity {
     @Override
     protected void OnReceive(LoraTransmission transmission) {
         var packet = transmission.getContent();
-        //if is a message sent to from a gateway to this mote
-        if (canReceive && getEUI() == packet.getReceiverEUI() &&
-            this.getEnvironment().getGateways().stream()
+        //if is a message sent from a gateway while the receive window is open
+        if (canReceive && this.getEnvironment().getGateways().stream()
                 .anyMatch(m -> m.getEUI() == packet.getSenderEUI())) {
-            canReceive = false;
-            receivedPacketStrategy.addReceivedMessage(packet);
+            // The radio receives the whole downlink before it knows to which device it is addressed
+            getEnergyLedger().addReception(getEnvironment().getNumberOfRuns() - 1, transmission.getTimeOnAir());
+            if (getEUI() == packet.getReceiverEUI()) {
+                canReceive = false;
+                receivedPacketStrategy.addReceivedMessage(packet);
+            }
         }
     }
 
@@ -301,12 +306,22 @@ public class Mote extends NetworkEntity {
                 (packet.getPayload()[0] == MessageType.KEEPALIVE.getCode() ||
                     !Arrays.equals(lastPacketSent.getPayload(), packet.getPayload())))) {
             send(packet);
-            canReceive = true;
+            openReceiveWindow();
             lastPacketSent = packet;
             resetKeepAliveTrigger(0);
         }
     }
 
+    /**
+     * Open the receive window after an uplink, which uses energy also if no downlink arrives.
+     */
+    private void openReceiveWindow() {
+        canReceive = true;
+        var regionalParameter = getRegionalParameter();
+        double windowTime = RECEIVE_WINDOW_SYMBOLS * Math.pow(2, regionalParameter.getSpreadingFactor()) / regionalParameter.getBandwidth();
+        getEnergyLedger().addReception(getEnvironment().getNumberOfRuns() - 1, windowTime);
+    }
+
     protected LoraWanPacket composePacket(Byte[] data, Map<MacCommand, Byte[]> macCommands) {
         byte[] payload = new byte[data.length + macCommands.size() + 1];
         payload[0] = MessageType.SENSOR_VALUE.getCode();
@@ -61,6 +61,9 @@ public abstract class NetworkEntity implements Serializable {
 
     private Environment environment;
 
+    // The energy used by the entity in every run
+    private final EnergyLedger energyLedger = new EnergyLedger();
+
     /**
      *  A constructor generating a Network with a given x-position, y-position, spreading factor, transmission power (threshold) and environment.
      * @param xPos  The x-coordinate of the entity on the map.
@@ -251,6 +254,14 @@ public abstract class NetworkEntity implements Serializable {
         return this.sender.getRegionalParameter().getSpreadingFactor();
     }
 
+    /**
+     * Returns the regional parameter (data rate) used for the transmissions.
+     * @return The regional parameter used for the transmissions.
+     */
+    protected RegionalParameter getRegionalParameter() {
+        return this.sender.getRegionalParameter();
+    }
+
     /**
      * Checks if a spreading factor is valid and then sets it to the spreading factor.
      * @param SF the spreading factor to set.
@@ -279,19 +290,31 @@ public abstract class NetworkEntity implements Serializable {
             .filter(ne -> filterLoraSend(ne, message))
             .map(NetworkEntity::getReceiver)
             .collect(Collectors.toSet());
+        var timeOnAir = sender.getTimeOnAir(message);
         sender.send(message, recs)
             .ifPresent(t -> {
                 Statistics statistics = Statistics.getInstance();
                 statistics.addPowerSettingEntry(this.getEUI(), environment.getClock().getTime().toSecondOfDay(), getTransmissionPower());
-                statistics.addSpreadingFactorEntry(this.getEUI(), this.getSF());
+                statistics.addSpreadingFactorEntry(this.getEUI(), environment.getClock().getTime().toSecondOfDay(), this.getSF());
                 statistics.addSentTransmissionsEntry(this.getEUI(), t);
             });
+        // The radio transmits for the whole time on air, also if no receiver hears the transmission
+        energyLedger.addTransmission(environment.getNumberOfRuns() - 1, getTransmissionPower(), timeOnAir);
     }
 
     public Receiver getReceiver() {
         return receiver;
     }
 
+    /**
+     * Returns the ledger with the energy used by the entity.
+     * @return The energy ledger of the entity.
+     */
+    @Basic
+    public EnergyLedger getEnergyLedger() {
+        return energyLedger;
+    }
+
     /**
      * Returns the unique identifier.
      * @return the unique identifier.
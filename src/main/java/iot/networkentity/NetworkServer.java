@@ -1,38 +1,70 @@
 package iot.networkentity;
 
-import iot.lora.BasicFrameHeader;
-import iot.lora.LoraTransmission;
-import iot.lora.LoraWanPacket;
 import iot.mqtt.*;
+import util.SettingsReader;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.function.BinaryOperator;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * The network server, which forwards the uplinks from the gateways to the applications
+ * and the downlinks from the applications to the best gateway to reach a mote.
+ *
+ * The devices are partitioned by DevEUI over a number of shards (see {@link NetworkServerShard}).
+ * Without shards (the default) the messages are handled by the thread which delivers them,
+ * otherwise every shard handles the messages of its devices on its own thread.
+ */
 public class NetworkServer {
 
-    // Map moteId -> (Map gatewayId -> lastTransmission)
-    private final Map<Long, Map<Long, LoraTransmission>> transmissionReceived;
-    private final Map<Long, List<LoraTransmission>> historyMote;
+    // The time in which copies of an uplink (received by other gateways) are considered duplicates
+    private static final Duration DEDUPLICATION_WINDOW = Duration.ofMinutes(1);
+
+    // The time after which a gateway which did not hear a mote anymore is no longer used to reach it
+    private static final Duration GATEWAY_STALENESS = Duration.ofHours(1);
+
     private final MqttClientBasicApi mqttClient;
-    private BinaryOperator<Map.Entry<Long, LoraTransmission>> chooseGatewayStrategy = this::chooseByTransmissionPower;
-    private short frameCounter;
+    private final NetworkServerShard[] shards;
+    // The amount of tasks which are queued or being handled by the shards
+    private final AtomicLong pending;
 
     public NetworkServer(MqttClientBasicApi mqttClient) {
+        this(mqttClient, SettingsReader.getInstance().getNetworkServerShards());
+    }
+
+    /**
+     * @param mqttClient the mqtt client of the server
+     * @param shardCount the amount of shards with their own thread, 0 to handle the messages on the delivering thread
+     * @throws IllegalArgumentException if shards are requested while the mqtt client delivers synchronously.
+     */
+    public NetworkServer(MqttClientBasicApi mqttClient, int shardCount) {
+        if (shardCount > 0 && !mqttClient.isAsynchronousDelivery()) {
+            // The shards would call the subscribers (e.g. the applications) concurrently
+            throw new IllegalArgumentException(String.format("A network server with %d shards requires asynchronous " +
+                "mqtt delivery (mqtt.AsyncDelivery), or 0 shards (networkserver.Shards).", shardCount));
+        }
+
         this.mqttClient = mqttClient;
-        transmissionReceived = new HashMap<>();
-        historyMote = new HashMap<>();
+        this.pending = new AtomicLong();
+
+        shards = new NetworkServerShard[Math.max(shardCount, 1)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new NetworkServerShard(mqttClient, pending, DEDUPLICATION_WINDOW, GATEWAY_STALENESS,
+                NetworkServer::chooseByTransmissionPower);
+            if (shardCount > 0) {
+                shards[i].start("network-server-shard-" + i);
+            }
+        }
+
         subscribeToGateways();
         subscribeToApps();
-        frameCounter = 0;
     }
 
     public void reset() {
-        transmissionReceived.clear();
-        historyMote.clear();
-        frameCounter = 0;
+        for (var shard : shards) {
+            shard.submit(shard::reset);
+        }
+        awaitIdle();
     }
 
     /**
@@ -40,31 +72,37 @@ public class NetworkServer {
      * @param strategy
      * @return
      */
-    public NetworkServer setChooseGatewayStrategy(BinaryOperator<Map.Entry<Long, LoraTransmission>> strategy) {
-        chooseGatewayStrategy = strategy;
+    public NetworkServer setChooseGatewayStrategy(GatewaySelectionStrategy strategy) {
+        for (var shard : shards) {
+            shard.submit(() -> shard.setChooseGatewayStrategy(strategy));
+        }
         return this;
     }
 
+    /**
+     * Wait until the shards handled all the messages which were handed off to them.
+     * @return true if there were messages left to handle
+     */
+    public boolean awaitIdle() {
+        if (pending.get() == 0) {
+            return false;
+        }
+        while (pending.get() > 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    private NetworkServerShard shardOf(long devEUI) {
+        return shards[Math.floorMod(Long.hashCode(devEUI), shards.length)];
+    }
+
     private void subscribeToGateways() {
         mqttClient.subscribe(this, Topics.getGatewayToNetServer("+", "+", "+"),
             TransmissionWrapper.class,
             (topic, msg) -> {
-                var transmission = msg.getTransmission();
-                //get mote id
-                var moteId = Topics.getMote(topic);
-                //get gateway id
-                var gatewayId = Topics.getGateway(topic);
-                //add trans to map with all check
-                if (!transmissionReceived.containsKey(moteId)) {
-                    transmissionReceived.put(moteId, new HashMap<>());
-                    historyMote.put(moteId, new LinkedList<>());
-                }
-                transmissionReceived.get(moteId).put(gatewayId, transmission);
-                //check if packet is duplicated (is not send to app)
-                if (historyMote.get(moteId).stream().noneMatch(t -> t.equals(transmission))) {
-                    mqttClient.publish(Topics.getNetServerToApp(transmission.getContent().getReceiverEUI(), moteId), msg);
-                }
-                historyMote.get(moteId).add(transmission);
+                var shard = shardOf(topic.getNode());
+                shard.submit(() -> shard.handleUplink(topic, msg));
             });
     }
 
@@ -72,33 +110,13 @@ public class NetworkServer {
         mqttClient.subscribe(this, Topics.getAppToNetServer("+", "+"),
             BasicMqttMessage.class,
             (topic, msg) -> {
-                //get mote id
-                var moteId = Topics.getMote(topic);
-                //find best gateway
-                if (transmissionReceived.containsKey(moteId)) {
-                    var gatewayId = transmissionReceived.get(moteId)
-                        .entrySet()
-                        .stream()
-                        .reduce((e1, e2) -> chooseGatewayStrategy.apply(e1, e2))
-                        .map(Map.Entry::getKey)
-                        .orElseThrow(() -> new IllegalStateException("no gateway available for the mote: " + moteId));
-                    //send to best gateway
-                    var packet = new LoraWanPacket(gatewayId, moteId, msg.getDataAsArray(),
-                        new BasicFrameHeader().setFCnt(incrementFrameCounter()), msg.getMacCommands());
-                    mqttClient.publish(Topics.getNetServerToGateway(Topics.getApp(topic), gatewayId, moteId),
-                        new LoraWanPacketWrapper(packet));
-                }
+                var shard = shardOf(topic.getNode());
+                shard.submit(() -> shard.handleDownlink(topic, msg));
             });
     }
 
-    private short incrementFrameCounter() {
-        return frameCounter++;
-    }
-
-    private Map.Entry<Long, LoraTransmission> chooseByTransmissionPower(
-            Map.Entry<Long, LoraTransmission> e1,
-            Map.Entry<Long, LoraTransmission> e2) {
-        return e1.getValue().getTransmissionPower() >= e2.getValue().getTransmissionPower() ? e1 : e2;
+    private static double chooseByTransmissionPower(long gatewayEUI, double receivedPower, long departureInNanos) {
+        return receivedPower;
     }
 
     public void reconnect() {
@@ -0,0 +1,143 @@
+package iot.networkentity;
+
+import iot.lora.BasicFrameHeader;
+import iot.lora.LoraWanPacket;
+import iot.mqtt.*;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A partition of the {@link NetworkServer}, which handles the messages of a subset of the devices.
+ * The shard owns the deduplication, gateway selection and frame counter state of its devices,
+ * which is only accessed by a single thread: the worker of the shard, or the caller if the shard has no worker.
+ *
+ * The messages are handed off to the worker through a lock-free queue, in order of arrival,
+ * so the messages of a single device are handled in order.
+ */
+class NetworkServerShard implements Runnable {
+
+    private final MqttClientBasicApi mqttClient;
+    // The amount of tasks which are queued or being handled, shared by all the shards of the server
+    private final AtomicLong pending;
+
+    // The best gateway to reach every mote, updated for every received uplink
+    private final GatewaySelector gatewaySelector;
+    // The recent uplinks per mote, to filter out the duplicates
+    private final DeduplicationWindow recentUplinks;
+    private short frameCounter;
+
+    private final Queue<Runnable> tasks;
+    private Thread worker;
+
+
+    NetworkServerShard(MqttClientBasicApi mqttClient, AtomicLong pending, Duration deduplicationWindow,
+                       Duration gatewayStaleness, GatewaySelectionStrategy strategy) {
+        this.mqttClient = mqttClient;
+        this.pending = pending;
+        this.gatewaySelector = new GatewaySelector(gatewayStaleness, strategy);
+        this.recentUplinks = new DeduplicationWindow(deduplicationWindow);
+        this.frameCounter = 0;
+        this.tasks = new ConcurrentLinkedQueue<>();
+    }
+
+
+    /**
+     * Start a worker which handles the tasks of this shard, otherwise the tasks are handled by the caller.
+     * @param name the name of the worker thread
+     * @return this
+     */
+    NetworkServerShard start(String name) {
+        worker = new Thread(this, name);
+        worker.setDaemon(true);
+        worker.start();
+        return this;
+    }
+
+    /**
+     * Hand off a task to the shard.
+     * @param task the task, which may access the state of the shard
+     */
+    void submit(Runnable task) {
+        if (worker == null) {
+            task.run();
+            return;
+        }
+        pending.incrementAndGet();
+        tasks.offer(task);
+        LockSupport.unpark(worker);
+    }
+
+    @Override
+    public void run() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            var task = tasks.poll();
+            if (task == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+
+    // region handlers
+
+    void handleUplink(Topic topic, TransmissionWrapper msg) {
+        var transmission = msg.getTransmission();
+        //get mote id
+        var moteId = topic.getNode();
+        //get gateway id
+        var gatewayId = topic.getGateway();
+        //update the best gateway to reach the mote
+        gatewaySelector.update(moteId, gatewayId, transmission.getTransmissionPower(),
+            transmission.getDepartureTime().toNanoOfDay());
+        //check if packet is duplicated (is not send to app)
+        var packet = transmission.getContent();
+        if (!recentUplinks.isDuplicate(packet.getSenderEUI(), packet.getFrameHeader().getFCntAsShort(),
+            transmission.getDepartureTime().toNanoOfDay())) {
+            mqttClient.publish(Topics.getNetServerToApp(packet.getReceiverEUI(), moteId), msg);
+        }
+    }
+
+    void handleDownlink(Topic topic, BasicMqttMessage msg) {
+        //get mote id
+        var moteId = topic.getNode();
+        //find best gateway
+        var bestGateway = gatewaySelector.getBestGateway(moteId);
+        if (bestGateway.isPresent()) {
+            var gatewayId = bestGateway.getAsLong();
+            //send to best gateway
+            var packet = new LoraWanPacket(gatewayId, moteId, msg.getDataAsArray(),
+                new BasicFrameHeader().setFCnt(incrementFrameCounter()), msg.getMacCommands());
+            mqttClient.publish(Topics.getNetServerToGateway(topic.getApplication(), gatewayId, moteId),
+                new LoraWanPacketWrapper(packet));
+        }
+    }
+
+    void setChooseGatewayStrategy(GatewaySelectionStrategy strategy) {
+        gatewaySelector.setStrategy(strategy);
+    }
+
+    void reset() {
+        gatewaySelector.clear();
+        recentUplinks.clear();
+        frameCounter = 0;
+    }
+
+    private short incrementFrameCounter() {
+        return frameCounter++;
+    }
+
+    // endregion
+}
@@ -2,14 +2,16 @@ package iot.strategy.response.gateway;
 
 import iot.Environment;
 import iot.lora.LoraWanPacket;
+import iot.mqtt.SimulationBoundSubscriber;
 import iot.networkentity.Gateway;
 
 import java.util.Optional;
 
 /**
  * Strategy to define with which packet a {@link Gateway} has to reply to a {@link iot.networkentity.Mote}
+ * The messages for a strategy are always handled by the simulation thread, since the strategy acts on the environment.
  */
-public interface ResponseStrategy {
+public interface ResponseStrategy extends SimulationBoundSubscriber {
 
     /**
      * initialize the strategy
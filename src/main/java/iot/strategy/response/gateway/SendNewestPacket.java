@@ -40,7 +40,7 @@ public class SendNewestPacket implements ResponseStrategy {
             .map(m -> new Pair<>(m.getApplicationEUI(), m.getEUI()))
             .forEach(m -> gateway.getMqttClient().subscribe(
                 this,
-                Topics.getNetServerToGateway(m.getLeft(), gateway.getEUI(), m.getRight()),
+                Topics.getNetServerToGateway(m.getLeft(), gateway.getEUI(), m.getRight()).toString(),
                 LoraWanPacketWrapper.class,
                 (t, msg) -> packetBuffer.put(m, msg.getPacket())
             ));
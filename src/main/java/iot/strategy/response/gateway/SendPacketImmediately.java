@@ -32,7 +32,7 @@ public class SendPacketImmediately implements ResponseStrategy {
             .map(m -> new Pair<>(m.getApplicationEUI(), m.getEUI()))
             .forEach(m -> gateway.getMqttClient().subscribe(
                 this,
-                Topics.getNetServerToGateway(m.getLeft(), gateway.getEUI(), m.getRight()),
+                Topics.getNetServerToGateway(m.getLeft(), gateway.getEUI(), m.getRight()).toString(),
                 LoraWanPacketWrapper.class,
                 (t, msg) -> gateway.sendToDevice(msg.getPacket())
             ));
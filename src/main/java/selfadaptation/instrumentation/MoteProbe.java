@@ -61,4 +61,24 @@ public class MoteProbe {
     public int getPowerSetting(Mote mote) {
         return mote.getTransmissionPower();
     }
+
+    /**
+     * Returns the energy used by a given mote in the current run.
+     * @param mote The mote to probe.
+     * @return The energy used to transmit and receive in the current run (in mJoule).
+     */
+    public double getUsedEnergy(Mote mote) {
+        int run = SimulationRunner.getInstance().getEnvironment().getNumberOfRuns() - 1;
+        return mote.getEnergyLedger().getUsedEnergy(run);
+    }
+
+    /**
+     * Returns the energy used by a given mote to transmit in the current run.
+     * @param mote The mote to probe.
+     * @return The energy used to transmit in the current run (in mJoule).
+     */
+    public double getTransmitEnergy(Mote mote) {
+        int run = SimulationRunner.getInstance().getEnvironment().getNumberOfRuns() - 1;
+        return mote.getEnergyLedger().getTransmitEnergy(run);
+    }
 }
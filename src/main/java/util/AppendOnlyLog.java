@@ -0,0 +1,91 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An append-only log with a single writer and any number of concurrent readers, without locks.
+ *
+ * Elements are stored in fixed size chunks, so appending never copies elements that might be read concurrently.
+ * The writer publishes every append through a volatile size. A reader takes a snapshot by reading that size once:
+ * all elements below it are fully published and never change afterwards, which makes the snapshot consistent
+ * without blocking the writer.
+ *
+ * NOTE: only a single thread may append at a time (e.g. the simulation thread).
+ * @param <E> The type of the elements in the log.
+ */
+public class AppendOnlyLog<E> {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Object[][] chunks = new Object[4][];
+    private volatile int size = 0;
+
+
+    /**
+     * Append an element at the end of the log (single writer only).
+     * @param element The element to append.
+     */
+    public void append(E element) {
+        int index = size;
+        int chunk = index >>> CHUNK_SHIFT;
+
+        Object[][] directory = chunks;
+        if (chunk == directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+            chunks = directory;
+        }
+        if (directory[chunk] == null) {
+            directory[chunk] = new Object[CHUNK_SIZE];
+        }
+        directory[chunk][index & CHUNK_MASK] = element;
+
+        // Publish the element to the readers
+        size = index + 1;
+    }
+
+    /**
+     * @return The amount of published elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Take a consistent snapshot of the log in O(1).
+     * @return An unmodifiable list view of all the elements which were published at the time of the call.
+     */
+    public List<E> snapshot() {
+        // Read the size before the chunks: the directory is then at least as recent as the published elements
+        int snapshotSize = size;
+        return new Snapshot<>(chunks, snapshotSize);
+    }
+
+
+    private static class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[][] chunks;
+        private final int size;
+
+        Snapshot(Object[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for snapshot of size %d", index, size));
+            }
+            return (E) chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
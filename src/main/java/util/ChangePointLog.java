@@ -0,0 +1,242 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A log of integer values recorded for every entry (e.g. every transmission), stored as change-points.
+ *
+ * Only the entries at which the value changes (or a new run starts) are stored as (entry, run, time, value),
+ * the value of any other entry is found with a binary search over the change-points.
+ * Like {@link AppendOnlyLog}, the log has a single writer and readers take consistent snapshots without locks.
+ *
+ * NOTE: only a single thread may record at a time (e.g. the simulation thread), with non-decreasing run numbers.
+ */
+public class ChangePointLog {
+    // The fields of a change-point, stored consecutively in a single array
+    private static final int ENTRY = 0;
+    private static final int RUN = 1;
+    private static final int TIME = 2;
+    private static final int VALUE = 3;
+    private static final int STRIDE = 4;
+
+    private volatile int[] points = new int[STRIDE * 4];
+    private volatile int pointCount = 0;
+    private volatile int entryCount = 0;
+
+
+    /**
+     * Record the value of the next entry (single writer only).
+     * @param run The run of the entry.
+     * @param timeInSeconds The time of the entry.
+     * @param value The value of the entry.
+     */
+    public void record(int run, int timeInSeconds, int value) {
+        int entry = entryCount;
+        int count = pointCount;
+
+        int[] current = points;
+        if (count == 0 || current[(count - 1) * STRIDE + RUN] != run || current[(count - 1) * STRIDE + VALUE] != value) {
+            if ((count + 1) * STRIDE > current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                points = current;
+            }
+            int offset = count * STRIDE;
+            current[offset + ENTRY] = entry;
+            current[offset + RUN] = run;
+            current[offset + TIME] = timeInSeconds;
+            current[offset + VALUE] = value;
+            pointCount = count + 1;
+        }
+
+        // Publish the entry to the readers
+        entryCount = entry + 1;
+    }
+
+    /**
+     * @return The amount of published entries.
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * @return The value of the last recorded entry (single writer only, or a reader after checking {@link #size()}).
+     * @throws IllegalStateException If no entry was recorded yet.
+     */
+    public int getLastValue() {
+        int count = pointCount;
+        if (count == 0) {
+            throw new IllegalStateException("No entry was recorded in the change-point log.");
+        }
+        return points[(count - 1) * STRIDE + VALUE];
+    }
+
+    /**
+     * Take a consistent snapshot of the log in O(1).
+     * @return A snapshot containing all the entries which were published at the time of the call.
+     */
+    public Snapshot snapshot() {
+        // Read the counts before the points: the array is then at least as recent as the published change-points
+        int entries = entryCount;
+        int count = pointCount;
+        return new Snapshot(points, count, entries);
+    }
+
+
+    /**
+     * An immutable view of a change-point log.
+     */
+    public static class Snapshot {
+        private final int[] points;
+        private final int pointCount;
+        private final int entryCount;
+
+        private Snapshot(int[] points, int pointCount, int entryCount) {
+            this.points = points;
+            this.entryCount = entryCount;
+            // A change-point might have been published after the entry count was read
+            int count = pointCount;
+            while (count > 0 && points[(count - 1) * STRIDE + ENTRY] >= entryCount) {
+                count--;
+            }
+            this.pointCount = count;
+        }
+
+        /**
+         * @return The amount of entries in the snapshot.
+         */
+        public int size() {
+            return entryCount;
+        }
+
+        /**
+         * Get the value of an entry through a binary search over the change-points.
+         * @param entry The index of the entry.
+         * @return The value of the entry.
+         */
+        public int getValue(int entry) {
+            if (entry < 0 || entry >= entryCount) {
+                throw new IndexOutOfBoundsException(String.format("Entry %d out of bounds for snapshot of size %d", entry, entryCount));
+            }
+            return points[findChangePoint(entry) * STRIDE + VALUE];
+        }
+
+        /**
+         * @param run The run.
+         * @return The index of the first entry of the given run, or the index of the first entry of the next run
+         *         (or the size of the snapshot) if the run has no entries.
+         */
+        public int getFirstEntry(int run) {
+            // Binary search for the first change-point with a run greater than or equal to the given run
+            int low = 0;
+            int high = pointCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (points[middle * STRIDE + RUN] < run) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low == pointCount ? entryCount : points[low * STRIDE + ENTRY];
+        }
+
+        /**
+         * @param run The run.
+         * @return The values of all the entries of the given run, in order.
+         */
+        public List<Integer> getValues(int run) {
+            int from = getFirstEntry(run);
+            int to = getFirstEntry(run + 1);
+            return new Values(from, to);
+        }
+
+        /**
+         * @return The amount of change-points in the snapshot.
+         */
+        public int getChangePointCount() {
+            return pointCount;
+        }
+
+        /**
+         * @param changePoint The index of the change-point.
+         * @return The index of the first entry with the value of the change-point.
+         */
+        public int getChangePointEntry(int changePoint) {
+            return getChangePointField(changePoint, ENTRY);
+        }
+
+        /**
+         * @param changePoint The index of the change-point.
+         * @return The run of the change-point.
+         */
+        public int getChangePointRun(int changePoint) {
+            return getChangePointField(changePoint, RUN);
+        }
+
+        /**
+         * @param changePoint The index of the change-point.
+         * @return The time at which the value changed.
+         */
+        public int getChangePointTime(int changePoint) {
+            return getChangePointField(changePoint, TIME);
+        }
+
+        /**
+         * @param changePoint The index of the change-point.
+         * @return The new value at the change-point.
+         */
+        public int getChangePointValue(int changePoint) {
+            return getChangePointField(changePoint, VALUE);
+        }
+
+        private int getChangePointField(int changePoint, int field) {
+            if (changePoint < 0 || changePoint >= pointCount) {
+                throw new IndexOutOfBoundsException(String.format("Change-point %d out of bounds for %d change-points", changePoint, pointCount));
+            }
+            return points[changePoint * STRIDE + field];
+        }
+
+        private int findChangePoint(int entry) {
+            // Binary search for the last change-point at or before the given entry
+            int low = 0;
+            int high = pointCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (points[middle * STRIDE + ENTRY] <= entry) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+
+        private class Values extends AbstractList<Integer> implements RandomAccess {
+            private final int from;
+            private final int to;
+
+            Values(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            public Integer get(int index) {
+                if (index < 0 || index >= size()) {
+                    throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size()));
+                }
+                return getValue(from + index);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package util;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only snapshot of a {@link GraphStructure} in compressed sparse row form, for routing without boxing or lookups.
+ * The waypoints are numbered 0..n-1 (nodes) and the connections 0..m-1 (edges), grouped by the node at which they start.
+ * The edges of a node keep the order of {@link GraphStructure#getOutgoingConnectionsById(long)}.
+ */
+public final class CompactGraph {
+
+    // The waypoint Id and position of every node
+    private final long[] wayPointIds;
+    private final GeoPosition[] positions;
+    private final Map<Long, Integer> nodes;
+
+    // The edges which start at node i are edges outgoingOffsets[i] .. outgoingOffsets[i + 1] - 1
+    private final int[] outgoingOffsets;
+    // The source node, destination node and connection Id of every edge
+    private final int[] sources;
+    private final int[] targets;
+    private final long[] connectionIds;
+
+    // The edges which end at node i are incomingEdges[incomingOffsets[i]] .. incomingEdges[incomingOffsets[i + 1] - 1]
+    private final int[] incomingOffsets;
+    private final int[] incomingEdges;
+
+
+    CompactGraph(GraphStructure graph) {
+        var wayPoints = graph.getWayPoints();
+        int nodeCount = wayPoints.size();
+        int edgeCount = graph.getConnections().size();
+
+        wayPointIds = new long[nodeCount];
+        positions = new GeoPosition[nodeCount];
+        nodes = new HashMap<>();
+        int node = 0;
+        for (var wayPoint : wayPoints.entrySet()) {
+            wayPointIds[node] = wayPoint.getKey();
+            positions[node] = wayPoint.getValue();
+            nodes.put(wayPoint.getKey(), node);
+            node++;
+        }
+
+        outgoingOffsets = new int[nodeCount + 1];
+        sources = new int[edgeCount];
+        targets = new int[edgeCount];
+        connectionIds = new long[edgeCount];
+        int[] incomingCounts = new int[nodeCount + 1];
+        int edge = 0;
+        for (node = 0; node < nodeCount; node++) {
+            outgoingOffsets[node] = edge;
+            for (long connectionId : graph.getOutgoingConnectionsById(wayPointIds[node])) {
+                sources[edge] = node;
+                targets[edge] = nodes.get(graph.getConnection(connectionId).getTo());
+                connectionIds[edge] = connectionId;
+                incomingCounts[targets[edge] + 1]++;
+                edge++;
+            }
+        }
+        outgoingOffsets[nodeCount] = edge;
+
+        incomingOffsets = new int[nodeCount + 1];
+        for (node = 0; node < nodeCount; node++) {
+            incomingOffsets[node + 1] = incomingOffsets[node] + incomingCounts[node + 1];
+        }
+        incomingEdges = new int[edge];
+        int[] filled = new int[nodeCount];
+        for (int i = 0; i < edge; i++) {
+            int target = targets[i];
+            incomingEdges[incomingOffsets[target] + filled[target]++] = i;
+        }
+    }
+
+
+    // region nodes
+
+    /**
+     * @return The amount of nodes (waypoints).
+     */
+    public int getNodeCount() {
+        return wayPointIds.length;
+    }
+
+    /**
+     * @param wayPointId The Id of a waypoint.
+     * @return The node of the waypoint, or -1 if the waypoint is not part of the graph.
+     */
+    public int getNode(long wayPointId) {
+        var node = nodes.get(wayPointId);
+        return node == null ? -1 : node;
+    }
+
+    public long getWayPointId(int node) {
+        return wayPointIds[node];
+    }
+
+    public GeoPosition getPosition(int node) {
+        return positions[node];
+    }
+
+    // endregion
+
+    // region edges
+
+    /**
+     * @return The amount of edges (connections).
+     */
+    public int getEdgeCount() {
+        return connectionIds.length;
+    }
+
+    /**
+     * @param node The node.
+     * @return The first outgoing edge of the node.
+     */
+    public int getOutgoingStart(int node) {
+        return outgoingOffsets[node];
+    }
+
+    /**
+     * @param node The node.
+     * @return The edge after the last outgoing edge of the node.
+     */
+    public int getOutgoingEnd(int node) {
+        return outgoingOffsets[node + 1];
+    }
+
+    /**
+     * @param node The node.
+     * @return The index (in {@link #getIncomingEdge(int)}) of the first incoming edge of the node.
+     */
+    public int getIncomingStart(int node) {
+        return incomingOffsets[node];
+    }
+
+    /**
+     * @param node The node.
+     * @return The index (in {@link #getIncomingEdge(int)}) after the last incoming edge of the node.
+     */
+    public int getIncomingEnd(int node) {
+        return incomingOffsets[node + 1];
+    }
+
+    /**
+     * @param index An index between {@link #getIncomingStart(int)} and {@link #getIncomingEnd(int)} of a node.
+     * @return The incoming edge of the node.
+     */
+    public int getIncomingEdge(int index) {
+        return incomingEdges[index];
+    }
+
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public long getConnectionId(int edge) {
+        return connectionIds[edge];
+    }
+
+    // endregion
+}
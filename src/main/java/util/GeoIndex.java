@@ -0,0 +1,237 @@
+package util;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A static k-d tree over a list of positions, to find the positions closest to (or within a range of) a position in O(log n).
+ * The positions are indexed by their coordinates on the unit sphere, where the euclidean (chord) distance
+ * orders the positions in the same way as the great-circle distance ({@link MapHelper#distance(GeoPosition, GeoPosition)}).
+ * The index is immutable once built, so it can be shared by multiple threads.
+ */
+public class GeoIndex {
+
+    // Slack on the chord distance which covers the rounding error of the great-circle distance (about 6 meters)
+    public static final double TOLERANCE = 1e-6;
+
+    // The radius of the earth used by MapHelper.distance (in km)
+    private static final double EARTH_RADIUS = 60 * 1.1515 * 1.609344 * 180 / Math.PI;
+
+    // The coordinates of the positions on the unit sphere (x, y, z per position)
+    private final double[] coordinates;
+    // The positions in the order of the (implicit) tree: the root of a range is the middle element
+    private final int[] tree;
+
+
+    /**
+     * @param positions The positions, which are referred to by their index in this list.
+     */
+    public GeoIndex(List<GeoPosition> positions) {
+        this.coordinates = new double[3 * positions.size()];
+        this.tree = new int[positions.size()];
+
+        for (int i = 0; i < tree.length; i++) {
+            toUnitSphere(positions.get(i), coordinates, 3 * i);
+            tree[i] = i;
+        }
+        build(0, tree.length, 0);
+    }
+
+
+    public int size() {
+        return tree.length;
+    }
+
+    /**
+     * Find the positions which are closest to a position.
+     * Next to the {@code amount} closest positions, all the positions which are as close (within the rounding
+     * error of the great-circle distance) are included, so the caller can rank them on the great-circle distance itself.
+     * @param position The position.
+     * @param amount The amount of closest positions.
+     * @return The indices of the closest positions, in ascending order.
+     */
+    public int[] getClosest(GeoPosition position, int amount) {
+        if (tree.length == 0 || amount <= 0) {
+            return new int[0];
+        }
+
+        double[] target = new double[3];
+        toUnitSphere(position, target, 0);
+
+        // The squared distances of the closest positions, in ascending order
+        double[] closest = new double[Math.min(amount, tree.length)];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        searchClosest(0, tree.length, 0, target, closest);
+
+        double radius = Math.sqrt(closest[closest.length - 1]) + TOLERANCE;
+        return searchWithin(target, radius * radius);
+    }
+
+    /**
+     * Find the positions within a range of a position.
+     * The positions which are just outside the range (within the rounding error of the great-circle distance)
+     * are included as well, so the caller can check the range on the great-circle distance itself.
+     * @param position The position.
+     * @param range The range (in km).
+     * @return The indices of the positions within the range, in ascending order.
+     */
+    public int[] getWithin(GeoPosition position, double range) {
+        if (tree.length == 0 || range < 0) {
+            return new int[0];
+        }
+
+        double[] target = new double[3];
+        toUnitSphere(position, target, 0);
+
+        // The chord of the arc with the length of the range
+        double radius = 2 * Math.sin(Math.min(range / EARTH_RADIUS, Math.PI) / 2) + TOLERANCE;
+        return searchWithin(target, radius * radius);
+    }
+
+    /**
+     * @param position The position.
+     * @param destination The array in which the coordinates of the position on the unit sphere are stored.
+     * @param offset The index of the x coordinate, followed by the y and z coordinate.
+     */
+    public static void toUnitSphere(GeoPosition position, double[] destination, int offset) {
+        double latitude = Math.toRadians(position.getLatitude());
+        double longitude = Math.toRadians(position.getLongitude());
+        destination[offset] = Math.cos(latitude) * Math.cos(longitude);
+        destination[offset + 1] = Math.cos(latitude) * Math.sin(longitude);
+        destination[offset + 2] = Math.sin(latitude);
+    }
+
+
+    // region k-d tree
+
+    private void build(int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        build(from, middle, (axis + 1) % 3);
+        build(middle + 1, to, (axis + 1) % 3);
+    }
+
+    /**
+     * Partially sort the range [left, right] on the given axis, so the k-th element is in place.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = coordinate(tree[(left + right) >>> 1], axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(tree[i], axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(tree[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = tree[i];
+                    tree[i++] = tree[j];
+                    tree[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void searchClosest(int from, int to, int axis, double[] target, double[] closest) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        int position = tree[middle];
+
+        double distance = squaredDistance(position, target);
+        if (distance < closest[closest.length - 1]) {
+            int i = closest.length - 1;
+            for (; i > 0 && closest[i - 1] > distance; i--) {
+                closest[i] = closest[i - 1];
+            }
+            closest[i] = distance;
+        }
+
+        double difference = target[axis] - coordinate(position, axis);
+        int nextAxis = (axis + 1) % 3;
+        if (difference < 0) {
+            searchClosest(from, middle, nextAxis, target, closest);
+            if (difference * difference < closest[closest.length - 1]) {
+                searchClosest(middle + 1, to, nextAxis, target, closest);
+            }
+        } else {
+            searchClosest(middle + 1, to, nextAxis, target, closest);
+            if (difference * difference < closest[closest.length - 1]) {
+                searchClosest(from, middle, nextAxis, target, closest);
+            }
+        }
+    }
+
+    private int[] searchWithin(double[] target, double squaredRadius) {
+        var found = new Indices();
+        searchWithin(0, tree.length, 0, target, squaredRadius, found);
+        var result = Arrays.copyOf(found.values, found.size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void searchWithin(int from, int to, int axis, double[] target, double squaredRadius, Indices found) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        int position = tree[middle];
+
+        if (squaredDistance(position, target) <= squaredRadius) {
+            found.add(position);
+        }
+
+        double difference = target[axis] - coordinate(position, axis);
+        int nextAxis = (axis + 1) % 3;
+        if (difference <= 0 || difference * difference <= squaredRadius) {
+            searchWithin(from, middle, nextAxis, target, squaredRadius, found);
+        }
+        if (difference >= 0 || difference * difference <= squaredRadius) {
+            searchWithin(middle + 1, to, nextAxis, target, squaredRadius, found);
+        }
+    }
+
+    private double coordinate(int position, int axis) {
+        return coordinates[3 * position + axis];
+    }
+
+    private double squaredDistance(int position, double[] target) {
+        double dx = coordinates[3 * position] - target[0];
+        double dy = coordinates[3 * position + 1] - target[1];
+        double dz = coordinates[3 * position + 2] - target[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * The indices found by a search.
+     */
+    private static class Indices {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(int index) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = index;
+        }
+    }
+
+    // endregion
+}
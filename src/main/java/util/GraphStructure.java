@@ -6,13 +6,30 @@ import org.jxmapviewer.viewer.GeoPosition;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * The graph of waypoints and (directed) connections over which the motes move and routes are planned.
+ * The outgoing and incoming connections of every waypoint are indexed, in the order in which the connections were added.
+ */
 public class GraphStructure {
     private Map<Long, GeoPosition> wayPoints;
     private Map<Long, Connection> connections;
 
+    // The Ids of the outgoing and incoming connections of every waypoint
+    private Map<Long, List<Long>> outgoingConnections;
+    private Map<Long, List<Long>> incomingConnections;
+
     private long newWayPointID;
     private long newConnectionID;
 
+    // The amount of modifications of the graph
+    private long version;
+    // The compact form of the graph, built when needed after the graph was modified
+    // NOTE: both derived values are built at most once per modification, also when the routes are searched concurrently
+    private volatile CompactGraph compactGraph;
+    // The spatial index over the waypoints (and the waypoint Ids in the order of the index),
+    // built when needed after waypoints were added or deleted
+    private volatile WayPointIndex wayPointIndex;
+
 
     public GraphStructure() {
         init(new HashMap<>(), new HashMap<>());
@@ -26,6 +43,10 @@ public class GraphStructure {
         this.wayPoints = wayPoints;
         this.connections = connections;
 
+        this.outgoingConnections = new HashMap<>();
+        this.incomingConnections = new HashMap<>();
+        connections.forEach(this::indexConnection);
+
         newWayPointID = wayPoints.keySet().stream()
             .max(Long::compare)
             .orElse(0L) + 1;
@@ -72,6 +93,8 @@ public class GraphStructure {
         if (id >= this.newWayPointID) {
             this.newWayPointID = id + 1;
         }
+        wayPointIndex = null;
+        modified();
     }
 
 
@@ -91,12 +114,73 @@ public class GraphStructure {
         }
 
         connections.put(id, connection);
+        indexConnection(id, connection);
         if (id >= this.newConnectionID) {
             this.newConnectionID = id + 1;
         }
+        modified();
     }
 
 
+    // region Adjacency index
+
+    private void indexConnection(long id, Connection connection) {
+        outgoingConnections.computeIfAbsent(connection.getFrom(), k -> new ArrayList<>()).add(id);
+        incomingConnections.computeIfAbsent(connection.getTo(), k -> new ArrayList<>()).add(id);
+    }
+
+    private void removeConnection(long id) {
+        var connection = connections.remove(id);
+        if (connection != null) {
+            removeFromIndex(outgoingConnections, connection.getFrom(), id);
+            removeFromIndex(incomingConnections, connection.getTo(), id);
+        }
+    }
+
+    private static void removeFromIndex(Map<Long, List<Long>> index, long wayPointId, long connectionId) {
+        var ids = index.get(wayPointId);
+        if (ids != null) {
+            ids.remove(Long.valueOf(connectionId));
+            if (ids.isEmpty()) {
+                index.remove(wayPointId);
+            }
+        }
+    }
+
+    private void modified() {
+        version++;
+        compactGraph = null;
+    }
+
+    /**
+     * @return The amount of modifications of the graph, which can be used to tell if derived values are outdated.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get a compact, read-only form of the current graph (see {@link CompactGraph}).
+     * The compact form is built once and reused until the graph is modified.
+     * @return The compact form of the graph.
+     */
+    public CompactGraph getCompactGraph() {
+        var compact = compactGraph;
+        if (compact == null) {
+            synchronized (this) {
+                compact = compactGraph;
+                if (compact == null) {
+                    compact = new CompactGraph(this);
+                    compactGraph = compact;
+                }
+            }
+        }
+        return compact;
+    }
+
+    // endregion
+
+
 
     // region Basic getters/setters
 
@@ -105,7 +189,7 @@ public class GraphStructure {
     }
 
     public Map<Long, GeoPosition> getWayPoints() {
-        return wayPoints;
+        return Collections.unmodifiableMap(wayPoints);
     }
 
 
@@ -115,7 +199,7 @@ public class GraphStructure {
 
 
     public Map<Long, Connection> getConnections() {
-        return connections;
+        return Collections.unmodifiableMap(connections);
     }
 
     // endregion
@@ -155,6 +239,28 @@ public class GraphStructure {
      * @throws IllegalStateException if no waypoints are present in the graph.
      */
     private Pair<Long, Double> getClosestWayPointWithDistance(GeoPosition pos) {
+        var index = getWayPointIndex();
+        Pair<Long, Double> closest = null;
+
+        for (int i : index.positions.getClosest(pos, 1)) {
+            long id = index.ids[i];
+            double distance = MapHelper.distance(wayPoints.get(id), pos);
+            if (Double.isNaN(distance)) {
+                // The distance is undefined for positions which are very close to each other: compare all waypoints
+                return getClosestWayPointWithDistanceByScan(pos);
+            }
+            if (closest == null || distance < closest.getRight()) {
+                closest = new Pair<>(id, distance);
+            }
+        }
+
+        if (closest == null) {
+            throw new IllegalStateException();
+        }
+        return closest;
+    }
+
+    private Pair<Long, Double> getClosestWayPointWithDistanceByScan(GeoPosition pos) {
         Map<Long, Double> distances = new HashMap<>();
 
         for (var me : wayPoints.entrySet()) {
@@ -167,6 +273,60 @@ public class GraphStructure {
             .orElseThrow(IllegalStateException::new);
     }
 
+    /**
+     * Get the waypoints within a specified range of a given location.
+     * @param pos The location.
+     * @param range The maximum range between the waypoints and the position (expressed in km).
+     * @return The Ids of the waypoints within the range.
+     */
+    public List<Long> getWayPointsWithinRange(GeoPosition pos, double range) {
+        var index = getWayPointIndex();
+        List<Long> result = new ArrayList<>();
+
+        for (int i : index.positions.getWithin(pos, range)) {
+            long id = index.ids[i];
+            // NOTE: the distance is undefined (NaN) for positions which are very close to each other
+            if (!(MapHelper.distance(wayPoints.get(id), pos) > range)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private WayPointIndex getWayPointIndex() {
+        var index = wayPointIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = wayPointIndex;
+                if (index == null) {
+                    index = new WayPointIndex(wayPoints);
+                    wayPointIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The spatial index over the waypoints of the graph.
+     */
+    private static class WayPointIndex {
+        // The Ids of the waypoints, in the order of the map of waypoints
+        private final long[] ids;
+        private final GeoIndex positions;
+
+        WayPointIndex(Map<Long, GeoPosition> wayPoints) {
+            ids = new long[wayPoints.size()];
+            List<GeoPosition> points = new ArrayList<>(wayPoints.size());
+            int i = 0;
+            for (var wayPoint : wayPoints.entrySet()) {
+                ids[i++] = wayPoint.getKey();
+                points.add(wayPoint.getValue());
+            }
+            positions = new GeoIndex(points);
+        }
+    }
+
 
 
     /**
@@ -175,8 +335,8 @@ public class GraphStructure {
      * @return A list of connections which all start at {@code wayPointId}.
      */
     public List<Connection> getOutgoingConnections(long wayPointId) {
-        return connections.values().stream()
-            .filter(c -> c.getFrom() == wayPointId)
+        return getOutgoingConnectionsById(wayPointId).stream()
+            .map(connections::get)
             .collect(Collectors.toList());
     }
 
@@ -184,13 +344,19 @@ public class GraphStructure {
     /**
      * Retrieve a list of connection Ids which have the given waypoint as source.
      * @param wayPointId The waypiont at which the connections start.
-     * @return A list of connection Ids which all start at {@code wayPointId}.
+     * @return A read-only list of connection Ids which all start at {@code wayPointId}.
      */
     public List<Long> getOutgoingConnectionsById(long wayPointId) {
-        return connections.entrySet().stream()
-            .filter(c -> c.getValue().getFrom() == wayPointId)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
+        return Collections.unmodifiableList(outgoingConnections.getOrDefault(wayPointId, List.of()));
+    }
+
+    /**
+     * Retrieve a list of connection Ids which have the given waypoint as destination.
+     * @param wayPointId The waypoint at which the connections end.
+     * @return A read-only list of connection Ids which all end at {@code wayPointId}.
+     */
+    public List<Long> getIncomingConnectionsById(long wayPointId) {
+        return Collections.unmodifiableList(incomingConnections.getOrDefault(wayPointId, List.of()));
     }
 
     /**
@@ -204,6 +370,39 @@ public class GraphStructure {
     }
 
 
+    /**
+     * Get the Id of the connection which starts and ends at the given waypoint Ids.
+     * @param fromWayPointId The waypoint Id at which the connection starts.
+     * @param toWayPointId The waypoint Id at which the connection ends.
+     * @return Either the Id of the connection, or an empty Optional if no such connection exists.
+     */
+    public Optional<Long> getConnectionId(long fromWayPointId, long toWayPointId) {
+        return getOutgoingConnectionsById(fromWayPointId).stream()
+            .filter(id -> connections.get(id).getTo() == toWayPointId)
+            .findFirst();
+    }
+
+
+    /**
+     * Get the Ids of the connections between the consecutive positions of a path.
+     * @param path The positions of the waypoints on the path.
+     * @return The Ids of the connections on the path, in order.
+     * @throws IllegalArgumentException if the path contains positions which are not connected in the graph.
+     */
+    public long[] getConnectionIds(List<GeoPosition> path) {
+        long[] connectionIds = new long[Math.max(path.size() - 1, 0)];
+        long from = getClosestWayPoint(path.get(0));
+        for (int i = 0; i < connectionIds.length; i++) {
+            GeoPosition position = path.get(i + 1);
+            long to = getClosestWayPoint(position);
+            connectionIds[i] = getConnectionId(from, to)
+                .orElseThrow(() -> new IllegalArgumentException(String.format("No connection to {%s} in the path.", position.toString())));
+            from = to;
+        }
+        return connectionIds;
+    }
+
+
     /**
      * Get the connection which starts and ends at the given waypoint Ids.
      * @param fromWayPointId The waypoint Id at which the connection starts.
@@ -211,8 +410,9 @@ public class GraphStructure {
      * @return Either the connection which has the right source and destination, or an empty Optional if no such connection exists.
      */
     private Optional<Connection> getConnection(long fromWayPointId, long toWayPointId) {
-        return connections.values().stream()
-            .filter(c -> c.getFrom() == fromWayPointId && c.getTo() == toWayPointId)
+        return getOutgoingConnectionsById(fromWayPointId).stream()
+            .map(connections::get)
+            .filter(c -> c.getTo() == toWayPointId)
             .findFirst();
     }
 
@@ -225,14 +425,14 @@ public class GraphStructure {
      */
     public void deleteWayPoint(long wayPointId, Environment environment) {
         wayPoints.remove(wayPointId);
-        var connToDelete  = connections.entrySet().stream()
-            .filter(o -> o.getValue().getTo() == wayPointId || o.getValue().getFrom() == wayPointId)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
+        wayPointIndex = null;
+        var connToDelete = new ArrayList<>(getOutgoingConnectionsById(wayPointId));
+        connToDelete.addAll(getIncomingConnectionsById(wayPointId));
 
         for (var conn : connToDelete) {
-            connections.remove(conn);
+            removeConnection(conn);
         }
+        modified();
 
         // Make sure to also delete part of the paths of motes which use this waypoint
         environment.removeWayPointFromMotes(wayPointId);
@@ -247,9 +447,8 @@ public class GraphStructure {
      * @param environment The environment of the simulation.
      */
     public void deleteConnection(long fromWayPointId, long toWayPointId, Environment environment) {
-        var possibleConnections = connections.entrySet().stream()
-            .filter(o -> o.getValue().getTo() == toWayPointId && o.getValue().getFrom() == fromWayPointId)
-            .map(Map.Entry::getKey)
+        var possibleConnections = getOutgoingConnectionsById(fromWayPointId).stream()
+            .filter(o -> connections.get(o).getTo() == toWayPointId)
             .collect(Collectors.toList());
 
         if (possibleConnections.size() == 0) {
@@ -258,6 +457,7 @@ public class GraphStructure {
         assert possibleConnections.size() == 1;
 
         environment.removeConnectionFromMotes(possibleConnections.get(0));
-        connections.remove(possibleConnections.get(0));
+        removeConnection(possibleConnections.get(0));
+        modified();
     }
 }
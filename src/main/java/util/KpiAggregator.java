@@ -0,0 +1,92 @@
+package util;
+
+import iot.lora.LoraTransmission;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates the key performance indicators per (mote, run, receiver) while the statistics are recorded,
+ * so they can be read in O(1) instead of scanning the full history of every receiver.
+ * The received transmissions are indexed per (mote, run, receiver) as well, for the charts of a single mote.
+ *
+ * Every update publishes a new immutable {@link KpiSummary}, readers therefore always see a consistent summary.
+ * NOTE: like {@link Statistics}, the aggregates of a single mote should only be updated by one thread at a time.
+ */
+class KpiAggregator {
+
+    private final Map<Long, Map<Integer, RunKpi>> motes = new ConcurrentHashMap<>();
+
+
+    void addSent(long mote, int run, double usedEnergy) {
+        RunKpi runKpi = of(mote, run);
+        runKpi.sent = runKpi.sent.withSent(usedEnergy);
+    }
+
+    void addReception(long receiver, int run, LoraTransmission transmission) {
+        ReceiverKpi receiverKpi = of(transmission.getSender(), run).of(receiver);
+        receiverKpi.transmissions.append(transmission);
+        receiverKpi.summary = receiverKpi.summary.withReception(transmission);
+    }
+
+
+    /**
+     * @return The summary of the receptions of the transmissions of the mote by the given receiver.
+     */
+    KpiSummary get(long mote, int run, long receiver) {
+        RunKpi runKpi = find(mote, run);
+        ReceiverKpi receiverKpi = runKpi == null ? null : runKpi.receivers.get(receiver);
+        return receiverKpi == null ? KpiSummary.EMPTY : receiverKpi.summary;
+    }
+
+    /**
+     * @return A snapshot of the transmissions of the mote received by the given receiver, in order of arrival.
+     */
+    List<LoraTransmission> getReceptions(long mote, int run, long receiver) {
+        RunKpi runKpi = find(mote, run);
+        ReceiverKpi receiverKpi = runKpi == null ? null : runKpi.receivers.get(receiver);
+        return receiverKpi == null ? Collections.emptyList() : receiverKpi.transmissions.snapshot();
+    }
+
+    /**
+     * @return The summary of the sent transmissions of the mote, combined with the receptions by all receivers.
+     */
+    KpiSummary get(long mote, int run) {
+        RunKpi runKpi = find(mote, run);
+        if (runKpi == null) {
+            return KpiSummary.EMPTY;
+        }
+        KpiSummary summary = runKpi.sent;
+        for (ReceiverKpi receiverKpi : runKpi.receivers.values()) {
+            summary = summary.combine(receiverKpi.summary);
+        }
+        return summary;
+    }
+
+    private RunKpi of(long mote, int run) {
+        return motes.computeIfAbsent(mote, k -> new ConcurrentHashMap<>()).computeIfAbsent(run, k -> new RunKpi());
+    }
+
+    private RunKpi find(long mote, int run) {
+        Map<Integer, RunKpi> runs = motes.get(mote);
+        return runs == null ? null : runs.get(run);
+    }
+
+
+    private static class RunKpi {
+        volatile KpiSummary sent = KpiSummary.EMPTY;
+        final Map<Long, ReceiverKpi> receivers = new ConcurrentHashMap<>();
+
+        ReceiverKpi of(long receiver) {
+            ReceiverKpi receiverKpi = receivers.get(receiver);
+            return receiverKpi != null ? receiverKpi : receivers.computeIfAbsent(receiver, k -> new ReceiverKpi());
+        }
+    }
+
+    private static class ReceiverKpi {
+        volatile KpiSummary summary = KpiSummary.EMPTY;
+        final AppendOnlyLog<LoraTransmission> transmissions = new AppendOnlyLog<>();
+    }
+}
@@ -0,0 +1,113 @@
+package util;
+
+import iot.lora.LoraTransmission;
+
+/**
+ * An immutable summary of the key performance indicators of a mote in a single run,
+ * either for one receiving entity or aggregated over several of them.
+ */
+public class KpiSummary {
+
+    public static final KpiSummary EMPTY = new KpiSummary(0, 0, 0, 0.0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0);
+
+    // The amount of transmissions sent by the mote
+    private final int sent;
+    // The amount of receptions of the transmissions of the mote (collided or not)
+    private final int received;
+    // The amount of receptions which collided with another transmission
+    private final int collided;
+    // The energy used to send the transmissions (in mJoule)
+    private final double usedEnergy;
+
+    // The received power of the receptions which did not collide (in dBm)
+    private final int receivedPowerCount;
+    private final double minReceivedPower;
+    private final double maxReceivedPower;
+    private final double sumReceivedPower;
+
+
+    private KpiSummary(int sent, int received, int collided, double usedEnergy,
+                       int receivedPowerCount, double minReceivedPower, double maxReceivedPower, double sumReceivedPower) {
+        this.sent = sent;
+        this.received = received;
+        this.collided = collided;
+        this.usedEnergy = usedEnergy;
+        this.receivedPowerCount = receivedPowerCount;
+        this.minReceivedPower = minReceivedPower;
+        this.maxReceivedPower = maxReceivedPower;
+        this.sumReceivedPower = sumReceivedPower;
+    }
+
+
+    /**
+     * @param energy The energy used for the sent transmission.
+     * @return A summary which also contains the given sent transmission.
+     */
+    KpiSummary withSent(double energy) {
+        return new KpiSummary(sent + 1, received, collided, usedEnergy + energy,
+            receivedPowerCount, minReceivedPower, maxReceivedPower, sumReceivedPower);
+    }
+
+    /**
+     * @param transmission The transmission which was received.
+     * @return A summary which also contains the given reception.
+     */
+    KpiSummary withReception(LoraTransmission transmission) {
+        if (transmission.isCollided()) {
+            return new KpiSummary(sent, received + 1, collided + 1, usedEnergy,
+                receivedPowerCount, minReceivedPower, maxReceivedPower, sumReceivedPower);
+        }
+        double power = transmission.getTransmissionPower();
+        return new KpiSummary(sent, received + 1, collided, usedEnergy, receivedPowerCount + 1,
+            Math.min(minReceivedPower, power), Math.max(maxReceivedPower, power), sumReceivedPower + power);
+    }
+
+    /**
+     * @param other Another summary of the same mote and run.
+     * @return A summary which combines both summaries.
+     */
+    public KpiSummary combine(KpiSummary other) {
+        return new KpiSummary(sent + other.sent, received + other.received, collided + other.collided,
+            usedEnergy + other.usedEnergy, receivedPowerCount + other.receivedPowerCount,
+            Math.min(minReceivedPower, other.minReceivedPower), Math.max(maxReceivedPower, other.maxReceivedPower),
+            sumReceivedPower + other.sumReceivedPower);
+    }
+
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getCollided() {
+        return collided;
+    }
+
+    public double getUsedEnergy() {
+        return usedEnergy;
+    }
+
+    /**
+     * @return The minimum received power, or {@link Double#NaN} if no transmission was received without collision.
+     */
+    public double getMinReceivedPower() {
+        return receivedPowerCount == 0 ? Double.NaN : minReceivedPower;
+    }
+
+    /**
+     * @return The maximum received power, or {@link Double#NaN} if no transmission was received without collision.
+     */
+    public double getMaxReceivedPower() {
+        return receivedPowerCount == 0 ? Double.NaN : maxReceivedPower;
+    }
+
+    /**
+     * @return The mean received power, or {@link Double#NaN} if no transmission was received without collision.
+     */
+    public double getMeanReceivedPower() {
+        return receivedPowerCount == 0 ? Double.NaN : sumReceivedPower / receivedPowerCount;
+    }
+}
@@ -105,20 +105,16 @@ public class Path implements Iterable<GeoPosition> {
      * @return A list of connection Ids of the connections in this path.
      */
     public List<Long> getConnectionsByID() {
-        var connectionsMap = graphStructure.getConnections();
         List<Long> connections = new ArrayList<>();
+        if (points.size() < 2) {
+            return connections;
+        }
 
+        long from = graphStructure.getClosestWayPoint(points.get(0));
         for (int i = 0; i < points.size() - 1; i++) {
-            final int index = i;
-
-            long connectionId = connectionsMap.entrySet().stream()
-                .filter(o -> o.getValue().getFrom() == graphStructure.getClosestWayPoint(points.get(index))
-                    && o.getValue().getTo() == graphStructure.getClosestWayPoint(points.get(index + 1)))
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElseThrow();
-
-            connections.add(connectionId);
+            long to = graphStructure.getClosestWayPoint(points.get(i + 1));
+            connections.add(graphStructure.getConnectionId(from, to).orElseThrow());
+            from = to;
         }
 
         return connections;
@@ -1,6 +1,9 @@
 package util;
 
+import application.routing.PathFinderFactory;
 import iot.mqtt.MQTTClientFactory;
+import iot.mqtt.MqttDispatcher;
+import iot.mqtt.PahoMqttClient;
 
 import java.awt.*;
 import java.io.*;
@@ -82,6 +85,76 @@ public class SettingsReader {
         return MQTTClientFactory.MqttClientType.valueOf(clientType);
     }
 
+    public int getMqttLoopbackPort() {
+        return Integer.parseInt(properties.getProperty("mqtt.LoopbackPort", "0").trim());
+    }
+
+    public PahoMqttClient.PayloadFormat getMqttPayloadFormat() {
+        String format = properties.getProperty("mqtt.PayloadFormat", "json").trim().toUpperCase();
+        return PahoMqttClient.PayloadFormat.valueOf(format);
+    }
+
+    public boolean useMqttPublishBatching() {
+        return properties.getProperty("mqtt.PublishBatching", "false").trim().toLowerCase().equals("true");
+    }
+
+    public int getMqttPublishBatchWindow() {
+        return Integer.parseInt(properties.getProperty("mqtt.PublishBatchWindow", "1").trim());
+    }
+
+    public boolean useAsynchronousMqttDelivery() {
+        return properties.getProperty("mqtt.AsyncDelivery", "false").trim().toLowerCase().equals("true");
+    }
+
+    public int getMqttQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("mqtt.QueueCapacity", "1024").trim());
+    }
+
+    public MqttDispatcher.BackpressurePolicy getMqttBackpressurePolicy() {
+        String policy = properties.getProperty("mqtt.BackpressurePolicy", "block").trim().toUpperCase();
+        return MqttDispatcher.BackpressurePolicy.valueOf(policy);
+    }
+
+    // endregion
+
+
+    // region Network server
+
+    public int getNetworkServerShards() {
+        return Integer.parseInt(properties.getProperty("networkserver.Shards", "0").trim());
+    }
+
+    // endregion
+
+
+    // region Routing
+
+    public PathFinderFactory.PathFinderType getPathFinderType() {
+        String type = properties.getProperty("routing.PathFinder", "astar").trim().toUpperCase();
+        return PathFinderFactory.PathFinderType.valueOf(type);
+    }
+
+    public boolean useRouteCache() {
+        return properties.getProperty("routing.RouteCache", "false").trim().toLowerCase().equals("true");
+    }
+
+    public float getRouteCacheTolerance() {
+        return Float.parseFloat(properties.getProperty("routing.RouteCacheTolerance", "0").trim());
+    }
+
+    public int getLandmarkCount() {
+        return Integer.parseInt(properties.getProperty("routing.Landmarks", "8").trim());
+    }
+
+    // endregion
+
+
+    // region Export
+
+    public boolean useIncrementalResultRecording() {
+        return properties.getProperty("export.IncrementalRecording", "true").trim().toLowerCase().equals("true");
+    }
+
     // endregion
 
 
@@ -1,55 +1,68 @@
 package util;
 
 import iot.lora.LoraTransmission;
+import iot.networkentity.EnergyLedger;
 import iot.networkentity.NetworkEntity;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
+/**
+ * Keeps the history of the simulation for every network entity.
+ *
+ * Writers append to a separate log per network entity without taking any lock, readers can query the history
+ * concurrently (e.g. the GUI while the simulation is running). Every query works on a snapshot of the logs,
+ * so it observes a consistent prefix of the history of an entity and never blocks the simulation.
+ *
+ * NOTE: the history of a single network entity should only be written by one thread at a time.
+ */
 public class Statistics {
 
     private static Statistics instance = new Statistics();
 
-    private int runNumber = 0;
+    private volatile int runNumber = 0;
 
-    // A list representing the power setting of every transmission.
-    private final Map<Long, List<PowerSettingDataPoint>> powerSettingHistory;
+    // The history of all network entities, replaced as a whole on a reset so that readers never see a partially cleared history
+    private volatile History history;
 
-    // A list representing the spreading factor of every transmission.
-    private final Map<Long, List<SpreadingFactorDataPoint>> spreadingFactorHistory;
-
-    // A map with the transmissions received by the entity and if they collided with an other packet.
-    // TODO make sure the order is also preserved when streaming the results and filtering on runNumbers
-    private final Map<Long, LinkedHashSet<LoraTransmissionDataPoint>> receivedTransmissions;
-
-    // A list with the transmissions transmitted by the entity
-    private final Map<Long, List<LoraTransmissionDataPoint>> sentTransmissions;
+    // The listeners which are notified of every recorded entry
+    private final List<StatisticsListener> listeners;
 
     private Statistics() {
-        powerSettingHistory = new HashMap<>();
-        spreadingFactorHistory = new HashMap<>();
-        receivedTransmissions = new HashMap<>();
-        sentTransmissions = new HashMap<>();
+        history = new History();
+        listeners = new CopyOnWriteArrayList<>();
     }
 
     public static Statistics getInstance() {
         return instance;
     }
 
+    public void addListener(StatisticsListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(StatisticsListener listener) {
+        listeners.remove(listener);
+    }
+
     public void addPowerSettingEntry(long networkEntity, int timeInSeconds, int powerSetting) {
-        initIfAbsent(powerSettingHistory, networkEntity);
-        var lists = powerSettingHistory.get(networkEntity);
-        lists.add(new PowerSettingDataPoint(this.runNumber, timeInSeconds, powerSetting));
+        int run = this.runNumber;
+        history.of(networkEntity).powerSettings.record(run, timeInSeconds, powerSetting);
+        listeners.forEach(l -> l.onPowerSettingEntry(run, networkEntity, timeInSeconds, powerSetting));
     }
 
-    public void addSpreadingFactorEntry(NetworkEntity networkEntity, int entry) {
-        addSpreadingFactorEntry(networkEntity.getEUI(), entry);
+    public void addSpreadingFactorEntry(NetworkEntity networkEntity, int timeInSeconds, int entry) {
+        addSpreadingFactorEntry(networkEntity.getEUI(), timeInSeconds, entry);
     }
 
-    public void addSpreadingFactorEntry(long networkEntity, int entry) {
-        initIfAbsent(spreadingFactorHistory, networkEntity);
-        var lists = spreadingFactorHistory.get(networkEntity);
-        lists.add(new SpreadingFactorDataPoint(this.runNumber, entry));
+    public void addSpreadingFactorEntry(long networkEntity, int timeInSeconds, int entry) {
+        int run = this.runNumber;
+        history.of(networkEntity).spreadingFactors.record(run, timeInSeconds, entry);
+        listeners.forEach(l -> l.onSpreadingFactorEntry(run, networkEntity, timeInSeconds, entry));
     }
 
     public void addReceivedTransmissionsEntry(NetworkEntity networkEntity, LoraTransmission entry) {
@@ -57,11 +70,11 @@ public class Statistics {
     }
 
     public void addReceivedTransmissionsEntry(long networkEntity, LoraTransmission entry) {
-        if (!receivedTransmissions.containsKey(networkEntity)) {
-            receivedTransmissions.put(networkEntity, new LinkedHashSet<>());
-        }
-        var lists = receivedTransmissions.get(networkEntity);
-        lists.add(new LoraTransmissionDataPoint(runNumber, entry));
+        int run = this.runNumber;
+        History history = this.history;
+        history.of(networkEntity).receivedTransmissions.append(new LoraTransmissionDataPoint(run, entry));
+        history.kpis.addReception(networkEntity, run, entry);
+        listeners.forEach(l -> l.onTransmissionReceived(run, networkEntity, entry));
     }
 
     public void addSentTransmissionsEntry(NetworkEntity networkEntity, LoraTransmission entry) {
@@ -69,54 +82,112 @@ public class Statistics {
     }
 
     public void addSentTransmissionsEntry(long networkEntity, LoraTransmission entry) {
-        initIfAbsent(sentTransmissions, networkEntity);
-        var lists = sentTransmissions.get(networkEntity);
-        lists.add(new LoraTransmissionDataPoint(runNumber, entry));
-    }
-
-    private <E> void initIfAbsent(Map<Long, List<E>> map, long id) {
-        if (!map.containsKey(id)) {
-            map.put(id, new LinkedList<E>());
+        int run = this.runNumber;
+        History history = this.history;
+        EntityHistory entityHistory = history.of(networkEntity);
+        entityHistory.sentTransmissions.append(new LoraTransmissionDataPoint(run, entry));
+
+        // The power setting of the transmission is recorded right before the transmission itself
+        if (entityHistory.powerSettings.size() > 0) {
+            int powerSetting = entityHistory.powerSettings.getLastValue();
+            history.kpis.addSent(networkEntity, run, EnergyLedger.getTransmitEnergy(powerSetting, entry.getTimeOnAir()));
+        } else {
+            history.kpis.addSent(networkEntity, run, 0.0);
         }
     }
 
     public void reset() {
-        powerSettingHistory.clear();
-        spreadingFactorHistory.clear();
-        receivedTransmissions.clear();
-        sentTransmissions.clear();
+        history = new History();
 
         runNumber = 0;
+        listeners.forEach(StatisticsListener::onReset);
     }
 
     public void addRun() {
         runNumber++;
     }
 
+    /**
+     * Get the changes of the power setting of the given entity.
+     * @param networkEntity The EUI of the network entity.
+     * @return The power settings at the transmissions where the power setting changed or a new run started,
+     *         or an empty list if the entity has no history.
+     */
     public List<PowerSettingDataPoint> getPowerSettingHistory(long networkEntity) {
-        return powerSettingHistory.get(networkEntity);
+        EntityHistory entityHistory = history.get(networkEntity);
+        if (entityHistory == null) {
+            return Collections.emptyList();
+        }
+        ChangePointLog.Snapshot snapshot = entityHistory.powerSettings.snapshot();
+        List<PowerSettingDataPoint> changes = new ArrayList<>(snapshot.getChangePointCount());
+        for (int i = 0; i < snapshot.getChangePointCount(); i++) {
+            changes.add(new PowerSettingDataPoint(snapshot.getChangePointRun(i), snapshot.getChangePointTime(i), snapshot.getChangePointValue(i)));
+        }
+        return changes;
     }
 
+    /**
+     * Get the power setting of every transmission of the given entity in a run.
+     * @param networkEntity The EUI of the network entity.
+     * @param run The run.
+     * @return The departure time (in seconds) and power setting of every sent transmission.
+     */
     public List<Pair<Integer, Integer>> getPowerSettingHistory(long networkEntity, int run) {
-        return getPowerSettingHistory(networkEntity).stream()
-            .filter(o -> o.runNumber == run)
-            .map(o -> new Pair<>(o.timeInSeconds, o.powerSetting))
-            .collect(Collectors.toList());
+        EntityHistory entityHistory = history.get(networkEntity);
+        if (entityHistory == null) {
+            return Collections.emptyList();
+        }
+        // The power setting is recorded for every sent transmission, so both share the same index
+        ChangePointLog.Snapshot snapshot = entityHistory.powerSettings.snapshot();
+        List<LoraTransmissionDataPoint> sent = entityHistory.sentTransmissions.snapshot();
+        int from = snapshot.getFirstEntry(run);
+        int to = Math.min(snapshot.getFirstEntry(run + 1), sent.size());
+
+        List<Pair<Integer, Integer>> powerSettings = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            powerSettings.add(new Pair<>(sent.get(i).transmission.getDepartureTime().toSecondOfDay(), snapshot.getValue(i)));
+        }
+        return powerSettings;
     }
 
+    /**
+     * Get the changes of the spreading factor of the given entity.
+     * @param networkEntity The EUI of the network entity.
+     * @return The spreading factors at the transmissions where the spreading factor changed or a new run started,
+     *         or an empty list if the entity has no history.
+     */
     public List<SpreadingFactorDataPoint> getSpreadingFactorHistory(long networkEntity) {
-        return spreadingFactorHistory.get(networkEntity);
+        EntityHistory entityHistory = history.get(networkEntity);
+        if (entityHistory == null) {
+            return Collections.emptyList();
+        }
+        ChangePointLog.Snapshot snapshot = entityHistory.spreadingFactors.snapshot();
+        List<SpreadingFactorDataPoint> changes = new ArrayList<>(snapshot.getChangePointCount());
+        for (int i = 0; i < snapshot.getChangePointCount(); i++) {
+            changes.add(new SpreadingFactorDataPoint(snapshot.getChangePointRun(i), snapshot.getChangePointTime(i), snapshot.getChangePointValue(i)));
+        }
+        return changes;
     }
 
+    /**
+     * Get the spreading factor of every transmission of the given entity in a run.
+     * @param networkEntity The EUI of the network entity.
+     * @param run The run.
+     * @return A view of the spreading factors, in which every lookup is a binary search over the changes.
+     */
     public List<Integer> getSpreadingFactorHistory(long networkEntity, int run) {
-        return getSpreadingFactorHistory(networkEntity).stream()
-            .filter(o -> o.runNumber == run)
-            .map(o -> o.spreadingFactor)
-            .collect(Collectors.toList());
+        EntityHistory entityHistory = history.get(networkEntity);
+        return entityHistory == null ? Collections.emptyList() : entityHistory.spreadingFactors.snapshot().getValues(run);
     }
 
-    public LinkedHashSet<LoraTransmissionDataPoint> getReceivedTransmissions(long networkEntity) {
-        return receivedTransmissions.get(networkEntity);
+    /**
+     * Get a snapshot of the transmissions received by the given entity.
+     * @param networkEntity The EUI of the network entity.
+     * @return The received transmissions recorded so far (in order of arrival), or an empty list if the entity has no history.
+     */
+    public List<LoraTransmissionDataPoint> getReceivedTransmissions(long networkEntity) {
+        EntityHistory entityHistory = history.get(networkEntity);
+        return entityHistory == null ? Collections.emptyList() : entityHistory.receivedTransmissions.snapshot();
     }
 
     public List<LoraTransmission> getReceivedTransmissions(long eui, int run) {
@@ -133,8 +204,14 @@ public class Statistics {
     }
 
 
+    /**
+     * Get a snapshot of the transmissions sent by the given entity.
+     * @param networkEntity The EUI of the network entity.
+     * @return The sent transmissions recorded so far, or an empty list if the entity has no history.
+     */
     public List<LoraTransmissionDataPoint> getSentTransmissions(long networkEntity) {
-        return sentTransmissions.get(networkEntity);
+        EntityHistory entityHistory = history.get(networkEntity);
+        return entityHistory == null ? Collections.emptyList() : entityHistory.sentTransmissions.snapshot();
     }
 
     public List<LoraTransmission> getSentTransmissions(long networkEntity, int run) {
@@ -146,19 +223,55 @@ public class Statistics {
 
     public List<Double> getUsedEnergy(long networkEntity, int run) {
         List<Double> usedEnergy = new LinkedList<>();
+        List<Pair<Integer, Integer>> powerSettings = getPowerSettingHistory(networkEntity, run);
         int i = 0;
         for (LoraTransmission transmission: getSentTransmissions(networkEntity, run)) {
-            usedEnergy.add(Math.pow(10, ((double)getPowerSettingHistory(networkEntity, run).get(i).getRight()) / 10) * transmission.getTimeOnAir() / 1000);
+            if (i >= powerSettings.size()) {
+                break;
+            }
+            usedEnergy.add(EnergyLedger.getTransmitEnergy(powerSettings.get(i).getRight(), transmission.getTimeOnAir()));
             i++;
         }
         return usedEnergy;
     }
 
+    /**
+     * Get the key performance indicators of a mote, as received by a single receiver.
+     * @param mote The EUI of the mote which sent the transmissions.
+     * @param run The run.
+     * @param receiver The EUI of the receiver (e.g. a gateway).
+     * @return The amount of received and collided transmissions and the received power, without sent transmissions or energy.
+     */
+    public KpiSummary getKpi(long mote, int run, long receiver) {
+        return history.kpis.get(mote, run, receiver);
+    }
+
+    /**
+     * Get the key performance indicators of a mote over all receivers.
+     * @param mote The EUI of the mote.
+     * @param run The run.
+     * @return The sent transmissions and used energy of the mote, combined with the receptions by all receivers.
+     */
+    public KpiSummary getKpi(long mote, int run) {
+        return history.kpis.get(mote, run);
+    }
+
+    /**
+     * Get a snapshot of the transmissions of a mote which were received by the given receiver.
+     * @param receiver The EUI of the receiver (e.g. a gateway).
+     * @param mote The EUI of the mote which sent the transmissions.
+     * @param run The run.
+     * @return The received transmissions (collided or not) in order of arrival.
+     */
+    public List<LoraTransmission> getReceivedTransmissionsFrom(long receiver, long mote, int run) {
+        return history.kpis.getReceptions(mote, run, receiver);
+    }
+
 
     public static class PowerSettingDataPoint {
-        public int runNumber;
-        public int timeInSeconds;
-        public int powerSetting;
+        public final int runNumber;
+        public final int timeInSeconds;
+        public final int powerSetting;
 
         PowerSettingDataPoint(int runNumber, int timeInSeconds, int powerSetting) {
             this.runNumber = runNumber;
@@ -168,25 +281,61 @@ public class Statistics {
     }
 
     public static class SpreadingFactorDataPoint {
-        public int runNumber;
-        public int spreadingFactor;
+        public final int runNumber;
+        public final int timeInSeconds;
+        public final int spreadingFactor;
 
-        public SpreadingFactorDataPoint(int runNumber, int spreadingFactor) {
+        public SpreadingFactorDataPoint(int runNumber, int timeInSeconds, int spreadingFactor) {
             this.runNumber = runNumber;
+            this.timeInSeconds = timeInSeconds;
             this.spreadingFactor = spreadingFactor;
         }
     }
 
 
     public static class LoraTransmissionDataPoint {
-        public int runNumber;
-        public LoraTransmission transmission;
+        public final int runNumber;
+        public final LoraTransmission transmission;
 
         LoraTransmissionDataPoint(int runNumber, LoraTransmission transmission) {
             this.runNumber = runNumber;
             this.transmission = transmission;
         }
     }
-}
 
 
+    /**
+     * The history of all network entities between two resets.
+     */
+    private static class History {
+        private final Map<Long, EntityHistory> entities = new ConcurrentHashMap<>();
+        private final KpiAggregator kpis = new KpiAggregator();
+
+        EntityHistory of(long networkEntity) {
+            // Plain lookup first, computeIfAbsent only locks when the entity is seen for the first time
+            EntityHistory entityHistory = entities.get(networkEntity);
+            return entityHistory != null ? entityHistory : entities.computeIfAbsent(networkEntity, k -> new EntityHistory());
+        }
+
+        EntityHistory get(long networkEntity) {
+            return entities.get(networkEntity);
+        }
+    }
+
+    /**
+     * The append-only logs of a single network entity.
+     */
+    private static class EntityHistory {
+        // A log representing the power setting of every transmission, stored as changes.
+        final ChangePointLog powerSettings = new ChangePointLog();
+
+        // A log representing the spreading factor of every transmission, stored as changes.
+        final ChangePointLog spreadingFactors = new ChangePointLog();
+
+        // A log with the transmissions received by the entity and if they collided with an other packet.
+        final AppendOnlyLog<LoraTransmissionDataPoint> receivedTransmissions = new AppendOnlyLog<>();
+
+        // A log with the transmissions transmitted by the entity
+        final AppendOnlyLog<LoraTransmissionDataPoint> sentTransmissions = new AppendOnlyLog<>();
+    }
+}
@@ -0,0 +1,41 @@
+package util;
+
+import iot.lora.LoraTransmission;
+
+/**
+ * Interface used to get notified of every entry that is recorded in {@link Statistics}.
+ * All callbacks are invoked on the thread which records the entry (i.e. the simulation thread).
+ */
+public interface StatisticsListener {
+
+    /**
+     * Called when a network entity has received a transmission (collided or not).
+     * @param run The run in which the transmission was received.
+     * @param receiver The EUI of the receiving network entity.
+     * @param transmission The received transmission.
+     */
+    default void onTransmissionReceived(int run, long receiver, LoraTransmission transmission) {}
+
+    /**
+     * Called when the power setting of a network entity is recorded.
+     * @param run The run in which the entry was recorded.
+     * @param networkEntity The EUI of the network entity.
+     * @param timeInSeconds The simulation time of the entry (in seconds).
+     * @param powerSetting The power setting of the network entity.
+     */
+    default void onPowerSettingEntry(int run, long networkEntity, int timeInSeconds, int powerSetting) {}
+
+    /**
+     * Called when the spreading factor of a network entity is recorded.
+     * @param run The run in which the entry was recorded.
+     * @param networkEntity The EUI of the network entity.
+     * @param timeInSeconds The simulation time of the entry (in seconds).
+     * @param spreadingFactor The spreading factor of the network entity.
+     */
+    default void onSpreadingFactorEntry(int run, long networkEntity, int timeInSeconds, int spreadingFactor) {}
+
+    /**
+     * Called when all the recorded history is removed.
+     */
+    default void onReset() {}
+}
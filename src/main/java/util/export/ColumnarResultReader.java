@@ -0,0 +1,128 @@
+package util.export;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Reader for the binary columnar result layout written by {@link ColumnarResultWriter}.
+ */
+public class ColumnarResultReader {
+
+    /**
+     * Read all the blocks of a binary columnar result stream and pass every row to the given sink.
+     * @param stream The stream containing the binary results.
+     * @param sink The sink which receives the rows, in the order of the blocks in the stream.
+     * @throws IOException If the stream could not be read or does not contain binary results.
+     */
+    public static void replay(InputStream stream, ResultSink sink) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+
+        byte[] magic = new byte[ColumnarResultWriter.MAGIC.length];
+        input.readFully(magic);
+        if (!Arrays.equals(magic, ColumnarResultWriter.MAGIC) || input.readByte() != ColumnarResultWriter.VERSION) {
+            throw new IOException("The given stream does not contain binary simulation results.");
+        }
+
+        int table;
+        while ((table = input.read()) != -1) {
+            int size = input.readInt();
+            int[] run = readRunColumn(input, size);
+            long[] time = readTimeColumn(input, size);
+
+            if (table == ColumnarResultWriter.TABLE_TRANSMISSIONS) {
+                long[] sender = readLongColumn(input, size);
+                long[] receiver = readLongColumn(input, size);
+                byte[] spreadingFactor = readByteColumn(input, size);
+                byte[] powerSetting = readByteColumn(input, size);
+                float[] receivedPower = readFloatColumn(input, size);
+                float[] timeOnAir = readFloatColumn(input, size);
+                short[] payloadSize = new short[size];
+                for (int i = 0; i < size; i++) {
+                    payloadSize[i] = input.readShort();
+                }
+                byte[] collided = readByteColumn(input, size);
+
+                for (int i = 0; i < size; i++) {
+                    sink.writeTransmission(run[i], time[i], sender[i], receiver[i], spreadingFactor[i], powerSetting[i],
+                        receivedPower[i], timeOnAir[i], payloadSize[i], collided[i] != 0);
+                }
+            } else if (table == ColumnarResultWriter.TABLE_POWER_SETTINGS || table == ColumnarResultWriter.TABLE_SPREADING_FACTORS) {
+                long[] networkEntity = readLongColumn(input, size);
+                byte[] value = readByteColumn(input, size);
+
+                for (int i = 0; i < size; i++) {
+                    if (table == ColumnarResultWriter.TABLE_POWER_SETTINGS) {
+                        sink.writePowerSettingChange(run[i], time[i], networkEntity[i], value[i]);
+                    } else {
+                        sink.writeSpreadingFactorChange(run[i], time[i], networkEntity[i], value[i]);
+                    }
+                }
+            } else {
+                throw new IOException(String.format("Unknown table %d in binary simulation results.", table));
+            }
+        }
+        sink.flush();
+    }
+
+
+    // region decoding helpers
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    private static long readZigZag(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int[] readRunColumn(DataInput in, int size) throws IOException {
+        int[] column = new int[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = (int) readVarLong(in);
+        }
+        return column;
+    }
+
+    private static long[] readTimeColumn(DataInput in, int size) throws IOException {
+        long[] column = new long[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += readZigZag(in);
+            column[i] = previous;
+        }
+        return column;
+    }
+
+    private static long[] readLongColumn(DataInput in, int size) throws IOException {
+        long[] column = new long[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = in.readLong();
+        }
+        return column;
+    }
+
+    private static float[] readFloatColumn(DataInput in, int size) throws IOException {
+        float[] column = new float[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = in.readFloat();
+        }
+        return column;
+    }
+
+    private static byte[] readByteColumn(DataInput in, int size) throws IOException {
+        byte[] column = new byte[size];
+        in.readFully(column);
+        return column;
+    }
+
+    // endregion
+}
@@ -0,0 +1,216 @@
+package util.export;
+
+import java.io.*;
+
+/**
+ * Writer for the binary columnar result layout.
+ *
+ * Rows are buffered per table and written as self-contained blocks of at most {@link #BLOCK_SIZE} rows,
+ * so that the file can be appended to during a run and is valid after every flush.
+ * All multi-byte values are big-endian.
+ * <pre>
+ * file   := magic ("DNRS", 4 bytes) version (int8, currently 1) block*
+ * block  := table (int8) rows (int32) column*
+ *
+ * table 1 (transmissions), columns in order:
+ *     run (varint) | time in ms (zigzag varint, delta) | sender (int64) | receiver (int64) |
+ *     spreading factor (int8) | power setting (int8) | received power (float32) | time on air (float32) |
+ *     payload size (int16) | collided (int8)
+ * table 2 (power setting changes) and table 3 (spreading factor changes), columns in order:
+ *     run (varint) | time in ms (zigzag varint, delta) | network entity (int64) | new value (int8)
+ * </pre>
+ * Every column holds the values of all rows of the block contiguously.
+ * Timestamps are delta encoded against the previous row of the same block (the first row against 0),
+ * deltas can be negative when a new run starts.
+ */
+public class ColumnarResultWriter implements ResultSink {
+
+    static final byte[] MAGIC = {'D', 'N', 'R', 'S'};
+    static final byte VERSION = 1;
+    static final byte TABLE_TRANSMISSIONS = 1;
+    static final byte TABLE_POWER_SETTINGS = 2;
+    static final byte TABLE_SPREADING_FACTORS = 3;
+
+    // Maximum amount of rows in a single block
+    static final int BLOCK_SIZE = 4096;
+
+    private final DataOutputStream output;
+
+    private final TransmissionBlock transmissions = new TransmissionBlock();
+    private final ChangeBlock powerSettings = new ChangeBlock(TABLE_POWER_SETTINGS);
+    private final ChangeBlock spreadingFactors = new ChangeBlock(TABLE_SPREADING_FACTORS);
+
+
+    public ColumnarResultWriter(OutputStream stream) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(stream));
+        output.write(MAGIC);
+        output.writeByte(VERSION);
+    }
+
+
+    @Override
+    public void writeTransmission(int run, long timeInMillis, long sender, long receiver, int spreadingFactor, int powerSetting,
+                                  float receivedPower, float timeOnAir, int payloadSize, boolean collided) throws IOException {
+        transmissions.add(run, timeInMillis, sender, receiver, spreadingFactor, powerSetting, receivedPower, timeOnAir, payloadSize, collided);
+        if (transmissions.size == BLOCK_SIZE) {
+            transmissions.write(output);
+        }
+    }
+
+    @Override
+    public void writePowerSettingChange(int run, long timeInMillis, long networkEntity, int powerSetting) throws IOException {
+        powerSettings.add(run, timeInMillis, networkEntity, powerSetting);
+        if (powerSettings.size == BLOCK_SIZE) {
+            powerSettings.write(output);
+        }
+    }
+
+    @Override
+    public void writeSpreadingFactorChange(int run, long timeInMillis, long networkEntity, int spreadingFactor) throws IOException {
+        spreadingFactors.add(run, timeInMillis, networkEntity, spreadingFactor);
+        if (spreadingFactors.size == BLOCK_SIZE) {
+            spreadingFactors.write(output);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        transmissions.write(output);
+        powerSettings.write(output);
+        spreadingFactors.write(output);
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        output.close();
+    }
+
+
+    // region encoding helpers
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static void writeZigZag(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeTimeColumn(DataOutput out, long[] times, int size) throws IOException {
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeZigZag(out, times[i] - previous);
+            previous = times[i];
+        }
+    }
+
+    // endregion
+
+
+    private static class TransmissionBlock {
+        int size = 0;
+        final int[] run = new int[BLOCK_SIZE];
+        final long[] time = new long[BLOCK_SIZE];
+        final long[] sender = new long[BLOCK_SIZE];
+        final long[] receiver = new long[BLOCK_SIZE];
+        final byte[] spreadingFactor = new byte[BLOCK_SIZE];
+        final byte[] powerSetting = new byte[BLOCK_SIZE];
+        final float[] receivedPower = new float[BLOCK_SIZE];
+        final float[] timeOnAir = new float[BLOCK_SIZE];
+        final short[] payloadSize = new short[BLOCK_SIZE];
+        final boolean[] collided = new boolean[BLOCK_SIZE];
+
+        void add(int run, long time, long sender, long receiver, int spreadingFactor, int powerSetting,
+                 float receivedPower, float timeOnAir, int payloadSize, boolean collided) {
+            this.run[size] = run;
+            this.time[size] = time;
+            this.sender[size] = sender;
+            this.receiver[size] = receiver;
+            this.spreadingFactor[size] = (byte) spreadingFactor;
+            this.powerSetting[size] = (byte) powerSetting;
+            this.receivedPower[size] = receivedPower;
+            this.timeOnAir[size] = timeOnAir;
+            this.payloadSize[size] = (short) payloadSize;
+            this.collided[size] = collided;
+            size++;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            if (size == 0) {
+                return;
+            }
+            out.writeByte(TABLE_TRANSMISSIONS);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                writeVarLong(out, run[i]);
+            }
+            writeTimeColumn(out, time, size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(sender[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeLong(receiver[i]);
+            }
+            out.write(spreadingFactor, 0, size);
+            out.write(powerSetting, 0, size);
+            for (int i = 0; i < size; i++) {
+                out.writeFloat(receivedPower[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeFloat(timeOnAir[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeShort(payloadSize[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeBoolean(collided[i]);
+            }
+            size = 0;
+        }
+    }
+
+
+    private static class ChangeBlock {
+        final byte table;
+        int size = 0;
+        final int[] run = new int[BLOCK_SIZE];
+        final long[] time = new long[BLOCK_SIZE];
+        final long[] networkEntity = new long[BLOCK_SIZE];
+        final byte[] value = new byte[BLOCK_SIZE];
+
+        ChangeBlock(byte table) {
+            this.table = table;
+        }
+
+        void add(int run, long time, long networkEntity, int value) {
+            this.run[size] = run;
+            this.time[size] = time;
+            this.networkEntity[size] = networkEntity;
+            this.value[size] = (byte) value;
+            size++;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            if (size == 0) {
+                return;
+            }
+            out.writeByte(table);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                writeVarLong(out, run[i]);
+            }
+            writeTimeColumn(out, time, size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(networkEntity[i]);
+            }
+            out.write(value, 0, size);
+            size = 0;
+        }
+    }
+}
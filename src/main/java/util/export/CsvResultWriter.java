@@ -0,0 +1,111 @@
+package util.export;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer which stores simulation results as gzip compressed csv tables.
+ * Every table is written to a separate file next to the given base file:
+ * <ul>
+ *     <li>{@code <base>_transmissions.csv.gz}: run, time_ms, sender, receiver, spreading_factor, power_setting,
+ *     received_power, time_on_air, payload_size, collided</li>
+ *     <li>{@code <base>_powersettings.csv.gz}: run, time_ms, entity, power_setting</li>
+ *     <li>{@code <base>_spreadingfactors.csv.gz}: run, time_ms, entity, spreading_factor</li>
+ * </ul>
+ */
+public class CsvResultWriter implements ResultSink {
+
+    private static final String EXTENSION = "." + ResultExportFormat.CSV_GZIP.getExtension();
+
+    private final Writer transmissions;
+    private final Writer powerSettings;
+    private final Writer spreadingFactors;
+
+
+    /**
+     * Create a csv writer for the given base file.
+     * @param file The base file, an extension {@code .csv.gz} is stripped before the table suffixes are added.
+     * @throws IOException If one of the table files could not be created.
+     */
+    public CsvResultWriter(File file) throws IOException {
+        String base = file.getPath();
+        if (base.endsWith(EXTENSION)) {
+            base = base.substring(0, base.length() - EXTENSION.length());
+        }
+
+        transmissions = openTable(base + "_transmissions" + EXTENSION,
+            "run,time_ms,sender,receiver,spreading_factor,power_setting,received_power,time_on_air,payload_size,collided");
+        powerSettings = openTable(base + "_powersettings" + EXTENSION, "run,time_ms,entity,power_setting");
+        spreadingFactors = openTable(base + "_spreadingfactors" + EXTENSION, "run,time_ms,entity,spreading_factor");
+    }
+
+    private static Writer openTable(String path, String header) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+            new GZIPOutputStream(new FileOutputStream(path)), StandardCharsets.US_ASCII));
+        writer.write(header);
+        writer.write('\n');
+        return writer;
+    }
+
+
+    @Override
+    public void writeTransmission(int run, long timeInMillis, long sender, long receiver, int spreadingFactor, int powerSetting,
+                                  float receivedPower, float timeOnAir, int payloadSize, boolean collided) throws IOException {
+        transmissions.write(Integer.toString(run));
+        transmissions.write(',');
+        transmissions.write(Long.toString(timeInMillis));
+        transmissions.write(',');
+        transmissions.write(Long.toUnsignedString(sender));
+        transmissions.write(',');
+        transmissions.write(Long.toUnsignedString(receiver));
+        transmissions.write(',');
+        transmissions.write(Integer.toString(spreadingFactor));
+        transmissions.write(',');
+        transmissions.write(Integer.toString(powerSetting));
+        transmissions.write(',');
+        transmissions.write(Float.toString(receivedPower));
+        transmissions.write(',');
+        transmissions.write(Float.toString(timeOnAir));
+        transmissions.write(',');
+        transmissions.write(Integer.toString(payloadSize));
+        transmissions.write(',');
+        transmissions.write(collided ? '1' : '0');
+        transmissions.write('\n');
+    }
+
+    @Override
+    public void writePowerSettingChange(int run, long timeInMillis, long networkEntity, int powerSetting) throws IOException {
+        writeChange(powerSettings, run, timeInMillis, networkEntity, powerSetting);
+    }
+
+    @Override
+    public void writeSpreadingFactorChange(int run, long timeInMillis, long networkEntity, int spreadingFactor) throws IOException {
+        writeChange(spreadingFactors, run, timeInMillis, networkEntity, spreadingFactor);
+    }
+
+    private static void writeChange(Writer writer, int run, long timeInMillis, long networkEntity, int value) throws IOException {
+        writer.write(Integer.toString(run));
+        writer.write(',');
+        writer.write(Long.toString(timeInMillis));
+        writer.write(',');
+        writer.write(Long.toUnsignedString(networkEntity));
+        writer.write(',');
+        writer.write(Integer.toString(value));
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        transmissions.flush();
+        powerSettings.flush();
+        spreadingFactors.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        transmissions.close();
+        powerSettings.close();
+        spreadingFactors.close();
+    }
+}
@@ -0,0 +1,38 @@
+package util.export;
+
+/**
+ * The formats in which the results of a simulation can be exported.
+ */
+public enum ResultExportFormat {
+    /**
+     * The verbose xml format written by {@link util.xml.SimulationWriter}.
+     */
+    XML("xml output", "xml"),
+    /**
+     * Gzip compressed csv tables, one file per table (see {@link CsvResultWriter}).
+     */
+    CSV_GZIP("gzip csv output", "csv.gz"),
+    /**
+     * Binary columnar layout with delta encoded timestamps (see {@link ColumnarResultWriter}).
+     */
+    BINARY("binary columnar output", "dnr");
+
+    private final String description;
+    private final String extension;
+
+    ResultExportFormat(String description, String extension) {
+        this.description = description;
+        this.extension = extension;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return The extension of the exported files, without the leading dot (can contain several dots, e.g. csv.gz).
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
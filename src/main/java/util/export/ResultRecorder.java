@@ -0,0 +1,184 @@
+package util.export;
+
+import iot.lora.LoraTransmission;
+import util.SettingsReader;
+import util.Statistics;
+import util.StatisticsListener;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the results of the simulation incrementally (during the runs) to a binary columnar spool file.
+ * The spool is converted to the requested {@link ResultExportFormat} when the results are exported,
+ * without having to walk the history kept in {@link Statistics}.
+ */
+public class ResultRecorder implements StatisticsListener {
+
+    private static ResultRecorder instance;
+
+    // The spool file to which the results are written during the simulation
+    private File spoolFile;
+    private ColumnarResultWriter spool;
+
+    // The last recorded power setting and spreading factor per network entity (only changes are recorded)
+    private final Map<Long, Integer> lastPowerSetting;
+    private final Map<Long, Integer> lastSpreadingFactor;
+
+    // Whether the results of the run are recorded, the setting is only read once per run
+    private int recordedRun;
+    private boolean recording;
+
+
+    private ResultRecorder() {
+        recordedRun = -1;
+        lastPowerSetting = new HashMap<>();
+        lastSpreadingFactor = new HashMap<>();
+    }
+
+    /**
+     * Get the recorder, which is registered to {@link Statistics} on first use.
+     * @return The singleton instance.
+     */
+    public static synchronized ResultRecorder getInstance() {
+        if (instance == null) {
+            instance = new ResultRecorder();
+            Statistics.getInstance().addListener(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether incremental recording is enabled in the settings.
+     * @return True if the results are recorded during the simulation.
+     */
+    public static boolean isEnabled() {
+        return SettingsReader.getInstance().useIncrementalResultRecording();
+    }
+
+    /**
+     * Check whether the results of the given run are recorded.
+     * The setting is read on the first entry of a run, so it does not change in the middle of a run.
+     * @param run The run of the entry.
+     * @return True if the entries of the run are recorded.
+     */
+    private boolean isRecording(int run) {
+        if (run != recordedRun) {
+            recordedRun = run;
+            recording = isEnabled();
+        }
+        return recording;
+    }
+
+
+    // region recording
+
+    @Override
+    public synchronized void onTransmissionReceived(int run, long receiver, LoraTransmission transmission) {
+        if (!isRecording(run)) {
+            return;
+        }
+        try {
+            getSpool().writeTransmission(run, transmission.getDepartureTime().toNanoOfDay() / 1_000_000,
+                transmission.getSender(), receiver, transmission.getSpreadingFactor(),
+                lastPowerSetting.getOrDefault(transmission.getSender(), 0), (float) transmission.getTransmissionPower(),
+                (float) transmission.getTimeOnAir(), transmission.getContent().getPayload().length, transmission.isCollided());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void onPowerSettingEntry(int run, long networkEntity, int timeInSeconds, int powerSetting) {
+        Integer previous = lastPowerSetting.put(networkEntity, powerSetting);
+        if (!isRecording(run) || (previous != null && previous == powerSetting)) {
+            return;
+        }
+        try {
+            getSpool().writePowerSettingChange(run, timeInSeconds * 1000L, networkEntity, powerSetting);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void onSpreadingFactorEntry(int run, long networkEntity, int timeInSeconds, int spreadingFactor) {
+        Integer previous = lastSpreadingFactor.put(networkEntity, spreadingFactor);
+        if (!isRecording(run) || (previous != null && previous == spreadingFactor)) {
+            return;
+        }
+        try {
+            getSpool().writeSpreadingFactorChange(run, timeInSeconds * 1000L, networkEntity, spreadingFactor);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void onReset() {
+        lastPowerSetting.clear();
+        lastSpreadingFactor.clear();
+        recordedRun = -1;
+        closeSpool();
+    }
+
+    // endregion
+
+
+    /**
+     * Export the results recorded so far.
+     * @param file The file to export to.
+     * @param format The format of the export, either {@link ResultExportFormat#CSV_GZIP} or {@link ResultExportFormat#BINARY}.
+     * @throws IllegalStateException If incremental recording is disabled (for the last recorded run).
+     * @throws IllegalArgumentException If the format is not supported by the recorder.
+     */
+    public synchronized void exportTo(File file, ResultExportFormat format) {
+        if (recordedRun < 0 ? !isEnabled() : !recording) {
+            throw new IllegalStateException("Incremental result recording is disabled in the settings.");
+        }
+        try {
+            getSpool().flush();
+
+            switch (format) {
+                case BINARY:
+                    Files.copy(spoolFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    break;
+                case CSV_GZIP:
+                    try (InputStream input = new FileInputStream(spoolFile); CsvResultWriter writer = new CsvResultWriter(file)) {
+                        ColumnarResultReader.replay(input, writer);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("The format %s is not supported by the result recorder.", format));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    private ColumnarResultWriter getSpool() throws IOException {
+        if (spool == null) {
+            spoolFile = File.createTempFile("dingnet-results", "." + ResultExportFormat.BINARY.getExtension());
+            spoolFile.deleteOnExit();
+            spool = new ColumnarResultWriter(new FileOutputStream(spoolFile));
+        }
+        return spool;
+    }
+
+    private void closeSpool() {
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            spoolFile.delete();
+            spool = null;
+            spoolFile = null;
+        }
+    }
+}
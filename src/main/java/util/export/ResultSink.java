@@ -0,0 +1,54 @@
+package util.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Row oriented sink for simulation results.
+ * Rows are passed as primitives so that no intermediate objects are needed while recording or converting.
+ */
+public interface ResultSink extends Closeable {
+
+    /**
+     * Write a single received transmission.
+     * @param run The run in which the transmission was received.
+     * @param timeInMillis The departure time of the transmission (in milliseconds of the simulated day).
+     * @param sender The EUI of the sender.
+     * @param receiver The EUI of the receiver.
+     * @param spreadingFactor The spreading factor used for the transmission.
+     * @param powerSetting The power setting of the sender at the time of the transmission.
+     * @param receivedPower The received signal strength (in dBm).
+     * @param timeOnAir The time on air (in milliseconds).
+     * @param payloadSize The size of the payload (in bytes).
+     * @param collided True if the transmission collided with another one.
+     * @throws IOException If the row could not be written.
+     */
+    void writeTransmission(int run, long timeInMillis, long sender, long receiver, int spreadingFactor, int powerSetting,
+                           float receivedPower, float timeOnAir, int payloadSize, boolean collided) throws IOException;
+
+    /**
+     * Write a change of the power setting of a network entity.
+     * @param run The run in which the change happened.
+     * @param timeInMillis The time of the change (in milliseconds of the simulated day).
+     * @param networkEntity The EUI of the network entity.
+     * @param powerSetting The new power setting.
+     * @throws IOException If the row could not be written.
+     */
+    void writePowerSettingChange(int run, long timeInMillis, long networkEntity, int powerSetting) throws IOException;
+
+    /**
+     * Write a change of the spreading factor of a network entity.
+     * @param run The run in which the change happened.
+     * @param timeInMillis The time of the change (in milliseconds of the simulated day).
+     * @param networkEntity The EUI of the network entity.
+     * @param spreadingFactor The new spreading factor.
+     * @throws IOException If the row could not be written.
+     */
+    void writeSpreadingFactorChange(int run, long timeInMillis, long networkEntity, int spreadingFactor) throws IOException;
+
+    /**
+     * Write all buffered rows to the underlying output.
+     * @throws IOException If the rows could not be written.
+     */
+    void flush() throws IOException;
+}
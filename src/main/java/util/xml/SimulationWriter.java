@@ -75,6 +75,7 @@ public class SimulationWriter {
         int i = 0;
         var env = simulation.getEnvironment();
         Statistics statistics = Statistics.getInstance();
+        var powerSettings = statistics.getPowerSettingHistory(networkEntity.getEUI(), run);
 
         for (LoraTransmission transmission : statistics.getSentTransmissions(networkEntity.getEUI(), run)) {
             Element receivedTransmissionElement = doc.createElement("receivedTransmission");
@@ -118,7 +119,7 @@ public class SimulationWriter {
             timeOnAir.appendChild(doc.createTextNode(Double.toString(transmission.getTimeOnAir())));
 
             Element powerSetting = doc.createElement("powerSetting");
-            powerSetting.appendChild(doc.createTextNode(statistics.getPowerSettingHistory(networkEntity.getEUI(), run).get(i).toString()));
+            powerSetting.appendChild(doc.createTextNode(powerSettings.get(i).toString()));
 
             Element collision = doc.createElement("collision");
             collision.appendChild(doc.createTextNode(Boolean.toString(transmission.isCollided())));
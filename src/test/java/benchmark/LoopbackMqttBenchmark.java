@@ -0,0 +1,61 @@
+package benchmark;
+
+import iot.lora.*;
+import iot.mqtt.LoopbackMqttBroker;
+import iot.mqtt.PahoMqttClient;
+import iot.mqtt.Topics;
+import iot.mqtt.TransmissionWrapper;
+import util.Pair;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the networked client path: uplinks are published by a {@link PahoMqttClient} to the
+ * {@link LoopbackMqttBroker} and received again through the wildcard subscription of the network server.
+ * The payload format is the one in the settings (mqtt.PayloadFormat).
+ *
+ * Usage: LoopbackMqttBenchmark [messages]
+ * NOTE: the json format needs reflective access to java.time on recent JDKs: --add-opens java.base/java.time=ALL-UNNAMED
+ */
+public class LoopbackMqttBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        var broker = LoopbackMqttBroker.getInstance(0);
+        var client = new PahoMqttClient(broker.getAddress(), "loopback-benchmark");
+
+        var received = new CountDownLatch(messages);
+        var totalLatency = new AtomicLong();
+        client.subscribe(client, Topics.getGatewayToNetServer("+", "+", "+"), TransmissionWrapper.class, (topic, message) -> {
+            // The time of publication is carried in the payload of the packet
+            long sentAt = message.getTransmission().getDepartureTime().toNanoOfDay();
+            totalLatency.addAndGet(System.nanoTime() % LocalTime.MAX.toNanoOfDay() - sentAt);
+            received.countDown();
+        });
+
+        var header = new BasicFrameHeader().setSourceAddress(1L);
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            var packet = new LoraWanPacket(i % 100, 1L, new byte[] {1, 10, 20, 30}, header, List.of());
+            var departure = LocalTime.ofNanoOfDay(System.nanoTime() % LocalTime.MAX.toNanoOfDay());
+            var transmission = new LoraTransmission(i % 100, 2L, new Pair<>(0, 0), 14.0,
+                EU868ParameterByDataRate.DATA_RATE_5, 61.7, departure, packet);
+            client.publish(Topics.getGatewayToNetServer(1L, 2L, i % 100), new TransmissionWrapper(transmission));
+        }
+        boolean completed = received.await(60, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%d messages in %.1f ms: %.0f msg/s, mean round trip %.3f ms%s%n", messages, elapsed / 1e6,
+            messages / (elapsed / 1e9), totalLatency.get() / 1e6 / (messages - received.getCount()),
+            completed ? "" : " (" + received.getCount() + " messages not received)");
+        System.out.println(broker);
+
+        client.disconnect();
+        LoopbackMqttBroker.shutdown();
+    }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import iot.lora.*;
+import iot.mqtt.BinaryMessageCodec;
+import iot.mqtt.MqttMessageType;
+import iot.mqtt.PahoMqttClient;
+import iot.mqtt.TransmissionWrapper;
+import util.Pair;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Compares the json and binary encoding of the mqtt messages used by {@link PahoMqttClient}.
+ * Every operation encodes an uplink and decodes it for the given amount of consumers of the same filter,
+ * json once per consumer (as before) and binary once per message.
+ *
+ * Usage: MqttCodecBenchmark [iterations] [consumers]
+ * NOTE: gson needs reflective access to java.time on recent JDKs: --add-opens java.base/java.time=ALL-UNNAMED
+ */
+public class MqttCodecBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        var header = new BasicFrameHeader().setSourceAddress(1L).setFCnt((short) 12);
+        var packet = new LoraWanPacket(1L, 2L, new byte[] {1, 10, 20, 30, 40, 50, 60, 70, 80}, header, List.of());
+        var message = new TransmissionWrapper(new LoraTransmission(1L, 2L, new Pair<>(100, 200), 14.0,
+            EU868ParameterByDataRate.DATA_RATE_5, 61.7, LocalTime.of(10, 30), packet));
+
+        var gson = PahoMqttClient.createGson();
+        Supplier<Object> json = () -> {
+            var payload = gson.toJson(message).getBytes(US_ASCII);
+            Object decoded = null;
+            for (int i = 0; i < consumers; i++) {
+                decoded = gson.fromJson(new String(payload), TransmissionWrapper.class);
+            }
+            return decoded;
+        };
+        Supplier<Object> binary = () -> {
+            var payload = BinaryMessageCodec.encode(message);
+            MqttMessageType decoded = BinaryMessageCodec.decode(payload);
+            return decoded;
+        };
+
+        System.out.printf("payload size: json %d bytes, binary %d bytes%n",
+            gson.toJson(message).getBytes(US_ASCII).length, BinaryMessageCodec.encode(message).length);
+
+        // Warm up both paths before measuring
+        measure(json, iterations);
+        measure(binary, iterations);
+
+        System.out.printf("json:   %.0f ns/message (%d consumers)%n", measure(json, iterations), consumers);
+        System.out.printf("binary: %.0f ns/message (%d consumers)%n", measure(binary, iterations), consumers);
+    }
+
+    private static double measure(Supplier<Object> operation, int iterations) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += operation.get().hashCode() & 1;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+        return (double) elapsed / iterations;
+    }
+}
@@ -0,0 +1,138 @@
+package benchmark;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import iot.Characteristic;
+import iot.Environment;
+import org.jxmapviewer.viewer.GeoPosition;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Contention test of the {@link PollutionGrid}: a busy monitor thread adds measurements while a painter thread
+ * reads the raster of the map and a routing thread interpolates the pollution in random positions.
+ * With the 'locked' argument every access is guarded by a single lock, like the grid used to do.
+ *
+ * Usage: PollutionGridContentionBenchmark [seconds] [locked]
+ */
+public class PollutionGridContentionBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final int DEVICES = 200;
+    private static final int SQUARES = 100;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        boolean locked = args.length > 1 && args[1].equals("locked");
+
+        var environment = new Environment(new Characteristic[SIZE][SIZE], new GeoPosition(50.88, 4.70), 1, new HashMap<>(), new HashMap<>());
+        var mapHelper = environment.getMapHelper();
+        var grid = new PollutionGrid();
+        var lock = new Object();
+        var running = new AtomicBoolean(true);
+
+        var measurements = new AtomicLong();
+        var monitor = new Thread(() -> {
+            var random = new Random(1);
+            while (running.get()) {
+                var position = mapHelper.toGeoPosition(random.nextInt(SIZE), random.nextInt(SIZE));
+                var level = new PollutionLevel(random.nextDouble() * 125);
+                if (locked) {
+                    synchronized (lock) {
+                        grid.addMeasurement(random.nextInt(DEVICES), position, level);
+                    }
+                } else {
+                    grid.addMeasurement(random.nextInt(DEVICES), position, level);
+                }
+                measurements.incrementAndGet();
+                LockSupport.parkNanos(50_000);
+            }
+        }, "monitor");
+
+        var frames = new Statistics();
+        var painter = new Thread(() -> {
+            while (running.get()) {
+                long start = System.nanoTime();
+                double total = 0;
+                if (locked) {
+                    synchronized (lock) {
+                        total = paint(grid, environment);
+                    }
+                } else {
+                    total = paint(grid, environment);
+                }
+                frames.add(System.nanoTime() - start, total);
+            }
+        }, "painter");
+
+        var queries = new Statistics();
+        var router = new Thread(() -> {
+            var random = new Random(2);
+            while (running.get()) {
+                var position = mapHelper.toGeoPosition(random.nextInt(SIZE), random.nextInt(SIZE));
+                long start = System.nanoTime();
+                double level;
+                if (locked) {
+                    synchronized (lock) {
+                        level = grid.getPollutionLevel(position).getPollutionFactor();
+                    }
+                } else {
+                    level = grid.getPollutionLevel(position).getPollutionFactor();
+                }
+                queries.add(System.nanoTime() - start, level);
+            }
+        }, "router");
+
+        monitor.start();
+        painter.start();
+        router.start();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        monitor.join();
+        painter.join();
+        router.join();
+
+        System.out.printf("%s grid, %d s: %d measurements%n", locked ? "locked" : "snapshot", seconds, measurements.get());
+        System.out.printf("painter: %d frames (%.1f/s), mean %.3f ms, max %.3f ms%n", frames.count,
+            frames.count / (double) seconds, frames.mean() / 1e6, frames.max / 1e6);
+        System.out.printf("router: %d queries (%.0f/s), mean %.3f us, max %.3f ms%n", queries.count,
+            queries.count / (double) seconds, queries.mean() / 1e3, queries.max / 1e6);
+    }
+
+    private static double paint(PollutionGrid grid, Environment environment) {
+        var raster = grid.getRaster(environment, SQUARES);
+        double total = 0;
+        for (int i = 0; i < SQUARES; i++) {
+            for (int j = 0; j < SQUARES; j++) {
+                total += raster.getPollutionLevel(i, j);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The latencies of the operations of a single thread.
+     */
+    private static class Statistics {
+        private long count;
+        private long total;
+        private long max;
+        // Keeps the results of the operations alive
+        private double sink;
+
+        void add(long latency, double result) {
+            count++;
+            total += latency;
+            max = Math.max(max, latency);
+            sink += result;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : total / (double) count;
+        }
+    }
+}
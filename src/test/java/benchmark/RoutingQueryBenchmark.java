@@ -0,0 +1,118 @@
+package benchmark;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.AStarRouter;
+import application.routing.LandmarkIndex;
+import application.routing.LandmarkRouter;
+import application.routing.PathFinder;
+import application.routing.heuristic.DistanceHeuristic;
+import application.routing.heuristic.RoutingHeuristic;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Query test of the path finders: routes between random waypoints of a square grid of streets, of which a part is
+ * closed, with and without landmarks. The landmarks are calculated and saved once, and loaded again afterwards.
+ *
+ * Usage: RoutingQueryBenchmark [grid size] [queries] [landmarks]
+ */
+public class RoutingQueryBenchmark {
+
+    private static final double SPACING = 0.001;
+    // The fraction of the streets which is closed
+    private static final double CLOSED = 0.3;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 320;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int landmarks = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        Random random = new Random(1);
+        GraphStructure graph = new GraphStructure();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                graph.addWayPoint(new GeoPosition(50.85 + i * SPACING, 4.67 + j * SPACING));
+            }
+        }
+        // The waypoint Ids start at 1, row by row
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                long id = i * size + j + 1;
+                if (j + 1 < size && random.nextDouble() >= CLOSED) {
+                    graph.addConnection(new Connection(id, id + 1));
+                    graph.addConnection(new Connection(id + 1, id));
+                }
+                if (i + 1 < size && random.nextDouble() >= CLOSED) {
+                    graph.addConnection(new Connection(id, id + size));
+                    graph.addConnection(new Connection(id + size, id));
+                }
+            }
+        }
+        System.out.printf("%d waypoints, %d connections, %d landmarks%n",
+            graph.getWayPoints().size(), graph.getConnections().size(), landmarks);
+
+        File configurationFile = Files.createTempFile("benchmark", ".xml").toFile();
+        configurationFile.deleteOnExit();
+
+        var pollutionGrid = new PollutionGrid();
+        for (int i = 0; i < 200; i++) {
+            var measured = new GeoPosition(50.85 + random.nextDouble() * size * SPACING, 4.67 + random.nextDouble() * size * SPACING);
+            pollutionGrid.addMeasurement(i, measured, new PollutionLevel(random.nextDouble()));
+        }
+
+        for (RoutingHeuristic heuristic : List.of(new DistanceHeuristic(), new SimplePollutionHeuristic(pollutionGrid))) {
+            String name = heuristic.getClass().getSimpleName();
+            run(name + " ASTAR", graph, new AStarRouter(heuristic), size, queries);
+
+            for (int i = 0; i < 2; i++) {
+                var router = new LandmarkRouter(heuristic, landmarks);
+                boolean saved = LandmarkIndex.getIndexFile(configurationFile).isFile();
+                long start = System.nanoTime();
+                router.preprocess(graph, configurationFile);
+                System.out.printf("%s ALT: preprocessing %.1f ms (%s)%n",
+                    name, (System.nanoTime() - start) / 1e6, saved ? "loaded" : "calculated");
+                run(name + " ALT", graph, router, size, queries);
+            }
+        }
+        LandmarkIndex.getIndexFile(configurationFile).delete();
+    }
+
+    private static void run(String name, GraphStructure graph, PathFinder pathFinder, int size, int queries) {
+        var random = new Random(2);
+        long total = 0;
+        long max = 0;
+        double cost = 0;
+        int routes = 0;
+        for (int i = 0; i < queries; i++) {
+            var begin = graph.getWayPoint((long) random.nextInt(size * size) + 1);
+            var end = graph.getWayPoint((long) random.nextInt(size * size) + 1);
+
+            long start = System.nanoTime();
+            List<GeoPosition> route;
+            try {
+                route = pathFinder.retrievePath(graph, begin, end);
+            } catch (RuntimeException e) {
+                // The waypoints are not connected
+                continue;
+            }
+            long latency = System.nanoTime() - start;
+
+            routes++;
+            total += latency;
+            max = Math.max(max, latency);
+            cost += pathFinder.getPathCost(graph, route);
+        }
+
+        System.out.printf("%s: %d routes, mean %.3f ms, max %.3f ms (total cost %.3f)%n",
+            name, routes, total / 1e6 / routes, max / 1e6, cost);
+    }
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.PathFinder;
+import application.routing.PathFinderFactory;
+import application.routing.PathFinderFactory.PathFinderType;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replanning test of the path finders: a user travels over a square grid of waypoints to the opposite corner,
+ * and the route is retrieved again after every step, while a few pollution measurements arrive in between.
+ *
+ * Usage: RoutingReplanningBenchmark [grid size] [measurements per step]
+ */
+public class RoutingReplanningBenchmark {
+
+    private static final double SPACING = 0.001;
+    private static final int TRIPS = 5;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int measurementsPerStep = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        GraphStructure graph = new GraphStructure();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                graph.addWayPoint(new GeoPosition(50.85 + i * SPACING, 4.67 + j * SPACING));
+            }
+        }
+        // The waypoint Ids start at 1, row by row
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                long id = i * size + j + 1;
+                if (j + 1 < size) {
+                    graph.addConnection(new Connection(id, id + 1));
+                    graph.addConnection(new Connection(id + 1, id));
+                }
+                if (i + 1 < size) {
+                    graph.addConnection(new Connection(id, id + size));
+                    graph.addConnection(new Connection(id + size, id));
+                }
+            }
+        }
+        System.out.printf("%d waypoints, %d connections, %d measurements per step%n",
+            graph.getWayPoints().size(), graph.getConnections().size(), measurementsPerStep);
+
+        for (PathFinderType type : PathFinderType.values()) {
+            run(graph, type, size, measurementsPerStep);
+        }
+    }
+
+    private static void run(GraphStructure graph, PathFinderType type, int size, int measurementsPerStep) {
+        var random = new Random(1);
+        var pollutionGrid = new PollutionGrid();
+        PathFinder pathFinder = PathFinderFactory.createPathFinder(type, new SimplePollutionHeuristic(pollutionGrid));
+        var begin = graph.getWayPoint(1);
+        var end = graph.getWayPoint((long) size * size);
+
+        long replans = 0;
+        long total = 0;
+        long max = 0;
+        double cost = 0;
+        for (int trip = 0; trip < TRIPS; trip++) {
+            var position = begin;
+            while (!position.equals(end)) {
+                for (int i = 0; i < measurementsPerStep; i++) {
+                    var measured = new GeoPosition(50.85 + random.nextDouble() * size * SPACING, 4.67 + random.nextDouble() * size * SPACING);
+                    pollutionGrid.addMeasurement(random.nextInt(50), measured, new PollutionLevel(random.nextDouble()));
+                }
+
+                long start = System.nanoTime();
+                List<GeoPosition> route = pathFinder.retrievePath(graph, position, end);
+                long latency = System.nanoTime() - start;
+
+                replans++;
+                total += latency;
+                max = Math.max(max, latency);
+                cost += pathFinder.getPathCost(graph, route);
+                position = route.get(1);
+            }
+        }
+
+        System.out.printf("%s: %d routes, mean %.3f ms, max %.3f ms (total cost %.3f)%n",
+            type, replans, total / 1e6 / replans, max / 1e6, cost);
+    }
+}
@@ -0,0 +1,30 @@
+package unit;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Waiting for the asynchronous deliveries in the MQTT tests.
+ */
+class AsyncTestConditions {
+
+    private AsyncTestConditions() {}
+
+    /**
+     * Waits until the condition holds, and fails the test if it does not hold within 10 seconds.
+     * @param condition The condition to wait for.
+     */
+    static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
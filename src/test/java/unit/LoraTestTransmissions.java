@@ -0,0 +1,42 @@
+package unit;
+
+import iot.lora.EU868ParameterByDataRate;
+import iot.lora.LoraTransmission;
+import iot.lora.LoraWanPacket;
+import util.Pair;
+
+import java.time.LocalTime;
+import java.util.List;
+
+
+/**
+ * Transmissions for the statistics and export tests, with a payload of 5 bytes at data rate 3.
+ */
+class LoraTestTransmissions {
+
+    private LoraTestTransmissions() {}
+
+    static LoraTransmission transmission(long sender, long receiver, double power, double timeOnAir, boolean collided) {
+        return transmission(sender, receiver, power, timeOnAir, LocalTime.of(0, 0), collided);
+    }
+
+    /**
+     * @param sender The id of the sender.
+     * @param receiver The id of the receiver.
+     * @param power The transmission power of a sent transmission, or the received power of a received transmission.
+     * @param timeOnAir The time on air in milliseconds.
+     * @param departureTime The departure time of the transmission.
+     * @param collided Whether the transmission collided.
+     * @return A transmission with the given properties.
+     */
+    static LoraTransmission transmission(long sender, long receiver, double power, double timeOnAir,
+                                         LocalTime departureTime, boolean collided) {
+        var transmission = new LoraTransmission(sender, receiver, new Pair<>(0, 0), power,
+            EU868ParameterByDataRate.DATA_RATE_3, timeOnAir, departureTime,
+            new LoraWanPacket(sender, receiver, new byte[5], List.of()));
+        if (collided) {
+            transmission.setCollided();
+        }
+        return transmission;
+    }
+}
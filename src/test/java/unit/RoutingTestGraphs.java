@@ -0,0 +1,60 @@
+package unit;
+
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+
+/**
+ * Random waypoints and graphs for the routing tests, in a small area around Leuven.
+ */
+class RoutingTestGraphs {
+
+    private RoutingTestGraphs() {}
+
+    static GeoPosition randomPosition(Random random) {
+        return new GeoPosition(50.85 + random.nextDouble() / 50, 4.67 + random.nextDouble() / 50);
+    }
+
+    /**
+     * @param random The random generator, which determines the graph.
+     * @param wayPoints The amount of waypoints.
+     * @param connectionsPerWayPoint The amount of outgoing connections which are tried for every waypoint
+     * (connections to itself or which already exist are skipped).
+     * @return A graph with random waypoints and connections.
+     */
+    static GraphStructure randomGraph(Random random, int wayPoints, int connectionsPerWayPoint) {
+        return randomGraph(random, wayPoints, connectionsPerWayPoint, false);
+    }
+
+    /**
+     * @param random The random generator, which determines the graph.
+     * @param wayPoints The amount of waypoints.
+     * @param connectionsPerWayPoint The amount of outgoing connections which are tried for every waypoint
+     * (connections to itself or which already exist are skipped).
+     * @param bothWays True if every connection is added in the opposite direction as well.
+     * @return A graph with random waypoints and connections.
+     */
+    static GraphStructure randomGraph(Random random, int wayPoints, int connectionsPerWayPoint, boolean bothWays) {
+        GraphStructure graph = new GraphStructure();
+        for (int i = 0; i < wayPoints; i++) {
+            graph.addWayPoint(randomPosition(random));
+        }
+        var ids = new ArrayList<>(graph.getWayPoints().keySet());
+        for (long from : ids) {
+            for (int i = 0; i < connectionsPerWayPoint; i++) {
+                long to = ids.get(random.nextInt(ids.size()));
+                if (to != from && !graph.connectionExists(from, to)) {
+                    graph.addConnection(new Connection(from, to));
+                    if (bothWays) {
+                        graph.addConnection(new Connection(to, from));
+                    }
+                }
+            }
+        }
+        return graph;
+    }
+}
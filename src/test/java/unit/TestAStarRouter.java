@@ -0,0 +1,111 @@
+package unit;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.AStarRouter;
+import application.routing.heuristic.DistanceHeuristic;
+import application.routing.heuristic.RoutingHeuristic;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.junit.jupiter.api.Test;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static unit.RoutingTestGraphs.randomGraph;
+import static unit.RoutingTestGraphs.randomPosition;
+
+
+class TestAStarRouter {
+
+    @Test
+    void shortestPaths() {
+        var pollutionGrid = new PollutionGrid();
+        Random random = new Random(5);
+        for (int i = 0; i < 30; i++) {
+            pollutionGrid.addMeasurement(i, randomPosition(random), new PollutionLevel(random.nextDouble()));
+        }
+
+        for (RoutingHeuristic heuristic : List.of(new DistanceHeuristic(), new SimplePollutionHeuristic(pollutionGrid))) {
+            GraphStructure graph = randomGraph(random, 200, 4);
+            var router = new AStarRouter(heuristic);
+            var wayPoints = new ArrayList<>(graph.getWayPoints().values());
+
+            for (int i = 0; i < 100; i++) {
+                var begin = wayPoints.get(random.nextInt(wayPoints.size()));
+                var end = wayPoints.get(random.nextInt(wayPoints.size()));
+                if (begin.equals(end)) {
+                    continue;
+                }
+                double expected = cheapestRoute(graph, heuristic, begin, end);
+
+                if (Double.isInfinite(expected)) {
+                    assertThrows(RuntimeException.class, () -> router.retrievePath(graph, begin, end));
+                } else {
+                    var path = router.retrievePath(graph, begin, end);
+                    assertEquals(begin, path.get(0));
+                    assertEquals(end, path.get(path.size() - 1));
+                    assertEquals(expected, cost(graph, heuristic, path), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    void roundTrip() {
+        GraphStructure graph = new GraphStructure();
+        graph.addWayPoint(new GeoPosition(50.850, 4.670));
+        graph.addWayPoint(new GeoPosition(50.851, 4.670));
+        graph.addWayPoint(new GeoPosition(50.851, 4.671));
+        graph.addConnection(new Connection(1, 2));
+        graph.addConnection(new Connection(2, 3));
+        graph.addConnection(new Connection(3, 1));
+
+        var path = new AStarRouter(new DistanceHeuristic()).retrievePath(graph, graph.getWayPoint(1), graph.getWayPoint(1));
+        assertEquals(List.of(graph.getWayPoint(1), graph.getWayPoint(2), graph.getWayPoint(3), graph.getWayPoint(1)), path);
+    }
+
+
+    private static double cost(GraphStructure graph, RoutingHeuristic heuristic, List<GeoPosition> path) {
+        double cost = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            long connectionId = graph.getConnectionId(graph.getClosestWayPoint(path.get(i)), graph.getClosestWayPoint(path.get(i + 1)))
+                .orElseThrow();
+            cost += heuristic.calculateHeuristic(
+                new RoutingHeuristic.HeuristicEntry(graph, graph.getConnection(connectionId), path.get(path.size() - 1)));
+        }
+        return cost;
+    }
+
+    /**
+     * Reference search (Dijkstra without an estimate) for the cost of the cheapest route.
+     */
+    private static double cheapestRoute(GraphStructure graph, RoutingHeuristic heuristic, GeoPosition begin, GeoPosition end) {
+        long beginId = graph.getClosestWayPoint(begin);
+        long endId = graph.getClosestWayPoint(end);
+        Map<Long, Double> costs = new HashMap<>();
+        PriorityQueue<Map.Entry<Long, Double>> fringe = new PriorityQueue<>(Map.Entry.comparingByValue());
+        fringe.add(Map.entry(beginId, 0.0));
+
+        while (!fringe.isEmpty()) {
+            var current = fringe.poll();
+            if (costs.containsKey(current.getKey())) {
+                continue;
+            }
+            costs.put(current.getKey(), current.getValue());
+            for (var connection : graph.getOutgoingConnections(current.getKey())) {
+                double cost = current.getValue()
+                    + heuristic.calculateHeuristic(new RoutingHeuristic.HeuristicEntry(graph, connection, end));
+                fringe.add(Map.entry(connection.getTo(), cost));
+            }
+        }
+        return costs.getOrDefault(endId, Double.POSITIVE_INFINITY);
+    }
+}
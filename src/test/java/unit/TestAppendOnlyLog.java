@@ -0,0 +1,49 @@
+package unit;
+
+import org.junit.jupiter.api.Test;
+import util.AppendOnlyLog;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class TestAppendOnlyLog {
+
+    @Test
+    void snapshotIsStable() {
+        AppendOnlyLog<Integer> log = new AppendOnlyLog<>();
+        for (int i = 0; i < 3000; i++) {
+            log.append(i);
+        }
+        List<Integer> snapshot = log.snapshot();
+        log.append(3000);
+
+        assertEquals(3000, snapshot.size());
+        assertEquals(3001, log.size());
+        assertEquals(2999, (int) snapshot.get(2999));
+    }
+
+    @Test
+    void concurrentReadersSeeConsistentPrefix() throws InterruptedException {
+        AppendOnlyLog<Integer> log = new AppendOnlyLog<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                log.append(i);
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            List<Integer> snapshot = log.snapshot();
+            for (int i = 0; i < snapshot.size(); i += 97) {
+                assertEquals(i, (int) snapshot.get(i));
+            }
+            if (!snapshot.isEmpty()) {
+                assertEquals(snapshot.size() - 1, (int) snapshot.get(snapshot.size() - 1));
+            }
+        }
+        writer.join();
+        assertEquals(200_000, log.snapshot().size());
+    }
+}
@@ -0,0 +1,157 @@
+package unit;
+
+import application.Application;
+import application.ApplicationPipeline;
+import application.DecodedUplink;
+import iot.Characteristic;
+import iot.Environment;
+import iot.lora.EU868ParameterByDataRate;
+import iot.lora.LoraTransmission;
+import iot.lora.LoraWanPacket;
+import iot.mqtt.MQTTClientFactory;
+import iot.mqtt.Topic;
+import iot.mqtt.Topics;
+import iot.mqtt.TransmissionWrapper;
+import iot.networkentity.Mote;
+import iot.networkentity.MoteSensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Pair;
+import util.Path;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestApplicationPipeline {
+
+    private Environment environment;
+    private ApplicationPipeline pipeline;
+    private Application application;
+    private List<DecodedUplink> uplinks;
+
+    @BeforeEach
+    void setUp() {
+        environment = new Environment(new Characteristic[200][200], new GeoPosition(10, 10), 1, new HashMap<>(), new HashMap<>());
+        pipeline = new ApplicationPipeline(environment);
+        uplinks = new ArrayList<>();
+        application = new Application(pipeline) {
+            @Override
+            public void consumePackets(Topic topic, DecodedUplink uplink) {
+                uplinks.add(uplink);
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        application.destruct();
+        pipeline.destruct();
+    }
+
+    private Mote createMote(long eui, List<MoteSensor> sensors) {
+        return new Mote(eui, 10, 10, 14, 12, sensors, 20, new Path(environment.getGraph()), 1, environment);
+    }
+
+    private void publish(long eui, byte... payload) {
+        var packet = new LoraWanPacket(eui, 5L, payload, List.of());
+        var transmission = new LoraTransmission(eui, 5L, new Pair<>(0, 0), 14.0,
+            EU868ParameterByDataRate.DATA_RATE_3, 100.0, LocalTime.of(0, 0), packet);
+        MQTTClientFactory.getSingletonInstance().publish(Topics.getNetServerToApp(5L, eui), new TransmissionWrapper(transmission));
+    }
+
+    private DecodedUplink send(long eui, byte... payload) {
+        int received = uplinks.size();
+        publish(eui, payload);
+        assertEquals(received + 1, uplinks.size());
+        return uplinks.get(received);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+
+    @Test
+    void sensorData() {
+        environment.addMote(createMote(1L, List.of(MoteSensor.GPS, MoteSensor.SOOT)));
+
+        var uplink = send(1L, (byte) 3, (byte) 10, (byte) 11, (byte) 12, (byte) 13, (byte) 14, (byte) 15, (byte) 16, (byte) 17, (byte) 42);
+        assertEquals(3, uplink.getMessageType());
+        assertEquals(1L, uplink.getSenderEUI());
+        assertArrayEquals(new byte[] {10, 11, 12, 13, 14, 15, 16, 17, 42}, bytes(uplink.getBody()));
+
+        // The data of the sensors follows the order of the sensors of the mote
+        assertTrue(uplink.hasSensorData(MoteSensor.GPS));
+        assertArrayEquals(new byte[] {10, 11, 12, 13, 14, 15, 16, 17}, bytes(uplink.getSensorData(MoteSensor.GPS).orElseThrow()));
+        assertArrayEquals(new byte[] {42}, bytes(uplink.getSensorData(MoteSensor.SOOT).orElseThrow()));
+        assertFalse(uplink.hasSensorData(MoteSensor.OZONE));
+        assertTrue(uplink.getSensorData(MoteSensor.OZONE).isEmpty());
+
+        // Every call returns a new read-only view, reading one does not affect the others
+        var gps = uplink.getSensorData(MoteSensor.GPS).orElseThrow();
+        gps.get();
+        assertEquals(8, uplink.getSensorData(MoteSensor.GPS).orElseThrow().remaining());
+        assertThrows(ReadOnlyBufferException.class, () -> gps.put(0, (byte) 1));
+        assertThrows(ReadOnlyBufferException.class, () -> uplink.getBody().put(0, (byte) 1));
+    }
+
+    @Test
+    void shortPayloads() {
+        environment.addMote(createMote(1L, List.of(MoteSensor.SOOT, MoteSensor.GPS)));
+
+        // A keepalive only contains the message type
+        var keepalive = send(1L, (byte) 7);
+        assertEquals(7, keepalive.getMessageType());
+        assertEquals(0, keepalive.getBody().remaining());
+        assertFalse(keepalive.hasSensorData(MoteSensor.SOOT));
+        assertFalse(keepalive.hasSensorData(MoteSensor.GPS));
+
+        // Only the sensors of which all the data is present are decoded
+        var partial = send(1L, (byte) 3, (byte) 42, (byte) 1, (byte) 2);
+        assertArrayEquals(new byte[] {42}, bytes(partial.getSensorData(MoteSensor.SOOT).orElseThrow()));
+        assertFalse(partial.hasSensorData(MoteSensor.GPS));
+
+        var empty = send(1L);
+        assertEquals(-1, empty.getMessageType());
+        assertEquals(0, empty.getBody().remaining());
+        assertFalse(empty.hasSensorData(MoteSensor.SOOT));
+    }
+
+    @Test
+    void moteResolution() {
+        Mote first = createMote(1L, List.of());
+        environment.addMote(first);
+        assertSame(first, send(1L, (byte) 3).getMote());
+
+        // Motes added after the first uplink are resolved as well
+        Mote second = createMote(2L, List.of());
+        environment.addMote(second);
+        assertSame(second, send(2L, (byte) 3).getMote());
+        assertSame(first, send(1L, (byte) 3).getMote());
+
+        // A replaced mote with the same EUI is not resolved to the removed mote
+        Mote replacement = createMote(1L, List.of());
+        assertTrue(environment.removeMote(first));
+        environment.addMote(replacement);
+        assertSame(replacement, send(1L, (byte) 3).getMote());
+        assertSame(second, send(2L, (byte) 3).getMote());
+
+        // Uplinks of motes which are not in the environment are not handed to the applications
+        assertTrue(environment.removeMote(second));
+        int received = uplinks.size();
+        publish(2L, (byte) 3);
+        publish(3L, (byte) 3);
+        assertEquals(received, uplinks.size());
+    }
+}
@@ -0,0 +1,70 @@
+package unit;
+
+import iot.lora.*;
+import iot.mqtt.BasicMqttMessage;
+import iot.mqtt.BinaryMessageCodec;
+import iot.mqtt.LoraWanPacketWrapper;
+import iot.mqtt.TransmissionWrapper;
+import org.junit.jupiter.api.Test;
+import util.Pair;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestBinaryMessageCodec {
+
+    private static LoraWanPacket createPacket() {
+        var header = new BasicFrameHeader().setSourceAddress(42L).setFCnt((short) 7).setFCtrl((byte) 3);
+        return new LoraWanPacket(1L, 2L, new byte[] {1, 2, 3}, header, true, 10, 0.5,
+            List.of(MacCommand.LinkADRReq, MacCommand.DevStatusAns));
+    }
+
+    @Test
+    void transmissionRoundTrip() {
+        var transmission = new LoraTransmission(1L, 2L, new Pair<>(10, 20), 14.0,
+            EU868ParameterByDataRate.DATA_RATE_3, 123.5, LocalTime.ofNanoOfDay(987654321L), createPacket());
+        transmission.setCollided();
+
+        var payload = BinaryMessageCodec.encode(new TransmissionWrapper(transmission));
+        assertTrue(BinaryMessageCodec.isBinary(payload));
+
+        var decoded = ((TransmissionWrapper) BinaryMessageCodec.decode(payload)).getTransmission();
+        assertEquals(transmission, decoded);
+        assertEquals(14.0, decoded.getTransmissionPower());
+        assertEquals(9, decoded.getSpreadingFactor());
+        assertEquals(123.5, decoded.getTimeOnAir());
+        assertEquals(20, decoded.getYPos());
+        assertTrue(decoded.isCollided());
+        assertFalse(decoded.isArrived());
+
+        var packet = decoded.getContent();
+        assertTrue(packet.hasLowDataRateOptimization());
+        assertEquals(10, packet.getAmountOfPreambleSymbols());
+        assertEquals(0.5, packet.getCodingRate());
+        assertArrayEquals(new BasicFrameHeader().setSourceAddress(42L).getSourceAddress(), packet.getFrameHeader().getSourceAddress());
+        assertEquals(3, packet.getFrameHeader().getFCtrl());
+    }
+
+    @Test
+    void packetAndBasicMessageRoundTrip() {
+        var packet = createPacket();
+        var decodedPacket = ((LoraWanPacketWrapper) BinaryMessageCodec.decode(
+            BinaryMessageCodec.encode(new LoraWanPacketWrapper(packet)))).getPacket();
+        assertEquals(packet, decodedPacket);
+
+        var message = new BasicMqttMessage(List.of((byte) 5, (byte) -1), List.of(MacCommand.ResetInd));
+        var decodedMessage = (BasicMqttMessage) BinaryMessageCodec.decode(BinaryMessageCodec.encode(message));
+        assertEquals(message.getData(), decodedMessage.getData());
+        assertEquals(message.getMacCommands(), decodedMessage.getMacCommands());
+    }
+
+    @Test
+    void jsonIsNotBinary() {
+        assertFalse(BinaryMessageCodec.isBinary("{\"packet\":{}}".getBytes(US_ASCII)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryMessageCodec.decode("{}".getBytes(US_ASCII)));
+    }
+}
@@ -0,0 +1,60 @@
+package unit;
+
+import org.junit.jupiter.api.Test;
+import util.ChangePointLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class TestChangePointLog {
+
+    @Test
+    void valuesMatchEveryRecordedEntry() {
+        ChangePointLog log = new ChangePointLog();
+        List<List<Integer>> expected = new ArrayList<>();
+        Random random = new Random(42);
+
+        int value = 14;
+        for (int run = 0; run < 4; run++) {
+            expected.add(new ArrayList<>());
+            // Leave run 2 empty
+            int entries = run == 2 ? 0 : 500 + random.nextInt(500);
+            for (int i = 0; i < entries; i++) {
+                if (random.nextInt(50) == 0) {
+                    value = random.nextInt(15);
+                }
+                log.record(run, i, value);
+                expected.get(run).add(value);
+            }
+        }
+
+        ChangePointLog.Snapshot snapshot = log.snapshot();
+        for (int run = 0; run < 4; run++) {
+            assertEquals(expected.get(run), snapshot.getValues(run));
+        }
+        assertEquals(0, snapshot.getValues(7).size());
+        assertEquals(value, log.getLastValue());
+    }
+
+    @Test
+    void onlyChangesAreStored() {
+        ChangePointLog log = new ChangePointLog();
+        for (int i = 0; i < 100; i++) {
+            log.record(0, i, i < 50 ? 14 : 10);
+        }
+        log.record(1, 0, 10);
+
+        ChangePointLog.Snapshot snapshot = log.snapshot();
+        assertEquals(101, snapshot.size());
+        assertEquals(3, snapshot.getChangePointCount());
+        assertEquals(50, snapshot.getChangePointEntry(1));
+        assertEquals(50, snapshot.getChangePointTime(1));
+        assertEquals(1, snapshot.getChangePointRun(2));
+        assertEquals(14, snapshot.getValue(49));
+        assertEquals(10, snapshot.getValue(50));
+    }
+}
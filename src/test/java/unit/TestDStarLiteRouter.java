@@ -0,0 +1,80 @@
+package unit;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.AStarRouter;
+import application.routing.DStarLiteRouter;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.junit.jupiter.api.Test;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static unit.RoutingTestGraphs.randomGraph;
+import static unit.RoutingTestGraphs.randomPosition;
+
+
+class TestDStarLiteRouter {
+
+    @Test
+    void replanning() {
+        Random random = new Random(7);
+        GraphStructure graph = randomGraph(random, 300, 3, true);
+        var ids = new ArrayList<>(graph.getWayPoints().keySet());
+
+        var pollutionGrid = new PollutionGrid();
+        var heuristic = new SimplePollutionHeuristic(pollutionGrid);
+        var router = new DStarLiteRouter(heuristic);
+        var reference = new AStarRouter(heuristic);
+        var destinations = new GeoPosition[] {graph.getWayPoint(ids.get(0)), graph.getWayPoint(ids.get(1))};
+        var begins = new GeoPosition[] {graph.getWayPoint(ids.get(2)), graph.getWayPoint(ids.get(3))};
+
+        for (int i = 0; i < 200; i++) {
+            // The pollution changes, while two users travel to their destination
+            pollutionGrid.addMeasurement(random.nextInt(40), randomPosition(random), new PollutionLevel(random.nextDouble()));
+            var begin = begins[i % 2];
+            var end = destinations[i % 2];
+
+            var expected = reference.retrievePath(graph, begin, end);
+            var path = router.retrievePath(graph, begin, end);
+            assertEquals(begin, path.get(0));
+            assertEquals(end, path.get(path.size() - 1));
+            assertEquals(reference.getPathCost(graph, expected), router.getPathCost(graph, path), 1e-9);
+
+            // The user moves on, or starts over somewhere else once arrived
+            begins[i % 2] = path.size() > 2 ? path.get(1) : graph.getWayPoint(ids.get(2 + random.nextInt(ids.size() - 2)));
+
+            if (i == 100) {
+                // The search starts over after an edit of the graph
+                graph.addWayPoint(randomPosition(random));
+            }
+            if (i == 150) {
+                // More changes than the cost table remembers: the searches compare all the costs
+                for (int j = 0; j < 80; j++) {
+                    pollutionGrid.addMeasurement(random.nextInt(40), randomPosition(random), new PollutionLevel(random.nextDouble()));
+                    heuristic.getSharedCosts(graph, graph.getCompactGraph());
+                }
+            }
+        }
+    }
+
+    @Test
+    void noPath() {
+        GraphStructure graph = new GraphStructure();
+        graph.addWayPoint(new GeoPosition(50.850, 4.670));
+        graph.addWayPoint(new GeoPosition(50.851, 4.670));
+        graph.addWayPoint(new GeoPosition(50.851, 4.671));
+        graph.addConnection(new Connection(1, 2));
+        graph.addConnection(new Connection(3, 2));
+
+        var router = new DStarLiteRouter(new SimplePollutionHeuristic(new PollutionGrid()));
+        assertEquals(List.of(graph.getWayPoint(1), graph.getWayPoint(2)), router.retrievePath(graph, graph.getWayPoint(1), graph.getWayPoint(2)));
+        assertThrows(RuntimeException.class, () -> router.retrievePath(graph, graph.getWayPoint(2), graph.getWayPoint(1)));
+    }
+}
@@ -0,0 +1,203 @@
+package unit;
+
+import iot.Characteristic;
+import iot.Environment;
+import iot.SimulationRunner;
+import iot.lora.LoraTransmission;
+import iot.lora.LoraWanPacket;
+import iot.networkentity.EnergyLedger;
+import iot.networkentity.Gateway;
+import iot.networkentity.Mote;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jxmapviewer.viewer.GeoPosition;
+import selfadaptation.instrumentation.MoteProbe;
+import util.Path;
+import util.Statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestEnergyLedger {
+
+    private static final long MOTE = 29L;
+    private static final long OTHER_MOTE = 30L;
+    private static final long GATEWAY = 31L;
+
+    private Environment previousEnvironment;
+    private Environment environment;
+    private Mote mote;
+    private Mote otherMote;
+    private byte data;
+
+    @BeforeEach
+    void setUp() {
+        Statistics.getInstance().reset();
+        var characteristics = new Characteristic[200][200];
+        Arrays.stream(characteristics).forEach(row -> Arrays.fill(row, Characteristic.Plain));
+        environment = new Environment(characteristics, new GeoPosition(10, 10), 1, new HashMap<>(), new HashMap<>());
+        mote = new Mote(MOTE, 10, 10, 14, 12, new ArrayList<>(), 20, new Path(environment.getGraph()), 1, environment);
+        otherMote = new Mote(OTHER_MOTE, 12, 10, 14, 7, new ArrayList<>(), 20, new Path(environment.getGraph()), 1, environment);
+        environment.addMote(mote);
+        environment.addMote(otherMote);
+
+        // The probe reads the current run of the environment of the simulation
+        previousEnvironment = SimulationRunner.getInstance().getEnvironment();
+        SimulationRunner.getInstance().setEnvironment(environment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SimulationRunner.getInstance().setEnvironment(previousEnvironment);
+        Statistics.getInstance().reset();
+    }
+
+    /**
+     * Sends a packet with a new payload and waits until the transmission has ended.
+     */
+    private void send(Mote mote) {
+        mote.sendToGateWay(new Byte[] {data++}, new HashMap<>());
+        environment.getClock().tick(5000);
+    }
+
+    /**
+     * @return The energy used by a receive window after an uplink with the given spreading factor
+     * (8 symbols at 125 kHz), if no downlink arrives.
+     */
+    private static double receiveWindowEnergy(int spreadingFactor) {
+        return EnergyLedger.RECEIVE_POWER * 8 * Math.pow(2, spreadingFactor) / 125 / 1000;
+    }
+
+    /**
+     * Starts a new run, with the motes reset as at the start of a run of the simulation.
+     */
+    private void addRun() {
+        environment.addRun();
+        environment.getMotes().forEach(Mote::reset);
+    }
+
+    /**
+     * @return The energy of the transmissions of a mote in a run, with the given power setting for every transmission.
+     */
+    private static double expectedEnergy(long mote, int run, int... powerSettings) {
+        List<LoraTransmission> transmissions = Statistics.getInstance().getSentTransmissions(mote, run);
+        assertEquals(powerSettings.length, transmissions.size());
+        double energy = 0.0;
+        for (int i = 0; i < powerSettings.length; i++) {
+            assertTrue(transmissions.get(i).getTimeOnAir() > 0);
+            energy += EnergyLedger.getTransmitEnergy(powerSettings[i], transmissions.get(i).getTimeOnAir());
+        }
+        return energy;
+    }
+
+
+    @Test
+    void transmitEnergy() {
+        assertEquals(0.0, mote.getEnergyLedger().getTransmitEnergy(0));
+
+        // The energy of every transmission uses the power setting at the time of sending
+        send(mote);
+        mote.setTransmissionPower(8);
+        send(mote);
+        send(otherMote);
+
+        double energy = expectedEnergy(MOTE, 0, 14, 8);
+        assertEquals(energy, mote.getEnergyLedger().getTransmitEnergy(0), 1e-9);
+        assertEquals(EnergyLedger.getTransmitEnergy(14, 1000.0), 10 * EnergyLedger.getTransmitEnergy(4, 1000.0), 1e-9);
+
+        // The ledger is kept per mote
+        assertEquals(expectedEnergy(OTHER_MOTE, 0, 14), otherMote.getEnergyLedger().getTransmitEnergy(0), 1e-9);
+        assertTrue(otherMote.getEnergyLedger().getTransmitEnergy(0) < energy);
+
+        // Every uplink opens a receive window, in which the transmissions of other motes are not received
+        assertEquals(2 * receiveWindowEnergy(12), mote.getEnergyLedger().getReceiveEnergy(0), 1e-9);
+        assertEquals(receiveWindowEnergy(7), otherMote.getEnergyLedger().getReceiveEnergy(0), 1e-9);
+        assertEquals(energy + 2 * receiveWindowEnergy(12), mote.getEnergyLedger().getUsedEnergy(0), 1e-9);
+    }
+
+    @Test
+    void unheardTransmissions() {
+        send(mote);
+        double heard = mote.getEnergyLedger().getTransmitEnergy(0);
+
+        // The radio transmits for the whole time on air, also if no receiver is left to hear the transmission
+        assertTrue(environment.removeMote(otherMote));
+        send(mote);
+        assertEquals(1, Statistics.getInstance().getSentTransmissions(MOTE, 0).size());
+        assertEquals(2 * heard, mote.getEnergyLedger().getTransmitEnergy(0), 1e-9);
+        assertEquals(2 * receiveWindowEnergy(12), mote.getEnergyLedger().getReceiveEnergy(0), 1e-9);
+    }
+
+    @Test
+    void receiveWindows() {
+        var gateway = new Gateway(GATEWAY, 11, 10, 14, 12, environment);
+        environment.addGateway(gateway);
+
+        // A downlink in the receive window is received as a whole
+        send(mote);
+        gateway.sendToDevice(new LoraWanPacket(GATEWAY, MOTE, new byte[] {1, 2, 3}, List.of()));
+        environment.getClock().tick(5000);
+        var downlinks = Statistics.getInstance().getReceivedTransmissions(MOTE, 0);
+        assertEquals(1, downlinks.size());
+        double downlink = EnergyLedger.RECEIVE_POWER * downlinks.get(0).getTimeOnAir() / 1000;
+        assertEquals(receiveWindowEnergy(12) + downlink, mote.getEnergyLedger().getReceiveEnergy(0), 1e-9);
+
+        // The window is closed after the downlink: the next downlink only arrives in the window of the next uplink
+        gateway.sendToDevice(new LoraWanPacket(GATEWAY, MOTE, new byte[] {4, 5, 6}, List.of()));
+        environment.getClock().tick(5000);
+        assertEquals(receiveWindowEnergy(12) + downlink, mote.getEnergyLedger().getReceiveEnergy(0), 1e-9);
+        send(mote);
+        assertEquals(2 * receiveWindowEnergy(12) + downlink, mote.getEnergyLedger().getReceiveEnergy(0), 1e-9);
+
+        // The gateway is charged for the downlinks it transmitted
+        assertTrue(gateway.getEnergyLedger().getTransmitEnergy(0) > 0);
+    }
+
+    @Test
+    void runs() {
+        send(mote);
+        double firstRun = mote.getEnergyLedger().getTransmitEnergy(0);
+
+        addRun();
+        assertEquals(0.0, mote.getEnergyLedger().getTransmitEnergy(1));
+        mote.setTransmissionPower(2);
+        send(mote);
+        send(mote);
+
+        // A new run does not change the energy of the previous runs
+        assertEquals(firstRun, mote.getEnergyLedger().getTransmitEnergy(0));
+        assertEquals(expectedEnergy(MOTE, 1, 2, 2), mote.getEnergyLedger().getTransmitEnergy(1), 1e-9);
+        assertEquals(0.0, mote.getEnergyLedger().getTransmitEnergy(5));
+
+        environment.resetHistory();
+        assertEquals(0.0, mote.getEnergyLedger().getTransmitEnergy(0));
+        assertEquals(0.0, mote.getEnergyLedger().getTransmitEnergy(1));
+        assertEquals(0.0, mote.getEnergyLedger().getUsedEnergy(1));
+    }
+
+    @Test
+    void moteProbe() {
+        var probe = new MoteProbe();
+        assertEquals(0.0, probe.getTransmitEnergy(mote));
+
+        send(mote);
+        assertEquals(mote.getEnergyLedger().getTransmitEnergy(0), probe.getTransmitEnergy(mote));
+        assertEquals(mote.getEnergyLedger().getUsedEnergy(0), probe.getUsedEnergy(mote));
+
+        // The probe reads the current run
+        addRun();
+        assertEquals(0.0, probe.getTransmitEnergy(mote));
+        assertEquals(0.0, probe.getUsedEnergy(mote));
+        send(mote);
+        send(mote);
+        assertEquals(mote.getEnergyLedger().getTransmitEnergy(1), probe.getTransmitEnergy(mote));
+        assertEquals(expectedEnergy(MOTE, 1, 14, 14), probe.getTransmitEnergy(mote), 1e-9);
+        assertEquals(expectedEnergy(MOTE, 1, 14, 14) + 2 * receiveWindowEnergy(12), probe.getUsedEnergy(mote), 1e-9);
+    }
+}
@@ -1,16 +1,25 @@
 package unit;
 
+import iot.Characteristic;
+import iot.Environment;
 import org.junit.jupiter.api.Test;
 import org.jxmapviewer.viewer.GeoPosition;
+import util.CompactGraph;
 import util.Connection;
 import util.GraphStructure;
+import util.MapHelper;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static unit.RoutingTestGraphs.randomGraph;
 
 class TestGraph {
 
@@ -138,4 +147,137 @@ class TestGraph {
         assertFalse(toCheck2.isEmpty());
         assertTrue(toCheck2.contains(5L));
     }
+
+    @Test
+    void adjacencyAfterDeletion() {
+        Map<Long, GeoPosition> wayPoints = new HashMap<>();
+        wayPoints.put(1L, new GeoPosition(50,50));
+        wayPoints.put(2L, new GeoPosition(5,5));
+        wayPoints.put(3L, new GeoPosition(35, 35));
+        wayPoints.put(4L, new GeoPosition(48, 48));
+
+        Map<Long, Connection> connections = new HashMap<>();
+        connections.put(1L, new Connection(1L, 2L));
+        connections.put(2L, new Connection(1L, 3L));
+        connections.put(3L, new Connection(4L, 2L));
+        connections.put(4L, new Connection(4L, 1L));
+        connections.put(5L, new Connection(3L, 4L));
+
+        Environment environment = new Environment(new Characteristic[1][1], new GeoPosition(5, 5), 1, wayPoints, connections);
+        GraphStructure graph = environment.getGraph();
+        assertEquals(List.of(1L, 3L), graph.getIncomingConnectionsById(2L));
+        assertTrue(graph.connectionExists(3L, 4L));
+
+        long version = graph.getVersion();
+        graph.deleteConnection(4L, 2L, environment);
+        assertEquals(List.of(1L), graph.getIncomingConnectionsById(2L));
+        assertEquals(List.of(4L), graph.getOutgoingConnectionsById(4L));
+
+        graph.deleteWayPoint(3L, environment);
+        assertFalse(graph.connectionExists(3L, 4L));
+        assertEquals(List.of(1L), graph.getOutgoingConnectionsById(1L));
+        assertTrue(graph.getIncomingConnectionsById(4L).isEmpty());
+        assertTrue(graph.getVersion() > version);
+
+        graph.addConnection(new Connection(2L, 4L));
+        assertEquals(List.of(6L), graph.getIncomingConnectionsById(4L));
+    }
+
+    @Test
+    void compactGraph() {
+        GraphStructure graph = new GraphStructure();
+        graph.addWayPoint(new GeoPosition(1, 1));
+        graph.addWayPoint(new GeoPosition(2, 2));
+        graph.addWayPoint(new GeoPosition(3, 3));
+        graph.addConnection(new Connection(1L, 2L));
+        graph.addConnection(new Connection(1L, 3L));
+        graph.addConnection(new Connection(3L, 2L));
+
+        var compact = graph.getCompactGraph();
+        assertSame(compact, graph.getCompactGraph());
+        assertEquals(3, compact.getNodeCount());
+        assertEquals(3, compact.getEdgeCount());
+
+        int node = compact.getNode(1L);
+        assertEquals(new GeoPosition(1, 1), compact.getPosition(node));
+        assertEquals(2, compact.getOutgoingEnd(node) - compact.getOutgoingStart(node));
+        assertEquals(1L, compact.getConnectionId(compact.getOutgoingStart(node)));
+        assertEquals(compact.getNode(2L), compact.getTarget(compact.getOutgoingStart(node)));
+
+        int destination = compact.getNode(2L);
+        assertEquals(2, compact.getIncomingEnd(destination) - compact.getIncomingStart(destination));
+        for (int i = compact.getIncomingStart(destination); i < compact.getIncomingEnd(destination); i++) {
+            assertEquals(destination, compact.getTarget(compact.getIncomingEdge(i)));
+        }
+        assertEquals(-1, compact.getNode(10L));
+
+        graph.addWayPoint(new GeoPosition(4, 4));
+        assertEquals(4, graph.getCompactGraph().getNodeCount());
+    }
+
+    @Test
+    void proximityIndex() {
+        GraphStructure graph = new GraphStructure();
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            graph.addWayPoint(new GeoPosition(50.85 + random.nextDouble() / 20, 4.67 + random.nextDouble() / 20));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            var position = new GeoPosition(50.84 + random.nextDouble() / 15, 4.66 + random.nextDouble() / 15);
+            var expected = graph.getWayPoints().entrySet().stream()
+                .min((a, b) -> Double.compare(MapHelper.distance(a.getValue(), position), MapHelper.distance(b.getValue(), position)))
+                .orElseThrow().getKey();
+            assertEquals(expected, graph.getClosestWayPoint(position));
+
+            var expectedInRange = graph.getWayPoints().entrySet().stream()
+                .filter(e -> MapHelper.distance(e.getValue(), position) <= 0.3)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+            assertEquals(expectedInRange, graph.getWayPointsWithinRange(position, 0.3).stream().sorted().collect(Collectors.toList()));
+
+            if (i % 100 == 0) {
+                // The index follows the modifications of the graph
+                graph.addWayPoint(position);
+                assertEquals(graph.getClosestWayPoint(position), graph.getClosestWayPointWithinRange(position, 0.001).orElseThrow());
+            }
+        }
+    }
+
+    @Test
+    void concurrentDerivedValues() throws InterruptedException {
+        var graph = randomGraph(new Random(44), 500, 3);
+        var position = graph.getWayPoint(1);
+
+        // Threads which route concurrently after a modification share the same compact graph
+        int threads = 8;
+        var compactGraphs = new CompactGraph[threads];
+        var closest = new long[threads];
+        var start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                compactGraphs[thread] = graph.getCompactGraph();
+                closest[thread] = graph.getClosestWayPoint(position);
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            assertSame(graph.getCompactGraph(), compactGraphs[t]);
+            assertEquals(1L, closest[t]);
+        }
+        assertEquals(500, compactGraphs[0].getNodeCount());
+    }
 }
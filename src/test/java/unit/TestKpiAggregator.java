@@ -0,0 +1,150 @@
+package unit;
+
+import iot.lora.LoraTransmission;
+import iot.networkentity.EnergyLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.KpiSummary;
+import util.Statistics;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static unit.LoraTestTransmissions.transmission;
+
+
+class TestKpiAggregator {
+
+    private static final long MOTE = 1L;
+    private static final long OTHER_MOTE = 2L;
+    private static final long GATEWAY_1 = 10L;
+    private static final long GATEWAY_2 = 11L;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = Statistics.getInstance();
+        statistics.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.reset();
+    }
+
+    private void send(long mote, int powerSetting, double timeOnAir) {
+        statistics.addPowerSettingEntry(mote, 0, powerSetting);
+        statistics.addSentTransmissionsEntry(mote, transmission(mote, 0L, powerSetting, timeOnAir, false));
+    }
+
+
+    @Test
+    void empty() {
+        KpiSummary kpi = statistics.getKpi(MOTE, 0);
+        assertEquals(0, kpi.getSent());
+        assertEquals(0, kpi.getReceived());
+        assertEquals(0, kpi.getCollided());
+        assertEquals(0.0, kpi.getUsedEnergy());
+        assertTrue(Double.isNaN(kpi.getMinReceivedPower()));
+        assertTrue(Double.isNaN(kpi.getMaxReceivedPower()));
+        assertTrue(Double.isNaN(kpi.getMeanReceivedPower()));
+        assertSame(KpiSummary.EMPTY, statistics.getKpi(MOTE, 0, GATEWAY_1));
+    }
+
+    @Test
+    void sentAndEnergy() {
+        send(MOTE, 14, 100.0);
+        send(MOTE, 10, 50.0);
+        send(OTHER_MOTE, 14, 1000.0);
+
+        KpiSummary kpi = statistics.getKpi(MOTE, 0);
+        assertEquals(2, kpi.getSent());
+        assertEquals(0, kpi.getReceived());
+        assertEquals(EnergyLedger.getTransmitEnergy(14, 100.0) + EnergyLedger.getTransmitEnergy(10, 50.0),
+            kpi.getUsedEnergy(), 1e-9);
+        assertEquals(1, statistics.getKpi(OTHER_MOTE, 0).getSent());
+
+        // Without a power setting no energy is known for the transmission, but it is still sent
+        statistics.addSentTransmissionsEntry(3L, transmission(3L, 0L, 14, 100.0, false));
+        assertEquals(1, statistics.getKpi(3L, 0).getSent());
+        assertEquals(0.0, statistics.getKpi(3L, 0).getUsedEnergy());
+    }
+
+    @Test
+    void receptionsPerReceiver() {
+        statistics.addReceivedTransmissionsEntry(GATEWAY_1, transmission(MOTE, GATEWAY_1, -80.0, 100.0, false));
+        statistics.addReceivedTransmissionsEntry(GATEWAY_1, transmission(MOTE, GATEWAY_1, -100.0, 100.0, false));
+        statistics.addReceivedTransmissionsEntry(GATEWAY_1, transmission(MOTE, GATEWAY_1, 20.0, 100.0, true));
+        statistics.addReceivedTransmissionsEntry(GATEWAY_2, transmission(MOTE, GATEWAY_2, -60.0, 100.0, false));
+        statistics.addReceivedTransmissionsEntry(GATEWAY_2, transmission(OTHER_MOTE, GATEWAY_2, 0.0, 100.0, false));
+
+        KpiSummary gateway1 = statistics.getKpi(MOTE, 0, GATEWAY_1);
+        assertEquals(0, gateway1.getSent());
+        assertEquals(3, gateway1.getReceived());
+        assertEquals(1, gateway1.getCollided());
+        // The collided reception does not count towards the received power
+        assertEquals(-100.0, gateway1.getMinReceivedPower());
+        assertEquals(-80.0, gateway1.getMaxReceivedPower());
+        assertEquals(-90.0, gateway1.getMeanReceivedPower(), 1e-9);
+
+        KpiSummary gateway2 = statistics.getKpi(MOTE, 0, GATEWAY_2);
+        assertEquals(1, gateway2.getReceived());
+        assertEquals(0, gateway2.getCollided());
+        assertEquals(-60.0, gateway2.getMeanReceivedPower());
+
+        KpiSummary combined = statistics.getKpi(MOTE, 0);
+        assertEquals(4, combined.getReceived());
+        assertEquals(1, combined.getCollided());
+        assertEquals(-100.0, combined.getMinReceivedPower());
+        assertEquals(-60.0, combined.getMaxReceivedPower());
+        assertEquals(-80.0, combined.getMeanReceivedPower(), 1e-9);
+
+        List<LoraTransmission> received = statistics.getReceivedTransmissionsFrom(GATEWAY_1, MOTE, 0);
+        assertEquals(3, received.size());
+        assertEquals(-80.0, received.get(0).getTransmissionPower());
+        assertTrue(received.get(2).isCollided());
+        assertEquals(1, statistics.getReceivedTransmissionsFrom(GATEWAY_2, OTHER_MOTE, 0).size());
+    }
+
+    @Test
+    void onlyCollided() {
+        statistics.addReceivedTransmissionsEntry(GATEWAY_1, transmission(MOTE, GATEWAY_1, -80.0, 100.0, true));
+
+        KpiSummary kpi = statistics.getKpi(MOTE, 0, GATEWAY_1);
+        assertEquals(1, kpi.getReceived());
+        assertEquals(1, kpi.getCollided());
+        assertTrue(Double.isNaN(kpi.getMinReceivedPower()));
+        assertTrue(Double.isNaN(kpi.getMaxReceivedPower()));
+        assertTrue(Double.isNaN(kpi.getMeanReceivedPower()));
+    }
+
+    @Test
+    void perRun() {
+        send(MOTE, 14, 100.0);
+        statistics.addReceivedTransmissionsEntry(GATEWAY_1, transmission(MOTE, GATEWAY_1, -80.0, 100.0, false));
+        statistics.addRun();
+        send(MOTE, 14, 100.0);
+        send(MOTE, 14, 100.0);
+
+        assertEquals(1, statistics.getKpi(MOTE, 0).getSent());
+        assertEquals(1, statistics.getKpi(MOTE, 0).getReceived());
+        assertEquals(2, statistics.getKpi(MOTE, 1).getSent());
+        assertEquals(0, statistics.getKpi(MOTE, 1).getReceived());
+        assertTrue(statistics.getReceivedTransmissionsFrom(GATEWAY_1, MOTE, 1).isEmpty());
+
+        // The received transmissions are kept per run, a snapshot does not change with later receptions
+        List<LoraTransmission> firstRun = statistics.getReceivedTransmissionsFrom(GATEWAY_1, MOTE, 0);
+        statistics.addReceivedTransmissionsEntry(GATEWAY_1, transmission(MOTE, GATEWAY_1, -70.0, 100.0, false));
+        assertEquals(1, firstRun.size());
+        assertEquals(-80.0, firstRun.get(0).getTransmissionPower());
+        assertEquals(1, statistics.getReceivedTransmissionsFrom(GATEWAY_1, MOTE, 1).size());
+        assertEquals(-70.0, statistics.getReceivedTransmissionsFrom(GATEWAY_1, MOTE, 1).get(0).getTransmissionPower());
+
+        statistics.reset();
+        assertEquals(0, statistics.getKpi(MOTE, 0).getSent());
+        assertEquals(0, statistics.getKpi(MOTE, 0, GATEWAY_1).getReceived());
+        assertTrue(statistics.getReceivedTransmissionsFrom(GATEWAY_1, MOTE, 0).isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package unit;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.AStarRouter;
+import application.routing.LandmarkIndex;
+import application.routing.LandmarkRouter;
+import application.routing.heuristic.DistanceHeuristic;
+import application.routing.heuristic.RoutingHeuristic;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static unit.RoutingTestGraphs.randomGraph;
+import static unit.RoutingTestGraphs.randomPosition;
+
+
+class TestLandmarkRouter {
+
+    @Test
+    void shortestPaths() {
+        var pollutionGrid = new PollutionGrid();
+        Random random = new Random(11);
+        for (int i = 0; i < 30; i++) {
+            pollutionGrid.addMeasurement(i, randomPosition(random), new PollutionLevel(random.nextDouble()));
+        }
+
+        for (RoutingHeuristic heuristic : List.of(new DistanceHeuristic(), new SimplePollutionHeuristic(pollutionGrid))) {
+            GraphStructure graph = randomGraph(random, 300, 3);
+            var router = new LandmarkRouter(heuristic, 4);
+            var reference = new AStarRouter(heuristic);
+            var wayPoints = new ArrayList<>(graph.getWayPoints().values());
+
+            for (int i = 0; i < 200; i++) {
+                var begin = wayPoints.get(random.nextInt(wayPoints.size()));
+                var end = wayPoints.get(random.nextInt(wayPoints.size()));
+                if (i == 100) {
+                    // The index is calculated again after an edit of the graph
+                    graph.addWayPoint(randomPosition(random));
+                }
+
+                List<GeoPosition> expected;
+                try {
+                    expected = reference.retrievePath(graph, begin, end);
+                } catch (RuntimeException e) {
+                    assertThrows(RuntimeException.class, () -> router.retrievePath(graph, begin, end));
+                    continue;
+                }
+                var path = router.retrievePath(graph, begin, end);
+                assertEquals(begin, path.get(0));
+                assertEquals(end, path.get(path.size() - 1));
+                assertEquals(reference.getPathCost(graph, expected), router.getPathCost(graph, path), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void indexFile(@TempDir File directory) throws IOException {
+        GraphStructure graph = randomGraph(new Random(3), 100, 3);
+        File configurationFile = new File(directory, "configuration.xml");
+        File indexFile = LandmarkIndex.getIndexFile(configurationFile);
+        assertEquals(new File(directory, "configuration.landmarks"), indexFile);
+
+        new LandmarkRouter(new DistanceHeuristic(), 4).preprocess(graph, configurationFile);
+        assertTrue(indexFile.isFile());
+
+        var calculated = LandmarkIndex.calculate(graph.getCompactGraph(), 4);
+        var loaded = LandmarkIndex.load(indexFile, graph.getCompactGraph(), 4).orElseThrow();
+        for (int node = 0; node < 100; node++) {
+            for (int target = 0; target < 100; target++) {
+                assertEquals(calculated.lowerBound(node, target), loaded.lowerBound(node, target));
+            }
+        }
+
+        // The index of another graph (or another amount of landmarks) is not used
+        assertTrue(LandmarkIndex.load(indexFile, graph.getCompactGraph(), 5).isEmpty());
+        long to = 2;
+        while (graph.connectionExists(1, to)) {
+            to++;
+        }
+        graph.addConnection(new Connection(1, to));
+        assertTrue(LandmarkIndex.load(indexFile, graph.getCompactGraph(), 4).isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+package unit;
+
+import iot.mqtt.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static unit.AsyncTestConditions.await;
+
+
+class TestLoopbackMqttBroker {
+
+    private LoopbackMqttBroker broker;
+    private final List<PahoMqttClient> clients = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // The loopback client starts the broker when needed
+        clients.add(MQTTClientFactory.createLoopbackClient());
+        clients.add(MQTTClientFactory.createLoopbackClient());
+        clients.add(MQTTClientFactory.createLoopbackClient());
+        broker = LoopbackMqttBroker.getInstance(0);
+        broker.resetCounters();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.forEach(PahoMqttClient::disconnect);
+    }
+
+
+    @Test
+    void wildcardDeliveryAndCounters() {
+        var publisher = clients.get(0);
+        var allApplications = clients.get(1);
+        var singleApplication = clients.get(2);
+
+        List<String> receivedAll = Collections.synchronizedList(new ArrayList<>());
+        List<String> receivedSingle = Collections.synchronizedList(new ArrayList<>());
+        allApplications.subscribe(this, Topics.getAppToNetServer("+", "+"), BasicMqttMessage.class,
+            (topic, message) -> receivedAll.add(topic.getApplication() + "/" + topic.getNode()));
+        // Overlapping subscriptions of a client: the broker delivers every message to the client once
+        singleApplication.subscribe(this, "application/36/node/#", BasicMqttMessage.class,
+            (topic, message) -> receivedSingle.add(topic.getApplication() + "/" + topic.getNode()));
+        singleApplication.subscribe(this, "application/36/node/1/+", BasicMqttMessage.class, (topic, message) -> {});
+        // Messages to the gateways do not match any of the filters (a level too many)
+        singleApplication.subscribe(this, "application/36/gateway/+/node/+/+/+", BasicMqttMessage.class,
+            (topic, message) -> receivedSingle.add("gateway"));
+
+        int messages = 50;
+        for (int i = 0; i < messages; i++) {
+            publisher.publish(Topics.getAppToNetServer(36L, 1L), new BasicMqttMessage(List.of((byte) i)));
+            publisher.publish(Topics.getAppToNetServer(37L, 2L), new BasicMqttMessage(List.of((byte) i)));
+            publisher.publish(Topics.getNetServerToGateway(36L, 3L, 1L), new BasicMqttMessage(List.of((byte) i)));
+        }
+
+        await(() -> receivedAll.size() == 2 * messages && receivedSingle.size() == messages);
+        assertEquals(messages, receivedAll.stream().filter("36/1"::equals).count());
+        assertEquals(messages, receivedAll.stream().filter("37/2"::equals).count());
+        assertTrue(receivedSingle.stream().allMatch("36/1"::equals));
+
+        // Every published message is counted once, every delivery to a client once
+        await(() -> broker.getDeliveredMessages() == 3L * messages);
+        assertEquals(3L * messages, broker.getReceivedMessages());
+        assertTrue(broker.getReceivedBytes() > 3L * messages);
+        assertTrue(broker.getDeliveredBytes() > 3L * messages);
+        assertTrue(broker.getReceivedMessagesPerSecond() > 0);
+        assertTrue(broker.getDeliveredMessagesPerSecond() > 0);
+        assertTrue(broker.getMeanDeliveryLatency() >= 0);
+        assertTrue(broker.getMaxDeliveryLatency() >= broker.getMeanDeliveryLatency());
+
+        broker.resetCounters();
+        assertEquals(0, broker.getReceivedMessages());
+        assertEquals(0, broker.getDeliveredMessages());
+        assertTrue(Double.isNaN(broker.getMeanDeliveryLatency()));
+    }
+}
@@ -0,0 +1,124 @@
+package unit;
+
+import iot.mqtt.BasicMqttMessage;
+import iot.mqtt.MqttBrokerMock;
+import iot.mqtt.MqttMock;
+import iot.mqtt.Topics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestMqttBrokerMock {
+
+    private static final long APPLICATION = 31L;
+
+    private final MqttBrokerMock broker = MqttBrokerMock.getInstance();
+    private int levelsBefore;
+    private MqttMock client;
+    private MqttMock otherClient;
+    private List<String> received;
+
+    @BeforeEach
+    void setUp() {
+        levelsBefore = broker.getSubscriptionLevelCount();
+        client = new MqttMock();
+        otherClient = new MqttMock();
+        received = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.disconnect();
+        otherClient.disconnect();
+        // Disconnecting removes all the subscriptions of the clients
+        assertEquals(levelsBefore, broker.getSubscriptionLevelCount());
+    }
+
+    private void subscribe(MqttMock client, String name, String topicFilter) {
+        client.subscribe(name, topicFilter, BasicMqttMessage.class, (topic, message) -> received.add(name + " " + topic.getNode()));
+    }
+
+    private List<String> publish(long node) {
+        received.clear();
+        client.publish(Topics.getAppToNetServer(APPLICATION, node), new BasicMqttMessage(List.of((byte) 1)));
+        return new ArrayList<>(received);
+    }
+
+
+    @Test
+    void wildcards() {
+        // application/31/node/1/tx
+        subscribe(client, "exact", "application/31/node/1/tx");
+        subscribe(client, "single", "application/+/node/+/tx");
+        subscribe(client, "multi", "application/31/#");
+        subscribe(client, "multiNone", "application/31/node/1/tx/#");
+        subscribe(client, "singleLast", "application/+/node/1/+");
+        subscribe(client, "prefix", "application/31/node/1");
+        subscribe(client, "otherApplication", "application/32/#");
+        subscribe(client, "otherDirection", "application/31/node/+/rx");
+        subscribe(client, "tooShort", "+/+/+/+");
+        subscribe(client, "tooLong", "application/31/node/1/tx/+");
+
+        var node1 = publish(1);
+        assertEquals(5, node1.size());
+        assertTrue(node1.containsAll(List.of("exact 1", "single 1", "multi 1", "multiNone 1", "singleLast 1")));
+
+        var node2 = publish(2);
+        assertEquals(2, node2.size());
+        assertTrue(node2.containsAll(List.of("single 2", "multi 2")));
+    }
+
+    @Test
+    void overlappingFilters() {
+        subscribe(client, "a", "application/+/node/+/tx");
+        subscribe(client, "b", "application/+/node/+/tx");
+        subscribe(otherClient, "c", "application/+/node/+/tx");
+        subscribe(otherClient, "d", "application/31/node/+/tx");
+
+        // Every matching filter and every subscriber of a filter receives the message
+        var messages = publish(1);
+        assertEquals(4, messages.size());
+        assertTrue(messages.containsAll(List.of("a 1", "b 1", "c 1", "d 1")));
+
+        // A shared filter keeps delivering to the other client after one client unsubscribed
+        client.unsubscribe("a", "application/+/node/+/tx");
+        client.unsubscribe("b", "application/+/node/+/tx");
+        messages = publish(1);
+        assertEquals(2, messages.size());
+        assertTrue(messages.containsAll(List.of("c 1", "d 1")));
+    }
+
+    @Test
+    void pruneOnUnsubscribe() {
+        subscribe(client, "a", "application/31/node/1/tx");
+        int levels = broker.getSubscriptionLevelCount();
+        // The levels of a filter are shared with the filters with the same prefix
+        subscribe(client, "b", "application/31/node/1/tx/#");
+        assertEquals(levels + 1, broker.getSubscriptionLevelCount());
+        subscribe(otherClient, "c", "application/31/node/1/tx/#");
+        assertEquals(levels + 1, broker.getSubscriptionLevelCount());
+
+        // A level is only removed once no subscription uses it anymore
+        client.unsubscribe("b", "application/31/node/1/tx/#");
+        assertEquals(levels + 1, broker.getSubscriptionLevelCount());
+        otherClient.unsubscribe("c", "application/31/node/1/tx/#");
+        assertEquals(levels, broker.getSubscriptionLevelCount());
+        assertEquals(List.of("a 1"), publish(1));
+
+        // The levels of the prefix are kept while they have a subscription
+        subscribe(client, "d", "application/31/node/1");
+        assertEquals(levels, broker.getSubscriptionLevelCount());
+        client.unsubscribe("a", "application/31/node/1/tx");
+        assertEquals(levels - 1, broker.getSubscriptionLevelCount());
+        assertTrue(publish(1).isEmpty());
+
+        client.unsubscribe("d", "application/31/node/1");
+        assertEquals(levelsBefore, broker.getSubscriptionLevelCount());
+    }
+}
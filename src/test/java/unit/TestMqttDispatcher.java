@@ -0,0 +1,190 @@
+package unit;
+
+import iot.mqtt.MqttDispatcher;
+import iot.mqtt.MqttDispatcher.BackpressurePolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestMqttDispatcher {
+
+    @Test
+    void orderPerSubscriber() {
+        var dispatcher = new MqttDispatcher(true, 4, BackpressurePolicy.BLOCK);
+        var subscribers = List.of(new Subscriber(), new Subscriber(), new Subscriber());
+        List<List<Integer>> received = new ArrayList<>();
+        subscribers.forEach(s -> received.add(Collections.synchronizedList(new ArrayList<>())));
+
+        for (int i = 0; i < 1000; i++) {
+            int message = i;
+            for (int s = 0; s < subscribers.size(); s++) {
+                var messages = received.get(s);
+                dispatcher.deliver(subscribers.get(s), () -> messages.add(message));
+            }
+        }
+        dispatcher.awaitIdle();
+
+        var expected = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        received.forEach(messages -> assertEquals(expected, messages));
+        subscribers.forEach(dispatcher::release);
+    }
+
+    @Test
+    void block() throws InterruptedException {
+        var dispatcher = new MqttDispatcher(true, 2, BackpressurePolicy.BLOCK);
+        var subscriber = new Subscriber();
+        var started = new CountDownLatch(1);
+        var proceed = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.deliver(subscriber, () -> {
+            started.countDown();
+            await(proceed);
+            received.add(0);
+        });
+        started.await();
+        dispatcher.deliver(subscriber, () -> received.add(1));
+        dispatcher.deliver(subscriber, () -> received.add(2));
+
+        // The queue is full: the publisher waits until the worker takes the next message
+        var publisher = new Thread(() -> dispatcher.deliver(subscriber, () -> received.add(3)));
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive());
+
+        proceed.countDown();
+        publisher.join(5000);
+        assertFalse(publisher.isAlive());
+        dispatcher.awaitIdle();
+        assertEquals(List.of(0, 1, 2, 3), received);
+        dispatcher.release(subscriber);
+    }
+
+    @Test
+    void dropOldest() throws InterruptedException {
+        var dispatcher = new MqttDispatcher(true, 2, BackpressurePolicy.DROP_OLDEST);
+        var subscriber = new Subscriber();
+        var started = new CountDownLatch(1);
+        var proceed = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.deliver(subscriber, () -> {
+            started.countDown();
+            await(proceed);
+            received.add(0);
+        });
+        started.await();
+        for (int i = 1; i <= 5; i++) {
+            int message = i;
+            dispatcher.deliver(subscriber, () -> received.add(message));
+        }
+
+        proceed.countDown();
+        dispatcher.awaitIdle();
+        assertEquals(List.of(0, 4, 5), received);
+        var metrics = dispatcher.getMetrics().stream().filter(m -> m.getSubscriber().equals("Subscriber")).findFirst().orElseThrow();
+        assertEquals(3, metrics.getDropped());
+        assertEquals(3, metrics.getDelivered());
+        dispatcher.release(subscriber);
+    }
+
+    @Test
+    void pauseClock() throws InterruptedException {
+        var dispatcher = new MqttDispatcher(true, 2, BackpressurePolicy.PAUSE_CLOCK);
+        var subscriber = new Subscriber();
+        var started = new CountDownLatch(1);
+        var proceed = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.deliver(subscriber, () -> {
+            started.countDown();
+            await(proceed);
+            received.add(0);
+        });
+        started.await();
+        // The messages are queued beyond the capacity without waiting
+        for (int i = 1; i <= 4; i++) {
+            int message = i;
+            dispatcher.deliver(subscriber, () -> received.add(message));
+        }
+
+        // The clock waits until the queue has space again
+        var clock = new Thread(dispatcher::awaitCapacity);
+        clock.start();
+        clock.join(200);
+        assertTrue(clock.isAlive());
+
+        proceed.countDown();
+        clock.join(5000);
+        assertFalse(clock.isAlive());
+        dispatcher.awaitIdle();
+        assertEquals(List.of(0, 1, 2, 3, 4), received);
+        dispatcher.release(subscriber);
+    }
+
+    @Test
+    void release() throws InterruptedException {
+        awaitNoWorkers();
+        var dispatcher = new MqttDispatcher(true, 8, BackpressurePolicy.BLOCK);
+        var subscriber = new Subscriber();
+        var proceed = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.deliver(subscriber, () -> {
+            await(proceed);
+            received.add(0);
+        });
+        dispatcher.deliver(subscriber, () -> received.add(1));
+        assertEquals(1, dispatcher.getQueueCount());
+        assertEquals(1, workers());
+
+        // The queued messages are still handled after the release, after which the worker stops
+        dispatcher.release(subscriber);
+        assertEquals(0, dispatcher.getQueueCount());
+        proceed.countDown();
+        dispatcher.awaitIdle();
+        assertEquals(List.of(0, 1), received);
+        awaitNoWorkers();
+        assertEquals(0, workers());
+
+        // A new queue is created on the next delivery
+        dispatcher.deliver(subscriber, () -> received.add(2));
+        dispatcher.awaitIdle();
+        assertEquals(List.of(0, 1, 2), received);
+        dispatcher.release(subscriber);
+    }
+
+
+    private static void awaitNoWorkers() throws InterruptedException {
+        // The workers of released queues stop shortly after handling their last message
+        for (int i = 0; i < 500 && workers() > 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long workers() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(t -> t.isAlive() && t.getName().equals("mqtt-dispatcher-Subscriber"))
+            .count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Subscriber {
+    }
+}
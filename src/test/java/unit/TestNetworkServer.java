@@ -0,0 +1,371 @@
+package unit;
+
+import iot.lora.BasicFrameHeader;
+import iot.lora.EU868ParameterByDataRate;
+import iot.lora.LoraTransmission;
+import iot.lora.LoraWanPacket;
+import iot.mqtt.*;
+import iot.networkentity.NetworkServer;
+import org.junit.jupiter.api.Test;
+import util.Pair;
+
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestNetworkServer {
+
+    private static final long APPLICATION = 5L;
+    private static final long SECOND = 1_000_000_000L;
+
+
+    /**
+     * A client which records the published messages, the messages from the gateways and applications are
+     * delivered by the test itself.
+     */
+    private static class RecordingClient implements MqttClientBasicApi {
+        private final boolean asynchronous;
+        private final Map<String, BiConsumer<Topic, MqttMessageType>> subscriptions = new ConcurrentHashMap<>();
+        private final List<Published> published = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingClient(boolean asynchronous) {
+            this.asynchronous = asynchronous;
+        }
+
+        @Override
+        public void connect() {}
+
+        @Override
+        public void disconnect() {
+            subscriptions.clear();
+        }
+
+        @Override
+        public void publish(Topic topic, MqttMessageType message) {
+            published.add(new Published(topic, message, Thread.currentThread().getName()));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends MqttMessageType> void subscribe(Object subscriber, String topicFilter, Class<T> classMessage, BiConsumer<Topic, T> messageConsumer) {
+            subscriptions.put(topicFilter, (BiConsumer<Topic, MqttMessageType>) messageConsumer);
+        }
+
+        @Override
+        public void unsubscribe(Object subscriber, String topicFilter) {
+            subscriptions.remove(topicFilter);
+        }
+
+        @Override
+        public boolean isAsynchronousDelivery() {
+            return asynchronous;
+        }
+
+        void uplink(long gateway, long mote, short frameCounter, double receivedPower, long departureInNanos) {
+            var packet = new LoraWanPacket(mote, APPLICATION, new byte[] {1}, new BasicFrameHeader().setFCnt(frameCounter), List.of());
+            var transmission = new LoraTransmission(mote, gateway, new Pair<>(0, 0), receivedPower,
+                EU868ParameterByDataRate.DATA_RATE_3, 100.0, LocalTime.ofNanoOfDay(departureInNanos), packet);
+            subscriptions.get(Topics.getGatewayToNetServer("+", "+", "+"))
+                .accept(Topics.getGatewayToNetServer(APPLICATION, gateway, mote), new TransmissionWrapper(transmission));
+        }
+
+        void downlink(long mote) {
+            subscriptions.get(Topics.getAppToNetServer("+", "+"))
+                .accept(Topics.getAppToNetServer(APPLICATION, mote), new BasicMqttMessage(List.of((byte) 1)));
+        }
+
+        /**
+         * @return The uplinks forwarded to the applications.
+         */
+        List<Published> getUplinks() {
+            synchronized (published) {
+                return published.stream()
+                    .filter(p -> !p.topic.hasGateway() && p.topic.getDirection() == Topic.Direction.UPSTREAM)
+                    .collect(Collectors.toList());
+            }
+        }
+
+        /**
+         * @return The gateways to which the downlinks were sent, in order.
+         */
+        List<Long> getDownlinkGateways() {
+            synchronized (published) {
+                return published.stream()
+                    .filter(p -> p.topic.hasGateway() && p.topic.getDirection() == Topic.Direction.DOWNSTREAM)
+                    .map(p -> p.topic.getGateway())
+                    .collect(Collectors.toList());
+            }
+        }
+    }
+
+    private static class Published {
+        private final Topic topic;
+        private final MqttMessageType message;
+        private final String thread;
+
+        Published(Topic topic, MqttMessageType message, String thread) {
+            this.topic = topic;
+            this.message = message;
+            this.thread = thread;
+        }
+
+        long getMote() {
+            return topic.getNode();
+        }
+
+        short getFrameCounter() {
+            return ((TransmissionWrapper) message).getTransmission().getContent().getFrameHeader().getFCntAsShort();
+        }
+    }
+
+
+    // region shards
+
+    @Test
+    void orderPerDeviceAcrossShards() {
+        var client = new RecordingClient(true);
+        var server = new NetworkServer(client, 4);
+
+        // The uplinks of the devices are interleaved, as they arrive from the gateways
+        int devices = 15;
+        int uplinks = 100;
+        for (short frameCounter = 0; frameCounter < uplinks; frameCounter++) {
+            for (long mote = 1; mote <= devices; mote++) {
+                client.uplink(100L + mote % 3, mote, frameCounter, -80.0, frameCounter * SECOND);
+            }
+        }
+        server.awaitIdle();
+
+        var received = client.getUplinks();
+        assertEquals(devices * uplinks, received.size());
+        Map<Long, List<Published>> perDevice = received.stream().collect(Collectors.groupingBy(Published::getMote));
+        assertEquals(devices, perDevice.size());
+        for (var entry : perDevice.entrySet()) {
+            var frameCounters = entry.getValue().stream().map(Published::getFrameCounter).collect(Collectors.toList());
+            for (int i = 0; i < uplinks; i++) {
+                assertEquals(i, (int) frameCounters.get(i), "uplinks of mote " + entry.getKey() + " out of order");
+            }
+            // A device is always handled by the same shard
+            assertEquals(1, entry.getValue().stream().map(p -> p.thread).distinct().count());
+        }
+
+        // The devices are spread over several shards, which all run on their own thread
+        var threads = received.stream().map(p -> p.thread).collect(Collectors.toSet());
+        assertTrue(threads.size() > 1);
+        assertTrue(threads.stream().allMatch(t -> t.startsWith("network-server-shard-")));
+        assertFalse(server.awaitIdle());
+    }
+
+    @Test
+    void duplicatesDroppedAcrossShards() {
+        var client = new RecordingClient(true);
+        var server = new NetworkServer(client, 2);
+
+        // Every uplink is received by three gateways
+        for (short frameCounter = 0; frameCounter < 20; frameCounter++) {
+            for (long mote = 1; mote <= 4; mote++) {
+                for (long gateway = 100; gateway < 103; gateway++) {
+                    client.uplink(gateway, mote, frameCounter, -80.0 - gateway, frameCounter * SECOND);
+                }
+            }
+        }
+        server.awaitIdle();
+        assertEquals(80, client.getUplinks().size());
+
+        // A retransmission with the same frame counter departs later, so it is not a duplicate
+        client.uplink(100, 1, (short) 19, -80.0, 30 * SECOND);
+        client.uplink(101, 1, (short) 19, -80.0, 30 * SECOND);
+        server.awaitIdle();
+        assertEquals(81, client.getUplinks().size());
+    }
+
+    @Test
+    void inlineWithoutShards() {
+        String caller = Thread.currentThread().getName();
+
+        var client = new RecordingClient(true);
+        var server = new NetworkServer(client, 0);
+        client.uplink(100, 1, (short) 0, -80.0, 0);
+        // The uplink is handled on the delivering thread, before the delivery returns
+        assertEquals(1, client.getUplinks().size());
+        assertEquals(caller, client.getUplinks().get(0).thread);
+        assertFalse(server.awaitIdle());
+
+        // Shards would call the subscribers concurrently when the client delivers synchronously
+        var synchronousClient = new RecordingClient(false);
+        assertThrows(IllegalArgumentException.class, () -> new NetworkServer(synchronousClient, 4));
+        new NetworkServer(synchronousClient, 0);
+        for (long mote = 1; mote <= 8; mote++) {
+            synchronousClient.uplink(100, mote, (short) 0, -80.0, 0);
+            assertEquals(mote, synchronousClient.getUplinks().size());
+        }
+        assertTrue(synchronousClient.getUplinks().stream().allMatch(p -> p.thread.equals(caller)));
+
+        // Downlinks are routed inline as well
+        synchronousClient.downlink(1);
+        assertEquals(List.of(100L), synchronousClient.getDownlinkGateways());
+    }
+
+    // endregion
+
+
+    // region deduplication
+
+    @Test
+    void duplicateUplinks() {
+        var client = new RecordingClient(false);
+        var server = new NetworkServer(client, 0);
+
+        // Copies of an uplink received by several gateways are forwarded once
+        client.uplink(100, 1, (short) 7, -80.0, SECOND);
+        client.uplink(101, 1, (short) 7, -90.0, SECOND);
+        client.uplink(102, 1, (short) 7, -70.0, SECOND);
+        assertEquals(1, client.getUplinks().size());
+
+        // An uplink is identified by the device, frame counter and departure time
+        client.uplink(100, 2, (short) 7, -80.0, SECOND);
+        client.uplink(100, 1, (short) 8, -80.0, SECOND);
+        client.uplink(100, 1, (short) 7, -80.0, 2 * SECOND);
+        assertEquals(4, client.getUplinks().size());
+        client.uplink(101, 2, (short) 7, -80.0, SECOND);
+        client.uplink(101, 1, (short) 8, -80.0, SECOND);
+        client.uplink(101, 1, (short) 7, -80.0, 2 * SECOND);
+        assertEquals(4, client.getUplinks().size());
+
+        // A reset forgets all the uplinks
+        server.reset();
+        client.uplink(103, 1, (short) 7, -80.0, SECOND);
+        assertEquals(5, client.getUplinks().size());
+    }
+
+    @Test
+    void duplicateWindowEviction() {
+        var client = new RecordingClient(false);
+        new NetworkServer(client, 0);
+
+        client.uplink(100, 1, (short) 0, -80.0, 0);
+        client.uplink(100, 1, (short) 1, -80.0, 30 * SECOND);
+        // A late copy within the window of the most recent uplink is still a duplicate
+        client.uplink(101, 1, (short) 0, -80.0, 0);
+        assertEquals(2, client.getUplinks().size());
+
+        // An uplink which departs more than the window after the most recent one evicts the others
+        client.uplink(100, 1, (short) 2, -80.0, 91 * SECOND);
+        client.uplink(101, 1, (short) 1, -80.0, 30 * SECOND);
+        assertEquals(4, client.getUplinks().size());
+        client.uplink(102, 1, (short) 2, -80.0, 91 * SECOND);
+        assertEquals(4, client.getUplinks().size());
+    }
+
+    @Test
+    void duplicateMemoryPerDevice() {
+        var client = new RecordingClient(false);
+        new NetworkServer(client, 0);
+
+        // Only a fixed amount of recent uplinks is remembered per device, however many are sent within the window
+        for (short frameCounter = 0; frameCounter < 100; frameCounter++) {
+            client.uplink(100, 1, frameCounter, -80.0, frameCounter * 100_000_000L);
+            client.uplink(100, 2, frameCounter, -80.0, frameCounter * 100_000_000L);
+        }
+        assertEquals(200, client.getUplinks().size());
+
+        // The most recent uplinks of every device are still known, older ones are forgotten
+        client.uplink(101, 1, (short) 99, -80.0, 99 * 100_000_000L);
+        client.uplink(101, 1, (short) 92, -80.0, 92 * 100_000_000L);
+        client.uplink(101, 2, (short) 92, -80.0, 92 * 100_000_000L);
+        assertEquals(200, client.getUplinks().size());
+        client.uplink(101, 1, (short) 50, -80.0, 50 * 100_000_000L);
+        assertEquals(201, client.getUplinks().size());
+    }
+
+    // endregion
+
+
+    // region gateway selection
+
+    private static long downlinkGateway(RecordingClient client, long mote) {
+        int sent = client.getDownlinkGateways().size();
+        client.downlink(mote);
+        var gateways = client.getDownlinkGateways();
+        assertEquals(sent + 1, gateways.size(), "no downlink sent to mote " + mote);
+        return gateways.get(sent);
+    }
+
+    @Test
+    void incrementalBestGateway() {
+        var client = new RecordingClient(false);
+        new NetworkServer(client, 0);
+
+        // No gateway heard the mote yet
+        client.downlink(1);
+        assertTrue(client.getDownlinkGateways().isEmpty());
+
+        client.uplink(100, 1, (short) 0, -90.0, 0);
+        assertEquals(100, downlinkGateway(client, 1));
+        // A copy of the same uplink received with a higher power by another gateway
+        client.uplink(101, 1, (short) 0, -70.0, 0);
+        assertEquals(101, downlinkGateway(client, 1));
+
+        // The best gateway gets worse: the best of the other gateways is selected
+        client.uplink(101, 1, (short) 1, -100.0, SECOND);
+        assertEquals(100, downlinkGateway(client, 1));
+        client.uplink(102, 1, (short) 1, -95.0, SECOND);
+        assertEquals(100, downlinkGateway(client, 1));
+        client.uplink(102, 1, (short) 2, -80.0, 2 * SECOND);
+        assertEquals(102, downlinkGateway(client, 1));
+
+        // Every mote has its own best gateway
+        client.uplink(101, 2, (short) 0, -60.0, 2 * SECOND);
+        assertEquals(101, downlinkGateway(client, 2));
+        assertEquals(102, downlinkGateway(client, 1));
+    }
+
+    @Test
+    void staleGatewayExpires() {
+        long minute = 60 * SECOND;
+        var client = new RecordingClient(false);
+        new NetworkServer(client, 0);
+
+        client.uplink(100, 1, (short) 0, -60.0, 0);
+        client.uplink(101, 1, (short) 1, -90.0, 30 * minute);
+        assertEquals(100, downlinkGateway(client, 1));
+
+        // The best gateway did not hear the mote within an hour before its most recent uplink
+        client.uplink(101, 1, (short) 2, -90.0, 61 * minute);
+        assertEquals(101, downlinkGateway(client, 1));
+
+        // Once forgotten, the gateway is only used again after it hears the mote again
+        client.uplink(101, 1, (short) 3, -95.0, 62 * minute);
+        assertEquals(101, downlinkGateway(client, 1));
+        client.uplink(100, 1, (short) 4, -60.0, 63 * minute);
+        assertEquals(100, downlinkGateway(client, 1));
+    }
+
+    @Test
+    void pluggableStrategy() {
+        var client = new RecordingClient(false);
+        var server = new NetworkServer(client, 0);
+
+        client.uplink(100, 1, (short) 0, -90.0, 0);
+        client.uplink(101, 1, (short) 0, -70.0, 0);
+        client.uplink(102, 1, (short) 0, -80.0, 0);
+        assertEquals(101, downlinkGateway(client, 1));
+
+        // The known gateways are scored again with the new strategy
+        server.setChooseGatewayStrategy((gateway, receivedPower, departure) -> -receivedPower);
+        assertEquals(100, downlinkGateway(client, 1));
+        server.setChooseGatewayStrategy((gateway, receivedPower, departure) -> gateway == 102 ? 1 : 0);
+        assertEquals(102, downlinkGateway(client, 1));
+
+        // The new uplinks are scored with the new strategy as well
+        client.uplink(100, 1, (short) 1, -50.0, SECOND);
+        assertEquals(102, downlinkGateway(client, 1));
+    }
+
+    // endregion
+}
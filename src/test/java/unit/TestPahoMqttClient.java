@@ -0,0 +1,122 @@
+package unit;
+
+import iot.mqtt.BasicMqttMessage;
+import iot.mqtt.LoopbackMqttBroker;
+import iot.mqtt.PahoMqttClient;
+import iot.mqtt.Topics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static unit.AsyncTestConditions.await;
+
+
+class TestPahoMqttClient {
+
+    // The time to wait for messages which should not arrive
+    private static final long QUIET_MILLIS = 300;
+
+    private PahoMqttClient receiver;
+    private PahoMqttClient sender;
+    private List<Integer> received;
+
+    @BeforeEach
+    void setUp() {
+        String address = LoopbackMqttBroker.getInstance(0).getAddress();
+        received = Collections.synchronizedList(new ArrayList<>());
+        receiver = new PahoMqttClient(address, MqttClient.generateClientId(), PahoMqttClient.PayloadFormat.JSON, false, 1);
+        receiver.subscribe(this, Topics.getAppToNetServer("+", "+"), BasicMqttMessage.class,
+            (topic, message) -> received.add((int) topic.getNode()));
+        sender = new PahoMqttClient(address, MqttClient.generateClientId(), PahoMqttClient.PayloadFormat.JSON, true, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.disconnect();
+        receiver.disconnect();
+    }
+
+    private void publish(int from, int to) {
+        for (int i = from; i < to; i++) {
+            sender.publish(Topics.getAppToNetServer(1L, i), new BasicMqttMessage(List.of((byte) i)));
+        }
+    }
+
+    private static void quiet() {
+        try {
+            Thread.sleep(QUIET_MILLIS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static List<Integer> range(int from, int to) {
+        return IntStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+
+    @Test
+    void windowExpiry() {
+        // Flushes of an empty batch do not count towards the window
+        sender.flush(false);
+        sender.flush(false);
+        publish(0, 5);
+        sender.flush(false);
+        sender.flush(false);
+        quiet();
+        assertTrue(received.isEmpty());
+
+        // The batch is sent at the end of the window, in order of publication
+        sender.flush(false);
+        await(() -> received.size() == 5);
+        assertEquals(range(0, 5), received);
+
+        // The window starts again for the next batch
+        publish(5, 6);
+        sender.flush(false);
+        sender.flush(false);
+        quiet();
+        assertEquals(5, received.size());
+        sender.flush(false);
+        await(() -> received.size() == 6);
+    }
+
+    @Test
+    void forcedFlush() {
+        publish(0, 3);
+        sender.flush(false);
+        sender.flush(true);
+        await(() -> received.size() == 3);
+        assertEquals(range(0, 3), received);
+
+        // A forced flush restarts the window as well
+        publish(3, 4);
+        sender.flush(false);
+        sender.flush(false);
+        quiet();
+        assertEquals(3, received.size());
+        sender.flush(true);
+        await(() -> received.size() == 4);
+    }
+
+    @Test
+    void fullBatch() {
+        // A full batch is sent without a flush, the rest is held back
+        publish(0, 1001);
+        await(() -> received.size() == 1000);
+        quiet();
+        assertEquals(range(0, 1000), received);
+
+        sender.flush(true);
+        await(() -> received.size() == 1001);
+        assertEquals(1000, (int) received.get(1000));
+    }
+}
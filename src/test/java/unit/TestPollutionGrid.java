@@ -2,10 +2,23 @@ package unit;
 
 import application.pollution.PollutionGrid;
 import application.pollution.PollutionLevel;
+import iot.Characteristic;
+import iot.Environment;
 import org.junit.jupiter.api.Test;
 import org.jxmapviewer.viewer.GeoPosition;
+import util.MapHelper;
+import util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 
 class TestPollutionGrid {
@@ -28,4 +41,159 @@ class TestPollutionGrid {
         assertEquals(grid.getPollutionLevel(new GeoPosition(5,5)).getPollutionFactor(), 0.0);
         assertEquals(grid.getPollutionLevel(new GeoPosition(50,50)).getPollutionFactor(), 0.0);
     }
+
+    @Test
+    void closestMeasurement() {
+        PollutionGrid grid = new PollutionGrid();
+        Random random = new Random(7);
+        List<Pair<GeoPosition, PollutionLevel>> measurements = new ArrayList<>();
+
+        for (long device = 0; device < 500; device++) {
+            // Some devices share a position
+            var position = device % 10 == 0 && device > 0 ? measurements.get(random.nextInt(measurements.size())).getLeft() :
+                new GeoPosition(50.87 + random.nextDouble() / 50, 4.69 + random.nextDouble() / 50);
+            var level = new PollutionLevel(random.nextDouble() * 125);
+            grid.addMeasurement(device, position, level);
+            measurements.add(new Pair<>(position, level));
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            var position = i % 4 == 0 ? measurements.get(random.nextInt(measurements.size())).getLeft() :
+                new GeoPosition(50.86 + random.nextDouble() / 40, 4.68 + random.nextDouble() / 40);
+            assertEquals(closestLevel(measurements, position), grid.getPollutionLevel(position).getPollutionFactor());
+        }
+    }
+
+    @Test
+    void rasterFollowsMeasurements() {
+        var environment = new Environment(new Characteristic[500][500], new GeoPosition(50.88, 4.70), 1, new HashMap<>(), new HashMap<>());
+        var mapHelper = environment.getMapHelper();
+        PollutionGrid grid = new PollutionGrid();
+        Random random = new Random(11);
+
+        var raster = grid.getRaster(environment, 25);
+        assertEquals(0.0, raster.getPollutionLevel(3, 4));
+
+        for (int i = 0; i < 200; i++) {
+            // A few devices which move around, the measurements are published in batches
+            for (int k = random.nextInt(4); k >= 0; k--) {
+                grid.addMeasurement(random.nextInt(15), mapHelper.toGeoPosition(random.nextInt(500), random.nextInt(500)),
+                    new PollutionLevel(random.nextDouble() * 125));
+            }
+            raster = grid.getRaster(environment, 25);
+            assertEquals(grid.getVersion(), raster.getVersion());
+
+            for (int x = 0; x < raster.getSquares(); x++) {
+                for (int y = 0; y < raster.getSquares(); y++) {
+                    assertEquals(grid.getPollutionLevel(raster.getMiddle(x, y)).getPollutionFactor(), raster.getPollutionLevel(x, y));
+                }
+            }
+        }
+
+        grid.clean();
+        assertEquals(0.0, grid.getRaster(environment, 25).getPollutionLevel(3, 4));
+    }
+
+    @Test
+    void concurrentPublication() throws InterruptedException {
+        var environment = new Environment(new Characteristic[500][500], new GeoPosition(50.88, 4.70), 1, new HashMap<>(), new HashMap<>());
+        var mapHelper = environment.getMapHelper();
+        PollutionGrid grid = new PollutionGrid();
+
+        // The measurements are published when they are read
+        for (int i = 0; i < 10; i++) {
+            grid.addMeasurement(i, mapHelper.toGeoPosition(i, i), new PollutionLevel(i));
+        }
+        assertEquals(10, grid.getVersion());
+
+        // Writers, and readers which replace the raster while the writers add measurements
+        int writers = 4;
+        int measurements = 500;
+        List<Pair<GeoPosition, PollutionLevel>> added = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            int writer = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(writer);
+                for (int i = 0; i < measurements; i++) {
+                    var position = mapHelper.toGeoPosition(i, 50 + 100 * writer);
+                    var level = new PollutionLevel(random.nextDouble() * 125);
+                    grid.addMeasurement(100 + writer * measurements + i, position, level);
+                    added.add(new Pair<>(position, level));
+                }
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            int reader = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    grid.getRaster(environment, 5 + 2 * i + reader);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // No measurement is left unpublished
+        assertEquals(10 + writers * measurements, grid.getVersion());
+        for (var measurement : added) {
+            assertEquals(measurement.getRight().getPollutionFactor(), grid.getPollutionLevel(measurement.getLeft()).getPollutionFactor());
+        }
+        assertEquals(grid.getVersion(), grid.getRaster(environment, 25).getVersion());
+    }
+
+    @Test
+    void samplesFollowMeasurements() {
+        PollutionGrid grid = new PollutionGrid();
+        Random random = new Random(13);
+        List<GeoPosition> positions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            positions.add(new GeoPosition(50.85 + random.nextDouble() / 20, 4.67 + random.nextDouble() / 20));
+        }
+
+        // Samples which are updated after every publication, and samples which fall behind the known changes
+        var samples = grid.createSamples(positions);
+        var lagging = samples;
+        for (int i = 0; i < 300; i++) {
+            grid.addMeasurement(random.nextInt(15), new GeoPosition(50.85 + random.nextDouble() / 20, 4.67 + random.nextDouble() / 20),
+                new PollutionLevel(random.nextDouble() * 125));
+            var previous = samples;
+            samples = grid.updateSamples(samples);
+            // Only the samples of which the level changed are reported, if these are known
+            var changed = samples.getChangedSamples();
+            if (changed.isPresent()) {
+                var changedSamples = Arrays.stream(changed.get()).boxed().collect(Collectors.toSet());
+                for (int j = 0; j < positions.size(); j++) {
+                    assertEquals(!changedSamples.contains(j), previous.getPollutionLevel(j) == samples.getPollutionLevel(j));
+                }
+            }
+            if (i % 100 == 0) {
+                lagging = grid.updateSamples(lagging);
+            }
+            if (i == 200) {
+                grid.clean();
+            }
+
+            for (var updated : List.of(samples, lagging)) {
+                if (updated.getVersion() == grid.getVersion()) {
+                    for (int j = 0; j < positions.size(); j++) {
+                        assertEquals(grid.getPollutionLevel(positions.get(j)).getPollutionFactor(), updated.getPollutionLevel(j));
+                    }
+                }
+            }
+        }
+        assertSame(samples, grid.updateSamples(samples));
+    }
+
+    private static double closestLevel(List<Pair<GeoPosition, PollutionLevel>> measurements, GeoPosition position) {
+        var atPosition = measurements.stream().filter(m -> m.getLeft().equals(position)).findFirst();
+        if (atPosition.isPresent()) {
+            return atPosition.get().getRight().getPollutionFactor();
+        }
+        return PollutionLevel.getMediumPollution(measurements.stream()
+            .map(m -> new Pair<>(MapHelper.distance(m.getLeft(), position), m.getRight()))
+            .collect(Collectors.toList())).getPollutionFactor();
+    }
 }
@@ -0,0 +1,167 @@
+package unit;
+
+import gui.util.GUIUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Statistics;
+import util.export.*;
+
+import javax.swing.filechooser.FileFilter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static unit.LoraTestTransmissions.transmission;
+
+
+class TestResultExport {
+
+    private static List<String> replay(InputStream input) throws IOException {
+        List<String> rows = new ArrayList<>();
+        ColumnarResultReader.replay(input, new ResultSink() {
+            @Override
+            public void writeTransmission(int run, long timeInMillis, long sender, long receiver, int spreadingFactor, int powerSetting,
+                                          float receivedPower, float timeOnAir, int payloadSize, boolean collided) {
+                rows.add(String.format("t %d %d %d %d %d %d %s %s %d %b", run, timeInMillis, sender, receiver,
+                    spreadingFactor, powerSetting, receivedPower, timeOnAir, payloadSize, collided));
+            }
+
+            @Override
+            public void writePowerSettingChange(int run, long timeInMillis, long networkEntity, int powerSetting) {
+                rows.add(String.format("p %d %d %d %d", run, timeInMillis, networkEntity, powerSetting));
+            }
+
+            @Override
+            public void writeSpreadingFactorChange(int run, long timeInMillis, long networkEntity, int spreadingFactor) {
+                rows.add(String.format("s %d %d %d %d", run, timeInMillis, networkEntity, spreadingFactor));
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+        return rows;
+    }
+
+    private static List<String> readTable(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(file)), StandardCharsets.US_ASCII))) {
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+
+    @Test
+    void columnarRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ColumnarResultWriter writer = new ColumnarResultWriter(bytes);
+
+        // More rows than a single block, with a timestamp which goes back when a new run starts
+        for (int i = 0; i < 5000; i++) {
+            writer.writeTransmission(i / 2500, (i % 2500) * 20L, 1L, -2L, 7 + i % 6, 14 - i % 17, -50.5f, 41.2f, i % 50, i % 3 == 0);
+        }
+        writer.writePowerSettingChange(0, 3000, 1L, -3);
+        writer.writeSpreadingFactorChange(1, 1000, 1L, 12);
+        writer.close();
+
+        List<String> rows = replay(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(5002, rows.size());
+        assertEquals("t 0 0 1 -2 7 14 -50.5 41.2 0 true", rows.get(0));
+        assertEquals("t 1 0 1 -2 11 13 -50.5 41.2 0 false", rows.get(2500));
+        assertEquals("t 1 49980 1 -2 8 13 -50.5 41.2 49 false", rows.get(4999));
+        assertEquals("p 0 3000 1 -3", rows.get(5000));
+        assertEquals("s 1 1000 1 12", rows.get(5001));
+    }
+
+    @Test
+    void csvExport(@TempDir File directory) throws IOException {
+        try (CsvResultWriter writer = new CsvResultWriter(new File(directory, "results.csv.gz"))) {
+            writer.writeTransmission(0, 1500, 1L, -2L, 9, 14, -80.5f, 41.5f, 5, false);
+            writer.writeTransmission(1, 20, 1L, -2L, 12, 2, -100.0f, 41.5f, 0, true);
+            writer.writePowerSettingChange(0, 3000, 1L, -3);
+            writer.writeSpreadingFactorChange(1, 1000, 1L, 12);
+        }
+
+        // The extension of the base file is replaced by the table suffixes
+        assertFalse(new File(directory, "results.csv.gz").exists());
+        assertEquals(List.of(
+            "run,time_ms,sender,receiver,spreading_factor,power_setting,received_power,time_on_air,payload_size,collided",
+            "0,1500,1,18446744073709551614,9,14,-80.5,41.5,5,0",
+            "1,20,1,18446744073709551614,12,2,-100.0,41.5,0,1"),
+            readTable(new File(directory, "results_transmissions.csv.gz")));
+        assertEquals(List.of("run,time_ms,entity,power_setting", "0,3000,1,-3"),
+            readTable(new File(directory, "results_powersettings.csv.gz")));
+        assertEquals(List.of("run,time_ms,entity,spreading_factor", "1,1000,1,12"),
+            readTable(new File(directory, "results_spreadingfactors.csv.gz")));
+    }
+
+    @Test
+    void incrementalRecording(@TempDir File directory) throws IOException {
+        assumeTrue(ResultRecorder.isEnabled());
+        Statistics statistics = Statistics.getInstance();
+        statistics.reset();
+        ResultRecorder recorder = ResultRecorder.getInstance();
+        try {
+            statistics.addPowerSettingEntry(1L, 10, 14);
+            // Only changes of the power setting and spreading factor are recorded
+            statistics.addPowerSettingEntry(1L, 20, 14);
+            statistics.addSpreadingFactorEntry(1L, 10, 9);
+            statistics.addReceivedTransmissionsEntry(2L, transmission(1L, 2L, -80.5, 41.5, LocalTime.ofSecondOfDay(30), false));
+            statistics.addPowerSettingEntry(1L, 40, 2);
+            statistics.addRun();
+            statistics.addSpreadingFactorEntry(1L, 5, 9);
+            statistics.addSpreadingFactorEntry(1L, 6, 12);
+            statistics.addReceivedTransmissionsEntry(2L, transmission(1L, 2L, 20.0, 41.5, LocalTime.ofSecondOfDay(50), true));
+
+            File binary = new File(directory, "results.dnr");
+            recorder.exportTo(binary, ResultExportFormat.BINARY);
+            List<String> rows;
+            try (InputStream input = new FileInputStream(binary)) {
+                rows = replay(input);
+            }
+            assertEquals(List.of(
+                "t 0 30000 1 2 9 14 -80.5 41.5 5 false",
+                "t 1 50000 1 2 9 2 20.0 41.5 5 true",
+                "p 0 10000 1 14",
+                "p 0 40000 1 2",
+                "s 0 10000 1 9",
+                "s 1 6000 1 12"), rows);
+
+            recorder.exportTo(new File(directory, "results.csv.gz"), ResultExportFormat.CSV_GZIP);
+            List<String> transmissions = readTable(new File(directory, "results_transmissions.csv.gz"));
+            assertEquals(3, transmissions.size());
+            assertEquals("0,30000,1,2,9,14,-80.5,41.5,5,0", transmissions.get(1));
+            assertEquals("1,50000,1,2,9,2,20.0,41.5,5,1", transmissions.get(2));
+            assertEquals(List.of("run,time_ms,entity,power_setting", "0,10000,1,14", "0,40000,1,2"),
+                readTable(new File(directory, "results_powersettings.csv.gz")));
+
+            assertThrows(IllegalArgumentException.class, () -> recorder.exportTo(new File(directory, "results.xml"), ResultExportFormat.XML));
+        } finally {
+            statistics.reset();
+        }
+    }
+
+    @Test
+    void extensionFilter() {
+        FileFilter filter = GUIUtil.getExtensionFilter("gzip csv output", ResultExportFormat.CSV_GZIP.getExtension());
+        assertEquals("gzip csv output", filter.getDescription());
+        assertTrue(filter.accept(new File("results.csv.gz")));
+        assertTrue(filter.accept(new File("RESULTS.CSV.GZ")));
+        assertFalse(filter.accept(new File("results.csv")));
+        assertFalse(filter.accept(new File("results.gz")));
+        assertFalse(filter.accept(new File("results_csv.gz")));
+    }
+}
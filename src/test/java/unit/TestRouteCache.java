@@ -0,0 +1,128 @@
+package unit;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.AStarRouter;
+import application.routing.RouteCache;
+import application.routing.heuristic.DistanceHeuristic;
+import application.routing.heuristic.RoutingHeuristic;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.junit.jupiter.api.Test;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+import util.MapHelper;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class TestRouteCache {
+
+    @Test
+    void invalidation() {
+        // Two routes from 1 to 4: over 2 (slightly shorter) and over 3
+        GraphStructure graph = new GraphStructure();
+        graph.addWayPoint(new GeoPosition(50.850, 4.670));
+        graph.addWayPoint(new GeoPosition(50.855, 4.675));
+        graph.addWayPoint(new GeoPosition(50.844, 4.675));
+        graph.addWayPoint(new GeoPosition(50.850, 4.680));
+        graph.addConnection(new Connection(1, 2));
+        graph.addConnection(new Connection(2, 4));
+        graph.addConnection(new Connection(1, 3));
+        graph.addConnection(new Connection(3, 4));
+
+        // The pollution is interpolated from the closest measurement: measure the middle of every connection
+        var pollutionGrid = new PollutionGrid();
+        pollutionGrid.addMeasurement(1L, MapHelper.meanPosition(graph.getWayPoint(1), graph.getWayPoint(2)), new PollutionLevel(0));
+        pollutionGrid.addMeasurement(2L, MapHelper.meanPosition(graph.getWayPoint(2), graph.getWayPoint(4)), new PollutionLevel(0));
+        pollutionGrid.addMeasurement(3L, MapHelper.meanPosition(graph.getWayPoint(1), graph.getWayPoint(3)), new PollutionLevel(0));
+        pollutionGrid.addMeasurement(4L, MapHelper.meanPosition(graph.getWayPoint(3), graph.getWayPoint(4)), new PollutionLevel(0));
+        var router = new AStarRouter(new SimplePollutionHeuristic(pollutionGrid));
+        var cache = new RouteCache(true, 0.01);
+        var begin = graph.getWayPoint(1);
+        var end = graph.getWayPoint(4);
+        var overTwo = List.of(begin, graph.getWayPoint(2), end);
+        var overThree = List.of(begin, graph.getWayPoint(3), end);
+
+        assertEquals(overTwo, cache.retrievePath(router, graph, begin, end));
+        assertEquals(overTwo, cache.retrievePath(router, graph, begin, end));
+        assertCounters(cache, 1, 1, 0);
+
+        // Pollution away from the route does not change its cost
+        pollutionGrid.addMeasurement(3L, MapHelper.meanPosition(begin, graph.getWayPoint(3)), new PollutionLevel(0.5));
+        assertEquals(overTwo, cache.retrievePath(router, graph, begin, end));
+        assertCounters(cache, 2, 1, 0);
+
+        // Pollution along the route does
+        pollutionGrid.addMeasurement(1L, MapHelper.meanPosition(begin, graph.getWayPoint(2)), new PollutionLevel(1));
+        assertEquals(overThree, cache.retrievePath(router, graph, begin, end));
+        assertCounters(cache, 2, 2, 1);
+
+        // As does editing the graph
+        graph.addWayPoint(new GeoPosition(50.840, 4.690));
+        assertEquals(overThree, cache.retrievePath(router, graph, begin, end));
+        assertEquals(overThree, cache.retrievePath(router, graph, begin, end));
+        assertCounters(cache, 3, 3, 2);
+
+        cache.clean();
+        assertCounters(cache, 0, 0, 0);
+    }
+
+    @Test
+    void costVersions() {
+        GraphStructure graph = new GraphStructure();
+        graph.addWayPoint(new GeoPosition(50.850, 4.670));
+        graph.addWayPoint(new GeoPosition(50.855, 4.675));
+        graph.addWayPoint(new GeoPosition(50.850, 4.680));
+        graph.addConnection(new Connection(1, 2));
+        graph.addConnection(new Connection(2, 3));
+
+        // The distance, with a version of the costs which is changed by the test
+        var distance = new DistanceHeuristic();
+        var evaluations = new AtomicInteger();
+        var costVersion = new AtomicLong();
+        var heuristic = new RoutingHeuristic() {
+            @Override
+            public double calculateHeuristic(HeuristicEntry entry) {
+                evaluations.incrementAndGet();
+                return distance.calculateHeuristic(entry);
+            }
+
+            @Override
+            public long getCostVersion() {
+                return costVersion.get();
+            }
+        };
+        var router = new AStarRouter(heuristic);
+        var cache = new RouteCache(true, 0);
+        var begin = graph.getWayPoint(1);
+        var end = graph.getWayPoint(3);
+        var route = List.of(begin, graph.getWayPoint(2), end);
+
+        assertEquals(route, cache.retrievePath(router, graph, begin, end));
+        int found = evaluations.get();
+
+        // The route is not evaluated again as long as the costs are unchanged
+        assertEquals(route, cache.retrievePath(router, graph, begin, end));
+        assertEquals(route, cache.retrievePath(router, graph, begin, end));
+        assertEquals(found, evaluations.get());
+        assertCounters(cache, 2, 1, 0);
+
+        // Once the costs changed, only the connections of the route are evaluated, and only once per version
+        costVersion.incrementAndGet();
+        assertEquals(route, cache.retrievePath(router, graph, begin, end));
+        assertEquals(route, cache.retrievePath(router, graph, begin, end));
+        assertEquals(found + 2, evaluations.get());
+        assertCounters(cache, 4, 1, 0);
+    }
+
+    private static void assertCounters(RouteCache cache, long hits, long misses, long invalidations) {
+        assertEquals(hits, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+        assertEquals(invalidations, cache.getInvalidations());
+    }
+}
@@ -0,0 +1,124 @@
+package unit;
+
+import application.pollution.PollutionGrid;
+import application.pollution.PollutionLevel;
+import application.routing.heuristic.RoutingHeuristic.HeuristicEntry;
+import application.routing.heuristic.SimplePollutionHeuristic;
+import org.junit.jupiter.api.Test;
+import org.jxmapviewer.viewer.GeoPosition;
+import util.Connection;
+import util.GraphStructure;
+import util.MapHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static unit.RoutingTestGraphs.randomGraph;
+import static unit.RoutingTestGraphs.randomPosition;
+
+
+class TestSimplePollutionHeuristic {
+
+    @Test
+    void cachedCosts() throws InterruptedException {
+        Random random = new Random(13);
+        GraphStructure graph = randomGraph(random, 200, 3);
+        var ids = new ArrayList<>(graph.getWayPoints().keySet());
+
+        var pollutionGrid = new PollutionGrid();
+        var heuristic = new SimplePollutionHeuristic(pollutionGrid);
+        var compactGraph = graph.getCompactGraph();
+
+        // Routes are computed concurrently while the measurements arrive
+        var failure = new AtomicReference<Throwable>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            var reader = new Thread(() -> {
+                var entry = new HeuristicEntry(graph, null, null);
+                for (int j = 0; j < 200; j++) {
+                    for (var connection : graph.getConnections().values()) {
+                        entry.connection = connection;
+                        if (!(heuristic.calculateHeuristic(entry) >= 0)) {
+                            failure.set(new AssertionError("Invalid cost"));
+                        }
+                    }
+                }
+            });
+            reader.setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+            readers.add(reader);
+            reader.start();
+        }
+
+        for (int i = 0; i < 60; i++) {
+            pollutionGrid.addMeasurement(random.nextInt(20), randomPosition(random), new PollutionLevel(random.nextDouble()));
+
+            var costs = heuristic.getSharedCosts(graph, compactGraph).orElseThrow();
+            for (int edge = 0; edge < compactGraph.getEdgeCount(); edge++) {
+                var connection = graph.getConnection(compactGraph.getConnectionId(edge));
+                double expected = expectedCost(graph, pollutionGrid, connection);
+                assertEquals(expected, costs[edge], 1e-12);
+                assertEquals(expected, heuristic.calculateHeuristic(new HeuristicEntry(graph, connection, null)), 1e-12);
+            }
+        }
+
+        for (var reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+
+        // The table is replaced after an edit of the graph
+        graph.addWayPoint(randomPosition(random));
+        var connection = new Connection(ids.get(0), graph.getWayPoints().size());
+        graph.addConnection(connection);
+        pollutionGrid.addMeasurement(0, randomPosition(random), new PollutionLevel(random.nextDouble()));
+        assertEquals(expectedCost(graph, pollutionGrid, connection),
+            heuristic.calculateHeuristic(new HeuristicEntry(graph, connection, null)), 1e-12);
+        assertEquals(graph.getCompactGraph().getEdgeCount(), heuristic.getSharedCosts(graph, graph.getCompactGraph()).orElseThrow().length);
+    }
+
+
+    @Test
+    void changedEdges() {
+        Random random = new Random(17);
+        GraphStructure graph = randomGraph(random, 200, 3);
+        var pollutionGrid = new PollutionGrid();
+        for (int i = 0; i < 20; i++) {
+            pollutionGrid.addMeasurement(i, randomPosition(random), new PollutionLevel(random.nextDouble()));
+        }
+        var heuristic = new SimplePollutionHeuristic(pollutionGrid);
+        var table = heuristic.getSharedCostTable(graph, graph.getCompactGraph()).orElseThrow();
+
+        double[] previous = table.getCosts();
+        assertEquals(0, table.getUpdate(previous).getChangedEdges().orElseThrow().length);
+        for (int i = 0; i < 20; i++) {
+            // The changes of several updates are combined
+            for (int j = 0; j <= i % 3; j++) {
+                pollutionGrid.addMeasurement(random.nextInt(20), randomPosition(random), new PollutionLevel(random.nextDouble()));
+                table.getCosts();
+            }
+
+            var update = table.getUpdate(previous);
+            var changed = Arrays.stream(update.getChangedEdges().orElseThrow()).boxed().collect(Collectors.toSet());
+            double[] costs = update.getCosts();
+            for (int edge = 0; edge < costs.length; edge++) {
+                if (!changed.contains(edge)) {
+                    assertEquals(previous[edge], costs[edge]);
+                }
+            }
+            previous = costs;
+        }
+    }
+
+
+    private static double expectedCost(GraphStructure graph, PollutionGrid pollutionGrid, Connection connection) {
+        GeoPosition begin = graph.getWayPoint(connection.getFrom());
+        GeoPosition end = graph.getWayPoint(connection.getTo());
+        double pollution = pollutionGrid.getPollutionLevel(MapHelper.meanPosition(begin, end)).getPollutionFactor();
+        return (pollution * 10 + 1) * MapHelper.distance(begin, end);
+    }
+}
@@ -0,0 +1,84 @@
+package unit;
+
+import iot.mqtt.Topic;
+import iot.mqtt.Topics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TestTopics {
+
+    @Test
+    void cachedTopics() {
+        Topic topic = Topics.getAppToNetServer(32L, 1L);
+        assertSame(topic, Topics.getAppToNetServer(32L, 1L));
+        assertNotSame(topic, Topics.getNetServerToApp(32L, 1L));
+        assertEquals("application/32/node/1/tx", topic.toString());
+
+        Topic gatewayTopic = Topics.getGatewayToNetServer(32L, 2L, 1L);
+        assertSame(gatewayTopic, Topics.getGatewayToNetServer(32L, 2L, 1L));
+        assertEquals("application/32/gateway/2/node/1/rx", gatewayTopic.toString());
+    }
+
+    @Test
+    void parsedTopics() {
+        // A parsed topic is the same instance as the typed topic, whether it is parsed first or not
+        Topic parsed = Topics.parse("application/32/node/3/rx");
+        assertSame(parsed, Topics.getNetServerToApp(32L, 3L));
+        assertSame(parsed, Topics.parse("application/32/node/3/rx"));
+
+        Topic gatewayTopic = Topics.getNetServerToGateway(32L, 2L, 3L);
+        assertSame(gatewayTopic, Topics.parse("application/32/gateway/2/node/3/tx"));
+        assertEquals(2L, gatewayTopic.getGateway());
+
+        // Topics without the required ids are rejected, also when parsed again
+        assertThrows(NoSuchElementException.class, () -> Topics.parse("application/32/rx"));
+        assertThrows(NoSuchElementException.class, () -> Topics.parse("application/32/rx"));
+    }
+
+    @Test
+    void manyTopics() throws InterruptedException {
+        // Every thread creates the same topics, which grows the table a few times
+        int threads = 4;
+        int nodes = 2000;
+        Topic[][] created = new Topic[threads][nodes];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                for (int node = 0; node < nodes; node++) {
+                    created[thread][node] = Topics.getGatewayToNetServer(33L, 4L, node);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (int node = 0; node < nodes; node++) {
+            Topic topic = Topics.getGatewayToNetServer(33L, 4L, node);
+            assertEquals(node, topic.getNode());
+            assertEquals(4L, topic.getGateway());
+            for (int t = 0; t < threads; t++) {
+                assertSame(topic, created[t][node]);
+            }
+        }
+        assertNotSame(Topics.getGatewayToNetServer(33L, 4L, 1L), Topics.getGatewayToNetServer(33L, 5L, 1L));
+        assertFalse(Topics.getNetServerToApp(33L, 1L).hasGateway());
+    }
+
+    @Test
+    void cleanParsedTopics() {
+        Topic parsed = Topics.parse("application/34/node/3/rx");
+        Topics.clean();
+        // The typed topics stay cached
+        assertSame(parsed, Topics.parse("application/34/node/3/rx"));
+        assertSame(parsed, Topics.getNetServerToApp(34L, 3L));
+    }
+}